@@ -4,11 +4,14 @@
 package com.microsoft.tfs
 
 import com.jetbrains.rd.framework.*
+import com.jetbrains.rd.framework.impl.RdCall
+import com.jetbrains.rd.framework.impl.RdTask
 import com.jetbrains.rd.util.Logger
 import com.jetbrains.rd.util.info
 import com.jetbrains.rd.util.lifetime.Lifetime
 import com.jetbrains.rd.util.lifetime.LifetimeDefinition
 import com.jetbrains.rd.util.lifetime.isAlive
+import com.jetbrains.rd.util.reactive.IScheduler
 import com.jetbrains.rd.util.threading.SingleThreadScheduler
 import com.microsoft.tfs.core.httpclient.UsernamePasswordCredentials
 import com.microsoft.tfs.model.host.*
@@ -17,6 +20,11 @@ import java.nio.file.Paths
 import java.util.*
 import kotlin.system.exitProcess
 
+/**
+ * Maximum number of pending changes sent in a single protocol message.
+ */
+private const val PENDING_CHANGES_CHUNK_SIZE = 1000
+
 fun main(args: Array<String>) {
     println("Reactive TFS Client version 1.0")
 
@@ -28,6 +36,10 @@ fun main(args: Array<String>) {
 
     initializeApp(args)
     runRdClient(port)
+
+    // Exit explicitly after the host has disconnected, so the JVM exit-time actions (e.g. dumping the class data
+    // sharing archive) are performed before the host gives up waiting and kills the process.
+    exitProcess(0)
 }
 
 private fun printUsage() {
@@ -56,6 +68,7 @@ private fun runRdClient(portNumber: Int) {
     startSocketWatchdog(appLifetime, socket, logger)
 
     val protocol = Protocol(Serializers(), Identities(IdKind.Client), scheduler, socket, appLifetime)
+    val requestScheduler = RequestScheduler.create(appLifetime)
     scheduler.queue {
         val model = TfsModel.create(appLifetime, protocol)
         model.shutdown.advise(appLifetime) {
@@ -63,7 +76,9 @@ private fun runRdClient(portNumber: Int) {
             appLifetime.terminate()
         }
 
-        model.collections.view(appLifetime, ::initializeCollection)
+        model.collections.view(appLifetime) { lifetime, definition, collection ->
+            initializeCollection(lifetime, definition, collection, scheduler, requestScheduler)
+        }
     }
 
     logger.info { "Application initialized, waiting termination" }
@@ -85,80 +100,131 @@ private fun waitTermination(lifetime: Lifetime, msBetweenChecks: Long = 1000L) {
     }
 }
 
-private fun initializeCollection(lifetime: Lifetime, definition: TfsCollectionDefinition, collection: TfsCollection) {
+/**
+ * Handles the calls on the request scheduler instead of the protocol one, so the blocking SDK operations wouldn't
+ * hold the other calls. The result is passed back through the protocol scheduler, after the messages the handler has
+ * queued there.
+ */
+private fun <TReq, TRes> RdCall<TReq, TRes>.handleOn(
+    protocolScheduler: IScheduler,
+    requestScheduler: RequestScheduler,
+    priority: RequestPriority,
+    handler: (TReq) -> TRes
+) {
+    set { _, request ->
+        RdTask<TRes>().also { task ->
+            requestScheduler.queue(priority) {
+                try {
+                    val result = handler(request)
+                    protocolScheduler.queue { task.set(result) }
+                } catch (t: Throwable) {
+                    protocolScheduler.queue { task.fault(t) }
+                }
+            }
+        }
+    }
+}
+
+private fun initializeCollection(
+    lifetime: Lifetime,
+    definition: TfsCollectionDefinition,
+    collection: TfsCollection,
+    protocolScheduler: IScheduler,
+    requestScheduler: RequestScheduler
+) {
     val logger = Logging.getLogger("Collection")
     logger.info { "Initializing collection for ${definition.serverUri}" }
 
     val credentials = definition.credentials.run { UsernamePasswordCredentials(login, password.contents) }
     val client = TfsClient(lifetime, definition.serverUri, credentials)
 
-    collection.getPendingChanges.set { paths ->
+    fun <TReq, TRes> RdCall<TReq, TRes>.handle(priority: RequestPriority, handler: (TReq) -> TRes) =
+        handleOn(protocolScheduler, requestScheduler, priority, handler)
+
+    collection.streamPendingChanges.handle(RequestPriority.BULK) { (requestId, paths) ->
         logger.info { "Calculating pending changes for ${paths.size} paths" }
-        val result = client.status(paths).flatMap(::toPendingChanges).toList()
-        logger.info { "${result.size} changes detected" }
-        logger.info { "First 10 changes: " + result.take(10).joinToString { it.serverItem } }
-        result
+        var count = 0
+        var chunk = ArrayList<TfsPendingChange>(PENDING_CHANGES_CHUNK_SIZE)
+        fun sendChunk() {
+            val sentChunk = TfsPendingChangesChunk(requestId, chunk)
+            protocolScheduler.queue { collection.pendingChangesChunk.fire(sentChunk) }
+            chunk = ArrayList(PENDING_CHANGES_CHUNK_SIZE)
+        }
+
+        // The chunks are sent while the SDK queries are still running; the call result is queued after all of them.
+        client.status(paths) { pendingSet ->
+            for (change in toPendingChanges(pendingSet)) {
+                if (count < 10) logger.info { "Change detected: ${change.serverItem}" }
+                ++count
+
+                chunk.add(change)
+                if (chunk.size == PENDING_CHANGES_CHUNK_SIZE) sendChunk()
+            }
+        }
+
+        if (chunk.isNotEmpty()) sendChunk()
+        logger.info { "$count changes detected" }
     }
 
     fun logPaths(title: String, paths: List<TfsPath>) {
         logger.info { "Performing $title operation on ${paths.size} paths, first 10: ${paths.take(10).joinToString()}" }
     }
 
-    collection.getLocalItemsInfo.set { paths ->
-        if (paths.isEmpty()) return@set emptyList()
+    collection.getLocalItemsInfo.handle(RequestPriority.BULK) { paths ->
+        if (paths.isEmpty()) return@handle emptyList()
 
         logPaths("Get Local Items Info", paths)
         client.getLocalItemsInfo(paths)
     }
 
-    collection.getExtendedLocalItemsInfo.set { paths ->
-        if (paths.isEmpty()) return@set emptyList()
+    collection.getExtendedLocalItemsInfo.handle(RequestPriority.BULK) { paths ->
+        if (paths.isEmpty()) return@handle emptyList()
 
         logPaths("Get Local Items Info", paths)
         client.getExtendedLocalItemsInfo(paths)
     }
 
-    collection.invalidatePaths.set { paths ->
-        if (paths.isEmpty()) return@set
+    collection.invalidatePaths.handle(RequestPriority.INTERACTIVE) { paths ->
+        if (paths.isEmpty()) return@handle
 
         logPaths("Invalidate", paths)
         client.invalidatePaths(paths)
     }
 
-    collection.addFiles.set { paths ->
-        if (paths.isEmpty()) return@set emptyList()
+    collection.addFiles.handle(RequestPriority.INTERACTIVE) { paths ->
+        if (paths.isEmpty()) return@handle emptyList()
 
         logPaths("Add", paths)
         client.addFiles(paths)
     }
 
-    collection.deleteFilesRecursively.set { paths ->
-        if (paths.isEmpty()) return@set TfsDeleteResult(emptyList(), emptyList(), emptyList())
+    collection.deleteFilesRecursively.handle(RequestPriority.INTERACTIVE) { paths ->
+        if (paths.isEmpty()) return@handle TfsDeleteResult(emptyList(), emptyList(), emptyList())
 
         logPaths("Recursive Delete", paths)
         client.deletePathsRecursively(paths)
     }
 
-    collection.undoLocalChanges.set { paths ->
-        if (paths.isEmpty()) return@set emptyList()
+    collection.undoLocalChanges.handle(RequestPriority.INTERACTIVE) { paths ->
+        if (paths.isEmpty()) return@handle emptyList()
 
         logPaths("Undo", paths)
         client.undoLocalChanges(paths)
     }
 
-    collection.checkoutFilesForEdit.set { parameters ->
+    collection.checkoutFilesForEdit.handle(RequestPriority.INTERACTIVE) { parameters ->
         logPaths("Checkout (recursive: ${parameters.recursive})", parameters.filePaths)
         client.checkoutFilesForEdit(parameters.filePaths, parameters.recursive)
     }
 
-    collection.renameFile.set { (oldPath, newPath) ->
+    collection.renameFile.handle(RequestPriority.INTERACTIVE) { (oldPath, newPath) ->
         logger.info { "Performing Rename operation on \"${oldPath.path}\" to \"${newPath.path}\"" }
         client.renameFile(oldPath, newPath)
     }
 
     client.workspaces.advise(lifetime) { workspaces ->
         val paths = workspaces.flatMap { it.mappedPaths.map(::TfsLocalPath) }
-        collection.mappedPaths.set(paths)
+        protocolScheduler.queue { collection.mappedPaths.set(paths) }
     }
 
     collection.isReady.set(true)
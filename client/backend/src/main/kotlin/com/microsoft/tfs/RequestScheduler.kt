@@ -0,0 +1,104 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.tfs
+
+import com.jetbrains.rd.util.error
+import com.jetbrains.rd.util.lifetime.Lifetime
+import com.jetbrains.rd.util.lifetime.onTermination
+import java.util.ArrayDeque
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
+
+enum class RequestPriority {
+    /**
+     * Short requests the user is waiting for, e.g. a checkout before editing a file.
+     */
+    INTERACTIVE,
+
+    /**
+     * Long scans, e.g. the pending changes or item info calculation for the whole project.
+     */
+    BULK
+}
+
+/**
+ * Runs the protocol requests on a pool of [parallelism] worker threads, so a long request doesn't block the ones that
+ * come after it. The interactive requests are always started before the queued bulk ones, and the bulk requests never
+ * occupy the last free worker, so an interactive request doesn't have to wait for a scan to finish.
+ */
+class RequestScheduler(private val executor: ExecutorService, private val parallelism: Int) {
+    companion object {
+        private val logger = Logging.getLogger<RequestScheduler>()
+
+        const val PARALLELISM_PROPERTY = "com.microsoft.tfs.RequestScheduler.parallelism"
+        private const val DEFAULT_PARALLELISM = 4
+
+        fun create(lifetime: Lifetime): RequestScheduler {
+            val parallelism = maxOf(1, Integer.getInteger(PARALLELISM_PROPERTY, DEFAULT_PARALLELISM))
+            val executor = Executors.newFixedThreadPool(parallelism, object : ThreadFactory {
+                private val threadCount = AtomicInteger()
+                override fun newThread(runnable: Runnable) =
+                    Thread(runnable, "RequestScheduler worker ${threadCount.incrementAndGet()}").apply {
+                        isDaemon = true
+                    }
+            })
+            lifetime.onTermination { executor.shutdown() }
+            return RequestScheduler(executor, parallelism)
+        }
+    }
+
+    private val lock = Any()
+    private val interactiveRequests = ArrayDeque<Runnable>()
+    private val bulkRequests = ArrayDeque<Runnable>()
+    private var runningCount = 0
+    private var runningBulkCount = 0
+
+    private val maxBulkCount: Int
+        get() = maxOf(1, parallelism - 1)
+
+    fun queue(priority: RequestPriority, action: () -> Unit) {
+        synchronized(lock) {
+            when (priority) {
+                RequestPriority.INTERACTIVE -> interactiveRequests.add(Runnable(action))
+                RequestPriority.BULK -> bulkRequests.add(Runnable(action))
+            }
+        }
+
+        dispatch()
+    }
+
+    private fun dispatch() {
+        while (true) {
+            val (request, isBulk) = synchronized(lock) {
+                if (runningCount >= parallelism) return
+
+                val interactiveRequest = interactiveRequests.poll()
+                val isBulk = interactiveRequest == null
+                val request = interactiveRequest
+                    ?: (if (runningBulkCount < maxBulkCount) bulkRequests.poll() else null)
+                    ?: return
+
+                ++runningCount
+                if (isBulk) ++runningBulkCount
+                request to isBulk
+            }
+
+            executor.execute {
+                try {
+                    request.run()
+                } catch (t: Throwable) {
+                    logger.error("Unhandled error in a request", t)
+                } finally {
+                    synchronized(lock) {
+                        --runningCount
+                        if (isBulk) --runningBulkCount
+                    }
+                    dispatch()
+                }
+            }
+        }
+    }
+}
@@ -6,11 +6,12 @@ package com.microsoft.tfs
 import com.jetbrains.rd.util.info
 import com.jetbrains.rd.util.lifetime.Lifetime
 import com.jetbrains.rd.util.lifetime.onTermination
-import com.jetbrains.rd.util.reactive.Property
+import com.jetbrains.rd.util.reactive.IPropertyView
 import com.jetbrains.rd.util.warn
 import com.microsoft.tfs.core.TFSTeamProjectCollection
 import com.microsoft.tfs.core.clients.versioncontrol.*
 import com.microsoft.tfs.core.clients.versioncontrol.events.NewPendingChangeListener
+import com.microsoft.tfs.core.clients.versioncontrol.events.NonFatalErrorEvent
 import com.microsoft.tfs.core.clients.versioncontrol.events.NonFatalErrorListener
 import com.microsoft.tfs.core.clients.versioncontrol.events.PendingChangeEvent
 import com.microsoft.tfs.core.clients.versioncontrol.events.UndonePendingChangeListener
@@ -22,10 +23,20 @@ import com.microsoft.tfs.sdk.*
 import com.microsoft.tfs.watcher.ExternallyControlledPathWatcherFactory
 import java.net.URI
 import java.nio.file.Paths
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
 
 class TfsClient(lifetime: Lifetime, serverUri: URI, credentials: Credentials) {
     companion object {
         private val logger = Logging.getLogger<TfsClient>()
+
+        const val WORKSPACE_PARALLELISM_PROPERTY = "com.microsoft.tfs.TfsClient.workspaceParallelism"
+        private const val DEFAULT_WORKSPACE_PARALLELISM = 4
+
+        const val STATUS_BATCH_SIZE_PROPERTY = "com.microsoft.tfs.TfsClient.statusBatchSize"
+        private const val DEFAULT_STATUS_BATCH_SIZE = 100
     }
 
     val client: VersionControlClient
@@ -42,45 +53,78 @@ class TfsClient(lifetime: Lifetime, serverUri: URI, credentials: Credentials) {
         }
     }
 
-    val workspaces = Property<List<Workspace>>(listOf())
-    private fun getWorkspaceFor(path: TfsPath): Workspace? {
-        for (workspace in workspaces.value) {
-            if (workspace.isPathMapped(path)) {
-                return workspace
-            }
-        }
+    private val workspaceResolver = WorkspaceResolver(client)
+    val workspaces: IPropertyView<List<Workspace>>
+        get() = workspaceResolver.workspaces
 
-        return client.tryGetWorkspace(path)?.also {
-            workspaces.value += it
+    private fun getWorkspaceFor(path: TfsPath): Workspace? = workspaceResolver.resolve(path)
+
+    private val workspaceExecutor = Executors.newFixedThreadPool(
+        Integer.getInteger(WORKSPACE_PARALLELISM_PROPERTY, DEFAULT_WORKSPACE_PARALLELISM),
+        object : ThreadFactory {
+            private val threadCount = AtomicInteger()
+            override fun newThread(runnable: Runnable) =
+                Thread(runnable, "TfsClient workspace thread ${threadCount.incrementAndGet()}").apply {
+                    isDaemon = true
+                }
         }
+    ).also { executor ->
+        lifetime.onTermination { executor.shutdown() }
     }
 
-    private fun enumeratePathsWithWorkspace(paths: Iterable<TfsPath>, action: (Workspace, List<TfsPath>) -> Unit) {
+    private val actionRunner = WorkspaceActionRunner<WorkspaceKey>(workspaceExecutor)
+
+    private fun <T> mutateWorkspace(workspace: Workspace, action: () -> T): T =
+        actionRunner.mutate(workspace.key, action)
+
+    /**
+     * Groups the paths by workspace and performs the action for every workspace. The actions for different workspaces
+     * are performed in parallel; the results are returned in the order of the workspaces' first appearance in the
+     * path list.
+     */
+    private fun <T> mapPathsWithWorkspace(paths: Iterable<TfsPath>, action: (Workspace, List<TfsPath>) -> T): List<T> {
+        val workspacePaths = mutableListOf<Pair<Workspace, List<TfsPath>>>()
         for ((workspace, workspacePathList) in paths.asSequence().groupBy(::getWorkspaceFor)) {
             if (workspace == null) {
-                logger.warn { "Could not determine workspace for paths: " + paths.joinToString() }
+                logger.warn { "Could not determine workspace for paths: " + workspacePathList.joinToString() }
                 continue
             }
 
-            action(workspace, workspacePathList)
+            workspacePaths.add(workspace to workspacePathList)
         }
+
+        return actionRunner.runAll(workspacePaths) { (workspace, pathList) -> action(workspace, pathList) }
     }
 
     fun status(paths: List<TfsPath>): List<PendingSet> {
-        val results = mutableListOf<PendingSet>()
-        enumeratePathsWithWorkspace(paths) { workspace, workspacePaths ->
+        val result = mutableListOf<PendingSet>()
+        status(paths) { result.add(it) }
+        return result
+    }
+
+    /**
+     * Passes the pending sets for the paths to [onPendingSet] as soon as the SDK returns them: the paths of each
+     * workspace are queried in batches of [STATUS_BATCH_SIZE_PROPERTY] paths, and the workspaces are queried in
+     * parallel. The callback is never called concurrently.
+     */
+    fun status(paths: List<TfsPath>, onPendingSet: (PendingSet) -> Unit) {
+        val callbackLock = Any()
+        val batchSize = maxOf(1, Integer.getInteger(STATUS_BATCH_SIZE_PROPERTY, DEFAULT_STATUS_BATCH_SIZE))
+        mapPathsWithWorkspace(paths) { workspace, workspacePaths ->
             val workspaceName = workspace.name
             val workspaceOwner = workspace.ownerName
 
-            val itemSpecs = ItemSpec.fromStrings(
-                workspacePaths.mapToArray { it.toCanonicalPathString() },
-                RecursionType.FULL
-            )
-            val pendingSets = client.queryPendingSets(itemSpecs, false, workspaceName, workspaceOwner, true)
-            results.addAll(pendingSets)
+            for (batch in workspacePaths.chunked(batchSize)) {
+                val itemSpecs = ItemSpec.fromStrings(
+                    batch.mapToArray { it.toCanonicalPathString() },
+                    RecursionType.FULL
+                )
+                val pendingSets = client.queryPendingSets(itemSpecs, false, workspaceName, workspaceOwner, true)
+                synchronized(callbackLock) {
+                    pendingSets.forEach(onPendingSet)
+                }
+            }
         }
-
-        return results
     }
 
     private fun <TInfo>getLocalItemsInfo(
@@ -88,21 +132,16 @@ class TfsClient(lifetime: Lifetime, serverUri: URI, credentials: Credentials) {
         extended: Boolean,
         converter: (ExtendedItem) -> TInfo
     ): List<TInfo> {
-        val infos = ArrayList<TInfo>(paths.size)
-        enumeratePathsWithWorkspace(paths) { workspace, workspacePaths ->
+        return mapPathsWithWorkspace(paths) { workspace, workspacePaths ->
             // Pass NONE to get lock info in extended mode.
             val downloadType = if (extended) GetItemsOptions.NONE else GetItemsOptions.LOCAL_ONLY
             val itemSpecs = workspacePaths.mapToArray { it.toCanonicalPathItemSpec(RecursionType.NONE) }
-            val extendedItems = workspace.getExtendedItems(itemSpecs, DeletedState.ANY, ItemType.ANY, downloadType)
+            workspace.getExtendedItems(itemSpecs, DeletedState.ANY, ItemType.ANY, downloadType)
                 .asSequence()
                 .flatMap { it.asSequence() }
-
-            for (extendedItem in extendedItems) {
-                infos.add(converter(extendedItem))
-            }
-        }
-
-        return infos
+                .map(converter)
+                .toList()
+        }.flatten()
     }
 
     fun getLocalItemsInfo(paths: List<TfsLocalPath>): List<TfsLocalItemInfo> = getLocalItemsInfo(paths, false) {
@@ -124,14 +163,24 @@ class TfsClient(lifetime: Lifetime, serverUri: URI, credentials: Credentials) {
         errorListener: NonFatalErrorListener,
         action: (Workspace, List<TfsPath>) -> Unit) {
         val eventEngine = client.eventEngine
-
-        eventEngine.withNewPendingChangeListener(changeListener) {
-            eventEngine.withNonFatalErrorListener(errorListener) {
-                enumeratePathsWithWorkspace(paths) { workspace, workspacePaths ->
-                    action(workspace, workspacePaths)
+        val activeWorkspaces = ConcurrentHashMap.newKeySet<WorkspaceKey>()
+        val changeEvents = WorkspaceEventBuffer<WorkspaceKey, PendingChangeEvent>(activeWorkspaces) { it.workspace?.key }
+        val errorEvents = WorkspaceEventBuffer<WorkspaceKey, NonFatalErrorEvent>(activeWorkspaces) { it.workspace?.key }
+
+        var workspaceKeys = emptyList<WorkspaceKey>()
+        eventEngine.withNewPendingChangeListener(NewPendingChangeListener { changeEvents.add(it) }) {
+            eventEngine.withNonFatalErrorListener(NonFatalErrorListener { errorEvents.add(it) }) {
+                workspaceKeys = mapPathsWithWorkspace(paths) { workspace, workspacePaths ->
+                    actionRunner.mutateCollectingEvents(activeWorkspaces, workspace.key) {
+                        action(workspace, workspacePaths)
+                    }
+                    workspace.key
                 }
             }
         }
+
+        changeEvents.replay(workspaceKeys, changeListener::onNewPendingChange)
+        errorEvents.replay(workspaceKeys, errorListener::onNonFatalError)
     }
 
     fun addFiles(paths: List<TfsLocalPath>): List<TfsLocalPath> {
@@ -198,14 +247,21 @@ class TfsClient(lifetime: Lifetime, serverUri: URI, credentials: Credentials) {
 
     fun undoLocalChanges(paths: List<TfsPath>): List<TfsLocalPath> {
         val undonePaths = mutableListOf<TfsLocalPath>()
-        val listener = UndonePendingChangeListener { undonePaths.add(TfsLocalPath(it.pendingChange.localItem)) }
-        client.eventEngine.withUndonePendingChangeListener(listener) {
-            enumeratePathsWithWorkspace(paths) { workspace, workspacePaths ->
-                val count = workspace.undo(workspacePaths.mapToArray { it.toCanonicalPathItemSpec(RecursionType.NONE) })
-                logger.info { "Undo result = $count" }
+        val activeWorkspaces = ConcurrentHashMap.newKeySet<WorkspaceKey>()
+        val undoneEvents = WorkspaceEventBuffer<WorkspaceKey, PendingChangeEvent>(activeWorkspaces) { it.workspace?.key }
+        var workspaceKeys = emptyList<WorkspaceKey>()
+        client.eventEngine.withUndonePendingChangeListener(UndonePendingChangeListener { undoneEvents.add(it) }) {
+            workspaceKeys = mapPathsWithWorkspace(paths) { workspace, workspacePaths ->
+                actionRunner.mutateCollectingEvents(activeWorkspaces, workspace.key) {
+                    val itemSpecs = workspacePaths.mapToArray { it.toCanonicalPathItemSpec(RecursionType.NONE) }
+                    val count = workspace.undo(itemSpecs)
+                    logger.info { "Undo result = $count" }
+                }
+                workspace.key
             }
         }
 
+        undoneEvents.replay(workspaceKeys) { undonePaths.add(TfsLocalPath(it.pendingChange.localItem)) }
         return undonePaths
     }
 
@@ -255,14 +311,16 @@ class TfsClient(lifetime: Lifetime, serverUri: URI, credentials: Credentials) {
             return false
         }
 
-        val changedItems = workspace.pendRename(
-            oldPath.path,
-            newPath.path,
-            LockLevel.NONE,
-            GetOptions.NONE,
-            true,
-            PendChangesOptions.NONE
-        )
+        val changedItems = mutateWorkspace(workspace) {
+            workspace.pendRename(
+                oldPath.path,
+                newPath.path,
+                LockLevel.NONE,
+                GetOptions.NONE,
+                true,
+                PendChangesOptions.NONE
+            )
+        }
         logger.info { "pendRename result: $changedItems" }
 
         return changedItems == 1
@@ -0,0 +1,97 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.tfs
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * Runs the actions for several workspaces in parallel on [executor], while serializing the changes made to the same
+ * workspace. The workspaces are identified by their keys of type [K].
+ */
+class WorkspaceActionRunner<K : Any>(private val executor: ExecutorService) {
+    private val locks = ConcurrentHashMap<K, ReentrantLock>()
+
+    /**
+     * Performs an action changing the workspace state. The requests are handled concurrently, so the changes for the
+     * same workspace are serialized here, while the changes for different workspaces and the read-only queries may run
+     * at the same time.
+     */
+    fun <T> mutate(workspace: K, action: () -> T): T =
+        locks.computeIfAbsent(workspace) { ReentrantLock() }.withLock(action)
+
+    /**
+     * Performs the workspace change while holding its lock, and marks the workspace as active in the meantime, so the
+     * event buffers of this request would only take the events of its own changes, and not the ones of a concurrent
+     * request for the same workspace.
+     */
+    fun mutateCollectingEvents(activeWorkspaces: MutableSet<K>, workspace: K, action: () -> Unit) {
+        mutate(workspace) {
+            activeWorkspaces.add(workspace)
+            try {
+                action()
+            } finally {
+                activeWorkspaces.remove(workspace)
+            }
+        }
+    }
+
+    /**
+     * Performs the action for every item (usually, a workspace with its paths). The actions are performed in parallel,
+     * except for a single item that is handled on the calling thread; the results are returned in the order of the
+     * items. If any of the actions fail, the first failure is rethrown after all of them have finished.
+     */
+    fun <I, T> runAll(items: List<I>, action: (I) -> T): List<T> {
+        if (items.size <= 1) {
+            return items.map(action)
+        }
+
+        val futures = items.map { item -> executor.submit(Callable { action(item) }) }
+        val results = ArrayList<T>(futures.size)
+        var failure: Throwable? = null
+        for (future in futures) {
+            try {
+                results.add(future.get())
+            } catch (e: ExecutionException) {
+                if (failure == null) failure = e.cause ?: e
+            }
+        }
+
+        failure?.let { throw it }
+        return results
+    }
+}
+
+/**
+ * Collects the SDK events fired by the workspace actions performed in parallel, so they could be passed to the
+ * listeners on the calling thread, in the order of the workspaces. Only the events of the workspaces from
+ * [activeWorkspaces] are taken; the events without a workspace go last.
+ */
+class WorkspaceEventBuffer<K : Any, T : Any>(
+    private val activeWorkspaces: Set<K>,
+    private val workspaceOf: (T) -> K?
+) {
+    private val eventsByWorkspace = ConcurrentHashMap<K, ConcurrentLinkedQueue<T>>()
+    private val otherEvents = ConcurrentLinkedQueue<T>()
+
+    fun add(event: T) {
+        val workspace = workspaceOf(event)
+        if (workspace == null)
+            otherEvents.add(event)
+        else if (activeWorkspaces.contains(workspace))
+            eventsByWorkspace.computeIfAbsent(workspace) { ConcurrentLinkedQueue() }.add(event)
+    }
+
+    fun replay(workspaces: List<K>, consumer: (T) -> Unit) {
+        for (workspace in workspaces) {
+            eventsByWorkspace[workspace]?.forEach(consumer)
+        }
+        otherEvents.forEach(consumer)
+    }
+}
@@ -0,0 +1,86 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.tfs
+
+import com.jetbrains.rd.util.reactive.Property
+import com.microsoft.tfs.core.clients.versioncontrol.VersionControlClient
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Workspace
+import com.microsoft.tfs.model.host.TfsLocalPath
+import com.microsoft.tfs.model.host.TfsPath
+import com.microsoft.tfs.model.host.TfsServerPath
+import com.microsoft.tfs.sdk.WorkspaceKey
+import com.microsoft.tfs.sdk.isPathMapped
+import com.microsoft.tfs.sdk.key
+import com.microsoft.tfs.sdk.tryGetWorkspace
+import java.nio.file.InvalidPathException
+import java.nio.file.Path
+import java.nio.file.Paths
+
+/**
+ * Determines the workspaces the paths belong to. The mapped local folders of the known workspaces are indexed, and a
+ * local path is resolved by its longest mapped prefix: the lookup walks from the path up to its root, so it takes
+ * O(depth) hash lookups instead of checking every mapping of every workspace. The workspaces are identified by
+ * server, name and owner, since the workspaces of different users may share a name; a server path only carries the
+ * workspace name, so it is resolved to the workspace the client has returned for that name before. The workspaces
+ * that aren't known yet are requested from the client and added to [workspaces].
+ */
+class WorkspaceResolver(private val client: VersionControlClient) {
+    val workspaces = Property<List<Workspace>>(listOf())
+
+    private val lock = Any()
+    private var workspacesByMappedPath = mapOf<Path, Workspace>()
+    private var workspacesByKey = mapOf<WorkspaceKey, Workspace>()
+    private var workspacesByServerPathName = mapOf<String, WorkspaceKey>()
+
+    fun resolve(path: TfsPath): Workspace? {
+        val candidate = synchronized(lock) {
+            when (path) {
+                is TfsLocalPath -> findByLongestPrefix(path.path)
+                is TfsServerPath -> workspacesByServerPathName[path.workspace]?.let(workspacesByKey::get)
+                else -> null
+            }
+        }
+
+        // The mapping may still be cloaked, so the workspace has the final word.
+        if (candidate != null && candidate.isPathMapped(path)) {
+            return candidate
+        }
+
+        return client.tryGetWorkspace(path)?.also { addWorkspace(it, path) }
+    }
+
+    private fun findByLongestPrefix(localPath: String): Workspace? {
+        var current = toPathOrNull(localPath)
+        while (current != null) {
+            workspacesByMappedPath[current]?.let { return it }
+            current = current.parent
+        }
+
+        return null
+    }
+
+    private fun addWorkspace(workspace: Workspace, resolvedPath: TfsPath) {
+        val key = workspace.key
+        val newWorkspaces = synchronized(lock) {
+            if (resolvedPath is TfsServerPath)
+                workspacesByServerPathName = workspacesByServerPathName + (resolvedPath.workspace to key)
+            if (workspacesByKey[key] === workspace) return
+
+            val newWorkspaces = workspacesByKey.values.filter { it.key != key } + workspace
+            workspacesByKey = newWorkspaces.associateBy { it.key }
+            workspacesByMappedPath = newWorkspaces
+                .flatMap { ws -> ws.mappedPaths.mapNotNull(::toPathOrNull).map { it to ws } }
+                .toMap()
+            newWorkspaces
+        }
+
+        workspaces.value = newWorkspaces
+    }
+
+    private fun toPathOrNull(path: String): Path? = try {
+        Paths.get(path)
+    } catch (e: InvalidPathException) {
+        null
+    }
+}
@@ -12,4 +12,12 @@ fun Workspace.isPathMapped(path: TfsPath): Boolean = when (path) {
     is TfsLocalPath -> isLocalPathMapped(path.path)
     is TfsServerPath -> isServerPathMapped(path.path)
     else -> throw Exception("Unknown path type: $path")
-}
\ No newline at end of file
+}
+
+/**
+ * Identifies a workspace: its name is only unique for the owner on the server.
+ */
+data class WorkspaceKey(val server: String, val name: String, val owner: String)
+
+val Workspace.key: WorkspaceKey
+    get() = WorkspaceKey(serverGUID.toString(), name, ownerName)
\ No newline at end of file
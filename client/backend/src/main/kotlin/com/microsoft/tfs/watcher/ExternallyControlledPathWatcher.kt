@@ -14,13 +14,18 @@ import com.microsoft.tfs.Logging
 import com.microsoft.tfs.core.clients.versioncontrol.localworkspace.PathWatcher
 import com.microsoft.tfs.core.clients.versioncontrol.localworkspace.PathWatcherReport
 import com.microsoft.tfs.core.clients.versioncontrol.localworkspace.WorkspaceWatcher
+import java.nio.file.Files
 import java.nio.file.Path
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
 
 class ExternallyControlledPathWatcher(
     parentLifetime: Lifetime,
     private val pathsInvalidated: Signal<List<Path>>,
     private val workspaceWatcher: WorkspaceWatcher,
-    private val pathToWatch: Path
+    private val pathToWatch: Path,
+    private val invalidationExecutor: Executor,
+    private val subtreeWalker: SubtreeWalker = SubtreeWalker.default
 ) : PathWatcher {
 
     companion object {
@@ -53,7 +58,8 @@ class ExternallyControlledPathWatcher(
 
     override fun startWatching() {
         currentSessionLifetime = sessionLifetimes.next()
-        pathsInvalidated.advise(currentSessionLifetime, ::invalidatePaths)
+        val lifetime = currentSessionLifetime
+        pathsInvalidated.advise(lifetime) { paths -> submit(lifetime) { invalidatePaths(paths) } }
     }
 
     override fun stopWatching() {
@@ -89,28 +95,52 @@ class ExternallyControlledPathWatcher(
         }
     }
 
+    private fun submit(lifetime: Lifetime, action: () -> Unit) {
+        try {
+            invalidationExecutor.execute {
+                if (lifetime.isAlive)
+                    action()
+            }
+        } catch (e: RejectedExecutionException) {
+            logger.info { "Ignoring invalidation for watcher $pathToWatch: the executor is shut down" }
+        }
+    }
+
     private fun invalidatePaths(paths: List<Path>) {
         var shouldFullyInvalidate = false
-        val pathsToInvalidate = mutableListOf<Path>()
+        val pathsToInvalidate = mutableSetOf<Path>()
+        val directoriesToExpand = mutableListOf<Path>()
         for (path in paths) {
             if (pathToWatch.startsWith(path)) {
                 logger.info { "Fully invalidating watcher for path $pathToWatch because path $path is its parent" }
                 shouldFullyInvalidate = true
                 break
-            } else if (path.toFile().isDirectory) {
-                // Path watchers in TFS SDK don't currently support recursive invalidation, so we could either enumerate
-                // all the files as invalidated ourselves, or report a full invalidation (even if it's too greedy).
-                //
-                // For now, we'll always report full invalidation: in most cases (or maybe even all of them?), IDEA asks
-                // for recursive directory invalidation when a user has pressed a "Refresh" button manually or something
-                // major happened, like a check-in.
+            } else if (path.startsWith(pathToWatch)) {
+                // Path watchers in TFS SDK don't support recursive invalidation, so the directories are expanded into
+                // the lists of paths they contain. The deleted paths (files or directories) are reported as they are:
+                // the SDK compares them with the items it knows.
+                if (Files.isDirectory(path))
+                    directoriesToExpand.add(path)
+                else
+                    pathsToInvalidate.add(path)
+            }
+        }
+
+        if (!shouldFullyInvalidate && directoriesToExpand.isNotEmpty()) {
+            // Only the invalidated directories are walked, so the limit only applies to their content.
+            val subtreePaths = subtreeWalker.collect(directoriesToExpand)
+            if (subtreePaths == null) {
                 logger.info {
-                    "Fully invalidating watcher for path $pathToWatch because path $path points to a directory"
+                    "Fully invalidating watcher for path $pathToWatch because directories contain too many paths: " +
+                            directoriesToExpand.joinToString()
                 }
                 shouldFullyInvalidate = true
-                break
-            } else if (path.startsWith(pathToWatch))
-                pathsToInvalidate.add(path)
+            } else {
+                logger.info {
+                    "Invalidating ${subtreePaths.size} paths under ${directoriesToExpand.size} directories for watcher $pathToWatch"
+                }
+                pathsToInvalidate.addAll(subtreePaths)
+            }
         }
 
         if (pathsToInvalidate.isNotEmpty() || shouldFullyInvalidate) {
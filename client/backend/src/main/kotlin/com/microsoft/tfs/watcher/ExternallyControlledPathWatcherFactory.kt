@@ -10,9 +10,23 @@ import com.microsoft.tfs.core.clients.versioncontrol.localworkspace.PathWatcherF
 import com.microsoft.tfs.core.clients.versioncontrol.localworkspace.WorkspaceWatcher
 import java.nio.file.Path
 import java.nio.file.Paths
+import java.util.concurrent.Executors
 
 class ExternallyControlledPathWatcherFactory(private val lifetime: Lifetime) : PathWatcherFactory {
     val pathsInvalidated = Signal<List<Path>>()
+
+    /**
+     * Processes the invalidations of all the watchers, so the directory walks don't run on the protocol thread and the
+     * invalidations of each watcher are handled in order.
+     */
+    private val invalidationExecutor = Executors.newSingleThreadExecutor { runnable ->
+        Thread(runnable, "ExternallyControlledPathWatcher thread").apply {
+            isDaemon = true
+        }
+    }.also { executor ->
+        lifetime.onTermination { executor.shutdown() }
+    }
+
     override fun newPathWatcher(path: String, watcher: WorkspaceWatcher): PathWatcher =
-        ExternallyControlledPathWatcher(lifetime, pathsInvalidated, watcher, Paths.get(path))
-}
\ No newline at end of file
+        ExternallyControlledPathWatcher(lifetime, pathsInvalidated, watcher, Paths.get(path), invalidationExecutor)
+}
@@ -0,0 +1,103 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.tfs.watcher
+
+import com.jetbrains.rd.util.warn
+import com.microsoft.tfs.Logging
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.LinkOption
+import java.nio.file.Path
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Collects the paths of directory subtrees, walking the directories in parallel on a bounded pool. The walk stops as
+ * soon as there are more than [limit] paths, since the callers would better fall back to a full rescan in that case.
+ */
+class SubtreeWalker(private val pool: ForkJoinPool, private val limit: Int) {
+    companion object {
+        private val logger = Logging.getLogger<SubtreeWalker>()
+
+        const val LIMIT_PROPERTY = "com.microsoft.tfs.watcher.SubtreeWalker.limit"
+        const val PARALLELISM_PROPERTY = "com.microsoft.tfs.watcher.SubtreeWalker.parallelism"
+
+        private const val DEFAULT_LIMIT = 20000
+        private const val DEFAULT_PARALLELISM = 4
+
+        val default: SubtreeWalker by lazy {
+            val parallelism = Integer.getInteger(PARALLELISM_PROPERTY)
+                ?: minOf(DEFAULT_PARALLELISM, Runtime.getRuntime().availableProcessors())
+            SubtreeWalker(ForkJoinPool(parallelism), Integer.getInteger(LIMIT_PROPERTY, DEFAULT_LIMIT))
+        }
+
+        private fun isServiceDirectory(path: Path): Boolean {
+            val name = path.fileName?.toString() ?: return false
+            return name.equals("\$tf", ignoreCase = true) || name.equals(".tf", ignoreCase = true)
+        }
+    }
+
+    private inner class Walk {
+        val paths = ConcurrentLinkedQueue<Path>()
+        val count = AtomicInteger()
+
+        @Volatile
+        var isLimitExceeded = false
+
+        fun add(path: Path) {
+            if (count.incrementAndGet() > limit) {
+                isLimitExceeded = true
+            } else {
+                paths.add(path)
+            }
+        }
+    }
+
+    private inner class DirectoryAction(private val walk: Walk, private val directory: Path) : RecursiveAction() {
+        override fun compute() {
+            if (walk.isLimitExceeded) return
+
+            val subdirectories = mutableListOf<DirectoryAction>()
+            try {
+                Files.newDirectoryStream(directory).use { stream ->
+                    for (child in stream) {
+                        if (isServiceDirectory(child)) continue
+
+                        walk.add(child)
+                        if (walk.isLimitExceeded) return
+
+                        if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS))
+                            subdirectories.add(DirectoryAction(walk, child))
+                    }
+                }
+            } catch (e: IOException) {
+                // The directory may have been deleted in the meantime; it is already in the list anyway.
+                logger.warn { "Could not enumerate directory $directory: ${e.message}" }
+            }
+
+            invokeAll(subdirectories)
+        }
+    }
+
+    /**
+     * Returns the directories passed and all the paths under them (the TFVC service directories excluded), or `null` if
+     * there are more than [limit] of them.
+     */
+    fun collect(directories: Collection<Path>): List<Path>? {
+        val walk = Walk()
+        directories.forEach(walk::add)
+        if (walk.isLimitExceeded) return null
+
+        val actions = directories.map { DirectoryAction(walk, it) }
+        pool.invoke(object : RecursiveAction() {
+            override fun compute() {
+                invokeAll(actions)
+            }
+        })
+
+        return if (walk.isLimitExceeded) null else walk.paths.toList()
+    }
+}
@@ -0,0 +1,72 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.tfs
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class RequestSchedulerTests {
+    private val executor = Executors.newCachedThreadPool()
+    private val started = mutableListOf<String>()
+    private val finished = CountDownLatch(1)
+
+    @After
+    fun tearDown() {
+        finished.countDown()
+        executor.shutdownNow()
+    }
+
+    private fun RequestScheduler.queueBlocking(priority: RequestPriority, name: String, latch: CountDownLatch) =
+        queue(priority) {
+            synchronized(started) { started.add(name) }
+            latch.countDown()
+            finished.await()
+        }
+
+    private fun startedRequests() = synchronized(started) { started.toList() }
+
+    @Test
+    fun bulkRequestsShouldLeaveWorkerForInteractiveOnes() {
+        val scheduler = RequestScheduler(executor, 2)
+        val bulkStarted = CountDownLatch(1)
+        scheduler.queueBlocking(RequestPriority.BULK, "bulk1", bulkStarted)
+        scheduler.queueBlocking(RequestPriority.BULK, "bulk2", CountDownLatch(1))
+        assertTrue(bulkStarted.await(10, TimeUnit.SECONDS))
+
+        val interactiveStarted = CountDownLatch(1)
+        scheduler.queueBlocking(RequestPriority.INTERACTIVE, "interactive", interactiveStarted)
+
+        assertTrue(interactiveStarted.await(10, TimeUnit.SECONDS))
+        assertEquals(listOf("bulk1", "interactive"), startedRequests())
+    }
+
+    @Test
+    fun interactiveRequestsShouldJumpAheadOfQueuedBulkOnes() {
+        val scheduler = RequestScheduler(executor, 1)
+        val release = CountDownLatch(1)
+        val firstStarted = CountDownLatch(1)
+        scheduler.queue(RequestPriority.BULK) {
+            synchronized(started) { started.add("first") }
+            firstStarted.countDown()
+            release.await()
+        }
+        assertTrue(firstStarted.await(10, TimeUnit.SECONDS))
+
+        val allStarted = CountDownLatch(2)
+        scheduler.queueBlocking(RequestPriority.BULK, "bulk", allStarted)
+        scheduler.queue(RequestPriority.INTERACTIVE) {
+            synchronized(started) { started.add("interactive") }
+            allStarted.countDown()
+        }
+        release.countDown()
+
+        assertTrue(allStarted.await(10, TimeUnit.SECONDS))
+        assertEquals(listOf("first", "interactive", "bulk"), startedRequests())
+    }
+}
@@ -0,0 +1,158 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.tfs
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class WorkspaceActionRunnerTests {
+    private val executor = Executors.newCachedThreadPool()
+    private val runner = WorkspaceActionRunner<String>(executor)
+
+    @After
+    fun tearDown() {
+        executor.shutdownNow()
+    }
+
+    private data class Event(val workspace: String?, val name: String)
+
+    @Test
+    fun actionsForDifferentWorkspacesShouldRunInParallel() {
+        val allStarted = CountDownLatch(2)
+        val results = runner.runAll(listOf("ws1", "ws2")) { workspace ->
+            allStarted.countDown()
+            // Would time out if the actions were performed one after another
+            assertTrue(allStarted.await(10, TimeUnit.SECONDS))
+            workspace.toUpperCase()
+        }
+
+        assertEquals(listOf("WS1", "WS2"), results)
+    }
+
+    @Test
+    fun singleWorkspaceShouldRunOnCallingThread() {
+        val results = runner.runAll(listOf("ws1")) { Thread.currentThread() }
+
+        assertSame(Thread.currentThread(), results.single())
+    }
+
+    @Test
+    fun firstFailureShouldBeRethrownAfterAllActionsFinish() {
+        val finished = AtomicInteger()
+        val failure = IllegalStateException("ws1 failed")
+        try {
+            runner.runAll(listOf("ws1", "ws2", "ws3")) { workspace ->
+                try {
+                    if (workspace == "ws1") throw failure
+                    if (workspace == "ws2") throw IllegalArgumentException("ws2 failed")
+                } finally {
+                    finished.incrementAndGet()
+                }
+            }
+            fail("Exception expected")
+        } catch (e: IllegalStateException) {
+            assertSame(failure, e)
+        }
+
+        assertEquals(3, finished.get())
+    }
+
+    @Test
+    fun changesOfSameWorkspaceShouldBeSerialized() {
+        val running = AtomicInteger()
+        val maxRunning = AtomicInteger()
+        runner.runAll((1..8).toList()) {
+            runner.mutate("ws1") {
+                maxRunning.accumulateAndGet(running.incrementAndGet()) { a, b -> maxOf(a, b) }
+                Thread.sleep(10)
+                running.decrementAndGet()
+            }
+        }
+
+        assertEquals(1, maxRunning.get())
+    }
+
+    @Test
+    fun eventBufferShouldReplayInWorkspaceOrder() {
+        val activeWorkspaces = setOf("ws1", "ws2")
+        val buffer = WorkspaceEventBuffer<String, Event>(activeWorkspaces) { it.workspace }
+        buffer.add(Event("ws2", "a"))
+        buffer.add(Event(null, "b"))
+        buffer.add(Event("ws1", "c"))
+        buffer.add(Event("ws2", "d"))
+        buffer.add(Event("ws1", "e"))
+
+        val replayed = mutableListOf<String>()
+        buffer.replay(listOf("ws1", "ws2")) { replayed.add(it.name) }
+
+        // The events without a workspace go last
+        assertEquals(listOf("c", "e", "a", "d", "b"), replayed)
+    }
+
+    @Test
+    fun eventBufferShouldDropEventsOfInactiveWorkspaces() {
+        val buffer = WorkspaceEventBuffer<String, Event>(setOf("ws1")) { it.workspace }
+        buffer.add(Event("ws1", "a"))
+        buffer.add(Event("ws2", "b"))
+
+        val replayed = mutableListOf<String>()
+        buffer.replay(listOf("ws1", "ws2")) { replayed.add(it.name) }
+
+        assertEquals(listOf("a"), replayed)
+    }
+
+    @Test
+    fun eventsShouldBeAttributedToTheirWorkspaces() {
+        // The SDK event engine passes the events of all the requests to every listener, on the thread of the action
+        val listeners = ConcurrentHashMap.newKeySet<(Event) -> Unit>()
+        fun fire(event: Event) = listeners.forEach { it(event) }
+
+        val activeWorkspaces = ConcurrentHashMap.newKeySet<String>()
+        val buffer = WorkspaceEventBuffer<String, Event>(activeWorkspaces) { it.workspace }
+        val listener: (Event) -> Unit = { buffer.add(it) }
+        listeners.add(listener)
+
+        // A concurrent request changing another workspace
+        val otherRequestStarted = CountDownLatch(1)
+        val releaseOtherRequest = CountDownLatch(1)
+        val otherRequest = executor.submit(Callable {
+            runner.mutate("ws3") {
+                otherRequestStarted.countDown()
+                releaseOtherRequest.await()
+                fire(Event("ws3", "other"))
+            }
+        })
+        assertTrue(otherRequestStarted.await(10, TimeUnit.SECONDS))
+
+        val bothStarted = CountDownLatch(2)
+        val workspaces = runner.runAll(listOf("ws2", "ws1")) { workspace ->
+            runner.mutateCollectingEvents(activeWorkspaces, workspace) {
+                bothStarted.countDown()
+                assertTrue(bothStarted.await(10, TimeUnit.SECONDS))
+                releaseOtherRequest.countDown()
+                for (i in 1..3) {
+                    fire(Event(workspace, "$workspace-$i"))
+                }
+            }
+            workspace
+        }
+        otherRequest.get(10, TimeUnit.SECONDS)
+        listeners.remove(listener)
+
+        val replayed = mutableListOf<String>()
+        buffer.replay(workspaces) { replayed.add(it.name) }
+
+        assertEquals(listOf("ws2-1", "ws2-2", "ws2-3", "ws1-1", "ws1-2", "ws1-3"), replayed)
+    }
+}
@@ -0,0 +1,56 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.tfs.watcher
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.Test
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.ForkJoinPool
+
+class SubtreeWalkerTests {
+    private lateinit var root: Path
+    private val pool = ForkJoinPool(2)
+
+    @Before
+    fun setUp() {
+        root = Files.createTempDirectory("SubtreeWalkerTests")
+        for (directory in listOf("a", "a/b", "c", "\$tf")) {
+            Files.createDirectories(root.resolve(directory))
+        }
+        for (file in listOf("a/1.txt", "a/b/2.txt", "c/3.txt", "4.txt", "\$tf/0.gz")) {
+            Files.write(root.resolve(file), byteArrayOf())
+        }
+    }
+
+    @After
+    fun tearDown() {
+        pool.shutdown()
+        root.toFile().deleteRecursively()
+    }
+
+    @Test
+    fun walkerShouldCollectSubtree() {
+        val paths = SubtreeWalker(pool, 100).collect(listOf(root.resolve("a")))
+
+        val expected = listOf("a", "a/1.txt", "a/b", "a/b/2.txt").map(root::resolve).toSet()
+        assertEquals(expected, paths!!.toSet())
+    }
+
+    @Test
+    fun walkerShouldSkipServiceDirectories() {
+        val paths = SubtreeWalker(pool, 100).collect(listOf(root))
+
+        assertEquals(8, paths!!.size)
+        assertEquals(emptyList<Path>(), paths.filter { it.toString().contains("\$tf") })
+    }
+
+    @Test
+    fun walkerShouldGiveUpAfterLimit() {
+        assertNull(SubtreeWalker(pool, 3).collect(listOf(root)))
+    }
+}
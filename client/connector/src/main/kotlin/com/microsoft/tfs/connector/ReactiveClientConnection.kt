@@ -14,6 +14,7 @@ import com.microsoft.tfs.model.connector.*
 import kotlinx.coroutines.CancellationException
 import java.util.concurrent.CompletableFuture
 import java.util.concurrent.CompletionStage
+import java.util.concurrent.atomic.AtomicInteger
 
 class ReactiveClientConnection(val lifetime: LifetimeDefinition, private val scheduler: IScheduler) {
     private val socket = SocketWire.Server(
@@ -35,6 +36,8 @@ class ReactiveClientConnection(val lifetime: LifetimeDefinition, private val sch
 
     lateinit var model: TfsModel
 
+    private val pendingChangesRequestId = AtomicInteger()
+
     val port
         get() = socket.port
 
@@ -57,26 +60,54 @@ class ReactiveClientConnection(val lifetime: LifetimeDefinition, private val sch
             collection.isReady.whenTrue(lifetime) { complete(null) }
         }
 
-    fun getPendingChangesAsync(
+    /**
+     * Requests the pending changes for the paths, and passes them to [onChunkReceived] in chunks as they arrive. The
+     * callback is called on the protocol scheduler.
+     */
+    fun streamPendingChangesAsync(
         collection: TfsCollection,
-        paths: List<TfsPath>): CompletionStage<List<TfsPendingChange>> =
+        paths: List<TfsPath>,
+        onChunkReceived: (List<TfsPendingChange>) -> Unit): CompletionStage<Void> =
         queueFutureAsync { lt ->
-            collection.getPendingChanges.start(paths).pipeTo(lt, this)
+            val requestId = pendingChangesRequestId.incrementAndGet()
+            collection.pendingChangesChunk.advise(lt) { chunk ->
+                if (chunk.requestId == requestId) {
+                    try {
+                        onChunkReceived(chunk.changes)
+                    } catch (ex: Throwable) {
+                        completeExceptionally(ex)
+                    }
+                }
+            }
+
+            collection.streamPendingChanges.start(TfsPendingChangesRequest(requestId, paths)).pipeToVoid(lt, this)
         }
 
+    /**
+     * Requests the information on the items. [onSent] is called on the protocol scheduler right before the request is
+     * sent, so the caller could tell the time spent in the queue from the round trip.
+     */
     fun getLocalItemsInfoAsync(
         collection: TfsCollection,
-        paths: List<TfsLocalPath>
+        paths: List<TfsLocalPath>,
+        onSent: Runnable
     ): CompletionStage<List<TfsItemInfo>> =
         queueFutureAsync { lt ->
+            onSent.run()
             collection.getLocalItemsInfo.start(paths).pipeTo(lt, this)
         }
 
+    /**
+     * Requests the extended information on the items. [onSent] is called on the protocol scheduler right before the
+     * request is sent.
+     */
     fun getExtendedItemsInfoAsync(
         collection: TfsCollection,
-        paths: List<TfsLocalPath>
+        paths: List<TfsLocalPath>,
+        onSent: Runnable
     ): CompletionStage<List<TfsExtendedItemInfo>> =
         queueFutureAsync { lt ->
+            onSent.run()
             collection.getExtendedLocalItemsInfo.start(paths).pipeTo(lt, this)
         }
 
@@ -45,6 +45,16 @@ object TfsModel : Root() {
         field("sourceItem", string.nullable)
     }
 
+    private val TfsPendingChangesRequest = structdef {
+        field("requestId", int)
+        field("paths", immutableList(TfsPath))
+    }
+
+    private val TfsPendingChangesChunk = structdef {
+        field("requestId", int)
+        field("changes", immutableList(TfsPendingChange))
+    }
+
     private val TfsCredentials = structdef {
         field("login", string)
         field("password", secureString)
@@ -102,8 +112,11 @@ object TfsModel : Root() {
         property("mappedPaths", immutableList(TfsPath))
             .doc("A list of path mappings for this collection")
 
-        call("getPendingChanges", immutableList(TfsPath), immutableList(TfsPendingChange))
-            .doc("Determines a set of the pending changes in the collection")
+        signal("pendingChangesChunk", TfsPendingChangesChunk)
+            .doc("Delivers the pending changes determined by streamPendingChanges in chunks of bounded size; the request is complete when its call finishes")
+
+        call("streamPendingChanges", TfsPendingChangesRequest, void)
+            .doc("Determines a set of the pending changes in the collection and sends it through pendingChangesChunk with the request's id. Finishes after the last chunk has been sent")
 
         call("getLocalItemsInfo", immutableList(TfsLocalPath), immutableList(TfsLocalItemInfo))
             .doc("Provides information on local repository items")
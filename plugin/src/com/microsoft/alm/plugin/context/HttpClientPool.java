@@ -0,0 +1,373 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.context;
+
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.authentication.AuthHelper;
+import com.microsoft.alm.plugin.authentication.AuthenticationInfo;
+import com.microsoft.alm.plugin.services.HttpProxyService;
+import com.microsoft.alm.plugin.services.PluginServiceProvider;
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.client.ClientConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.client.Client;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares the HTTP connections between the server contexts. There is one connection pool per server and credentials,
+ * with one REST client and one SOAP client on top of it, so the contexts that are copied from each other or created for
+ * the different repositories of a server reuse the open connections instead of repeating the TLS handshake and the
+ * NTLM negotiation. The connections that stay idle are closed in the background.
+ * <p>
+ * The pools of the different credentials of a server are kept side by side, since the contexts created with the old
+ * credentials may still be in use. A pool that has had no connections for the idle timeout, or the least recently used
+ * one above the limit, is retired: it is dropped from the pool map, and its connections are closed when they become
+ * idle. The pools of the removed credentials, and all of them on exit, are shut down with {@link #clear}.
+ */
+public class HttpClientPool {
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientPool.class);
+
+    public static final String MAX_CONNECTIONS_PER_ROUTE_PROPERTY = "com.microsoft.alm.plugin.context.HttpClientPool.maxConnectionsPerRoute";
+    public static final String MAX_CONNECTIONS_PROPERTY = "com.microsoft.alm.plugin.context.HttpClientPool.maxConnections";
+    public static final String IDLE_TIMEOUT_SECONDS_PROPERTY = "com.microsoft.alm.plugin.context.HttpClientPool.idleTimeoutSeconds";
+    public static final String MAX_POOLS_PROPERTY = "com.microsoft.alm.plugin.context.HttpClientPool.maxPools";
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 10;
+    private static final int DEFAULT_MAX_CONNECTIONS = 40;
+    private static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 60;
+    private static final int DEFAULT_MAX_POOLS = 8;
+    // Pooled connections that were idle for longer than this are checked before they are reused
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLISECONDS = 2000;
+
+    private static class Holder {
+        private static final HttpClientPool INSTANCE = new HttpClientPool();
+    }
+
+    public static HttpClientPool getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private static class Entry {
+        private final String key;
+        private final String description;
+        private final PoolingHttpClientConnectionManager connectionManager;
+        private final Client client;
+        private final CloseableHttpClient httpClient;
+        // The last time the pool had open connections
+        private long lastActiveNanos = System.nanoTime();
+
+        private Entry(final String key, final String description, final PoolingHttpClientConnectionManager connectionManager,
+                      final Client client, final CloseableHttpClient httpClient) {
+            this.key = key;
+            this.description = description;
+            this.connectionManager = connectionManager;
+            this.client = client;
+            this.httpClient = httpClient;
+        }
+    }
+
+    private final int maxConnectionsPerRoute;
+    private final int maxConnections;
+    private final int idleTimeoutSeconds;
+    private final int maxPools;
+    // Keyed by the server and the credentials, in the access order
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    // The retired pools that old contexts may still use, with their keys; they go away with the last client
+    private final Map<PoolingHttpClientConnectionManager, String> retiredConnectionManagers =
+            new WeakHashMap<PoolingHttpClientConnectionManager, String>();
+    // All the clients handed out, including the ones of the retired pools that old contexts may still use
+    private final Set<Object> pooledClients = Collections.newSetFromMap(new WeakHashMap<Object, Boolean>());
+    private ScheduledExecutorService evictionExecutor;
+
+    protected HttpClientPool() {
+        maxConnectionsPerRoute = Integer.getInteger(MAX_CONNECTIONS_PER_ROUTE_PROPERTY, DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+        maxConnections = Integer.getInteger(MAX_CONNECTIONS_PROPERTY, DEFAULT_MAX_CONNECTIONS);
+        idleTimeoutSeconds = Integer.getInteger(IDLE_TIMEOUT_SECONDS_PROPERTY, DEFAULT_IDLE_TIMEOUT_SECONDS);
+        maxPools = Math.max(1, Integer.getInteger(MAX_POOLS_PROPERTY, DEFAULT_MAX_POOLS));
+    }
+
+    /**
+     * Gets the REST client shared by all the contexts of the server with the same credentials. The client must not be
+     * closed by the callers.
+     */
+    public synchronized Client getClient(final ServerContext.Type type, final AuthenticationInfo authenticationInfo) {
+        return getEntry(type, authenticationInfo).client;
+    }
+
+    /**
+     * Gets the HTTP client (used for the SOAP calls) shared by all the contexts of the server with the same credentials.
+     * The client must not be closed by the callers.
+     */
+    public synchronized CloseableHttpClient getHttpClient(final ServerContext.Type type, final AuthenticationInfo authenticationInfo) {
+        return getEntry(type, authenticationInfo).httpClient;
+    }
+
+    /**
+     * @return true if the REST or HTTP client came from this pool, so it is shared and must not be closed
+     */
+    public synchronized boolean isPooled(final Object client) {
+        return client != null && pooledClients.contains(client);
+    }
+
+    /**
+     * @return the connection statistics of each pool, keyed by the server and user name
+     */
+    public synchronized Map<String, PoolStats> getStatistics() {
+        final Map<String, PoolStats> statistics = new LinkedHashMap<String, PoolStats>();
+        for (final Entry entry : entries.values()) {
+            statistics.put(entry.description, entry.connectionManager.getTotalStats());
+        }
+        return statistics;
+    }
+
+    /**
+     * Closes all the pooled clients and their connections, including the retired ones. Called when the IDE exits.
+     */
+    public synchronized void clear() {
+        for (final Entry entry : entries.values()) {
+            close(entry);
+        }
+        for (final PoolingHttpClientConnectionManager connectionManager : retiredConnectionManagers.keySet()) {
+            connectionManager.shutdown();
+        }
+        entries.clear();
+        retiredConnectionManagers.clear();
+        pooledClients.clear();
+    }
+
+    /**
+     * Closes the pools of the server created for the given credentials, e.g. when the credentials are removed. The
+     * pools of the other servers and credentials stay open.
+     */
+    public synchronized void clear(final ServerContext.Type type, final AuthenticationInfo authenticationInfo) {
+        ArgumentHelper.checkNotNull(type, "type");
+        ArgumentHelper.checkNotNull(authenticationInfo, "authenticationInfo");
+
+        final String credentialsKey = getCredentialsKey(type, authenticationInfo);
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            if (entry.key.endsWith("|" + credentialsKey)) {
+                logger.info("Closing the connection pool for {}", entry.description);
+                close(entry);
+                iterator.remove();
+            }
+        }
+
+        final Iterator<Map.Entry<PoolingHttpClientConnectionManager, String>> retiredIterator =
+                retiredConnectionManagers.entrySet().iterator();
+        while (retiredIterator.hasNext()) {
+            final Map.Entry<PoolingHttpClientConnectionManager, String> retired = retiredIterator.next();
+            if (retired.getValue().endsWith("|" + credentialsKey)) {
+                retired.getKey().shutdown();
+                retiredIterator.remove();
+            }
+        }
+    }
+
+    private Entry getEntry(final ServerContext.Type type, final AuthenticationInfo authenticationInfo) {
+        ArgumentHelper.checkNotNull(type, "type");
+        ArgumentHelper.checkNotNull(authenticationInfo, "authenticationInfo");
+
+        final HttpProxyService proxyService = PluginServiceProvider.getInstance().getHttpProxyService();
+        final boolean useProxy = proxyService.useHttpProxy();
+        // The credentials go last, so the pools of the credentials can be found regardless of the proxy
+        final String key = StringUtils.join(new Object[]{
+                useProxy ? proxyService.getProxyURL() + "|" + proxyService.getUserName() : null,
+                getCredentialsKey(type, authenticationInfo)}, "|");
+
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = createEntry(type, authenticationInfo, useProxy, key);
+            entries.put(key, entry);
+            pooledClients.add(entry.client);
+            pooledClients.add(entry.httpClient);
+            retireLeastRecentlyUsedEntries();
+            startEviction();
+        }
+        return entry;
+    }
+
+    private static String getCredentialsKey(final ServerContext.Type type, final AuthenticationInfo authenticationInfo) {
+        return StringUtils.join(new Object[]{type, StringUtils.lowerCase(authenticationInfo.getServerUri()),
+                authenticationInfo.getUserName(), hash(authenticationInfo.getPassword())}, "|");
+    }
+
+    private Entry createEntry(final ServerContext.Type type, final AuthenticationInfo authenticationInfo,
+                              final boolean useProxy, final String key) {
+        final String description = type + " " + authenticationInfo.getServerUri() + " " + authenticationInfo.getUserName();
+        logger.info("Creating the connection pool for {}", description);
+
+        // The connection manager is shared, so it gets the SSL context instead of the clients
+        final Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", new SSLConnectionSocketFactory(
+                        PluginServiceProvider.getInstance().getCertificateService().getSSLContext()))
+                .build();
+        final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(registry);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLISECONDS);
+
+        final ClientConfig clientConfig = RestClientHelper.getClientConfig(type, authenticationInfo, useProxy);
+        clientConfig.property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager);
+        clientConfig.property(ApacheClientProperties.CONNECTION_MANAGER_SHARED, true);
+        final Client client = RestClientHelper.createNewClient(clientConfig);
+
+        final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+        credentialsProvider.setCredentials(AuthScope.ANY, AuthHelper.getCredentials(type, authenticationInfo));
+        final CloseableHttpClient httpClient = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setConnectionManagerShared(true)
+                // All the connections of the pool use the same credentials, so the NTLM authenticated ones can be
+                // reused by any request
+                .disableConnectionState()
+                .setDefaultCredentialsProvider(credentialsProvider)
+                .build();
+
+        return new Entry(key, description, connectionManager, client, httpClient);
+    }
+
+    private void retireLeastRecentlyUsedEntries() {
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxPools && iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            iterator.remove();
+            retire(entry);
+        }
+    }
+
+    /**
+     * Removes the pool from the map. Its clients can still be used by the old contexts, so it isn't shut down: its
+     * connections are closed as they become idle, and the pool itself is collected with the last client.
+     */
+    private void retire(final Entry entry) {
+        logger.info("Retiring the connection pool for {}", entry.description);
+        entry.connectionManager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+        retiredConnectionManagers.put(entry.connectionManager, entry.key);
+    }
+
+    private void startEviction() {
+        if (evictionExecutor != null) {
+            return;
+        }
+
+        evictionExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "HttpClientPool idle connection eviction");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final long period = Math.max(1, idleTimeoutSeconds / 2);
+        evictionExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                evictIdleConnections();
+            }
+        }, period, period, TimeUnit.SECONDS);
+    }
+
+    private void evictIdleConnections() {
+        final List<Entry> currentEntries;
+        final List<PoolingHttpClientConnectionManager> retiredManagers;
+        synchronized (this) {
+            currentEntries = new ArrayList<Entry>(entries.values());
+            retiredManagers = new ArrayList<PoolingHttpClientConnectionManager>(retiredConnectionManagers.keySet());
+        }
+
+        final List<Entry> idleEntries = new ArrayList<Entry>();
+        for (final Entry entry : currentEntries) {
+            try {
+                entry.connectionManager.closeExpiredConnections();
+                entry.connectionManager.closeIdleConnections(idleTimeoutSeconds, TimeUnit.SECONDS);
+                final PoolStats stats = entry.connectionManager.getTotalStats();
+                logger.debug("Connection pool for {}: {}", entry.description, stats);
+                if (stats.getLeased() + stats.getAvailable() + stats.getPending() > 0) {
+                    entry.lastActiveNanos = System.nanoTime();
+                } else if (System.nanoTime() - entry.lastActiveNanos > TimeUnit.SECONDS.toNanos(idleTimeoutSeconds)) {
+                    idleEntries.add(entry);
+                }
+            } catch (Throwable t) {
+                logger.warn("Unable to close the idle connections", t);
+            }
+        }
+
+        for (final PoolingHttpClientConnectionManager connectionManager : retiredManagers) {
+            try {
+                connectionManager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+            } catch (Throwable t) {
+                logger.warn("Unable to close the idle connections", t);
+            }
+        }
+
+        synchronized (this) {
+            for (final Entry entry : idleEntries) {
+                // The pool could have been replaced or closed in the meantime
+                if (entries.get(entry.key) == entry) {
+                    entries.remove(entry.key);
+                    retire(entry);
+                }
+            }
+        }
+    }
+
+    private static void close(final Entry entry) {
+        try {
+            entry.httpClient.close();
+        } catch (IOException e) {
+            logger.warn("Unable to close the HTTP client", e);
+        }
+        entry.client.close();
+        entry.connectionManager.shutdown();
+    }
+
+    static String hash(final String value) {
+        if (value == null) {
+            return StringUtils.EMPTY;
+        }
+
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (final byte b : digest) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -36,7 +36,7 @@ import java.io.IOException;
  */
 public class RestClientHelper {
 
-    private static Client createNewClient(ClientConfig clientConfig) {
+    static Client createNewClient(ClientConfig clientConfig) {
         return ClientBuilder.newBuilder()
                 .withConfig(clientConfig)
                 .sslContext(PluginServiceProvider.getInstance().getCertificateService().getSSLContext())
@@ -51,10 +51,12 @@ public class RestClientHelper {
         return createNewClient(clientConfig);
     }
 
+    /**
+     * Gets the client shared by the contexts of the server with the same credentials (see {@link HttpClientPool}).
+     * The client must not be closed by the callers.
+     */
     public static Client getClient(final ServerContext.Type type, final AuthenticationInfo authenticationInfo) {
-        final ClientConfig clientConfig = getClientConfig(type, authenticationInfo,
-                PluginServiceProvider.getInstance().getHttpProxyService().useHttpProxy());
-        return createNewClient(clientConfig);
+        return HttpClientPool.getInstance().getClient(type, authenticationInfo);
     }
 
     public static ClientConfig getClientConfig(final ServerContext.Type type,
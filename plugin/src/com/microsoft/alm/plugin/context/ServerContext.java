@@ -3,27 +3,20 @@
 
 package com.microsoft.alm.plugin.context;
 
-import com.microsoft.alm.build.webapi.BuildHttpClient;
 import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.common.utils.UrlHelper;
 import com.microsoft.alm.core.webapi.model.TeamProjectCollectionReference;
 import com.microsoft.alm.core.webapi.model.TeamProjectReference;
-import com.microsoft.alm.plugin.authentication.AuthHelper;
 import com.microsoft.alm.plugin.authentication.AuthenticationInfo;
+import com.microsoft.alm.plugin.context.rest.BuildHttpClientEx;
 import com.microsoft.alm.plugin.context.rest.GitHttpClientEx;
 import com.microsoft.alm.plugin.context.rest.TfvcHttpClientEx;
 import com.microsoft.alm.plugin.context.soap.SoapServices;
 import com.microsoft.alm.plugin.context.soap.SoapServicesImpl;
-import com.microsoft.alm.plugin.services.PluginServiceProvider;
 import com.microsoft.alm.sourcecontrol.webapi.model.GitRepository;
 import com.microsoft.alm.workitemtracking.webapi.WorkItemTrackingHttpClient;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.Credentials;
-import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.HttpClient;
-import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 
 import javax.ws.rs.client.Client;
 import java.io.IOException;
@@ -47,6 +40,10 @@ public class ServerContext {
     private CloseableHttpClient httpClient;
     private Client client;
     private SoapServices soapServices;
+    private GitHttpClientEx gitHttpClient;
+    private WorkItemTrackingHttpClient witHttpClient;
+    private BuildHttpClientEx buildHttpClient;
+    private TfvcHttpClientEx tfvcHttpClient;
 
     private final TeamProjectCollectionReference teamProjectCollectionReference;
     private final TeamProjectReference teamProjectReference;
@@ -148,22 +145,19 @@ public class ServerContext {
     public synchronized HttpClient getHttpClient() {
         checkDisposed();
         if (httpClient == null && authenticationInfo != null) {
-            final Credentials credentials = AuthHelper.getCredentials(type, authenticationInfo);
-            final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-            credentialsProvider.setCredentials(AuthScope.ANY, credentials);
-            final HttpClientBuilder httpClientBuilder = HttpClientBuilder.create()
-                    .setSSLContext(PluginServiceProvider.getInstance().getCertificateService().getSSLContext());
-
-            httpClient = httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider).build();
+            httpClient = HttpClientPool.getInstance().getHttpClient(type, authenticationInfo);
         }
         return httpClient;
     }
 
+    // The REST clients are thin wrappers around the shared client, so each context keeps one of each
     public synchronized GitHttpClientEx getGitHttpClient() {
         final URI collectionUri = getCollectionURI();
         if (collectionUri != null) {
-            final GitHttpClientEx gitClient = new GitHttpClientEx(getClient(), collectionUri);
-            return gitClient;
+            if (gitHttpClient == null) {
+                gitHttpClient = new GitHttpClientEx(getClient(), collectionUri);
+            }
+            return gitHttpClient;
         }
 
         // We don't have enough context to create a GitHttpClient
@@ -173,19 +167,23 @@ public class ServerContext {
     public synchronized WorkItemTrackingHttpClient getWitHttpClient() {
         final URI collectionUri = getCollectionURI();
         if (collectionUri != null) {
-            final WorkItemTrackingHttpClient witClient = new WorkItemTrackingHttpClient(getClient(), collectionUri);
-            return witClient;
+            if (witHttpClient == null) {
+                witHttpClient = new WorkItemTrackingHttpClient(getClient(), collectionUri);
+            }
+            return witHttpClient;
         }
 
         // We don't have enough context to create a WorkItemTrackingHttpClient
         return null;
     }
 
-    public synchronized BuildHttpClient getBuildHttpClient() {
+    public synchronized BuildHttpClientEx getBuildHttpClient() {
         final URI collectionUri = getCollectionURI();
         if (collectionUri != null) {
-            final BuildHttpClient buildClient = new BuildHttpClient(getClient(), collectionUri);
-            return buildClient;
+            if (buildHttpClient == null) {
+                buildHttpClient = new BuildHttpClientEx(getClient(), collectionUri);
+            }
+            return buildHttpClient;
         }
 
         // We don't have enough context to create a BuildHttpClient
@@ -195,7 +193,9 @@ public class ServerContext {
     public synchronized TfvcHttpClientEx getTfvcHttpClient() {
         final URI collectionUri = getCollectionURI();
         if (collectionUri != null) {
-            final TfvcHttpClientEx tfvcHttpClient = new TfvcHttpClientEx(getClient(), collectionUri);
+            if (tfvcHttpClient == null) {
+                tfvcHttpClient = new TfvcHttpClientEx(getClient(), collectionUri);
+            }
             return tfvcHttpClient;
         }
 
@@ -254,20 +254,31 @@ public class ServerContext {
     }
 
     public synchronized void dispose() {
+        // The pooled clients are shared with the other contexts of the server, so only the others are closed
+        final HttpClientPool pool = HttpClientPool.getInstance();
         if (httpClient != null) {
-            try {
-                httpClient.close();
-            } catch (IOException e) {
-                // eat it
+            if (!pool.isPooled(httpClient)) {
+                try {
+                    httpClient.close();
+                } catch (IOException e) {
+                    // eat it
+                }
             }
             httpClient = null;
         }
 
         if (client != null) {
-            client.close();
+            if (!pool.isPooled(client)) {
+                client.close();
+            }
             client = null;
         }
 
+        gitHttpClient = null;
+        witHttpClient = null;
+        buildHttpClient = null;
+        tfvcHttpClient = null;
+
         disposed = true;
     }
 }
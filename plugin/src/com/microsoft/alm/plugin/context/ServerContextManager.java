@@ -38,10 +38,20 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
  * Singleton class used to manage ServerContext objects.
+ * <p/>
+ * The contexts are read far more often than they change, so the readers don't take any lock: they use the concurrent
+ * map or an immutable snapshot of its values. The writers only lock to update the map, the snapshot and the saved
+ * contexts together, so the store ends up in the same state as the map, and the server calls are never made while
+ * holding a lock. Concurrent validations of the same context share a single
+ * server round trip.
  */
 public class ServerContextManager {
     private static final Logger logger = LoggerFactory.getLogger(ServerContextManager.class);
@@ -49,7 +59,12 @@ public class ServerContextManager {
     private final String CONNECTION_DATA_REST_API_PATH = "/_apis/connectionData?connectOptions=IncludeServices&lastChangeId=-1&lastChangeId64=-1&api-version=1.0";
     private final String TFS2015_NEW_SERVICE = "distributedtask";
 
-    private Map<String, ServerContext> contextMap = new HashMap<String, ServerContext>();
+    private final ConcurrentMap<String, ServerContext> contextMap = new ConcurrentHashMap<String, ServerContext>();
+    // Rebuilt on every change, so the readers can return it as is
+    private volatile Collection<ServerContext> contextSnapshot = Collections.emptyList();
+    private final Object writeLock = new Object();
+    // The validations in progress, keyed by the context and credentials being validated
+    private final ConcurrentMap<String, FutureTask<ServerContext>> validations = new ConcurrentHashMap<String, FutureTask<ServerContext>>();
 
     private static class Holder {
         private static final ServerContextManager INSTANCE = new ServerContextManager(true);
@@ -79,7 +94,7 @@ public class ServerContextManager {
         return Holder.INSTANCE;
     }
 
-    public synchronized ServerContext getLastUsedContext() {
+    public ServerContext getLastUsedContext() {
         final ServerContext context = get(getLastUsedContextKey());
         return context;
     }
@@ -92,31 +107,34 @@ public class ServerContextManager {
         return PluginServiceProvider.getInstance().getPropertyService().getProperty(PropertyService.PROP_LAST_CONTEXT_KEY);
     }
 
-    public synchronized void clearLastUsedContext() {
+    public void clearLastUsedContext() {
         setLastUsedContextKey(null);
     }
 
-    public synchronized boolean lastUsedContextIsEmpty() {
+    public boolean lastUsedContextIsEmpty() {
         final ServerContext lastUsed = getLastUsedContext();
         return lastUsed == null;
     }
 
-    public synchronized boolean lastUsedContextIsTFS() {
+    public boolean lastUsedContextIsTFS() {
         final ServerContext lastUsed = getLastUsedContext();
         return lastUsed != null && lastUsed.getType() == ServerContext.Type.TFS;
     }
 
-    public synchronized void add(final ServerContext context) {
+    public void add(final ServerContext context) {
         add(context, true);
     }
 
-    public synchronized void add(final ServerContext context, boolean updateLastUsedContext) {
+    public void add(final ServerContext context, boolean updateLastUsedContext) {
         if (context != null) {
             final String key = context.getKey();
-            contextMap.put(key, context);
-            // Only persist PATs, not access tokens
-            if (shouldBeSaved(context)) {
-                getStore().saveServerContext(context);
+            synchronized (writeLock) {
+                contextMap.put(key, context);
+                updateSnapshot();
+                // Only persist PATs, not access tokens
+                if (shouldBeSaved(context)) {
+                    getStore().saveServerContext(context);
+                }
             }
             if (updateLastUsedContext) {
                 setLastUsedContextKey(key);
@@ -136,7 +154,7 @@ public class ServerContextManager {
         return shouldBeSaved;
     }
 
-    public synchronized ServerContext get(final String uri) {
+    public ServerContext get(final String uri) {
         if (!StringUtils.isEmpty(uri)) {
             final ServerContext context = contextMap.get(ServerContext.getKey(uri));
             return context;
@@ -145,26 +163,42 @@ public class ServerContextManager {
         return null;
     }
 
-    public synchronized void remove(final String serverUri) {
+    public void remove(final String serverUri) {
         if (StringUtils.isEmpty(serverUri)) {
             return;
         }
 
         final String key = ServerContext.getKey(serverUri);
-        final ServerContext context = get(key);
+        final ServerContext context;
+        synchronized (writeLock) {
+            context = contextMap.remove(key);
+            if (context != null) {
+                updateSnapshot();
+                getStore().forgetServerContext(key);
+            }
+        }
 
         if (context != null) {
-            getStore().forgetServerContext(key);
-            contextMap.remove(key);
             if (StringUtils.equalsIgnoreCase(key, getLastUsedContextKey())) {
                 clearLastUsedContext();
             }
+            // The connections authenticated with the removed credentials must not be reused
+            if (context.getAuthenticationInfo() != null) {
+                HttpClientPool.getInstance().clear(context.getType(), context.getAuthenticationInfo());
+            }
         }
     }
 
-    public synchronized Collection<ServerContext> getAllServerContexts() {
-        //copy values from HashMap to a new List make sure the list is immutable
-        return Collections.unmodifiableCollection(new ArrayList<ServerContext>(contextMap.values()));
+    public Collection<ServerContext> getAllServerContexts() {
+        return contextSnapshot;
+    }
+
+    /**
+     * Called while holding the write lock after every change of the map.
+     */
+    private void updateSnapshot() {
+        //copy values from the map to a new List make sure the list is immutable
+        contextSnapshot = Collections.unmodifiableCollection(new ArrayList<ServerContext>(contextMap.values()));
     }
 
     private ServerContextStore getStore() {
@@ -174,7 +208,7 @@ public class ServerContextManager {
     /**
      * Called once from constructor restore the state from disk between sessions.
      */
-    private synchronized void restoreFromSavedState() {
+    private void restoreFromSavedState() {
         final List<ServerContext> contexts = getStore().restoreServerContexts();
         for (final ServerContext sc : contexts) {
             add(sc, false);
@@ -191,7 +225,59 @@ public class ServerContextManager {
         return validateServerConnection(context, validator);
     }
 
-    protected ServerContext validateServerConnection(final ServerContext context, Validator validator) {
+    /**
+     * Validates the context unless the same context with the same credentials is already being validated, in which
+     * case the result of that validation is returned.
+     */
+    protected ServerContext validateServerConnection(final ServerContext context, final Validator validator) {
+        final String key = getValidationKey(context);
+        final FutureTask<ServerContext> task = new FutureTask<ServerContext>(new Callable<ServerContext>() {
+            @Override
+            public ServerContext call() {
+                return doValidateServerConnection(context, validator);
+            }
+        });
+        final FutureTask<ServerContext> inProgress = validations.putIfAbsent(key, task);
+        if (inProgress != null) {
+            logger.info("Waiting for the validation already in progress for {}", context.getUri());
+            return getValidationResult(inProgress);
+        }
+
+        try {
+            task.run();
+        } finally {
+            validations.remove(key, task);
+        }
+        return getValidationResult(task);
+    }
+
+    private static String getValidationKey(final ServerContext context) {
+        final AuthenticationInfo authenticationInfo = context.getAuthenticationInfo();
+        return StringUtils.join(new Object[]{context.getType(), context.getKey(),
+                context.getTeamProjectReference() == null ? null : context.getTeamProjectReference().getName(),
+                authenticationInfo == null ? null : authenticationInfo.getUserName(),
+                authenticationInfo == null ? null : HttpClientPool.hash(authenticationInfo.getPassword())}, "|");
+    }
+
+    private static ServerContext getValidationResult(final FutureTask<ServerContext> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TeamServicesException(TeamServicesException.KEY_OPERATION_ERRORS, e);
+        } catch (ExecutionException e) {
+            // Rethrow the validation error as is, the callers handle the specific exceptions
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private ServerContext doValidateServerConnection(final ServerContext context, final Validator validator) {
         ServerContext contextToValidate = context;
 
         //If context.uri is remote git repo url, try to parse it if needed
@@ -0,0 +1,81 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.context.rest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.microsoft.alm.build.webapi.BuildHttpClient;
+import com.microsoft.alm.build.webapi.model.Build;
+import com.microsoft.alm.build.webapi.model.BuildQueryOrder;
+import com.microsoft.alm.build.webapi.model.BuildStatus;
+import com.microsoft.alm.client.model.ApiResourceVersion;
+import com.microsoft.alm.client.model.NameValueCollection;
+
+import javax.ws.rs.client.Client;
+import java.net.URI;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Extending the Build Client with new/altered calls
+ */
+public class BuildHttpClientEx extends BuildHttpClient {
+
+    public BuildHttpClientEx(final Client jaxrsClient, final URI baseUrl) {
+        super(jaxrsClient, baseUrl);
+    }
+
+    /**
+     * [API 3.0] Gets the builds of a single repository and branch. The generated getBuilds method in the 0.4.3 client
+     * doesn't have the repository filters, so the callers had to download the builds of the whole team project and
+     * filter them on the client.
+     *
+     * @param project
+     * @param repositoryId   the repository id; null to not filter by the repository
+     * @param repositoryType the repository type, e.g. TfsGit or TfsVersionControl; required by the server when the
+     *                       repository id is passed
+     * @param branchName     the full branch name, e.g. refs/heads/master; null to not filter by the branch
+     * @param statusFilter
+     * @param minFinishTime  only the builds that finished at or after this time are returned; null for all builds
+     * @param top
+     * @param queryOrder
+     * @return the builds
+     */
+    public List<Build> getBuilds(
+            final UUID project,
+            final String repositoryId,
+            final String repositoryType,
+            final String branchName,
+            final BuildStatus statusFilter,
+            final Date minFinishTime,
+            final Integer top,
+            final BuildQueryOrder queryOrder) {
+        final UUID locationId = UUID.fromString("0cd358e1-9217-4d94-8269-1c1ee6f93dcf"); //$NON-NLS-1$
+        final ApiResourceVersion apiVersion = new ApiResourceVersion("3.0"); //$NON-NLS-1$
+
+        final Map<String, Object> routeValues = new HashMap<String, Object>();
+        routeValues.put("project", project); //$NON-NLS-1$
+
+        final NameValueCollection queryParameters = new NameValueCollection();
+        queryParameters.addIfNotEmpty("repositoryId", repositoryId); //$NON-NLS-1$
+        queryParameters.addIfNotEmpty("repositoryType", repositoryType); //$NON-NLS-1$
+        queryParameters.addIfNotEmpty("branchName", branchName); //$NON-NLS-1$
+        queryParameters.addIfNotNull("statusFilter", statusFilter); //$NON-NLS-1$
+        queryParameters.addIfNotNull("minFinishTime", minFinishTime); //$NON-NLS-1$
+        queryParameters.addIfNotNull("$top", top); //$NON-NLS-1$
+        queryParameters.addIfNotNull("queryOrder", queryOrder); //$NON-NLS-1$
+
+        final Object httpRequest = super.createRequest(HttpMethod.GET,
+                locationId,
+                routeValues,
+                apiVersion,
+                queryParameters,
+                APPLICATION_JSON_TYPE);
+
+        return super.sendRequest(httpRequest, new TypeReference<List<Build>>() {
+        });
+    }
+}
@@ -11,6 +11,7 @@ import com.microsoft.alm.sourcecontrol.webapi.model.TfvcItem;
 import com.microsoft.alm.sourcecontrol.webapi.model.TfvcVersionDescriptor;
 
 import javax.ws.rs.client.Client;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
@@ -63,4 +64,37 @@ public class TfvcHttpClientEx extends TfvcHttpClient {
         return super.sendRequest(httpRequest, new TypeReference<List<TfvcItem>>() {
         });
     }
+
+    /**
+     * Returns the content of a single item at the given version. Unlike the generated getItemContent method, this one
+     * doesn't add the empty scope and recursion parameters, so the server returns the raw file content.
+     *
+     * @param project
+     * @param path
+     * @param versionDescriptor
+     * @return
+     */
+    public InputStream getItemContent(
+            final UUID project,
+            final String path,
+            final TfvcVersionDescriptor versionDescriptor) {
+        final UUID locationId = UUID.fromString("ba9fc436-9a38-4578-89d6-e4f3241f5040"); //$NON-NLS-1$
+        final ApiResourceVersion apiVersion = new ApiResourceVersion("2.1"); //$NON-NLS-1$
+
+        final Map<String, Object> routeValues = new HashMap<String, Object>();
+        routeValues.put("project", project); //$NON-NLS-1$
+
+        final NameValueCollection queryParameters = new NameValueCollection();
+        queryParameters.addIfNotEmpty("path", path); //$NON-NLS-1$
+        addModelAsQueryParams(queryParameters, versionDescriptor);
+
+        final Object httpRequest = super.createRequest(HttpMethod.GET,
+                locationId,
+                routeValues,
+                apiVersion,
+                queryParameters,
+                APPLICATION_OCTET_STREAM_TYPE);
+
+        return super.sendRequest(httpRequest, InputStream.class);
+    }
 }
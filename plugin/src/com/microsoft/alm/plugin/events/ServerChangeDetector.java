@@ -0,0 +1,19 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.events;
+
+import java.util.Set;
+
+/**
+ * Checks what changed on the server since the previous check. Used by the {@link ServerPollingManager} to trigger only
+ * the events that are worth refreshing the UI for.
+ */
+public interface ServerChangeDetector {
+    /**
+     * Called on a background thread.
+     *
+     * @return the events to trigger; an empty set if nothing changed
+     */
+    Set<ServerEvent> detectChanges();
+}
@@ -4,6 +4,7 @@
 package com.microsoft.alm.plugin.events;
 
 import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.operations.OperationExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,14 +13,22 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
 
 public class ServerPollingManager {
     private static final Logger logger = LoggerFactory.getLogger(ServerPollingManager.class);
     private static final int DEFAULT_POLLING_INTERVAL = 5 * 60 * 1000; // TODO eventually get from settings
+    // The interval grows up to this factor while nothing changes on the server, or while the IDE is idle
+    private static final int MAX_BACKOFF_FACTOR = 6;
 
     private final ServerEventManager eventManager;
     private final Timer timer;
     private boolean polling = false;
+    private int pollingInterval;
+    private int backoffFactor = 1;
+    private ServerChangeDetector changeDetector;
+    private BooleanSupplier idleDetector;
 
     private static class Holder {
         private static final ServerPollingManager INSTANCE = new ServerPollingManager(ServerEventManager.getInstance());
@@ -45,16 +54,33 @@ public class ServerPollingManager {
         startPolling(DEFAULT_POLLING_INTERVAL);
     }
 
-    public void startPolling(final int intervalInMilliSeconds) {
+    public synchronized void startPolling(final int intervalInMilliSeconds) {
         logger.info("Polling started");
         polling = true;
+        pollingInterval = intervalInMilliSeconds;
+        backoffFactor = 1;
         if (!timer.isRunning()) {
             timer.setInitialDelay(intervalInMilliSeconds);
             timer.start();
         }
     }
 
-    public void stopPolling() {
+    /**
+     * Sets the detector used to trigger only the events for the things that changed on the server. Without a detector
+     * all the events are triggered on each poll.
+     */
+    public synchronized void setChangeDetector(final ServerChangeDetector changeDetector) {
+        this.changeDetector = changeDetector;
+    }
+
+    /**
+     * Sets the check for the user being away from the IDE; the server is polled less often in that case.
+     */
+    public synchronized void setIdleDetector(final BooleanSupplier idleDetector) {
+        this.idleDetector = idleDetector;
+    }
+
+    public synchronized void stopPolling() {
         logger.info("Polling stopped");
         polling = false;
         if (timer.isRunning()) {
@@ -64,16 +90,61 @@ public class ServerPollingManager {
 
     private void timerFired() {
         logger.info("Timer fired");
-        timer.stop();
-        if (!polling) {
-            return;
+        final ServerChangeDetector detector;
+        synchronized (this) {
+            timer.stop();
+            if (!polling) {
+                return;
+            }
+            detector = changeDetector;
         }
 
-        // TODO: Ideally we would contact the server and see what actually changed, but there isn't any call for that, yet
-        // Fire all changed events
         final Map<String,Object> eventContext = new HashMap<String,Object>();
         eventContext.put("sender", "pollingManager");
-        eventManager.triggerAllEvents(eventContext);
+        if (detector == null) {
+            // Fire all changed events
+            eventManager.triggerAllEvents(eventContext);
+            restartTimer(true);
+            return;
+        }
+
+        // The detection queries the server, so it shouldn't block the UI thread the timer fires on
+        OperationExecutor.getInstance().submitOperationTask(new Runnable() {
+            @Override
+            public void run() {
+                boolean hasChanges = true;
+                try {
+                    final Set<ServerEvent> changedEvents = detector.detectChanges();
+                    hasChanges = !changedEvents.isEmpty();
+                    for (final ServerEvent event : changedEvents) {
+                        eventManager.triggerEvent(event, eventContext);
+                    }
+                } catch (Throwable t) {
+                    logger.warn("Server change detection failed", t);
+                } finally {
+                    restartTimer(hasChanges);
+                }
+            }
+        }, OperationExecutor.Priority.BACKGROUND);
+    }
+
+    private synchronized void restartTimer(final boolean hasChanges) {
+        if (!polling) {
+            return;
+        }
+
+        final boolean isIdle = idleDetector != null && idleDetector.getAsBoolean();
+        if (isIdle) {
+            backoffFactor = MAX_BACKOFF_FACTOR;
+        } else if (hasChanges) {
+            backoffFactor = 1;
+        } else {
+            backoffFactor = Math.min(backoffFactor * 2, MAX_BACKOFF_FACTOR);
+        }
+
+        final long interval = Math.min((long) pollingInterval * backoffFactor, Integer.MAX_VALUE);
+        logger.debug("Next poll in {} ms", interval);
+        timer.setInitialDelay((int) interval);
         timer.restart();
     }
 }
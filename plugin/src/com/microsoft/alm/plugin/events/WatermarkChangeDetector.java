@@ -0,0 +1,176 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.events;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.microsoft.alm.build.webapi.model.Build;
+import com.microsoft.alm.build.webapi.model.BuildQueryOrder;
+import com.microsoft.alm.build.webapi.model.BuildStatus;
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.ServerContextManager;
+import com.microsoft.alm.sourcecontrol.webapi.model.GitPullRequest;
+import com.microsoft.alm.sourcecontrol.webapi.model.GitPullRequestSearchCriteria;
+import com.microsoft.alm.sourcecontrol.webapi.model.PullRequestStatus;
+import com.microsoft.alm.workitemtracking.webapi.models.Wiql;
+import com.microsoft.alm.workitemtracking.webapi.models.WorkItem;
+import com.microsoft.alm.workitemtracking.webapi.models.WorkItemQueryResult;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Detects the server changes by comparing small "watermark" queries with their previous results: the latest completed
+ * build, the source commits of the active pull requests, and the revision of the latest changed work item. An event
+ * is only reported when a watermark of one of the known server contexts moves. Events that none of the contexts can
+ * provide a watermark for are always reported, the same as before the change detection existed.
+ */
+public class WatermarkChangeDetector implements ServerChangeDetector {
+    private static final Logger logger = LoggerFactory.getLogger(WatermarkChangeDetector.class);
+
+    private static final ServerEvent[] WATCHED_EVENTS = {
+            ServerEvent.BUILDS_CHANGED,
+            ServerEvent.PULL_REQUESTS_CHANGED,
+            ServerEvent.WORK_ITEMS_CHANGED
+    };
+
+    private static final String LATEST_CHANGED_WORK_ITEM_WIQL = "SELECT [System.Id] FROM WorkItems " +
+            "WHERE [System.TeamProject] = @project AND [System.ChangedDate] >= @Today " +
+            "ORDER BY [System.ChangedDate] DESC";
+    private static final String REVISION_FIELD = "System.Rev";
+    private static final int MAX_PULL_REQUESTS = 101;
+
+    private final ServerContextManager contextManager;
+    // Keyed by the event name and the context key
+    private final Map<String, String> watermarks = new HashMap<String, String>();
+
+    public WatermarkChangeDetector(final ServerContextManager contextManager) {
+        ArgumentHelper.checkNotNull(contextManager, "contextManager");
+        this.contextManager = contextManager;
+    }
+
+    @Override
+    public synchronized Set<ServerEvent> detectChanges() {
+        final Set<ServerEvent> changedEvents = EnumSet.noneOf(ServerEvent.class);
+        final Collection<ServerContext> contexts = contextManager.getAllServerContexts();
+        for (final ServerEvent event : WATCHED_EVENTS) {
+            boolean isWatched = false;
+            for (final ServerContext context : contexts) {
+                final String watermark;
+                try {
+                    watermark = getWatermark(event, context);
+                } catch (Throwable t) {
+                    // Let the listeners query the server and report the problem, as they did before
+                    logger.warn("Unable to get the watermark for " + event.name(), t);
+                    changedEvents.add(event);
+                    isWatched = true;
+                    continue;
+                }
+
+                if (watermark == null) {
+                    continue;
+                }
+
+                isWatched = true;
+                final String previousWatermark = watermarks.put(event.name() + "|" + context.getKey(), watermark);
+                if (previousWatermark != null && !previousWatermark.equals(watermark)) {
+                    logger.info("Server change detected: {}", event.name());
+                    changedEvents.add(event);
+                }
+            }
+
+            if (!isWatched) {
+                changedEvents.add(event);
+            }
+        }
+
+        return changedEvents;
+    }
+
+    /**
+     * @return the watermark, or null if the event can't be watched with this context
+     */
+    @VisibleForTesting
+    protected String getWatermark(final ServerEvent event, final ServerContext context) {
+        switch (event) {
+            case BUILDS_CHANGED:
+                return getBuildsWatermark(context);
+            case PULL_REQUESTS_CHANGED:
+                return getPullRequestsWatermark(context);
+            case WORK_ITEMS_CHANGED:
+                return getWorkItemsWatermark(context);
+            default:
+                return null;
+        }
+    }
+
+    private String getBuildsWatermark(final ServerContext context) {
+        if (context.getTeamProjectReference() == null) {
+            return null;
+        }
+
+        final List<Build> builds = context.getBuildHttpClient().getBuilds(context.getTeamProjectReference().getId(),
+                null, null, null, null, null, null, null, BuildStatus.COMPLETED,
+                null, null, null, null, 1, null, null, null, BuildQueryOrder.FINISH_TIME_DESCENDING);
+        if (builds.isEmpty()) {
+            return StringUtils.EMPTY;
+        }
+
+        final Build build = builds.get(0);
+        return build.getId() + ":" + (build.getFinishTime() == null ? 0 : build.getFinishTime().getTime());
+    }
+
+    private String getPullRequestsWatermark(final ServerContext context) {
+        if (context.getGitRepository() == null) {
+            return null;
+        }
+
+        final GitPullRequestSearchCriteria criteria = new GitPullRequestSearchCriteria();
+        criteria.setRepositoryId(context.getGitRepository().getId());
+        criteria.setStatus(PullRequestStatus.ACTIVE);
+        criteria.setIncludeLinks(false);
+        final List<GitPullRequest> pullRequests = context.getGitHttpClient().getPullRequests(
+                context.getGitRepository().getId(), criteria, 0, 0, MAX_PULL_REQUESTS);
+
+        final List<String> states = new ArrayList<String>(pullRequests.size());
+        for (final GitPullRequest pullRequest : pullRequests) {
+            states.add(pullRequest.getPullRequestId() + ":"
+                    + (pullRequest.getLastMergeSourceCommit() == null ? StringUtils.EMPTY : pullRequest.getLastMergeSourceCommit().getCommitId()) + ":"
+                    + pullRequest.getMergeStatus());
+        }
+        Collections.sort(states);
+        return StringUtils.join(states, ",");
+    }
+
+    private String getWorkItemsWatermark(final ServerContext context) {
+        if (context.getTeamProjectReference() == null) {
+            return null;
+        }
+
+        final Wiql wiql = new Wiql();
+        wiql.setQuery(LATEST_CHANGED_WORK_ITEM_WIQL);
+        // Only the latest changed item is needed, so the server doesn't have to return all the items changed today
+        final WorkItemQueryResult result = context.getWitHttpClient().queryByWiql(wiql,
+                context.getTeamProjectReference().getId(), null, 1);
+        if (result.getWorkItems() == null || result.getWorkItems().isEmpty()) {
+            return StringUtils.EMPTY;
+        }
+
+        // The latest changed item stays the same when it is changed again, so its revision is a part of the watermark
+        final int id = result.getWorkItems().get(0).getId();
+        final List<WorkItem> items = context.getWitHttpClient().getWorkItems(
+                Collections.singletonList(id), Collections.singletonList(REVISION_FIELD), null, null);
+        final Object revision = items.isEmpty() ? null : items.get(0).getFields().get(REVISION_FIELD);
+        return id + ":" + revision;
+    }
+}
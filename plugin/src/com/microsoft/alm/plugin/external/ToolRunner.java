@@ -225,6 +225,13 @@ public class ToolRunner {
         return toolProcess;
     }
 
+    /**
+     * Checks whether the tool process was started and hasn't exited yet.
+     */
+    public boolean isRunning() {
+        return toolProcess != null && toolProcess.isAlive();
+    }
+
     /**
      * Command line arguments should have all embedded double quotes repeated to escape them.
      * They should also be surrounded by double quotes if they contain a space.
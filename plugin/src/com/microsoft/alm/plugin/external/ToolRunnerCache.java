@@ -3,6 +3,7 @@
 
 package com.microsoft.alm.plugin.external;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.plugin.external.models.ToolVersion;
@@ -12,22 +13,57 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Keeps a pool of pre-started TF CLC processes waiting for their arguments ("@" mode) for every tool location/working
+ * directory pair. A CLC process in "@" mode executes exactly one command and then exits, so the runners are never
+ * returned into the pool: a caller checks out a warm runner, and the pool is topped up again in the background.
+ * <p/>
+ * The pool is bounded per key (see {@link #POOL_SIZE_PROPERTY}), runners older than {@link #MAX_AGE_PROPERTY} or not
+ * alive anymore are recycled, and pools that weren't used for {@link #IDLE_TIMEOUT_PROPERTY} are disposed completely.
+ */
 public class ToolRunnerCache {
     private static final Logger logger = LoggerFactory.getLogger(ToolRunnerCache.class);
 
-    private static final ConcurrentMap<String, ToolRunner> cache = new ConcurrentHashMap<>(3);
+    public static final String POOL_SIZE_PROPERTY = "com.microsoft.alm.plugin.external.ToolRunnerCache.poolSize";
+    public static final String IDLE_TIMEOUT_PROPERTY = "com.microsoft.alm.plugin.external.ToolRunnerCache.idleTimeoutSeconds";
+    public static final String MAX_AGE_PROPERTY = "com.microsoft.alm.plugin.external.ToolRunnerCache.maxAgeSeconds";
+
+    private static final int DEFAULT_POOL_SIZE = 2;
+    private static final long DEFAULT_IDLE_TIMEOUT_SECONDS = TimeUnit.MINUTES.toSeconds(10);
+    private static final long DEFAULT_MAX_AGE_SECONDS = TimeUnit.MINUTES.toSeconds(30);
+    private static final long SWEEP_INTERVAL_SECONDS = 60;
+
+    private static final ConcurrentMap<String, RunnerPool> cache = new ConcurrentHashMap<>(3);
+    private static final Statistics statistics = new Statistics();
+
+    // Runs the sweeps and tops up the pools, so the callers never wait for a runner to start
+    private static ScheduledExecutorService worker;
 
     /**
      * Terminates all active tool runners in the cache.
      */
     public static void tearDown() {
-        for (Map.Entry<String, ToolRunner> entry : Lists.newArrayList(cache.entrySet())) {
-            ToolRunner runner = entry.getValue();
-            runner.dispose();
-            boolean result = cache.remove(entry.getKey(), runner);
+        synchronized (ToolRunnerCache.class) {
+            if (worker != null) {
+                worker.shutdownNow();
+                worker = null;
+            }
+        }
+
+        for (Map.Entry<String, RunnerPool> entry : Lists.newArrayList(cache.entrySet())) {
+            RunnerPool pool = entry.getValue();
+            boolean result = cache.remove(entry.getKey(), pool);
             assert result;
+            pool.disposeAll();
         }
     }
 
@@ -37,7 +73,7 @@ public class ToolRunnerCache {
      * @param toolLocation              location of the tool to start.
      * @param argumentBuilder           an object that defined the tool arguments.
      * @param listener                  tool execution listener.
-     * @param shouldPrepareCachedRunner whether to prepare a new cached runner for the same location in advance: for
+     * @param shouldPrepareCachedRunner whether to prepare new cached runners for the same location in advance: for
      *                                  cases when new calls of the same tool in the same working directory are
      *                                  likely. See {@link #getKey(String, ToolRunner.ArgumentBuilder)} for cache key
      *                                  calculation algorithm.
@@ -63,9 +99,12 @@ public class ToolRunnerCache {
             logger.info("getRunningToolRunner: fast version - " + version);
             final String key = getKey(toolLocation, argumentBuilder);
             logger.info("getRunningToolRunner: key=" + key);
+            ensureWorkerStarted();
 
-            // If there is already one cached, then remove it and use it
-            toolRunner = cache.remove(key);
+            final long checkoutStart = System.nanoTime();
+            final RunnerPool pool = shouldPrepareCachedRunner ? getOrCreatePool(key) : cache.get(key);
+            toolRunner = pool == null ? null : pool.checkOut();
+            statistics.recordCheckout(toolRunner != null, System.nanoTime() - checkoutStart);
             if (toolRunner == null) {
                 // Cache miss, so create a new one
                 logger.info("getRunningToolRunner: cache miss.");
@@ -78,19 +117,43 @@ public class ToolRunnerCache {
             // The toolRunner should already be started, we just need to send the args in
             toolRunner.sendArgsViaStandardInput(argumentBuilder);
 
-            // Add another instance to the cache for later
-            //TODO: clear all or part of the cache to make sure we aren't leaking memory by never cleaning up
-            if (shouldPrepareCachedRunner)
-                updateCachedInstance(key, toolLocation, argumentBuilder);
+            // Top up the pool for later calls
+            if (pool != null && shouldPrepareCachedRunner) {
+                scheduleFill(pool, toolLocation, getStartAndWaitArguments(argumentBuilder));
+            }
         }
 
         return toolRunner;
     }
 
+    /**
+     * Returns the current statistics of the runner pool: checkout hit rate, process spawn latency and the time
+     * callers spent waiting for a runner.
+     */
+    public static Statistics getStatistics() {
+        return statistics;
+    }
+
+    private static RunnerPool getOrCreatePool(final String key) {
+        final RunnerPool existing = cache.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        final RunnerPool created = new RunnerPool(key);
+        final RunnerPool raced = cache.putIfAbsent(key, created);
+        return raced != null ? raced : created;
+    }
+
     private static ToolRunner startToolRunner(String toolLocation, ToolRunner.ArgumentBuilder argumentBuilder, ToolRunner.Listener listener) {
         final ToolRunner toolRunner = new ToolRunner(toolLocation, argumentBuilder.getWorkingDirectory());
-        toolRunner.addListener(listener);
+        if (listener != null) {
+            toolRunner.addListener(listener);
+        }
+
+        final long spawnStart = System.nanoTime();
         toolRunner.start(argumentBuilder);
+        statistics.recordSpawn(System.nanoTime() - spawnStart);
         return toolRunner;
     }
 
@@ -107,21 +170,87 @@ public class ToolRunnerCache {
                 .add("@");
     }
 
-    private static void updateCachedInstance(final String key, final String toolLocation, final ToolRunner.ArgumentBuilder argumentBuilder) {
-        // Start up a new instance and cache it for later use
-        logger.info("updateCachedInstance: caching a new runner: key=" + key);
-        final ToolRunner toolRunnerToCache = new ToolRunner(toolLocation, argumentBuilder.getWorkingDirectory());
-        // The args for the cached instance are just working dir and "@" which tells the CLC to wait
-        toolRunnerToCache.start(getStartAndWaitArguments(argumentBuilder));
-        final ToolRunner cachedToolRunner = cache.put(key, toolRunnerToCache);
+    private static synchronized void ensureWorkerStarted() {
+        if (worker != null) {
+            return;
+        }
+
+        worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "ToolRunnerCache worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        worker.scheduleWithFixedDelay(ToolRunnerCache::sweep, SWEEP_INTERVAL_SECONDS, SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static synchronized void scheduleFill(final RunnerPool pool, final String toolLocation,
+                                                  final ToolRunner.ArgumentBuilder startArguments) {
+        if (worker == null) {
+            // The cache was torn down
+            return;
+        }
+
+        worker.execute(() -> {
+            try {
+                pool.fill(toolLocation, startArguments, getPoolSize());
+            } catch (Throwable t) {
+                logger.warn("scheduleFill: failed to start a cached runner", t);
+            }
+        });
+    }
+
+    /**
+     * Waits until the pools are topped up after the previous calls.
+     */
+    @VisibleForTesting
+    static void waitForBackgroundTasks() throws InterruptedException, ExecutionException {
+        final ScheduledExecutorService current;
+        synchronized (ToolRunnerCache.class) {
+            current = worker;
+        }
+        if (current != null) {
+            // The worker is single threaded, so this runs after all the tasks submitted before
+            current.submit(() -> {
+            }).get();
+        }
+    }
 
-        // If there was already one waiting (some other thread started it up) then dispose of it
-        if (cachedToolRunner != null) {
-            logger.info("updateCachedInstance: disposing of cached tool runner.");
-            cachedToolRunner.dispose();
+    /**
+     * Disposes of the runners that are dead or too old, and of the whole pools that weren't used for a while.
+     */
+    @VisibleForTesting
+    static void sweep() {
+        try {
+            final long now = System.nanoTime();
+            final long idleTimeout = TimeUnit.SECONDS.toNanos(getLongProperty(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT_SECONDS));
+            final long maxAge = TimeUnit.SECONDS.toNanos(getLongProperty(MAX_AGE_PROPERTY, DEFAULT_MAX_AGE_SECONDS));
+            for (Map.Entry<String, RunnerPool> entry : Lists.newArrayList(cache.entrySet())) {
+                final RunnerPool pool = entry.getValue();
+                if (now - pool.lastUsed.get() > idleTimeout) {
+                    logger.info("sweep: disposing of idle pool: key=" + entry.getKey());
+                    if (cache.remove(entry.getKey(), pool)) {
+                        pool.disposeAll();
+                    }
+                } else {
+                    pool.evictStale(now, maxAge);
+                }
+            }
+            logger.debug("sweep: {}", statistics);
+        } catch (Throwable t) {
+            // Don't let exceptions cancel the scheduled task
+            logger.warn("sweep: failed to clean up the tool runner cache", t);
         }
     }
 
+    private static int getPoolSize() {
+        return (int) getLongProperty(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE);
+    }
+
+    private static long getLongProperty(final String name, final long defaultValue) {
+        final Long value = Long.getLong(name);
+        return value == null || value < 0 ? defaultValue : value;
+    }
+
     private static String getKey(final String toolLocation, final ToolRunner.ArgumentBuilder argumentBuilder) {
         ArgumentHelper.checkNotEmptyString(toolLocation, "toolLocation");
         if (argumentBuilder != null && argumentBuilder.getWorkingDirectory() != null) {
@@ -130,4 +259,150 @@ public class ToolRunnerCache {
             return toolLocation.toLowerCase() + "|";
         }
     }
+
+    /**
+     * Warm runners for a single cache key. The {@link #reserved} counter covers both the runners waiting in the deque
+     * and the ones being started right now, so concurrent callers never start more than the pool size in total.
+     */
+    private static class RunnerPool {
+        private final String key;
+        private final ConcurrentLinkedDeque<PooledRunner> runners = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger reserved = new AtomicInteger();
+        private final AtomicLong lastUsed = new AtomicLong(System.nanoTime());
+
+        RunnerPool(final String key) {
+            this.key = key;
+        }
+
+        ToolRunner checkOut() {
+            lastUsed.set(System.nanoTime());
+            PooledRunner pooled;
+            while ((pooled = runners.pollFirst()) != null) {
+                reserved.decrementAndGet();
+                if (pooled.runner.isRunning()) {
+                    return pooled.runner;
+                }
+
+                // The process died while waiting in the pool (e.g. it was killed externally)
+                logger.info("checkOut: disposing of dead runner: key=" + key);
+                statistics.recordEviction();
+                pooled.runner.dispose();
+            }
+
+            return null;
+        }
+
+        void fill(final String toolLocation, final ToolRunner.ArgumentBuilder startArguments, final int poolSize) {
+            while (true) {
+                final int current = reserved.get();
+                if (current >= poolSize) {
+                    return;
+                }
+                if (!reserved.compareAndSet(current, current + 1)) {
+                    continue;
+                }
+
+                logger.info("fill: caching a new runner: key=" + key);
+                // The args for the cached instance are just working dir and "@" which tells the CLC to wait
+                final ToolRunner runner = startToolRunner(toolLocation, startArguments, null);
+                runners.offerLast(new PooledRunner(runner));
+
+                // The pool may have been removed from the cache while we were starting the runner
+                if (cache.get(key) != this) {
+                    disposeAll();
+                    return;
+                }
+            }
+        }
+
+        void evictStale(final long now, final long maxAge) {
+            for (PooledRunner pooled : Lists.newArrayList(runners)) {
+                if (!pooled.runner.isRunning() || now - pooled.createdAt > maxAge) {
+                    if (runners.remove(pooled)) {
+                        reserved.decrementAndGet();
+                        logger.info("evictStale: disposing of cached runner: key=" + key);
+                        statistics.recordEviction();
+                        pooled.runner.dispose();
+                    }
+                }
+            }
+        }
+
+        void disposeAll() {
+            PooledRunner pooled;
+            while ((pooled = runners.pollFirst()) != null) {
+                reserved.decrementAndGet();
+                pooled.runner.dispose();
+            }
+        }
+    }
+
+    private static class PooledRunner {
+        private final ToolRunner runner;
+        private final long createdAt = System.nanoTime();
+
+        PooledRunner(final ToolRunner runner) {
+            this.runner = runner;
+        }
+    }
+
+    /**
+     * Counters describing the runner pool efficiency.
+     */
+    public static class Statistics {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+        private final AtomicLong spawns = new AtomicLong();
+        private final AtomicLong spawnNanos = new AtomicLong();
+        private final AtomicLong checkoutWaitNanos = new AtomicLong();
+
+        private void recordCheckout(final boolean hit, final long waitNanos) {
+            (hit ? hits : misses).incrementAndGet();
+            checkoutWaitNanos.addAndGet(waitNanos);
+        }
+
+        private void recordSpawn(final long nanos) {
+            spawns.incrementAndGet();
+            spawnNanos.addAndGet(nanos);
+        }
+
+        private void recordEviction() {
+            evictions.incrementAndGet();
+        }
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        public long getMisses() {
+            return misses.get();
+        }
+
+        public long getEvictions() {
+            return evictions.get();
+        }
+
+        public double getHitRate() {
+            final long total = hits.get() + misses.get();
+            return total == 0 ? 0.0 : (double) hits.get() / total;
+        }
+
+        public double getAverageSpawnMillis() {
+            final long count = spawns.get();
+            return count == 0 ? 0.0 : spawnNanos.get() / 1_000_000.0 / count;
+        }
+
+        public double getAverageCheckoutWaitMillis() {
+            final long count = hits.get() + misses.get();
+            return count == 0 ? 0.0 : checkoutWaitNanos.get() / 1_000_000.0 / count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d, misses=%d, hitRate=%.2f, evictions=%d, spawns=%d, avgSpawnMs=%.2f, avgCheckoutWaitMs=%.3f",
+                    getHits(), getMisses(), getHitRate(), getEvictions(), spawns.get(), getAverageSpawnMillis(),
+                    getAverageCheckoutWaitMillis());
+        }
+    }
 }
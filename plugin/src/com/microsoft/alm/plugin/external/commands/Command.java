@@ -37,6 +37,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -92,6 +94,31 @@ public abstract class Command<T> {
         void completed(final T result, final Throwable error);
     }
 
+    /**
+     * Parses the standard output of a command while the command is still running, so the output doesn't have to be
+     * buffered until the process exits.
+     *
+     * @param <T>
+     */
+    protected interface IncrementalParser<T> {
+        /**
+         * This method is called for every line of the standard output, in order, from a single thread.
+         *
+         * @param line
+         */
+        void processLine(final String line);
+
+        /**
+         * This method is called after the process has exited and all of the output was passed to
+         * {@link #processLine(String)}. It should throw if either the output or the standard error indicate a
+         * failure.
+         *
+         * @param stderr
+         * @return the result of the command
+         */
+        T complete(final String stderr);
+    }
+
     public Command(final String name, final ServerContext context) {
         this(name, context, true, true);
     }
@@ -137,9 +164,23 @@ public abstract class Command<T> {
      * @param listener
      */
     public void run(final Listener<T> listener) {
+        run(listener, createIncrementalParser());
+    }
+
+    /**
+     * Starts the command the same way as {@link #run(Listener)} does, but processes the output with the passed
+     * incremental parser (if it isn't null) instead of {@link #parseOutput(String, String)}.
+     *
+     * @param listener
+     * @param incrementalParser
+     */
+    protected void run(final Listener<T> listener, final IncrementalParser<T> incrementalParser) {
         final StringBuilder stdout = new StringBuilder();
         final StringBuilder stderr = new StringBuilder();
         ArgumentHelper.checkNotNull(listener, "listener");
+        // The incremental parser doesn't buffer the output, so the memory error is checked as soon as it arrives
+        final AtomicReference<String> previousLine = new AtomicReference<String>(StringUtils.EMPTY);
+        final AtomicBoolean memoryErrorDetected = new AtomicBoolean();
         final ToolRunner runner = ToolRunnerCache.getRunningToolRunner(TfTool.getValidLocation(),
                 getArgumentBuilder(), new ToolRunner.Listener() {
                     @Override
@@ -148,7 +189,14 @@ public abstract class Command<T> {
                             logger.info("CMD: " + line);
                         }
 
-                        stdout.append(line + "\n");
+                        if (incrementalParser != null) {
+                            if (isMemoryException(previousLine.getAndSet(line) + "\n" + line)) {
+                                memoryErrorDetected.set(true);
+                            }
+                            incrementalParser.processLine(line);
+                        } else {
+                            stdout.append(line + "\n");
+                        }
                         listener.progress(line, OUTPUT_TYPE_INFO, 50);
                     }
 
@@ -162,6 +210,15 @@ public abstract class Command<T> {
                     @Override
                     public void processException(final Throwable throwable) {
                         logger.info("ERROR: " + throwable.toString());
+                        if (incrementalParser != null) {
+                            // Make sure the parser doesn't wait for more output
+                            try {
+                                incrementalParser.complete(stderr.toString());
+                            } catch (Throwable parseError) {
+                                logger.info("Incremental parsing stopped: " + parseError.toString());
+                            }
+                        }
+                        notifyCommandFinished();
                         listener.progress("", OUTPUT_TYPE_INFO, 100);
                         listener.completed(null, throwable);
                     }
@@ -175,17 +232,21 @@ public abstract class Command<T> {
                         try {
                             //TODO there are some commands that write errors to stdout and simply return a non-zero exit code (i.e. when a workspace is not found by name)
                             //TODO we may want to pass in the return code to the parse method or something like that to allow the command to inspect this info as well.
-                            result = parseOutput(stdout.toString(), stderr.toString());
+                            result = incrementalParser != null
+                                    ? incrementalParser.complete(stderr.toString())
+                                    : parseOutput(stdout.toString(), stderr.toString());
                             if (shouldThrowBadExitCode()) {
                                 TfTool.throwBadExitCode(interpretReturnCode(returnCode));
                             }
                         } catch (Throwable throwable) {
                             logger.warn("CMD: parsing output failed", throwable);
-                            if (isMemoryException(stdout.toString())) {
+                            if (memoryErrorDetected.get() || isMemoryException(stdout.toString())) {
                                 error = new ToolMemoryException(TfTool.getLocation());
                             } else {
                                 error = throwable;
                             }
+                        } finally {
+                            notifyCommandFinished();
                         }
                         listener.progress("", OUTPUT_TYPE_INFO, 100);
                         listener.completed(result, error);
@@ -193,6 +254,23 @@ public abstract class Command<T> {
                 }, shouldPrepareCachedRunner(), skipVersionCheck());
     }
 
+    private void notifyCommandFinished() {
+        try {
+            onCommandFinished();
+        } catch (Throwable t) {
+            logger.warn("CMD: onCommandFinished failed", t);
+        }
+    }
+
+    /**
+     * Called when the command process has finished, whether it succeeded or not, before the listener is notified.
+     * Commands that change the server state should override it to drop the cached copies of that state: even a failed
+     * command may have made part of its changes.
+     */
+    protected void onCommandFinished() {
+        // Nothing to do by default
+    }
+
     /**
      * Checks for the tf memory error
      *
@@ -216,6 +294,17 @@ public abstract class Command<T> {
      * @return
      */
     public T runSynchronously() {
+        return runSynchronously(createIncrementalParser());
+    }
+
+    /**
+     * Runs the command synchronously the same way as {@link #runSynchronously()} does, but processes the output with
+     * the passed incremental parser (if it isn't null).
+     *
+     * @param incrementalParser
+     * @return
+     */
+    protected T runSynchronously(final IncrementalParser<T> incrementalParser) {
         final long startTime = System.nanoTime();
         final SettableFuture<T> syncResult = SettableFuture.create();
         final SettableFuture<Throwable> syncError = SettableFuture.create();
@@ -231,12 +320,12 @@ public abstract class Command<T> {
                 syncResult.set(result);
                 syncError.set(error);
             }
-        });
+        }, incrementalParser);
 
         try {
             Throwable error = syncError.get();
             if (error != null) {
-                if (error.getMessage().contains("tf eula")) {
+                if (error.getMessage() != null && error.getMessage().contains("tf eula")) {
                     throw new ToolEulaNotAcceptedException(error);
                 }
                 if (error instanceof RuntimeException) {
@@ -262,6 +351,18 @@ public abstract class Command<T> {
 
     public abstract T parseOutput(final String stdout, final String stderr);
 
+    /**
+     * Returns a parser that processes the standard output line by line while the command is running. If it returns
+     * null (the default), the output is buffered and passed to {@link #parseOutput(String, String)} after the
+     * process exits.
+     * <p/>
+     * Commands producing big outputs (like status or history) should override it to avoid keeping the whole output
+     * in memory.
+     */
+    protected IncrementalParser<T> createIncrementalParser() {
+        return null;
+    }
+
     /**
      * Default method for parsing return code that can be overridden if need be
      *
@@ -275,7 +376,8 @@ public abstract class Command<T> {
     /**
      * Determines whether a cached tool runner instance should be created after execution of this command. This runner
      * will be used when a new command is issued against the same working directory/tool location. See
-     * {@link ToolRunnerCache#getKey} for details on cache key calculation.
+     * {@link ToolRunnerCache#getKey} for details on cache key calculation, and {@link ToolRunnerCache#POOL_SIZE_PROPERTY}
+     * for the number of runners kept per key.
      * <p/>
      * Usually, it is a good idea to prepare a runner in advance, because there's always a possibility that new
      * commands will be issued against the same working directory as defined by the current command.
@@ -341,13 +443,23 @@ public abstract class Command<T> {
     protected String[] getLines(final String buffer, final boolean skipWarnings) {
         final List<String> lines = new ArrayList<String>(Arrays.asList(buffer.replace("\r\n", "\n").split("\n")));
         if (skipWarnings) {
-            while (lines.size() > 0 && StringUtils.startsWithIgnoreCase(lines.get(0), WARNING_PREFIX)) {
+            while (lines.size() > 0 && isWarningLine(lines.get(0))) {
                 lines.remove(0);
             }
         }
         return lines.toArray(new String[lines.size()]);
     }
 
+    /**
+     * Checks whether the line is a warning printed by the tool before the actual command output.
+     *
+     * @param line
+     * @return
+     */
+    protected boolean isWarningLine(final String line) {
+        return StringUtils.startsWithIgnoreCase(line, WARNING_PREFIX);
+    }
+
     /**
      * This method is used by Checkin and CreateBranch to parse out the changeset number.
      *
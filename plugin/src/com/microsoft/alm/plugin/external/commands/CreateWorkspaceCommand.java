@@ -8,6 +8,7 @@ import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.ToolRunner;
 import com.microsoft.alm.plugin.external.exceptions.WorkspaceAlreadyExistsException;
 import com.microsoft.alm.plugin.external.models.Workspace;
+import com.microsoft.alm.plugin.external.utils.WorkspaceCache;
 import org.apache.commons.lang.StringUtils;
 
 import java.util.regex.Matcher;
@@ -87,6 +88,12 @@ public class CreateWorkspaceCommand extends Command<String> {
     }
 
 
+    @Override
+    protected void onCommandFinished() {
+        // The new workspace isn't in the cached workspace lists
+        WorkspaceCache.getInstance().invalidateAll();
+    }
+
     /**
      * There is no useful output from this command unless there is an error. This method parses the error and throws if
      * one exists.
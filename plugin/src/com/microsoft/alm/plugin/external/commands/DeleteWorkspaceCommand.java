@@ -6,6 +6,7 @@ package com.microsoft.alm.plugin.external.commands;
 import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.ToolRunner;
+import com.microsoft.alm.plugin.external.utils.WorkspaceCache;
 import org.apache.commons.lang.StringUtils;
 
 /**
@@ -38,6 +39,12 @@ public class DeleteWorkspaceCommand extends Command<String> {
     }
 
 
+    @Override
+    protected void onCommandFinished() {
+        // The deleted workspace may still be cached
+        WorkspaceCache.getInstance().invalidateAll();
+    }
+
     /**
      * There is no useful output from this command unless there is an error. This method parses the error and throws if
      * one exists.
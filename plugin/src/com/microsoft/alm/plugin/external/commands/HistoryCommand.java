@@ -9,20 +9,24 @@ import com.microsoft.alm.plugin.external.ToolRunner;
 import com.microsoft.alm.plugin.external.models.ChangeSet;
 import com.microsoft.alm.plugin.external.models.CheckedInChange;
 import org.apache.commons.lang.StringUtils;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Use this command to get the history of any workspace item.
  * <p>
  * history [/version:<value>] [/stopafter:<value>] [/recursive] [/user:<value>] [/format:brief|detailed|xml] [/slotmode] [/itemmode] <itemSpec>
  */
-public class HistoryCommand extends Command<List<ChangeSet>> {
+public class HistoryCommand extends StreamingCommand<List<ChangeSet>, ChangeSet> {
+    private static final String CHANGESET_TAG = "changeset";
+    private static final String COMMENT_TAG = "comment";
+    private static final String ITEM_TAG = "item";
+
     private final String itemPath;
     private final String version;
     private final String user;
@@ -90,48 +94,92 @@ public class HistoryCommand extends Command<List<ChangeSet>> {
     public List<ChangeSet> parseOutput(final String stdout, final String stderr) {
         super.throwIfError(stderr);
         final List<ChangeSet> changeSets = new ArrayList<ChangeSet>(100);
-        final NodeList nodes = super.evaluateXPath(stdout, "/history/changeset");
-
-        // Convert all the xpath nodes to changeset models
-        if (nodes != null) {
-            for (int i = 0; i < nodes.getLength(); i++) {
-                final Element changeset = (Element) nodes.item(i);
-
-                // Read comment element
-                final NodeList commentNodes = changeset.getElementsByTagName("comment");
-                final String comment;
-                if (commentNodes.getLength() == 1) {
-                    comment = commentNodes.item(0).getTextContent();
-                } else {
-                    comment = "";
+        new ChangeSetParser(changeSets::add).parse(stdout);
+        return changeSets;
+    }
+
+    @Override
+    protected IncrementalParser<List<ChangeSet>> createIncrementalParser(final Consumer<ChangeSet> onItem) {
+        // Streamed items are not collected, so they don't have to be kept in memory
+        final List<ChangeSet> changeSets = new ArrayList<ChangeSet>(onItem == null ? 100 : 0);
+        final ChangeSetParser parser = new ChangeSetParser(onItem != null ? onItem : changeSets::add);
+        return new IncrementalParser<List<ChangeSet>>() {
+            @Override
+            public void processLine(final String line) {
+                parser.processLine(line);
+            }
+
+            @Override
+            public List<ChangeSet> complete(final String stderr) {
+                try {
+                    parser.complete();
+                } catch (final RuntimeException e) {
+                    // Errors reported by the tool take precedence over the parsing errors
+                    throwIfError(stderr);
+                    throw e;
                 }
+                throwIfError(stderr);
+                return changeSets;
+            }
+        };
+    }
+
+    /**
+     * Reads the /history/changeset elements along with their comments and items.
+     */
+    private static class ChangeSetParser extends XmlOutputParser<ChangeSet> {
+        ChangeSetParser(final Consumer<ChangeSet> consumer) {
+            super(consumer);
+        }
 
-                // Gather pending changes
-                final List<CheckedInChange> changes = new ArrayList<CheckedInChange>(100);
-                final NodeList childNodes = changeset.getElementsByTagName("item");
-                final NamedNodeMap changesetAttributes = changeset.getAttributes();
-                final String id = changesetAttributes.getNamedItem("id").getNodeValue();
-                final String date = changesetAttributes.getNamedItem("date").getNodeValue();
-                for (int j = 0; j < childNodes.getLength(); j++) {
-                    final Node child = childNodes.item(j);
-                    // Assume this is a change
-                    final NamedNodeMap attributes = child.getAttributes();
-                    final CheckedInChange newchange = new CheckedInChange(
-                            attributes.getNamedItem("server-item").getNodeValue(),
-                            attributes.getNamedItem("change-type").getNodeValue(),
-                            id, date);
-                    changes.add(newchange);
+        @Override
+        protected void read(final XMLStreamReader reader) throws XMLStreamException {
+            int depth = 0;
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (depth == 1 && CHANGESET_TAG.equals(reader.getLocalName())) {
+                        // The whole changeset element is consumed here
+                        emit(readChangeSet(reader));
+                    } else {
+                        depth++;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
                 }
+            }
+        }
 
-                changeSets.add(new ChangeSet(id,
-                        changesetAttributes.getNamedItem("owner").getNodeValue(),
-                        changesetAttributes.getNamedItem("committer").getNodeValue(),
-                        date,
-                        comment,
-                        changes));
+        private ChangeSet readChangeSet(final XMLStreamReader reader) throws XMLStreamException {
+            final String id = getAttributeValue(reader, "id");
+            final String owner = getAttributeValue(reader, "owner");
+            final String committer = getAttributeValue(reader, "committer");
+            final String date = getAttributeValue(reader, "date");
+            String comment = StringUtils.EMPTY;
+            final List<CheckedInChange> changes = new ArrayList<CheckedInChange>(100);
+
+            int depth = 1;
+            while (depth > 0 && reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (COMMENT_TAG.equals(reader.getLocalName())) {
+                        // getElementText moves the reader to the matching end element
+                        comment = reader.getElementText();
+                    } else {
+                        if (ITEM_TAG.equals(reader.getLocalName())) {
+                            changes.add(new CheckedInChange(
+                                    getAttributeValue(reader, "server-item"),
+                                    getAttributeValue(reader, "change-type"),
+                                    id, date));
+                        }
+                        depth++;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
             }
+
+            return new ChangeSet(id, owner, committer, date, comment, changes);
         }
-        return changeSets;
     }
 }
-
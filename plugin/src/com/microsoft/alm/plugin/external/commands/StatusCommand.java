@@ -8,12 +8,13 @@ import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.ToolRunner;
 import com.microsoft.alm.plugin.external.models.PendingChange;
 import org.apache.commons.lang.StringUtils;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * This command returns the status of the workspace as a list of pending changes.
@@ -21,8 +22,9 @@ import java.util.List;
  * <p/>
  * status [/workspace:<value>] [/shelveset:<value>] [/format:brief|detailed|xml] [/recursive] [/user:<value>] [/nodetect] [<itemSpec>...]
  */
-public class StatusCommand extends Command<List<PendingChange>> {
+public class StatusCommand extends StreamingCommand<List<PendingChange>, PendingChange> {
     private static final String CANDIDATE_TAG = "candidate-pending-changes";
+    private static final String PENDING_CHANGE_TAG = "pending-change";
 
     private final List<String> localPaths;
 
@@ -65,34 +67,79 @@ public class StatusCommand extends Command<List<PendingChange>> {
     public List<PendingChange> parseOutput(final String stdout, final String stderr) {
         throwIfError(stderr);
         final List<PendingChange> changes = new ArrayList<PendingChange>(100);
-        final NodeList nodes = super.evaluateXPath(stdout, "/status/*/pending-change");
-
-        // Convert all the xpath nodes to pending change models
-        if (nodes != null) {
-            for (int i = 0; i < nodes.getLength(); i++) {
-                final NamedNodeMap attributes = nodes.item(i).getAttributes();
-                final boolean isCandidate = StringUtils.equalsIgnoreCase(nodes.item(i).getParentNode().getNodeName(), CANDIDATE_TAG);
-                final Node sourceItem = attributes.getNamedItem("source-item"); // not always present
-                changes.add(new PendingChange(
-                        attributes.getNamedItem("server-item").getNodeValue(),
-                        attributes.getNamedItem("local-item").getNodeValue(),
-                        attributes.getNamedItem("version").getNodeValue(),
-                        attributes.getNamedItem("owner").getNodeValue(),
-                        attributes.getNamedItem("date").getNodeValue(),
-                        attributes.getNamedItem("lock").getNodeValue(),
-                        attributes.getNamedItem("change-type").getNodeValue(),
-                        attributes.getNamedItem("workspace").getNodeValue(),
-                        attributes.getNamedItem("computer").getNodeValue(),
-                        isCandidate,
-                        sourceItem != null ? sourceItem.getNodeValue() : StringUtils.EMPTY));
-            }
-        }
+        new PendingChangeParser(changes::add).parse(stdout);
         return changes;
     }
 
+    @Override
+    protected IncrementalParser<List<PendingChange>> createIncrementalParser(final Consumer<PendingChange> onItem) {
+        // Streamed items are not collected, so they don't have to be kept in memory
+        final List<PendingChange> changes = new ArrayList<PendingChange>(onItem == null ? 100 : 0);
+        final PendingChangeParser parser = new PendingChangeParser(onItem != null ? onItem : changes::add);
+        return new IncrementalParser<List<PendingChange>>() {
+            @Override
+            public void processLine(final String line) {
+                parser.processLine(line);
+            }
+
+            @Override
+            public List<PendingChange> complete(final String stderr) {
+                try {
+                    parser.complete();
+                } catch (final RuntimeException e) {
+                    // Errors reported by the tool take precedence over the parsing errors
+                    throwIfError(stderr);
+                    throw e;
+                }
+                throwIfError(stderr);
+                return changes;
+            }
+        };
+    }
+
     @Override
     protected void throwIfError(String stderr) {
         checkStderrForInvalidDollarPath(stderr);
         super.throwIfError(stderr);
     }
+
+    /**
+     * Reads the pending-change elements from the /status/pending-changes and /status/candidate-pending-changes
+     * sections.
+     */
+    private static class PendingChangeParser extends XmlOutputParser<PendingChange> {
+        PendingChangeParser(final Consumer<PendingChange> consumer) {
+            super(consumer);
+        }
+
+        @Override
+        protected void read(final XMLStreamReader reader) throws XMLStreamException {
+            int depth = 0;
+            boolean isCandidate = false;
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (depth == 2) {
+                        isCandidate = StringUtils.equalsIgnoreCase(reader.getLocalName(), CANDIDATE_TAG);
+                    } else if (depth == 3 && PENDING_CHANGE_TAG.equals(reader.getLocalName())) {
+                        emit(new PendingChange(
+                                getAttributeValue(reader, "server-item"),
+                                getAttributeValue(reader, "local-item"),
+                                getAttributeValue(reader, "version"),
+                                getAttributeValue(reader, "owner"),
+                                getAttributeValue(reader, "date"),
+                                getAttributeValue(reader, "lock"),
+                                getAttributeValue(reader, "change-type"),
+                                getAttributeValue(reader, "workspace"),
+                                getAttributeValue(reader, "computer"),
+                                isCandidate,
+                                getAttributeValue(reader, "source-item"))); // source-item is not always present
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+        }
+    }
 }
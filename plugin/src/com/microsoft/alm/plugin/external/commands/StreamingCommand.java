@@ -0,0 +1,63 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.commands;
+
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.context.ServerContext;
+
+import java.util.function.Consumer;
+
+/**
+ * Base class for the commands that can pass each parsed item of their output to a consumer as soon as the
+ * corresponding output line or XML element arrives, while the tool is still running.
+ * <p/>
+ * The items are passed to the consumer from the output processing thread, one at a time. Commands returning a list of
+ * items as their result don't collect the items when they are streamed, so the streaming calls return an empty list.
+ *
+ * @param <T> type of the command result.
+ * @param <E> type of the items streamed.
+ */
+public abstract class StreamingCommand<T, E> extends Command<T> {
+
+    public StreamingCommand(final String name, final ServerContext context) {
+        super(name, context);
+    }
+
+    /**
+     * Creates a parser that passes each parsed item to the consumer.
+     *
+     * @param onItem consumer for the items, or null if the items should only be a part of the command result.
+     * @return
+     */
+    protected abstract IncrementalParser<T> createIncrementalParser(final Consumer<E> onItem);
+
+    @Override
+    protected IncrementalParser<T> createIncrementalParser() {
+        return createIncrementalParser(null);
+    }
+
+    /**
+     * Starts the command and returns immediately. Each parsed item is passed to onItem as soon as it arrives, and the
+     * listener is notified when the command process finishes.
+     *
+     * @param onItem
+     * @param listener
+     */
+    public void runStreaming(final Consumer<E> onItem, final Listener<T> listener) {
+        ArgumentHelper.checkNotNull(onItem, "onItem");
+        run(listener, createIncrementalParser(onItem));
+    }
+
+    /**
+     * Runs the command and waits for it to finish, passing each parsed item to onItem as soon as it arrives.
+     * You should probably not call this method on the main thread.
+     *
+     * @param onItem
+     * @return
+     */
+    public T runStreamingSynchronously(final Consumer<E> onItem) {
+        ArgumentHelper.checkNotNull(onItem, "onItem");
+        return runSynchronously(createIncrementalParser(onItem));
+    }
+}
@@ -15,6 +15,7 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * This command gets either the latest version or a specified version of one or more files or folders
@@ -23,7 +24,7 @@ import java.util.List;
  * [/recursive] [/preview] [/noautoresolve] [/noprompt]
  * [/login:username,[password]]
  */
-public class SyncCommand extends Command<SyncResults> {
+public class SyncCommand extends StreamingCommand<SyncResults, String> {
     private static final Logger logger = LoggerFactory.getLogger(SyncCommand.class);
 
     private static final String UP_TO_DATE_MSG = "All files up to date.";
@@ -100,44 +101,19 @@ public class SyncCommand extends Command<SyncResults> {
      */
     @Override
     public SyncResults parseOutput(final String stdout, final String stderr) {
-        checkStderrForInvalidDollarPath(stderr);
-
-        final List<String> updatedFiles = new ArrayList<String>();
-        final List<String> newFiles = new ArrayList<String>();
-        final List<String> deletedFiles = new ArrayList<String>();
-        final List<SyncException> exceptions = new ArrayList<SyncException>();
-
-        if (StringUtils.contains(stdout, UP_TO_DATE_MSG)) {
-            return new SyncResults();
-        }
-
-        // make note that conflicts exist but to get conflicts use resolve command
-        final boolean conflictsExist = StringUtils.contains(stderr, CONFLICT_MESSAGE);
-
-        // parse the exception to get individual exceptions instead of 1 large one
-        exceptions.addAll(parseException(stderr));
-
-        // parse output for file changes
-        final String[] lines = getLines(stdout);
-        String path = StringUtils.EMPTY;
-        for (final String line : lines) {
-            if (StringUtils.isNotEmpty(line) || StringUtils.startsWith(line, SUMMARY_PREFIX)) {
-                if (isFilePath(line)) {
-                    path = getFilePath(line, StringUtils.EMPTY, StringUtils.EMPTY);
-                } else if (StringUtils.startsWith(line, NEW_FILE_PREFIX)) {
-                    newFiles.add((new File(path, line.replaceFirst(NEW_FILE_PREFIX, StringUtils.EMPTY)).getPath()));
-                } else if (StringUtils.startsWith(line, UPDATED_FILE_PREFIX)) {
-                    updatedFiles.add((new File(path, line.replaceFirst(UPDATED_FILE_PREFIX, StringUtils.EMPTY)).getPath()));
-                } else if (StringUtils.startsWith(line, DELETED_FILE_PREFIX)) {
-                    deletedFiles.add((new File(path, line.replaceFirst(DELETED_FILE_PREFIX, StringUtils.EMPTY)).getPath()));
-                } else {
-                    // TODO: check for other cases to cover here but no need to hinder user if case not covered
-                    logger.warn("Unknown response from 'tf get' command: " + line);
-                }
-            }
+        final SyncOutputParser parser = new SyncOutputParser(null);
+        for (final String line : getLines(stdout)) {
+            parser.processLine(line);
         }
+        return parser.complete(stderr);
+    }
 
-        return new SyncResults(conflictsExist, updatedFiles, newFiles, deletedFiles, exceptions);
+    /**
+     * Creates a parser that passes the local path of each file got, replaced or deleted to onItem.
+     */
+    @Override
+    protected IncrementalParser<SyncResults> createIncrementalParser(final Consumer<String> onItem) {
+        return new SyncOutputParser(onItem);
     }
 
     /**
@@ -193,4 +169,69 @@ public class SyncCommand extends Command<SyncResults> {
     protected boolean shouldThrowBadExitCode() {
         return shouldThrowBadExitCode;
     }
-}
\ No newline at end of file
+
+    private class SyncOutputParser implements IncrementalParser<SyncResults> {
+        private final Consumer<String> onItem;
+        private final List<String> updatedFiles = new ArrayList<String>();
+        private final List<String> newFiles = new ArrayList<String>();
+        private final List<String> deletedFiles = new ArrayList<String>();
+        private String path = StringUtils.EMPTY;
+        private boolean upToDate;
+        private boolean outputStarted;
+
+        SyncOutputParser(final Consumer<String> onItem) {
+            this.onItem = onItem;
+        }
+
+        @Override
+        public void processLine(final String line) {
+            // skip the warnings at the beginning of the output the same way getLines does
+            if (!outputStarted && isWarningLine(line)) {
+                return;
+            }
+            outputStarted = true;
+
+            if (StringUtils.contains(line, UP_TO_DATE_MSG)) {
+                upToDate = true;
+            } else if (StringUtils.isNotEmpty(line) || StringUtils.startsWith(line, SUMMARY_PREFIX)) {
+                if (isFilePath(line)) {
+                    path = getFilePath(line, StringUtils.EMPTY, StringUtils.EMPTY);
+                } else if (StringUtils.startsWith(line, NEW_FILE_PREFIX)) {
+                    addFile(newFiles, line.replaceFirst(NEW_FILE_PREFIX, StringUtils.EMPTY));
+                } else if (StringUtils.startsWith(line, UPDATED_FILE_PREFIX)) {
+                    addFile(updatedFiles, line.replaceFirst(UPDATED_FILE_PREFIX, StringUtils.EMPTY));
+                } else if (StringUtils.startsWith(line, DELETED_FILE_PREFIX)) {
+                    addFile(deletedFiles, line.replaceFirst(DELETED_FILE_PREFIX, StringUtils.EMPTY));
+                } else {
+                    // TODO: check for other cases to cover here but no need to hinder user if case not covered
+                    logger.warn("Unknown response from 'tf get' command: " + line);
+                }
+            }
+        }
+
+        private void addFile(final List<String> files, final String fileName) {
+            final String filePath = new File(path, fileName).getPath();
+            files.add(filePath);
+            if (onItem != null) {
+                onItem.accept(filePath);
+            }
+        }
+
+        @Override
+        public SyncResults complete(final String stderr) {
+            checkStderrForInvalidDollarPath(stderr);
+
+            if (upToDate) {
+                return new SyncResults();
+            }
+
+            // make note that conflicts exist but to get conflicts use resolve command
+            final boolean conflictsExist = StringUtils.contains(stderr, CONFLICT_MESSAGE);
+
+            // parse the exception to get individual exceptions instead of 1 large one
+            final List<SyncException> exceptions = parseException(stderr);
+
+            return new SyncResults(conflictsExist, updatedFiles, newFiles, deletedFiles, exceptions);
+        }
+    }
+}
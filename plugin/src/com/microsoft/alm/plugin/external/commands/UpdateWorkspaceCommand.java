@@ -7,6 +7,7 @@ import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.ToolRunner;
 import com.microsoft.alm.plugin.external.models.Workspace;
+import com.microsoft.alm.plugin.external.utils.WorkspaceCache;
 import org.apache.commons.lang.StringUtils;
 
 /**
@@ -63,6 +64,12 @@ public class UpdateWorkspaceCommand extends Command<String> {
 
 
 
+    @Override
+    protected void onCommandFinished() {
+        // The cached workspace name may be outdated now
+        WorkspaceCache.getInstance().invalidateAll();
+    }
+
     /**
      * There is no useful output from this command unless there is an error. This method parses the error and throws if
      * one exists.
@@ -7,6 +7,7 @@ import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.ToolRunner;
 import com.microsoft.alm.plugin.external.models.Workspace;
+import com.microsoft.alm.plugin.external.utils.WorkspaceCache;
 import com.microsoft.alm.plugin.external.utils.WorkspaceHelper;
 import org.apache.commons.lang.StringUtils;
 
@@ -76,6 +77,12 @@ public class UpdateWorkspaceMappingCommand extends Command<String> {
         return builder;
     }
 
+    @Override
+    protected void onCommandFinished() {
+        // The mappings may have been changed even if the command reports an error
+        WorkspaceCache.getInstance().invalidateAll();
+    }
+
     /**
      * There is no output from this command unless there is an error. This method parses the error and throws if
      * one exists.
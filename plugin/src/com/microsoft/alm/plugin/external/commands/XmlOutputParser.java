@@ -0,0 +1,226 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.commands;
+
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.external.exceptions.ToolParseFailureException;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Parses the XML output of a command with a StAX pull parser and passes the parsed items to a consumer one at a time,
+ * so the whole document is never built in memory.
+ * <p/>
+ * The output may either be parsed at once with {@link #parse(String)}, or fed line by line with
+ * {@link #processLine(String)} while the command is still running. In the latter case the parsing happens on a
+ * separate thread, and only a bounded number of lines is queued for it. Any lines before the XML declaration (like
+ * WARNing lines) are skipped.
+ *
+ * @param <E> type of the items parsed.
+ */
+public abstract class XmlOutputParser<E> {
+    private static final Logger logger = LoggerFactory.getLogger(XmlOutputParser.class);
+
+    private static final String XML_PREFIX = "<?xml ";
+    private static final int MAX_QUEUED_LINES = 1024;
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    private static final Object END_OF_OUTPUT = new Object();
+
+    private final Consumer<E> consumer;
+    private final BlockingQueue<Object> lines = new ArrayBlockingQueue<Object>(MAX_QUEUED_LINES);
+    private Thread parserThread;
+    private boolean hasNonXmlOutput;
+    private volatile boolean parserStopped;
+    private volatile Throwable failure;
+
+    protected XmlOutputParser(final Consumer<E> consumer) {
+        ArgumentHelper.checkNotNull(consumer, "consumer");
+        this.consumer = consumer;
+    }
+
+    /**
+     * Reads the items from the XML document and passes each of them to {@link #emit(Object)}.
+     */
+    protected abstract void read(final XMLStreamReader reader) throws XMLStreamException;
+
+    protected void emit(final E item) {
+        consumer.accept(item);
+    }
+
+    /**
+     * Returns the value of the attribute of the current element, or an empty string if there's no such attribute.
+     */
+    protected String getAttributeValue(final XMLStreamReader reader, final String attributeName) {
+        final String value = reader.getAttributeValue(null, attributeName);
+        return value != null ? value : StringUtils.EMPTY;
+    }
+
+    /**
+     * Parses the whole output of a command synchronously.
+     */
+    public void parse(final String output) {
+        if (StringUtils.isEmpty(output)) {
+            return;
+        }
+
+        final int xmlStart = output.indexOf(XML_PREFIX);
+        parseDocument(new StringReader(xmlStart > 0 ? output.substring(xmlStart) : output));
+    }
+
+    /**
+     * Passes the next line of the command output to the parser. The parser is started as soon as the XML output
+     * begins. Should be called from a single thread.
+     */
+    public void processLine(final String line) {
+        if (parserThread == null) {
+            final int xmlStart = line.indexOf(XML_PREFIX);
+            if (xmlStart < 0 && !StringUtils.startsWith(line.trim(), "<")) {
+                hasNonXmlOutput |= StringUtils.isNotBlank(line);
+                return;
+            }
+
+            startParserThread();
+            enqueue(xmlStart > 0 ? line.substring(xmlStart) : line);
+        } else {
+            enqueue(line);
+        }
+    }
+
+    /**
+     * Signals the end of the output, waits for the parser to consume it and rethrows any parsing error.
+     */
+    public void complete() {
+        if (parserThread == null) {
+            if (hasNonXmlOutput) {
+                // Same as for the synchronous parsing: non-empty output has to be a valid XML document
+                throw new ToolParseFailureException();
+            }
+            return;
+        }
+
+        enqueue(END_OF_OUTPUT);
+        try {
+            parserThread.join();
+        } catch (final InterruptedException e) {
+            parserThread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new ToolParseFailureException(e);
+        }
+
+        final Throwable error = failure;
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error != null) {
+            throw new ToolParseFailureException(error);
+        }
+    }
+
+    private void startParserThread() {
+        parserThread = new Thread(() -> {
+            try {
+                parseDocument(new LineQueueReader());
+            } catch (final Throwable t) {
+                logger.warn("Failed to parse the command output", t);
+                failure = t;
+            } finally {
+                parserStopped = true;
+            }
+        }, "XmlOutputParser");
+        parserThread.setDaemon(true);
+        parserThread.start();
+    }
+
+    /**
+     * Queues a line for the parser thread. If the parser thread has already stopped (because of an error or because
+     * the document has ended), the line is dropped instead of blocking the output reader forever.
+     */
+    private void enqueue(final Object line) {
+        try {
+            while (!parserStopped && !lines.offer(line, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                // Wait for the parser thread to catch up
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void parseDocument(final Reader input) {
+        final XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        XMLStreamReader reader = null;
+        try {
+            reader = factory.createXMLStreamReader(input);
+            read(reader);
+        } catch (final XMLStreamException e) {
+            throw new ToolParseFailureException(e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (final XMLStreamException e) {
+                    logger.warn("Unable to close the XML reader.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A reader that takes the output lines from the queue filled by {@link #processLine(String)}.
+     */
+    private class LineQueueReader extends Reader {
+        private String current = StringUtils.EMPTY;
+        private int position;
+        private boolean ended;
+
+        @Override
+        public int read(final char[] buffer, final int offset, final int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+
+            while (position >= current.length()) {
+                if (ended) {
+                    return -1;
+                }
+
+                try {
+                    final Object line = lines.take();
+                    if (line == END_OF_OUTPUT) {
+                        ended = true;
+                    } else {
+                        current = line + "\n";
+                        position = 0;
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+
+            final int count = Math.min(length, current.length() - position);
+            current.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -5,6 +5,7 @@ package com.microsoft.alm.plugin.external.models;
 
 import com.google.common.base.Objects;
 import com.microsoft.alm.common.utils.UrlHelper;
+import com.microsoft.alm.plugin.versioncontrol.path.WorkspaceMappingIndex;
 import org.apache.commons.lang.StringUtils;
 
 import java.net.URI;
@@ -23,6 +24,7 @@ public class Workspace {
     private final String server;
     private final List<Mapping> mappings;
     private final Location location;
+    private volatile WorkspaceMappingIndex mappingIndex;
 
     public Workspace(final String server, final String name, final String computer, final String owner,
                      final String comment, final List<Mapping> mappings) {
@@ -72,6 +74,18 @@ public class Workspace {
         return Collections.unmodifiableList(mappings);
     }
 
+    /**
+     * @return the index for translating the paths with the mappings of this workspace. It is built on the first call.
+     */
+    public WorkspaceMappingIndex getMappingIndex() {
+        WorkspaceMappingIndex index = mappingIndex;
+        if (index == null) {
+            // Building the index twice on a race is harmless, since the mappings are immutable
+            index = mappingIndex = new WorkspaceMappingIndex(mappings);
+        }
+        return index;
+    }
+
     public Location getLocation() {
         return location;
     }
@@ -0,0 +1,208 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.reactive;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Splits the items into chunks and sends a request for each chunk, keeping up to {@link #WINDOW_PROPERTY} requests in
+ * flight at once, so serialization, transfer and processing of the neighbor chunks overlap. The chunk size adapts to
+ * the measured time per item: it grows while the round trips are faster than {@link #TARGET_LATENCY_MS} and shrinks
+ * when they're slower. The round trip is measured from the moment the sender reports the request as actually sent, so
+ * the time a request spends queued locally doesn't count. The results are passed to the consumer in the order of the
+ * items, one chunk at a time, and outside of the dispatcher lock.
+ */
+public class PipelinedChunkDispatcher<TItem, TResult> {
+    private static final Logger ourLogger = Logger.getInstance(PipelinedChunkDispatcher.class);
+
+    public static final String WINDOW_PROPERTY = "com.microsoft.alm.plugin.external.reactive.PipelinedChunkDispatcher.window";
+
+    private static final int DEFAULT_WINDOW = 4;
+    private static final long TARGET_LATENCY_MS = 250;
+    private static final int MIN_CHUNK_SIZE = 100;
+    private static final int MAX_CHUNK_SIZE = 10000;
+
+    private final Object myLock = new Object();
+    private final Iterator<TItem> myItems;
+    private final ChunkSender<TItem, TResult> mySender;
+    private final Consumer<TResult> myConsumer;
+    private final int myWindow;
+    private final long myTargetLatencyNanos;
+    private final CompletableFuture<Void> myResult = new CompletableFuture<>();
+
+    private final Map<Integer, List<TResult>> myCompletedChunks = new HashMap<>();
+    private int myChunkSize;
+    private int myNextChunkIndex;
+    private int myNextDeliveredIndex;
+    private int myChunksInFlight;
+    private boolean myIsDelivering;
+
+    /**
+     * Sends the request for a chunk of items.
+     */
+    @FunctionalInterface
+    public interface ChunkSender<TItem, TResult> {
+        /**
+         * @param onSent should be called when the request actually leaves (e.g. after it has waited for the protocol
+         *               thread), so the round trip could be measured from that moment. If it isn't called, the round
+         *               trip is measured from the call to this method.
+         */
+        @NotNull
+        CompletionStage<List<TResult>> send(@NotNull List<TItem> chunk, @NotNull Runnable onSent);
+    }
+
+    public PipelinedChunkDispatcher(
+            @NotNull Iterator<TItem> items,
+            int initialChunkSize,
+            @NotNull ChunkSender<TItem, TResult> sender,
+            @NotNull Consumer<TResult> consumer) {
+        this(items, initialChunkSize, Integer.getInteger(WINDOW_PROPERTY, DEFAULT_WINDOW),
+                TimeUnit.MILLISECONDS.toNanos(TARGET_LATENCY_MS), sender, consumer);
+    }
+
+    @VisibleForTesting
+    PipelinedChunkDispatcher(
+            @NotNull Iterator<TItem> items,
+            int initialChunkSize,
+            int window,
+            long targetLatencyNanos,
+            @NotNull ChunkSender<TItem, TResult> sender,
+            @NotNull Consumer<TResult> consumer) {
+        myItems = items;
+        myChunkSize = initialChunkSize;
+        myWindow = Math.max(1, window);
+        myTargetLatencyNanos = targetLatencyNanos;
+        mySender = sender;
+        myConsumer = consumer;
+    }
+
+    /**
+     * Starts sending the requests.
+     *
+     * @return a completion stage that will be finished after all the results are passed to the consumer, or on the
+     * first failure.
+     */
+    @NotNull
+    public CompletionStage<Void> start() {
+        sendChunks();
+        return myResult;
+    }
+
+    private void sendChunks() {
+        while (true) {
+            final List<TItem> chunk;
+            final int index;
+            synchronized (myLock) {
+                if (myResult.isDone() || myChunksInFlight >= myWindow) {
+                    return;
+                }
+
+                if (!myItems.hasNext()) {
+                    if (myChunksInFlight == 0 && !myIsDelivering && myCompletedChunks.isEmpty()) {
+                        myResult.complete(null);
+                    }
+                    return;
+                }
+
+                chunk = new ArrayList<>(myChunkSize);
+                while (chunk.size() < myChunkSize && myItems.hasNext()) {
+                    chunk.add(myItems.next());
+                }
+                index = myNextChunkIndex++;
+                ++myChunksInFlight;
+            }
+
+            final AtomicLong sentTime = new AtomicLong(System.nanoTime());
+            final CompletionStage<List<TResult>> request;
+            try {
+                request = mySender.send(chunk, () -> sentTime.set(System.nanoTime()));
+            } catch (Throwable t) {
+                myResult.completeExceptionally(t);
+                return;
+            }
+
+            request.whenComplete((results, error) -> onChunkCompleted(index, chunk.size(), sentTime.get(), results, error));
+        }
+    }
+
+    private void onChunkCompleted(int index, int itemCount, long sentTime, List<TResult> results, Throwable error) {
+        if (error != null) {
+            myResult.completeExceptionally(error);
+            return;
+        }
+
+        final boolean shouldDeliver;
+        synchronized (myLock) {
+            --myChunksInFlight;
+            adaptChunkSize(itemCount, System.nanoTime() - sentTime);
+            myCompletedChunks.put(index, results);
+
+            // Only one thread delivers at a time, so the consumer is never called concurrently and the order is kept;
+            // the chunks completed in the meantime are picked up by that thread.
+            shouldDeliver = !myIsDelivering;
+            myIsDelivering = true;
+        }
+
+        if (shouldDeliver && !deliverCompletedChunks()) {
+            return;
+        }
+
+        sendChunks();
+    }
+
+    /**
+     * Passes the completed chunks that are next in order to the consumer, outside of the lock.
+     *
+     * @return false if the consumer has failed.
+     */
+    private boolean deliverCompletedChunks() {
+        while (true) {
+            final List<TResult> nextChunk;
+            synchronized (myLock) {
+                nextChunk = myCompletedChunks.remove(myNextDeliveredIndex);
+                if (nextChunk == null) {
+                    myIsDelivering = false;
+                    return true;
+                }
+                ++myNextDeliveredIndex;
+            }
+
+            try {
+                nextChunk.forEach(myConsumer);
+            } catch (Throwable t) {
+                myResult.completeExceptionally(t);
+                return false;
+            }
+        }
+    }
+
+    private void adaptChunkSize(int itemCount, long latencyNanos) {
+        if (itemCount == 0 || latencyNanos <= 0) {
+            return;
+        }
+
+        // Move halfway to the size that would take the target time, to smooth out the noise.
+        double nanosPerItem = (double) latencyNanos / itemCount;
+        long idealSize = (long) (myTargetLatencyNanos / nanosPerItem);
+        int newSize = (int) Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, (myChunkSize + idealSize) / 2));
+        if (newSize != myChunkSize) {
+            ourLogger.debug("Chunk size changed from " + myChunkSize + " to " + newSize + " after a round trip of "
+                    + TimeUnit.NANOSECONDS.toMillis(latencyNanos) + " ms for " + itemCount + " items");
+            myChunkSize = newSize;
+        }
+    }
+}
@@ -3,12 +3,14 @@
 
 package com.microsoft.alm.plugin.external.reactive;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.intellij.execution.ExecutionException;
 import com.intellij.ide.plugins.PluginManager;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.SystemInfo;
 import com.microsoft.alm.plugin.idea.common.settings.SettingsChangedNotifier;
@@ -24,6 +26,18 @@ import java.util.concurrent.CompletionStage;
 
 public class ReactiveTfvcClientHolder implements Disposable {
 
+    private static final Logger ourLogger = Logger.getInstance(ReactiveTfvcClientHolder.class);
+
+    /**
+     * Set to "false" to start the client on the first TFVC call instead of the project opening.
+     */
+    public static final String WARM_UP_PROPERTY =
+            "com.microsoft.alm.plugin.external.reactive.ReactiveTfvcClientHolder.warmUp";
+
+    public static boolean isWarmUpEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty(WARM_UP_PROPERTY));
+    }
+
     public static ReactiveTfvcClientHolder getInstance(Project project) {
         return ServiceManager.getService(project, ReactiveTfvcClientHolder.class);
     }
@@ -52,7 +66,24 @@ public class ReactiveTfvcClientHolder implements Disposable {
 
     public CompletionStage<ReactiveTfvcClientHost> getClient() {
         ensureEulaAccepted();
+        return getOrCreateClient();
+    }
 
+    /**
+     * Starts the client and prepares the collection in advance, so the first TFVC operation doesn't have to wait for
+     * the process start and the collection initialization. Does nothing if the TF SDK EULA hasn't been accepted yet:
+     * the dialog will be shown on the first real operation instead.
+     */
+    public CompletionStage<Void> warmUpAsync(ServerIdentification serverIdentification) {
+        if (!isEulaAccepted()) {
+            ourLogger.info("Reactive client warm-up skipped: the TF SDK EULA isn't accepted yet");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return getOrCreateClient().thenCompose(client -> client.warmUpCollectionAsync(serverIdentification));
+    }
+
+    private CompletionStage<ReactiveTfvcClientHost> getOrCreateClient() {
         synchronized (myClientLock) {
             if (myClient == null || myClient.isCompletedExceptionally() || myClient.isCancelled()) {
                 try {
@@ -73,11 +104,15 @@ public class ReactiveTfvcClientHolder implements Disposable {
         destroyClientIfExists();
     }
 
+    @VisibleForTesting
+    static boolean isEulaAccepted() {
+        String eulaAccepted = PropertyService.getInstance().getProperty(PropertyService.PROP_TF_SDK_EULA_ACCEPTED);
+        return "true".equalsIgnoreCase(eulaAccepted);
+    }
+
     private void ensureEulaAccepted() {
         ApplicationManager.getApplication().invokeAndWait(() -> {
-            PropertyService propertyService = PropertyService.getInstance();
-            String eulaAccepted = propertyService.getProperty(PropertyService.PROP_TF_SDK_EULA_ACCEPTED);
-            if (!"true".equalsIgnoreCase(eulaAccepted)) {
+            if (!isEulaAccepted()) {
                 if (!EULADialog.forTfsSdk(myProject).showAndGet())
                     throw new RuntimeException("EULA acceptance is required to use the reactive TF client");
             }
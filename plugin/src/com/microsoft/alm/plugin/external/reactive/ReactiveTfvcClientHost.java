@@ -3,8 +3,8 @@
 
 package com.microsoft.alm.plugin.external.reactive;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.intellij.execution.ExecutionException;
 import com.intellij.execution.configurations.GeneralCommandLine;
@@ -15,6 +15,7 @@ import com.intellij.execution.process.ProcessHandler;
 import com.intellij.execution.process.ProcessListener;
 import com.intellij.execution.process.ProcessOutputTypes;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Key;
@@ -37,16 +38,24 @@ import com.microsoft.tfs.model.connector.TfsDeleteResult;
 import com.microsoft.tfs.model.connector.TfsLocalPath;
 import com.microsoft.tfs.model.connector.TfsPath;
 import com.microsoft.tfs.model.connector.TfvcCheckoutResult;
+import kotlin.Unit;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -64,35 +73,70 @@ public class ReactiveTfvcClientHost {
     public static final String REACTIVE_CLIENT_OPTIONS_ENV = "BACKEND_OPTS";
     public static final int REACTIVE_CLIENT_DEFAULT_MEMORY_LIMIT = 2048;
 
+    /**
+     * Set to "true" to start the client with a class data sharing archive. The archive is created in the IDE system
+     * directory on the first graceful client exit (requires Java 13+ for the client; ignored by the older versions), and
+     * is used by the following starts.
+     */
+    public static final String CLASS_DATA_SHARING_PROPERTY =
+            "com.microsoft.alm.plugin.external.reactive.ReactiveTfvcClientHost.classDataSharing";
+
     private static final int INFO_PARTITION_COUNT = 1000;
 
+    /**
+     * Time given to the client to exit on its own after the connection is closed, before the process is killed. The
+     * client dumps the class data sharing archive on exit, so it shouldn't be killed right away.
+     */
+    private static final long GRACEFUL_SHUTDOWN_TIMEOUT_MS = 10000L;
+
     private static final String REACTIVE_CLIENT_LOG_LEVEL = "INFO";
 
     private static final Logger ourLogger = Logger.getInstance(ReactiveTfvcClientHost.class);
 
     private final LifetimeDefinition myLifetime;
     private final ReactiveClientConnection myConnection;
+    private final long myCreationTime = System.nanoTime();
+    private final Set<URI> myInitializedCollections = ConcurrentHashMap.newKeySet();
 
     public ReactiveTfvcClientHost(LifetimeDefinition myLifetime, ReactiveClientConnection connection) {
         this.myLifetime = myLifetime;
         myConnection = connection;
     }
 
+    private static long millisSince(long startTime) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+
     public static ReactiveTfvcClientHost create(Disposable parent, Path clientPath) throws ExecutionException {
+        long startTime = System.nanoTime();
         LifetimeDefinition hostLifetime = defineNestedLifetime(parent);
         SingleThreadScheduler scheduler = new SingleThreadScheduler(hostLifetime, "ReactiveTfClient Scheduler");
         ReactiveClientConnection connection = new ReactiveClientConnection(hostLifetime, scheduler);
         try {
             Path logDirectory = Paths.get(PathManager.getLogPath(), "ReactiveTfsClient");
             Path clientHomeDir = clientPath.getParent().getParent();
+            Path archive = Boolean.getBoolean(CLASS_DATA_SHARING_PROPERTY)
+                    ? getClassDataSharingArchive(clientHomeDir, Paths.get(PathManager.getSystemPath(), "ReactiveTfsClient"))
+                    : null;
+            Path temporaryArchive = archive == null ? null : getTemporaryArchive(archive, connection.getPort());
             GeneralCommandLine commandLine = ProcessHelper.patchPathEnvironmentVariable(
-                    getClientCommandLine(clientPath, connection.getPort(), logDirectory, clientHomeDir));
+                    getClientCommandLine(clientPath, connection.getPort(), logDirectory, clientHomeDir, archive, temporaryArchive));
             ProcessHandler processHandler = new OSProcessHandler(commandLine);
-            connection.getLifetime().onTerminationIfAlive(processHandler::destroyProcess);
+            // Closing the connection makes the client exit on its own; it is only killed if it doesn't.
+            connection.getLifetime().onTerminationIfAlive(() -> destroyProcessGracefully(processHandler));
 
             processHandler.addProcessListener(createProcessListener(hostLifetime));
+            if (temporaryArchive != null) {
+                processHandler.addProcessListener(new ProcessAdapter() {
+                    @Override
+                    public void processTerminated(@NotNull ProcessEvent event) {
+                        completeClassDataSharingArchive(archive, temporaryArchive, event.getExitCode());
+                    }
+                });
+            }
             processHandler.startNotify();
 
+            ourLogger.info("Reactive client startup: process spawned in " + millisSince(startTime) + " ms");
             return new ReactiveTfvcClientHost(hostLifetime, connection);
         } catch (Throwable t) {
             hostLifetime.terminate(false);
@@ -104,12 +148,26 @@ public class ReactiveTfvcClientHost {
         myLifetime.terminate(false);
     }
 
+    private static void destroyProcessGracefully(ProcessHandler processHandler) {
+        if (processHandler.isProcessTerminated())
+            return;
+
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            if (!processHandler.waitFor(GRACEFUL_SHUTDOWN_TIMEOUT_MS)) {
+                ourLogger.info("Client process hasn't exited in " + GRACEFUL_SHUTDOWN_TIMEOUT_MS + " ms, destroying it");
+                processHandler.destroyProcess();
+            }
+        });
+    }
+
     @NotNull
     private static GeneralCommandLine getClientCommandLine(
             Path clientExecutable,
             int protocolPort,
             Path logDirectory,
-            Path clientHome) {
+            Path clientHome,
+            @Nullable Path classDataSharingArchive,
+            @Nullable Path temporaryArchive) {
         ArrayList<String> command = Lists.newArrayList(
                 clientExecutable.toString(),
                 Integer.toString(protocolPort),
@@ -129,6 +187,10 @@ public class ReactiveTfvcClientHost {
             backendOptions = String.format("-Xmx%sm", memoryMb);
         }
 
+        if (classDataSharingArchive != null && !backendOptions.contains("-XX:SharedArchiveFile")) {
+            backendOptions += " " + getClassDataSharingOptions(classDataSharingArchive, temporaryArchive);
+        }
+
         ourLogger.info("Reactive client will be started with env " + REACTIVE_CLIENT_OPTIONS_ENV + "=" + backendOptions);
         return new GeneralCommandLine(command)
                 .withParentEnvironmentType(GeneralCommandLine.ParentEnvironmentType.SYSTEM)
@@ -136,73 +198,148 @@ public class ReactiveTfvcClientHost {
                 .withWorkDirectory(clientHome.toString());
     }
 
+    /**
+     * Returns the path of the class data sharing archive in the directory. The archive is only valid for the exact
+     * client class path, so its name depends on the client installation.
+     */
+    @VisibleForTesting
+    @NotNull
+    static Path getClassDataSharingArchive(@NotNull Path clientHome, @NotNull Path archiveDirectory) {
+        Path libDirectory = clientHome.resolve("lib");
+        String installationHash;
+        try {
+            installationHash = Integer.toHexString(Objects.hash(
+                    libDirectory.toAbsolutePath().toString(),
+                    Files.getLastModifiedTime(libDirectory).toMillis()));
+        } catch (IOException e) {
+            ourLogger.warn("Cannot determine the client installation time", e);
+            installationHash = "0";
+        }
+
+        return archiveDirectory.resolve("backend-" + installationHash + ".jsa");
+    }
+
+    /**
+     * Returns the path the client process writes the archive to. Every process gets its own one, so the clients of
+     * different projects exiting at the same time won't write the same file.
+     */
+    @VisibleForTesting
+    @NotNull
+    static Path getTemporaryArchive(@NotNull Path archive, int protocolPort) {
+        return archive.resolveSibling(archive.getFileName() + "." + protocolPort + ".tmp");
+    }
+
+    /**
+     * Returns the options to use the class data sharing archive, or to create one if it doesn't exist yet. A new
+     * archive is written to the temporary path, and only gets moved in place by
+     * {@link #completeClassDataSharingArchive} after the client has exited successfully, so a killed client never
+     * leaves a partially written archive behind.
+     */
+    @VisibleForTesting
+    @NotNull
+    static String getClassDataSharingOptions(@NotNull Path archive, @NotNull Path temporaryArchive) {
+        if (Files.isRegularFile(archive)) {
+            return "-Xshare:auto -XX:SharedArchiveFile=" + archive;
+        }
+
+        try {
+            Files.createDirectories(archive.getParent());
+            Files.deleteIfExists(temporaryArchive);
+        } catch (IOException e) {
+            ourLogger.warn("Cannot prepare the directory for the class data sharing archive", e);
+            return "";
+        }
+
+        return "-XX:+IgnoreUnrecognizedVMOptions -XX:ArchiveClassesAtExit=" + temporaryArchive;
+    }
+
+    /**
+     * Moves the archive written by the client in place if the client has exited successfully, and deletes it
+     * otherwise.
+     */
+    @VisibleForTesting
+    static void completeClassDataSharingArchive(@NotNull Path archive, @NotNull Path temporaryArchive, int exitCode) {
+        try {
+            if (exitCode == 0 && Files.isRegularFile(temporaryArchive) && !Files.exists(archive)) {
+                ourLogger.info("Class data sharing archive has been created: " + archive);
+                Files.move(temporaryArchive, archive, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.deleteIfExists(temporaryArchive);
+            }
+        } catch (IOException e) {
+            ourLogger.warn("Cannot save the class data sharing archive " + archive, e);
+        }
+    }
+
     public CompletionStage<Void> startAsync() {
-        return myConnection.startAsync();
+        return myConnection.startAsync().whenComplete((result, error) -> {
+            if (error == null) {
+                ourLogger.info("Reactive client startup: connected in " + millisSince(myCreationTime) + " ms");
+            }
+        });
+    }
+
+    /**
+     * Creates the collection and waits for it to be ready, so the following calls for the same server don't have to.
+     */
+    public CompletionStage<Void> warmUpCollectionAsync(@NotNull ServerIdentification serverIdentification) {
+        return getReadyCollectionAsync(serverIdentification).thenApply(collection -> null);
     }
 
     public CompletionStage<List<PendingChange>> getPendingChangesAsync(
             ServerIdentification serverIdentification,
             Stream<Path> localPaths) {
+        List<PendingChange> result = new ArrayList<>();
+        return getPendingChangesAsync(serverIdentification, localPaths, result::add).thenApply(v -> result);
+    }
+
+    /**
+     * Requests the pending changes for the paths, and passes each of them to the callback as soon as its chunk arrives
+     * from the client, so the whole list never has to be held in memory.
+     */
+    public CompletionStage<Void> getPendingChangesAsync(
+            ServerIdentification serverIdentification,
+            Stream<Path> localPaths,
+            Consumer<PendingChange> onPendingChangeReceived) {
         List<TfsLocalPath> paths = localPaths.map(TfsFileUtil::createLocalPath).collect(Collectors.toList());
         return getReadyCollectionAsync(serverIdentification)
                 .thenCompose(collection -> myConnection.invalidatePathsAsync(collection, paths).thenApply(v -> collection))
-                .thenCompose(collection -> myConnection.getPendingChangesAsync(collection, paths))
-                .thenApply(changes -> changes.stream().map(PendingChange::from).collect(Collectors.toList()));
+                .thenCompose(collection -> myConnection.streamPendingChangesAsync(collection, paths, chunk -> {
+                    chunk.forEach(change -> onPendingChangeReceived.accept(PendingChange.from(change)));
+                    return Unit.INSTANCE;
+                }));
     }
 
-    private CompletionStage<Void> getLocalItemsInfoAsyncChunk(
-            TfsCollection collection,
-            Iterator<List<Path>> chunkIterator,
-            Consumer<ItemInfo> onItemReceived) {
-        if (!chunkIterator.hasNext())
-            return CompletableFuture.completedFuture(null);
-
-        List<Path> chunk = chunkIterator.next();
-        List<TfsLocalPath> paths = chunk.stream().map(TfsFileUtil::createLocalPath).collect(Collectors.toList());
-        return myConnection.getLocalItemsInfoAsync(collection, paths)
-                .thenCompose(infos -> {
-                    infos.forEach(ii -> onItemReceived.accept(ItemInfo.from(ii)));
-                    return getLocalItemsInfoAsyncChunk(collection, chunkIterator, onItemReceived);
-                });
-    }
-
-    private CompletionStage<Void> getExtendedItemsInfoAsyncChunk(
-            TfsCollection collection,
-            Iterator<List<Path>> chunkIterator,
-            Consumer<ExtendedItemInfo> onItemReceived) {
-        if (!chunkIterator.hasNext())
-            return CompletableFuture.completedFuture(null);
-
-        List<Path> chunk = chunkIterator.next();
-        List<TfsLocalPath> paths = chunk.stream().map(TfsFileUtil::createLocalPath).collect(Collectors.toList());
-        return myConnection.getExtendedItemsInfoAsync(collection, paths)
-                .thenCompose(infos -> {
-                    infos.forEach(ii -> onItemReceived.accept(ExtendedItemInfo.from(ii)));
-                    return getExtendedItemsInfoAsyncChunk(collection, chunkIterator, onItemReceived);
-                });
+    private static List<TfsLocalPath> toLocalPaths(List<Path> paths) {
+        return paths.stream().map(TfsFileUtil::createLocalPath).collect(Collectors.toList());
     }
 
     public CompletionStage<Void> getLocalItemsInfoAsync(
             ServerIdentification serverIdentification,
             Stream<Path> localPaths,
             Consumer<ItemInfo> onItemReceived) {
-        // Pack the paths into partitions of predefined size to avoid overloading the protocol.
-        Iterable<List<Path>> partitions = Iterables.partition(localPaths::iterator, INFO_PARTITION_COUNT);
+        // Pack the paths into chunks to avoid overloading the protocol; several chunks are processed at once.
         return getReadyCollectionAsync(serverIdentification)
-                .thenCompose(collection -> getLocalItemsInfoAsyncChunk(collection, partitions.iterator(), onItemReceived));
+                .thenCompose(collection -> new PipelinedChunkDispatcher<Path, ItemInfo>(
+                        localPaths.iterator(),
+                        INFO_PARTITION_COUNT,
+                        (chunk, onSent) -> myConnection.getLocalItemsInfoAsync(collection, toLocalPaths(chunk), onSent)
+                                .thenApply(infos -> infos.stream().map(ItemInfo::from).collect(Collectors.toList())),
+                        onItemReceived).start());
     }
 
     public CompletionStage<Void> getExtendedItemsInfoAsync(
             ServerIdentification serverIdentification,
             Stream<Path> localPaths,
             Consumer<ExtendedItemInfo> onItemReceived) {
-        // Pack the paths into partitions of predefined size to avoid overloading the protocol.
-        Iterable<List<Path>> partitions = Iterables.partition(localPaths::iterator, INFO_PARTITION_COUNT);
+        // Pack the paths into chunks to avoid overloading the protocol; several chunks are processed at once.
         return getReadyCollectionAsync(serverIdentification)
-                .thenCompose(collection -> getExtendedItemsInfoAsyncChunk(
-                        collection,
-                        partitions.iterator(),
-                        onItemReceived));
+                .thenCompose(collection -> new PipelinedChunkDispatcher<Path, ExtendedItemInfo>(
+                        localPaths.iterator(),
+                        INFO_PARTITION_COUNT,
+                        (chunk, onSent) -> myConnection.getExtendedItemsInfoAsync(collection, toLocalPaths(chunk), onSent)
+                                .thenApply(infos -> infos.stream().map(ExtendedItemInfo::from).collect(Collectors.toList())),
+                        onItemReceived).start());
     }
 
     @NotNull
@@ -277,8 +414,16 @@ public class ReactiveTfvcClientHost {
                 serverIdentification.getServerUri(),
                 tfsCredentials);
 
+        URI serverUri = serverIdentification.getServerUri();
+        long startTime = System.nanoTime();
         return myConnection.getOrCreateCollectionAsync(workspaceDefinition)
                 .thenCompose(workspace -> myConnection.waitForReadyAsync(workspace)
-                        .thenApply(unused -> workspace));
+                        .thenApply(unused -> {
+                            if (myInitializedCollections.add(serverUri)) {
+                                ourLogger.info("Reactive client startup: collection " + serverUri + " initialized in "
+                                        + millisSince(startTime) + " ms");
+                            }
+                            return workspace;
+                        }));
     }
 }
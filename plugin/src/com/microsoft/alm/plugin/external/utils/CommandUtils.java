@@ -72,6 +72,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 /**
  * Helper for running commands
@@ -99,14 +100,16 @@ public class CommandUtils {
      * @param project               project to determine the root workspace.
      * @param allowCredentialPrompt whether to allow the command to prompt credentials from user if they're required.
      * @return a partially populated {@link Workspace} object that includes just the name, server, and mappings. Will
-     * return null in case the project base directory couldn't be determined.
+     * return null in case the project base directory couldn't be determined. The result is cached in
+     * {@link WorkspaceCache}.
      */
     @Nullable
     public static Workspace getPartialWorkspace(Project project, boolean allowCredentialPrompt) {
         ArgumentHelper.checkNotNull(project, "project");
         String basePath = project.getBasePath();
         if (basePath == null) return null;
-        return getPartialWorkspace(Paths.get(basePath), allowCredentialPrompt);
+        java.nio.file.Path path = Paths.get(basePath);
+        return WorkspaceCache.getInstance().get(path, () -> getPartialWorkspace(path, allowCredentialPrompt));
     }
 
     /**
@@ -315,6 +318,18 @@ public class CommandUtils {
         return historyCommand.runSynchronously();
     }
 
+    /**
+     * Runs the history command and passes each changeset to the consumer as soon as it is parsed, without collecting
+     * the whole history in memory. Changesets are passed in the order returned by the server (newest first).
+     * This is a synchronous call so it should only be called on a background thread.
+     */
+    public static void getHistoryCommand(final ServerContext context, final String itemPath, final String version,
+                                         final int stopAfter, final boolean recursive, final String user,
+                                         final boolean itemMode, final Consumer<ChangeSet> onChangeSet) {
+        final HistoryCommand historyCommand = new HistoryCommand(context, itemPath, version, stopAfter, recursive, user, itemMode);
+        historyCommand.runStreamingSynchronously(onChangeSet);
+    }
+
     public static ChangeSet getLastHistoryEntryForAnyUser(final ServerContext context, final String localPath) {
         final List<ChangeSet> results = getHistoryCommand(context, localPath, null, 1, false, StringUtils.EMPTY);
         return results.isEmpty() ? null : results.get(0);
@@ -383,6 +398,17 @@ public class CommandUtils {
         return command.runSynchronously();
     }
 
+    /**
+     * Syncs the workspace the same way as {@link #syncWorkspace(ServerContext, List, boolean, boolean)} does, passing
+     * the local path of each file got, replaced or deleted to the consumer while the command is still running.
+     */
+    public static SyncResults syncWorkspace(final ServerContext context, final List<String> filesUpdatePaths,
+                                            final boolean needRecursion, final boolean shouldThrowBadExitCode,
+                                            final Consumer<String> onFileUpdated) {
+        final SyncCommand command = new SyncCommand(context, filesUpdatePaths, needRecursion, shouldThrowBadExitCode);
+        return command.runStreamingSynchronously(onFileUpdated);
+    }
+
     /**
      * This method forces the Get of a file from the server
      *
@@ -428,6 +454,33 @@ public class CommandUtils {
         }
     }
 
+    /**
+     * Get the status for a list of files, passing each pending change to the consumer as soon as it is parsed.
+     * The consumer is called from the output processing thread, one change at a time.
+     *
+     * @param context
+     * @param files
+     * @param onPendingChange
+     */
+    public static void getStatusForFiles(
+            @Nullable Project project,
+            @Nullable ServerContext context,
+            @NotNull List<String> files,
+            @NotNull Consumer<PendingChange> onPendingChange) {
+        final StatusCommand command = new StatusCommand(context, files);
+        try {
+            command.runStreamingSynchronously(onPendingChange);
+        } catch (DollarInPathException e) {
+            if (project != null) {
+                logger.warn("'$' sign in file path detected: {}. Ignoring any files.", e.getServerFilePath());
+                TFVCNotifications.showInvalidDollarFilePathNotification(project, e.getServerFilePath());
+                return;
+            }
+
+            throw e;
+        }
+    }
+
     /**
      * Renames a file
      *
@@ -0,0 +1,147 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.external.models.Workspace;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Caches the partial workspace information (name, server and mappings) determined for the project base paths, so
+ * FindWorkspaceCommand isn't executed every time the mappings are needed.
+ * <p/>
+ * Concurrent requests for the same path share a single load. The entries are invalidated when the workspaces are
+ * changed by the plugin, when a TFVC service directory ($tf or .tf) appears or disappears on disk, or after
+ * {@link #TTL_PROPERTY} seconds (to pick up the changes made by other tools). Failed loads are never cached.
+ */
+public class WorkspaceCache {
+    private static final Logger logger = LoggerFactory.getLogger(WorkspaceCache.class);
+
+    public static final String TTL_PROPERTY = "com.microsoft.alm.plugin.external.utils.WorkspaceCache.ttlSeconds";
+
+    private static final long DEFAULT_TTL_SECONDS = TimeUnit.MINUTES.toSeconds(5);
+
+    private static class Holder {
+        private static final WorkspaceCache INSTANCE = new WorkspaceCache(
+                TimeUnit.SECONDS.toNanos(Long.getLong(TTL_PROPERTY, DEFAULT_TTL_SECONDS)));
+    }
+
+    public static WorkspaceCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private final ConcurrentMap<Path, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+
+    @VisibleForTesting
+    protected WorkspaceCache(final long ttlNanos) {
+        this.ttlNanos = ttlNanos;
+    }
+
+    /**
+     * Returns the cached workspace for the path, or loads it if there's no valid cached information.
+     *
+     * @param path   project base path.
+     * @param loader determines the workspace for the path; called at most once for all the concurrent callers.
+     * @return the workspace.
+     */
+    public Workspace get(@NotNull final Path path, @NotNull final Supplier<Workspace> loader) {
+        ArgumentHelper.checkNotNull(path, "path");
+        ArgumentHelper.checkNotNull(loader, "loader");
+
+        while (true) {
+            final Entry existing = entries.get(path);
+            if (existing != null && !existing.isExpired()) {
+                return existing.await();
+            }
+
+            final Entry entry = new Entry();
+            final boolean owned = existing == null
+                    ? entries.putIfAbsent(path, entry) == null
+                    : entries.replace(path, existing, entry);
+            if (owned) {
+                return load(path, entry, loader);
+            }
+            // Another thread has just started a load; try again to join it
+        }
+    }
+
+    /**
+     * Drops the cached information for every path that is the same as the root, is under the root or contains it.
+     */
+    public void invalidate(@NotNull final Path root) {
+        ArgumentHelper.checkNotNull(root, "root");
+        for (final Path path : entries.keySet()) {
+            if (path.startsWith(root) || root.startsWith(path)) {
+                logger.info("Invalidating the cached workspace for {} because of changes in {}", path, root);
+                entries.remove(path);
+            }
+        }
+    }
+
+    /**
+     * Drops all the cached information. Should be called after any workspace or mapping was created, changed or
+     * deleted.
+     */
+    public void invalidateAll() {
+        logger.info("Invalidating all the cached workspaces");
+        entries.clear();
+    }
+
+    private Workspace load(final Path path, final Entry entry, final Supplier<Workspace> loader) {
+        final Workspace workspace;
+        try {
+            workspace = loader.get();
+        } catch (final RuntimeException e) {
+            entries.remove(path, entry);
+            entry.future.completeExceptionally(e);
+            throw e;
+        } catch (final Error e) {
+            entries.remove(path, entry);
+            entry.future.completeExceptionally(e);
+            throw e;
+        }
+
+        if (workspace == null) {
+            entries.remove(path, entry);
+        }
+        entry.loadedAt = System.nanoTime();
+        entry.future.complete(workspace);
+        return workspace;
+    }
+
+    private class Entry {
+        private final CompletableFuture<Workspace> future = new CompletableFuture<>();
+        private volatile long loadedAt;
+
+        private boolean isExpired() {
+            return future.isDone() && System.nanoTime() - loadedAt > ttlNanos;
+        }
+
+        private Workspace await() {
+            try {
+                return future.join();
+            } catch (final CompletionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -4,13 +4,19 @@
 package com.microsoft.alm.plugin.idea.common.setup;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.intellij.ide.IdeEventQueue;
 import com.intellij.idea.Main;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ApplicationNamesInfo;
 import com.intellij.openapi.components.ApplicationComponent;
 import com.intellij.util.containers.HashMap;
 import com.microsoft.alm.plugin.authentication.AuthHelper;
 import com.microsoft.alm.plugin.authentication.AuthTypes;
+import com.microsoft.alm.plugin.context.HttpClientPool;
+import com.microsoft.alm.plugin.context.ServerContextManager;
 import com.microsoft.alm.plugin.events.ServerPollingManager;
+import com.microsoft.alm.plugin.events.WatermarkChangeDetector;
+import com.microsoft.alm.plugin.external.ToolRunnerCache;
 import com.microsoft.alm.plugin.idea.common.services.CredentialsPromptImpl;
 import com.microsoft.alm.plugin.idea.common.services.DeviceFlowResponsePromptImpl;
 import com.microsoft.alm.plugin.idea.common.services.HttpProxyServiceImpl;
@@ -50,6 +56,8 @@ public class ApplicationStartup implements ApplicationComponent {
     private static final String LINUX_EXE_DIR = "bin";
     private static final String MAC_EXE_DIR = "MacOS";
     private static final String CSV_COMMA = ",";
+    // The user is considered away after this much time without any input in the IDE
+    private static final long IDLE_TIME_MILLISECONDS = 10 * 60 * 1000;
 
     public ApplicationStartup() {
     }
@@ -77,14 +85,23 @@ public class ApplicationStartup implements ApplicationComponent {
         // Hook up to VCS and Project events
         ProjectRepoEventManager.getInstance().startListening();
 
-        // Start polling for server events
-        ServerPollingManager.getInstance().startPolling();
+        // Start polling for server events: only the changed ones are triggered, and less often while the IDE is idle
+        final ServerPollingManager pollingManager = ServerPollingManager.getInstance();
+        pollingManager.setChangeDetector(new WatermarkChangeDetector(ServerContextManager.getInstance()));
+        pollingManager.setIdleDetector(() -> !ApplicationManager.getApplication().isActive()
+                || IdeEventQueue.getInstance().getIdleTime() > IDLE_TIME_MILLISECONDS);
+        pollingManager.startPolling();
 
         // Check for auth type settings
         configureAuthType();
     }
 
     public void disposeComponent() {
+        // Terminate the pre-started TF processes
+        ToolRunnerCache.tearDown();
+
+        // Close the shared HTTP connections
+        HttpClientPool.getInstance().clear();
     }
 
     @NotNull
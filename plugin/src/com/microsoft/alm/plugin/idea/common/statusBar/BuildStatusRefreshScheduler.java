@@ -0,0 +1,203 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.common.statusBar;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.StatusBar;
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.context.RepositoryContext;
+import com.microsoft.alm.plugin.operations.BuildStatusLookupOperation;
+import com.microsoft.alm.plugin.operations.Operation;
+import com.microsoft.alm.plugin.operations.OperationExecutor;
+import com.microsoft.alm.plugin.operations.OperationFactory;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.Timer;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Refreshes the build widgets of the open projects. The projects that show the same repository and branch share one
+ * build status lookup, whose results are shown in all of their widgets. The polling refreshes of a server are at least
+ * the minimum interval apart; the ones that come sooner are deferred and merged into a single refresh.
+ */
+class BuildStatusRefreshScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(BuildStatusRefreshScheduler.class);
+
+    public static final String MIN_SERVER_INTERVAL_SECONDS_PROPERTY = "com.microsoft.alm.plugin.idea.common.statusBar.BuildStatusRefreshScheduler.minServerIntervalSeconds";
+    private static final int DEFAULT_MIN_SERVER_INTERVAL_SECONDS = 30;
+
+    /**
+     * The build widget of a project and the repository it shows the status of
+     */
+    static class Target {
+        private final Project project;
+        private final StatusBar statusBar;
+        private final BuildWidget widget;
+        private final RepositoryContext repositoryContext;
+
+        Target(final Project project, final StatusBar statusBar, final BuildWidget widget, final RepositoryContext repositoryContext) {
+            ArgumentHelper.checkNotNull(repositoryContext, "repositoryContext");
+            this.project = project;
+            this.statusBar = statusBar;
+            this.widget = widget;
+            this.repositoryContext = repositoryContext;
+        }
+    }
+
+    private static class Holder {
+        private static final BuildStatusRefreshScheduler INSTANCE = new BuildStatusRefreshScheduler();
+    }
+
+    static BuildStatusRefreshScheduler getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private final long minServerIntervalMillis;
+    // Keyed by the server
+    private final Map<String, Long> lastRefreshTimes = new HashMap<String, Long>();
+    // Keyed by the server, then by the repository and branch
+    private final Map<String, Map<String, List<Target>>> deferredTargets = new HashMap<String, Map<String, List<Target>>>();
+
+    private BuildStatusRefreshScheduler() {
+        minServerIntervalMillis = 1000L * Integer.getInteger(MIN_SERVER_INTERVAL_SECONDS_PROPERTY, DEFAULT_MIN_SERVER_INTERVAL_SECONDS);
+    }
+
+    /**
+     * Starts the build status lookups for the given widgets, one per distinct repository and branch.
+     *
+     * @param targets     the widgets to refresh
+     * @param allowPrompt whether the user can be prompted for credentials
+     * @param rateLimited true for the polling refreshes, which are deferred if the server was refreshed recently;
+     *                    the refreshes asked for by the user are started right away
+     */
+    void refresh(final Collection<Target> targets, final boolean allowPrompt, final boolean rateLimited) {
+        final List<List<Target>> lookups = new ArrayList<List<Target>>();
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            for (final Map.Entry<String, Map<String, List<Target>>> server : groupTargets(targets).entrySet()) {
+                if (rateLimited) {
+                    final Map<String, List<Target>> deferred = deferredTargets.get(server.getKey());
+                    if (deferred != null) {
+                        // A refresh of this server is already pending, so the newer targets are merged into it
+                        deferred.putAll(server.getValue());
+                        continue;
+                    }
+
+                    final Long lastRefreshTime = lastRefreshTimes.get(server.getKey());
+                    if (lastRefreshTime != null && now - lastRefreshTime < minServerIntervalMillis) {
+                        defer(server.getKey(), server.getValue(), lastRefreshTime + minServerIntervalMillis - now);
+                        continue;
+                    }
+                }
+
+                lastRefreshTimes.put(server.getKey(), now);
+                lookups.addAll(server.getValue().values());
+            }
+        }
+
+        // The polling refreshes make way for the work the user is waiting for
+        final OperationExecutor.Priority priority = rateLimited ? OperationExecutor.Priority.BACKGROUND : OperationExecutor.Priority.UI;
+        for (final List<Target> lookupTargets : lookups) {
+            startLookup(lookupTargets, allowPrompt, priority);
+        }
+    }
+
+    private void defer(final String server, final Map<String, List<Target>> groups, final long delay) {
+        logger.info("Deferring the build status refresh of {} by {} ms", server, delay);
+        deferredTargets.put(server, groups);
+        final Timer timer = new Timer((int) delay, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                runDeferred(server);
+            }
+        });
+        timer.setRepeats(false);
+        timer.start();
+    }
+
+    private void runDeferred(final String server) {
+        final Map<String, List<Target>> groups;
+        synchronized (this) {
+            groups = deferredTargets.remove(server);
+            if (groups == null) {
+                return;
+            }
+            lastRefreshTimes.put(server, System.currentTimeMillis());
+        }
+
+        for (final List<Target> lookupTargets : groups.values()) {
+            startLookup(lookupTargets, false, OperationExecutor.Priority.BACKGROUND);
+        }
+    }
+
+    private void startLookup(final List<Target> targets, final boolean allowPrompt, final OperationExecutor.Priority priority) {
+        // All the targets show the same repository and branch, so any of their contexts will do
+        final BuildStatusLookupOperation op = OperationFactory.createBuildStatusLookupOperation(
+                targets.get(0).repositoryContext, allowPrompt);
+        op.addListener(new Operation.Listener() {
+            @Override
+            public void notifyLookupStarted() { /* do nothing */ }
+
+            @Override
+            public void notifyLookupCompleted() { /* do nothing */ }
+
+            @Override
+            public void notifyLookupResults(final Operation.Results results) {
+                for (final Target target : targets) {
+                    if (target.project.isDisposed()) {
+                        continue;
+                    }
+                    StatusBarManager.updateBuildWidget(target.project, target.statusBar, target.widget,
+                            (BuildStatusLookupOperation.BuildStatusResults) results);
+                }
+            }
+        });
+        op.doWorkAsync(null, priority);
+    }
+
+    private static Map<String, Map<String, List<Target>>> groupTargets(final Collection<Target> targets) {
+        final Map<String, Map<String, List<Target>>> groups = new LinkedHashMap<String, Map<String, List<Target>>>();
+        for (final Target target : targets) {
+            final RepositoryContext context = target.repositoryContext;
+            final String server = getServer(context.getUrl());
+            Map<String, List<Target>> serverGroups = groups.get(server);
+            if (serverGroups == null) {
+                serverGroups = new LinkedHashMap<String, List<Target>>();
+                groups.put(server, serverGroups);
+            }
+
+            final String key = StringUtils.join(new Object[]{context.getType(), StringUtils.lowerCase(context.getUrl()),
+                    context.getTeamProjectName(), context.getBranch()}, "|");
+            List<Target> keyTargets = serverGroups.get(key);
+            if (keyTargets == null) {
+                keyTargets = new ArrayList<Target>();
+                serverGroups.put(key, keyTargets);
+            }
+            keyTargets.add(target);
+        }
+        return groups;
+    }
+
+    private static String getServer(final String url) {
+        try {
+            final URI uri = URI.create(url);
+            if (uri.getAuthority() != null) {
+                return StringUtils.lowerCase(uri.getScheme() + "://" + uri.getAuthority());
+            }
+        } catch (IllegalArgumentException e) {
+            logger.warn("getServer: unable to parse the url " + url, e);
+        }
+        return StringUtils.lowerCase(url);
+    }
+}
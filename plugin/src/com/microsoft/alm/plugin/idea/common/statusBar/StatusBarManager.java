@@ -15,11 +15,12 @@ import com.microsoft.alm.plugin.idea.common.utils.EventContextHelper;
 import com.microsoft.alm.plugin.idea.common.utils.IdeaHelper;
 import com.microsoft.alm.plugin.idea.common.utils.VcsHelper;
 import com.microsoft.alm.plugin.operations.BuildStatusLookupOperation;
-import com.microsoft.alm.plugin.operations.Operation;
-import com.microsoft.alm.plugin.operations.OperationFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 public class StatusBarManager {
@@ -65,25 +66,44 @@ public class StatusBarManager {
     }
 
     private static void updateStatusBar() {
+        // Collect the widgets of all the projects, so the projects of the same repository share one lookup
         final Project[] openProjects = ProjectManager.getInstance().getOpenProjects();
+        final List<BuildStatusRefreshScheduler.Target> targets = new ArrayList<BuildStatusRefreshScheduler.Target>(openProjects.length);
         for (final Project p : openProjects) {
-            updateStatusBar(p, false);
+            final BuildStatusRefreshScheduler.Target target = prepareWidgets(p);
+            if (target != null) {
+                targets.add(target);
+            }
         }
+        BuildStatusRefreshScheduler.getInstance().refresh(targets, false, true);
     }
 
     public static void updateStatusBar(final Project project, final boolean allowPrompt) {
+        final BuildStatusRefreshScheduler.Target target = prepareWidgets(project);
+        if (target != null) {
+            BuildStatusRefreshScheduler.getInstance().refresh(Collections.singletonList(target), allowPrompt, false);
+        }
+    }
+
+    /**
+     * Adds the widgets to the status bar of the project (or removes them if the project doesn't need them).
+     *
+     * @return the build widget to refresh, or null if there is nothing to refresh
+     */
+    private static BuildStatusRefreshScheduler.Target prepareWidgets(final Project project) {
         // remove widget if not a VSTS project in Rider
         if (IdeaHelper.isRider() && !VcsHelper.isVstsRepo(project)) {
             removeWidgets(project);
         } else {
             final StatusBar statusBar = WindowManager.getInstance().getStatusBar(project);
             if (statusBar != null) {
-                updateWidgets(statusBar, project, allowPrompt);
+                return updateWidgets(statusBar, project);
             }
         }
+        return null;
     }
 
-    private static void updateWidgets(final StatusBar statusBar, final Project project, final boolean allowPrompt) {
+    private static BuildStatusRefreshScheduler.Target updateWidgets(final StatusBar statusBar, final Project project) {
         // Update the build widget
         BuildWidget buildWidget = (BuildWidget) statusBar.getWidget(BuildWidget.getID());
         if (buildWidget == null) {
@@ -93,31 +113,15 @@ public class StatusBarManager {
         // Attempt to get the current repository context (if none, then the status stays as it was)
         final RepositoryContext repositoryContext = VcsHelper.getRepositoryContext(project);
         if (repositoryContext != null) {
-            final BuildWidget widget = buildWidget;
-
-            // Create the operation and start the background work to get the latest build information
-            final BuildStatusLookupOperation op = OperationFactory.createBuildStatusLookupOperation(repositoryContext, allowPrompt);
-            op.addListener(new Operation.Listener() {
-                @Override
-                public void notifyLookupStarted() { /* do nothing */ }
-
-                @Override
-                public void notifyLookupCompleted() { /* do nothing */ }
-
-                @Override
-                public void notifyLookupResults(final Operation.Results results) {
-                    updateBuildWidget(project, statusBar, widget, (BuildStatusLookupOperation.BuildStatusResults) results);
-                }
-            });
-            op.doWorkAsync(null);
-
+            // The scheduler starts the background work to get the latest build information
+            return new BuildStatusRefreshScheduler.Target(project, statusBar, buildWidget, repositoryContext);
         } else {
             // The repository hasn't been opened yet, we should get an event when it is opened
+            return null;
         }
     }
 
-    private static void updateBuildWidget(final Project project, final StatusBar statusBar, final BuildWidget widget, final BuildStatusLookupOperation.BuildStatusResults results) {
-        final BuildStatusLookupOperation.BuildStatusResults r = results;
+    static void updateBuildWidget(final Project project, final StatusBar statusBar, final BuildWidget widget, final BuildStatusLookupOperation.BuildStatusResults results) {
         final BuildStatusModel model = BuildStatusModel.create(project, results);
         widget.update(model);
 
@@ -0,0 +1,599 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import com.google.common.io.CountingInputStream;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.vcs.versionBrowser.ChangeBrowserSettings;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.models.ChangeSet;
+import com.microsoft.alm.plugin.external.models.CheckedInChange;
+import com.microsoft.alm.plugin.external.models.ServerStatusType;
+import com.microsoft.alm.plugin.external.models.Workspace;
+import com.microsoft.alm.plugin.external.utils.CommandUtils;
+import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfsFileUtil;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Local index of the changesets that touch a workspace root: the changeset id, owner, committer, date, comment and the
+ * changed server items. The index is kept in an append-only file in the IDE system directory and always holds a
+ * contiguous range of the root history: the newest page is fetched first, the older pages are fetched only when a
+ * query needs them, and afterwards only the changesets newer than the highest indexed one are requested from the
+ * server. The committed changes filters are answered locally.
+ * <p/>
+ * Only the file offset, date and users of every changeset are kept in memory; the comments and the changes are read
+ * from the file for the changesets a query returns. The indexes of the least recently used roots are unloaded, so at
+ * most {@link #MAX_LOADED_INDEXES_PROPERTY} of them are kept in memory.
+ */
+public class ChangesetIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ChangesetIndex.class);
+
+    /**
+     * Number of changesets requested from the server at once while filling the index with the older history.
+     */
+    public static final String PAGE_SIZE_PROPERTY = "com.microsoft.alm.plugin.idea.tfvc.core.ChangesetIndex.pageSize";
+    public static final String MAX_LOADED_INDEXES_PROPERTY =
+            "com.microsoft.alm.plugin.idea.tfvc.core.ChangesetIndex.maxLoadedIndexes";
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+    private static final int DEFAULT_MAX_LOADED_INDEXES = 4;
+
+    private static final String INDEX_DIRECTORY_NAME = "tfvc-changesets";
+    private static final int FILE_MAGIC = 0x54464349; // "TFCI"
+    private static final int FILE_VERSION = 3;
+    // Written instead of a changeset id after the oldest changeset of the root has been indexed
+    private static final int HISTORY_COMPLETE_RECORD = 0;
+    private static final String TFVC_DATE_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    // From the least to the most recently used; the instances stay, only the unused ones are unloaded
+    private static final LinkedHashMap<String, ChangesetIndex> ourIndexes =
+            new LinkedHashMap<String, ChangesetIndex>(16, 0.75f, true);
+
+    /**
+     * Returns the index for the root, or null if the root isn't mapped in the workspace.
+     */
+    @Nullable
+    public static synchronized ChangesetIndex getInstance(@NotNull final Workspace workspace,
+                                                          @NotNull final String rootLocalPath) {
+        final String rootServerPath = TfsFileUtil.translateLocalItemToServerItem(rootLocalPath, workspace);
+        if (StringUtils.isEmpty(rootServerPath)) {
+            return null;
+        }
+
+        final String key = workspace.getServerDisplayName() + "|" + rootServerPath;
+        ChangesetIndex index = ourIndexes.get(key);
+        if (index == null) {
+            final String fileName = Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString();
+            index = new ChangesetIndex(Paths.get(PathManager.getSystemPath(), INDEX_DIRECTORY_NAME, fileName));
+            ourIndexes.put(key, index);
+        }
+
+        unloadLeastRecentlyUsed(ourIndexes.values(),
+                Math.max(1, Integer.getInteger(MAX_LOADED_INDEXES_PROPERTY, DEFAULT_MAX_LOADED_INDEXES)));
+        return index;
+    }
+
+    /**
+     * Unloads all the indexes but the last maxLoaded ones of the collection.
+     */
+    @VisibleForTesting
+    static void unloadLeastRecentlyUsed(@NotNull final Iterable<ChangesetIndex> indexes, final int maxLoaded) {
+        final List<ChangesetIndex> orderedIndexes = new ArrayList<ChangesetIndex>();
+        for (final ChangesetIndex index : indexes) {
+            orderedIndexes.add(index);
+        }
+
+        for (int i = 0; i < orderedIndexes.size() - maxLoaded; i++) {
+            orderedIndexes.get(i).unload();
+        }
+    }
+
+    /**
+     * What is kept in memory for an indexed changeset: enough to apply the filters, and the offset of the record to read
+     * the rest of the changeset from.
+     */
+    private static class IndexEntry {
+        private final long offset;
+        private final long date;
+        private final String owner;
+        private final String committer;
+
+        private IndexEntry(final long offset, final long date, final String owner, final String committer) {
+            this.offset = offset;
+            this.date = date;
+            this.owner = owner;
+            this.committer = committer;
+        }
+    }
+
+    private final Path file;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat(TFVC_DATE_PATTERN);
+    private final TreeMap<Integer, IndexEntry> entries = new TreeMap<Integer, IndexEntry>();
+    // Shares the strings of the same users between the entries
+    private final Map<String, String> userNames = new HashMap<String, String>();
+    private boolean isLoaded;
+    private boolean isComplete;
+
+    @VisibleForTesting
+    protected ChangesetIndex(@NotNull final Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Fetches the changesets newer than the highest indexed one and as many pages of the older history as needed to
+     * answer the query. The server is called without holding the index lock, so the queries don't wait for it.
+     *
+     * @throws IOException if the index can't answer the query, e.g. the server returned an unexpected history page
+     */
+    public void update(final ServerContext context, @NotNull final String rootLocalPath,
+                       @NotNull final ChangeBrowserSettings settings, final int maxCount) throws IOException {
+        final int highestId = getHighestId();
+        if (highestId != 0 || isComplete()) {
+            // The lower bound of the range has to exist on the server, so the highest indexed changeset is requested
+            // again
+            final String version = highestId == 0 ? null : "C" + highestId + "~T";
+            appendNewer(fetchHistory(context, rootLocalPath, version, Integer.MAX_VALUE));
+        }
+
+        while (!canAnswer(settings, maxCount)) {
+            if (!fetchOlderPage(context, rootLocalPath)) {
+                throw new IOException("Unable to fetch the older history of " + rootLocalPath);
+            }
+        }
+    }
+
+    /**
+     * Returns the indexed changesets matching the changeset, date and user filters of the settings, from the newest to
+     * the oldest.
+     *
+     * @param maxCount the maximum number of changesets to return, or 0 to return all of them
+     */
+    @NotNull
+    public synchronized List<ChangeSet> query(@NotNull final ChangeBrowserSettings settings, final int maxCount)
+            throws IOException {
+        final List<Integer> ids = new ArrayList<Integer>();
+        collect(settings, maxCount, ids);
+        return read(ids);
+    }
+
+    /**
+     * Returns the indexed changeset preceding the given one, or null if there is none.
+     */
+    @Nullable
+    public synchronized ChangeSet getPrevious(final int changeSetId) throws IOException {
+        ensureLoaded();
+        final Integer previousId = entries.lowerKey(changeSetId);
+        return previousId == null ? null : read(Collections.singletonList(previousId)).get(0);
+    }
+
+    @VisibleForTesting
+    synchronized int getHighestId() throws IOException {
+        ensureLoaded();
+        return entries.isEmpty() ? 0 : entries.lastKey();
+    }
+
+    @VisibleForTesting
+    synchronized int getLowestId() throws IOException {
+        ensureLoaded();
+        return entries.isEmpty() ? 0 : entries.firstKey();
+    }
+
+    /**
+     * Returns true if the history older than the lowest indexed changeset has been indexed as well.
+     */
+    @VisibleForTesting
+    synchronized boolean isComplete() throws IOException {
+        ensureLoaded();
+        return isComplete;
+    }
+
+    @VisibleForTesting
+    synchronized boolean isLoaded() {
+        return isLoaded;
+    }
+
+    /**
+     * Drops the entries from memory; they're loaded from the file again when the index is used next time.
+     */
+    @VisibleForTesting
+    synchronized void unload() {
+        if (isLoaded) {
+            logger.debug("Unloading the changeset index {}", file.getFileName());
+        }
+        entries.clear();
+        userNames.clear();
+        isComplete = false;
+        isLoaded = false;
+    }
+
+    @VisibleForTesting
+    @NotNull
+    protected List<ChangeSet> fetchHistory(final ServerContext context, @NotNull final String rootLocalPath,
+                                           @Nullable final String version, final int maxCount) {
+        return CommandUtils.getHistoryCommand(context, rootLocalPath, version, maxCount, true, StringUtils.EMPTY,
+                false);
+    }
+
+    @VisibleForTesting
+    synchronized void append(@NotNull final List<ChangeSet> newChangeSets) throws IOException {
+        final List<ChangeSet> sorted = new ArrayList<ChangeSet>(newChangeSets);
+        sorted.sort(Comparator.comparingInt(ChangeSet::getIdAsInt));
+        write(sorted, false);
+    }
+
+    private synchronized boolean canAnswer(@NotNull final ChangeBrowserSettings settings, final int maxCount)
+            throws IOException {
+        return collect(settings, maxCount, new ArrayList<Integer>());
+    }
+
+    /**
+     * Adds the ids of the indexed changesets matching the query to the result and returns true if the result is final,
+     * i.e. it wouldn't change after the older history is indexed, and the changeset preceding every result is indexed
+     * too.
+     */
+    private boolean collect(@NotNull final ChangeBrowserSettings settings, final int maxCount,
+                            @NotNull final List<Integer> result) throws IOException {
+        ensureLoaded();
+
+        final Long changeAfter = settings.getChangeAfterFilter();
+        final Long changeBefore = settings.getChangeBeforeFilter();
+        final long dateAfter = settings.getDateAfterFilter() == null ? NO_DATE : settings.getDateAfterFilter().getTime();
+        final long dateBefore = settings.getDateBeforeFilter() == null ? NO_DATE : settings.getDateBeforeFilter().getTime();
+        final String user = settings.getUserFilter();
+
+        final Map<Integer, IndexEntry> range = changeBefore == null
+                ? entries.descendingMap()
+                : entries.headMap((int) Math.min(changeBefore, Integer.MAX_VALUE), true).descendingMap();
+        for (final Map.Entry<Integer, IndexEntry> mapEntry : range.entrySet()) {
+            final int id = mapEntry.getKey();
+            final IndexEntry entry = mapEntry.getValue();
+            if (changeAfter != null && id < changeAfter) {
+                return true;
+            }
+            if (entry.date != NO_DATE) {
+                if (dateBefore != NO_DATE && entry.date > dateBefore) {
+                    continue;
+                }
+                if (dateAfter != NO_DATE && entry.date < dateAfter) {
+                    return true;
+                }
+            }
+            if (StringUtils.isNotEmpty(user)
+                    && !StringUtils.equalsIgnoreCase(user, entry.owner)
+                    && !StringUtils.equalsIgnoreCase(user, entry.committer)) {
+                continue;
+            }
+
+            result.add(id);
+            if (maxCount > 0 && result.size() >= maxCount) {
+                return isComplete || entries.lowerKey(id) != null;
+            }
+        }
+
+        return isComplete;
+    }
+
+    /**
+     * Fetches the page of the history preceding the lowest indexed changeset (or the newest page if the index is
+     * empty) and adds it to the index.
+     *
+     * @return false if the page didn't extend the index, which means it can't be completed
+     */
+    private boolean fetchOlderPage(final ServerContext context, @NotNull final String rootLocalPath)
+            throws IOException {
+        final int lowestId = getLowestId();
+        if (lowestId == 1) {
+            return appendOlder(lowestId, Collections.<ChangeSet>emptyList(), true);
+        }
+
+        final int pageSize = Math.max(1, Integer.getInteger(PAGE_SIZE_PROPERTY, DEFAULT_PAGE_SIZE));
+        final String version = lowestId == 0 ? null : "C1~C" + (lowestId - 1);
+        final List<ChangeSet> fetched = fetchHistory(context, rootLocalPath, version, pageSize);
+        logger.debug("Changeset index {}: fetched {} changesets older than {}", file.getFileName(), fetched.size(),
+                lowestId);
+        return appendOlder(lowestId, fetched, fetched.size() < pageSize);
+    }
+
+    private synchronized void appendNewer(@NotNull final List<ChangeSet> fetched) throws IOException {
+        final int highestId = getHighestId();
+        final List<ChangeSet> newChangeSets = new ArrayList<ChangeSet>(fetched.size());
+        for (final ChangeSet changeSet : fetched) {
+            if (changeSet.getIdAsInt() > highestId) {
+                newChangeSets.add(changeSet);
+            }
+        }
+
+        if (!newChangeSets.isEmpty()) {
+            append(newChangeSets);
+            logger.info("Changeset index {} updated: {} new changesets, {} total", file.getFileName(),
+                    newChangeSets.size(), entries.size());
+        }
+    }
+
+    /**
+     * Adds the changesets preceding the lowest indexed one. Another update may have extended the index since the page
+     * was requested, so only the changesets below the current lowest one are taken. They are written from the newest
+     * to the oldest, so a partially written page still leaves a contiguous range in the file.
+     *
+     * @param isLast true if the page contains the oldest changeset of the root
+     * @return true if the index has been extended since the page was requested
+     */
+    private synchronized boolean appendOlder(final int requestedLowestId, @NotNull final List<ChangeSet> fetched,
+                                             final boolean isLast) throws IOException {
+        final int lowestId = getLowestId();
+        final List<ChangeSet> olderChangeSets = new ArrayList<ChangeSet>(fetched.size());
+        for (final ChangeSet changeSet : fetched) {
+            if (lowestId == 0 || changeSet.getIdAsInt() < lowestId) {
+                olderChangeSets.add(changeSet);
+            }
+        }
+        olderChangeSets.sort(Comparator.comparingInt(ChangeSet::getIdAsInt).reversed());
+
+        write(olderChangeSets, isLast && !isComplete);
+        return isComplete || getLowestId() != requestedLowestId;
+    }
+
+    private void write(@NotNull final List<ChangeSet> sorted, final boolean markComplete) throws IOException {
+        ensureLoaded();
+        if (sorted.isEmpty() && !markComplete) {
+            return;
+        }
+
+        final boolean isNewFile = !Files.exists(file);
+        final long initialSize = isNewFile ? 0 : Files.size(file);
+        final List<IndexEntry> newEntries = new ArrayList<IndexEntry>(sorted.size());
+        Files.createDirectories(file.getParent());
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+            if (isNewFile) {
+                output.writeInt(FILE_MAGIC);
+                output.writeInt(FILE_VERSION);
+            }
+            for (final ChangeSet changeSet : sorted) {
+                newEntries.add(createEntry(initialSize + output.size(), changeSet.getOwner(), changeSet.getCommitter(),
+                        changeSet.getDate()));
+                writeChangeSet(output, changeSet);
+            }
+            if (markComplete) {
+                output.writeInt(HISTORY_COMPLETE_RECORD);
+            }
+        } catch (IOException e) {
+            // A partially written record is truncated when the file is loaded again
+            unload();
+            throw e;
+        }
+
+        for (int i = 0; i < sorted.size(); i++) {
+            entries.put(sorted.get(i).getIdAsInt(), newEntries.get(i));
+        }
+        if (markComplete) {
+            isComplete = true;
+        }
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (isLoaded) {
+            return;
+        }
+
+        try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            final DataInputStream input = new DataInputStream(counter);
+            if (input.readInt() != FILE_MAGIC || input.readInt() != FILE_VERSION) {
+                throw new IOException("Unsupported changeset index format");
+            }
+
+            final long fileSize = Files.size(file);
+            long validLength = counter.getCount();
+            try {
+                while (true) {
+                    final long offset = counter.getCount();
+                    final int id = input.readInt();
+                    if (id == HISTORY_COMPLETE_RECORD) {
+                        isComplete = true;
+                    } else {
+                        final IndexEntry entry = createEntry(offset, readString(input), readString(input),
+                                readString(input));
+                        final int detailsLength = input.readInt();
+                        if (detailsLength < 0 || counter.getCount() + detailsLength > fileSize) {
+                            throw new EOFException();
+                        }
+                        skipFully(input, detailsLength);
+                        entries.put(id, entry);
+                    }
+                    validLength = counter.getCount();
+                }
+            } catch (EOFException e) {
+                if (validLength < fileSize) {
+                    // The last record was written partially, e.g. the IDE was killed during the update
+                    logger.warn("Truncating the incomplete record at the end of the changeset index " + file);
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                        channel.truncate(validLength);
+                    }
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // The index is empty
+        } catch (IOException e) {
+            logger.warn("Unable to read the changeset index " + file + ", it will be rebuilt", e);
+            entries.clear();
+            userNames.clear();
+            isComplete = false;
+            Files.deleteIfExists(file);
+        }
+
+        isLoaded = true;
+    }
+
+    private IndexEntry createEntry(final long offset, final String owner, final String committer, final String date) {
+        long time = NO_DATE;
+        if (StringUtils.isNotEmpty(date)) {
+            try {
+                time = dateFormat.parse(date).getTime();
+            } catch (ParseException e) {
+                logger.warn("Unable to parse the changeset date " + date, e);
+            }
+        }
+
+        return new IndexEntry(offset, time, getUserName(owner), getUserName(committer));
+    }
+
+    private String getUserName(final String name) {
+        if (name == null) {
+            return null;
+        }
+
+        final String existing = userNames.putIfAbsent(name, name);
+        return existing == null ? name : existing;
+    }
+
+    /**
+     * Reads the changesets with the given ids from the file, in the same order.
+     */
+    private List<ChangeSet> read(@NotNull final List<Integer> ids) throws IOException {
+        final List<ChangeSet> result = new ArrayList<ChangeSet>(ids.size());
+        if (ids.isEmpty()) {
+            return result;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (final Integer id : ids) {
+                channel.position(entries.get(id).offset);
+                // Not closed, so the channel stays open for the next record
+                final DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+                final int recordId = input.readInt();
+                if (recordId != id) {
+                    unload();
+                    throw new IOException("Changeset index " + file + " has changeset " + recordId + " instead of " + id);
+                }
+                result.add(readChangeSet(recordId, input));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes the record of a changeset: the id, the fields needed to filter the changesets, and then the length of the
+     * rest of the record, so it can be skipped while loading the index.
+     */
+    private static void writeChangeSet(final DataOutputStream output, final ChangeSet changeSet) throws IOException {
+        output.writeInt(changeSet.getIdAsInt());
+        writeString(output, changeSet.getOwner());
+        writeString(output, changeSet.getCommitter());
+        writeString(output, changeSet.getDate());
+
+        final ByteArrayOutputStream detailsBytes = new ByteArrayOutputStream();
+        final DataOutputStream details = new DataOutputStream(detailsBytes);
+        writeString(details, changeSet.getComment());
+
+        final List<CheckedInChange> changes = changeSet.getChanges();
+        details.writeInt(changes.size());
+        for (final CheckedInChange change : changes) {
+            writeString(details, change.getServerItem());
+
+            final List<String> changeTypes = new ArrayList<String>(change.getChangeTypes().size());
+            for (final ServerStatusType changeType : change.getChangeTypes()) {
+                if (changeType != ServerStatusType.UNKNOWN) {
+                    changeTypes.add(changeType.name());
+                }
+            }
+            writeString(details, StringUtils.join(changeTypes, ","));
+        }
+
+        output.writeInt(detailsBytes.size());
+        detailsBytes.writeTo(output);
+    }
+
+    private static ChangeSet readChangeSet(final int changeSetId, final DataInputStream input) throws IOException {
+        final String id = Integer.toString(changeSetId);
+        final String owner = readString(input);
+        final String committer = readString(input);
+        final String date = readString(input);
+        input.readInt(); // length of the details
+        final String comment = readString(input);
+
+        final int changeCount = input.readInt();
+        if (changeCount < 0) {
+            throw new IOException("Invalid change count: " + changeCount);
+        }
+
+        final List<CheckedInChange> changes = new ArrayList<CheckedInChange>(changeCount);
+        for (int i = 0; i < changeCount; i++) {
+            final String serverItem = readString(input);
+            final String changeTypes = readString(input);
+            changes.add(new CheckedInChange(serverItem, changeTypes, id, date));
+        }
+
+        return new ChangeSet(id, owner, committer, date, comment, changes);
+    }
+
+    // Unlike writeUTF, allows null values and strings longer than 64K (the comments may be long)
+    private static void writeString(final DataOutputStream output, final String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(final DataInputStream input) throws IOException {
+        final int length = input.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < -1) {
+            throw new IOException("Invalid string length: " + length);
+        }
+
+        final byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipFully(final DataInputStream input, final int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            final int skipped = input.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+    }
+}
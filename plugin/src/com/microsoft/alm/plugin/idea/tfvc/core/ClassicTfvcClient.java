@@ -58,6 +58,29 @@ public class ClassicTfvcClient implements TfvcClient {
                 () -> CommandUtils.getStatusForFiles(myProject, serverContext, pathsToProcess));
     }
 
+    @NotNull
+    @Override
+    public CompletionStage<Void> getStatusForFilesAsync(
+            @NotNull ServerContext serverContext,
+            @NotNull List<String> pathsToProcess,
+            @NotNull Consumer<PendingChange> onPendingChangeReceived) {
+        getStatusForFiles(serverContext, pathsToProcess, onPendingChangeReceived);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void getStatusForFiles(
+            @NotNull ServerContext serverContext,
+            @NotNull List<String> pathsToProcess,
+            @NotNull Consumer<PendingChange> onPendingChangeReceived) {
+        EULADialog.executeWithGuard(
+                myProject,
+                () -> {
+                    CommandUtils.getStatusForFiles(myProject, serverContext, pathsToProcess, onPendingChangeReceived);
+                    return null;
+                });
+    }
+
     @NotNull
     @Override
     public CompletionStage<Void> getLocalItemsInfoAsync(
@@ -0,0 +1,63 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Checks whether paths are under any of a set of roots. The roots are normalized once, and a path is checked with a
+ * lookup per its ancestor, so no path objects are created per checked item.
+ * <p/>
+ * Works for local paths (with either separator) and for server paths ($/...).
+ */
+class PathPrefixMatcher {
+    private final Set<String> rootKeys = new HashSet<>();
+    private final boolean ignoreCase;
+
+    PathPrefixMatcher(@NotNull final Collection<String> roots, final boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+        for (final String root : roots) {
+            if (root != null) {
+                rootKeys.add(getKey(root));
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return rootKeys.isEmpty();
+    }
+
+    /**
+     * @return true if the path is one of the roots or is under any of them.
+     */
+    boolean isUnderAny(@Nullable final String path) {
+        if (path == null || rootKeys.isEmpty()) {
+            return false;
+        }
+
+        // Both the roots and the path end with a separator, so every separator ends an ancestor to look up
+        final String key = getKey(path);
+        for (int index = key.indexOf('/'); index >= 0; index = key.indexOf('/', index + 1)) {
+            if (rootKeys.contains(key.substring(0, index + 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getKey(final String path) {
+        String key = FileUtil.toSystemIndependentName(path);
+        if (!key.endsWith("/")) {
+            key += "/";
+        }
+        return ignoreCase ? key.toLowerCase(Locale.ENGLISH) : key;
+    }
+}
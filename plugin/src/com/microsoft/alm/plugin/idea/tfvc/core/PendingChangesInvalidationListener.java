@@ -0,0 +1,71 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core;
+
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.LocalFilePath;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfIgnoreUtil;
+import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfvcPathFilter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Invalidates the paths affected by the VFS changes in the {@link PendingChangesSnapshot}. The changes inside of the
+ * TFVC service directories are ignored, since they're made by the TF client itself and don't affect the pending changes.
+ * A changed .tfignore file invalidates its whole directory, since it may change the status of any file under it.
+ */
+public class PendingChangesInvalidationListener implements BulkFileListener {
+
+    @NotNull
+    private final PendingChangesSnapshot mySnapshot;
+
+    public PendingChangesInvalidationListener(@NotNull PendingChangesSnapshot snapshot) {
+        mySnapshot = snapshot;
+    }
+
+    @Override
+    public void before(@NotNull List<? extends VFileEvent> events) {
+    }
+
+    @Override
+    public void after(@NotNull List<? extends VFileEvent> events) {
+        List<FilePath> paths = new ArrayList<>();
+        for (VFileEvent event : events) {
+            if (event instanceof VFileMoveEvent) {
+                VFileMoveEvent moveEvent = (VFileMoveEvent) event;
+                addPath(paths, moveEvent.getOldPath());
+                addPath(paths, moveEvent.getNewPath());
+            } else if (event instanceof VFilePropertyChangeEvent
+                    && ((VFilePropertyChangeEvent) event).isRename()) {
+                VFilePropertyChangeEvent renameEvent = (VFilePropertyChangeEvent) event;
+                addPath(paths, renameEvent.getOldPath());
+                addPath(paths, renameEvent.getNewPath());
+            } else {
+                addPath(paths, event.getPath());
+            }
+        }
+
+        mySnapshot.invalidate(paths);
+    }
+
+    private static void addPath(List<FilePath> paths, String path) {
+        if (TfvcPathFilter.isInServiceDirectory(path)) {
+            return;
+        }
+
+        FilePath filePath = new LocalFilePath(path, false);
+        FilePath parent = filePath.getParentPath();
+        if (parent != null && TfIgnoreUtil.TFIGNORE_FILE_NAME.equals(filePath.getName())) {
+            paths.add(parent);
+        } else {
+            paths.add(filePath);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.FilePath;
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.external.models.PendingChange;
+import com.microsoft.alm.plugin.idea.tfvc.core.tfs.RootsCollection;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory snapshot of the pending changes of a project's workspace, indexed by local path.
+ * <p/>
+ * The snapshot remembers the roots it has loaded the changes for. When the changes under a root are requested again,
+ * only the parts of it that were invalidated since (see {@link #invalidate(Collection)}) are loaded, and the rest is
+ * served from the index. A loaded root is considered fresh for {@link #TTL_PROPERTY} seconds, so the changes made
+ * outside of the IDE (that don't leave any trace in the VFS) get picked up eventually.
+ */
+public class PendingChangesSnapshot {
+    private static final Logger logger = LoggerFactory.getLogger(PendingChangesSnapshot.class);
+
+    public static final String TTL_PROPERTY = "com.microsoft.alm.plugin.idea.tfvc.core.PendingChangesSnapshot.ttlSeconds";
+
+    private static final long DEFAULT_TTL_SECONDS = 60;
+
+    /**
+     * When there are more invalidated paths than that, the whole snapshot is invalidated instead: loading a lot of
+     * separate paths isn't cheaper than loading the roots anyway.
+     */
+    private static final int MAX_INVALIDATED_PATHS = 1000;
+
+    private final Object lock = new Object();
+    private final long ttlNanos;
+    private final boolean ignoreCase;
+
+    private final NavigableMap<String, PendingChange> changesByLocalPath = new TreeMap<>();
+    private final Map<FilePath, Long> loadedRoots = new HashMap<>();
+    private final List<FilePath> invalidatedPaths = new ArrayList<>();
+
+    /**
+     * Incremented each time the snapshot is dropped, so the loads that were started before that don't mark their roots
+     * as loaded.
+     */
+    private long generation;
+
+    public PendingChangesSnapshot() {
+        this(TimeUnit.SECONDS.toNanos(Long.getLong(TTL_PROPERTY, DEFAULT_TTL_SECONDS)), !SystemInfo.isFileSystemCaseSensitive);
+    }
+
+    @VisibleForTesting
+    protected PendingChangesSnapshot(final long ttlNanos, final boolean ignoreCase) {
+        this.ttlNanos = ttlNanos;
+        this.ignoreCase = ignoreCase;
+    }
+
+    /**
+     * Marks the paths (and everything under them) as changed, so the next request covering them will load their
+     * changes again.
+     */
+    public void invalidate(@NotNull final Collection<FilePath> paths) {
+        if (paths.isEmpty()) {
+            return;
+        }
+
+        synchronized (lock) {
+            invalidatedPaths.addAll(paths);
+            if (invalidatedPaths.size() > MAX_INVALIDATED_PATHS) {
+                logger.info("Too many paths invalidated, dropping the pending changes snapshot");
+                clear();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (lock) {
+            clear();
+        }
+    }
+
+    /**
+     * Passes the pending changes under the roots to the consumer, loading only the parts of them that are not in the
+     * snapshot or were invalidated. The changes served from the snapshot are passed first, and then the loaded ones
+     * as soon as they arrive.
+     *
+     * @param roots    local paths to get the changes for (recursively).
+     * @param loader   loads the pending changes for the local paths passed (recursively), passing each of them to the
+     *                 consumer.
+     * @param onChange receives the pending changes under any of the roots, each of them once.
+     */
+    public void getPendingChanges(@NotNull final Collection<FilePath> roots,
+                                  @NotNull final BiConsumer<Collection<FilePath>, Consumer<PendingChange>> loader,
+                                  @NotNull final Consumer<PendingChange> onChange) {
+        ArgumentHelper.checkNotNull(roots, "roots");
+        ArgumentHelper.checkNotNull(loader, "loader");
+        ArgumentHelper.checkNotNull(onChange, "onChange");
+
+        final RootsCollection.FilePathRootsCollection pathsToLoad = new RootsCollection.FilePathRootsCollection();
+        final List<FilePath> claimedInvalidations = new ArrayList<>();
+        final List<PendingChange> cachedChanges = new ArrayList<>();
+        final long loadGeneration;
+        synchronized (lock) {
+            loadGeneration = generation;
+            final long now = System.nanoTime();
+            loadedRoots.values().removeIf(loadedAt -> now - loadedAt > ttlNanos);
+
+            for (final FilePath root : roots) {
+                if (!isLoaded(root) || isUnderAny(root, invalidatedPaths)) {
+                    pathsToLoad.add(root);
+                } else {
+                    for (final FilePath invalidated : invalidatedPaths) {
+                        if (invalidated.isUnder(root, false)) {
+                            pathsToLoad.add(invalidated);
+                        }
+                    }
+                }
+            }
+
+            // The invalidations that come while the paths are being loaded have to stay.
+            final Iterator<FilePath> iterator = invalidatedPaths.iterator();
+            while (iterator.hasNext()) {
+                final FilePath invalidated = iterator.next();
+                if (isUnderAny(invalidated, pathsToLoad)) {
+                    claimedInvalidations.add(invalidated);
+                    iterator.remove();
+                }
+            }
+
+            final PathPrefixMatcher loading = new PathPrefixMatcher(
+                    pathsToLoad.stream().map(FilePath::getPath).collect(Collectors.toList()), ignoreCase);
+            for (final FilePath root : roots) {
+                for (final Map<String, PendingChange> subtree : getSubtree(changesByLocalPath, getKey(root.getPath()))) {
+                    for (final PendingChange change : subtree.values()) {
+                        if (!loading.isUnderAny(change.getLocalItem())) {
+                            cachedChanges.add(change);
+                        }
+                    }
+                }
+            }
+        }
+
+        // The roots may overlap, and a loaded change may also be in the snapshot (e.g. a rename into a loaded root)
+        final Set<String> reportedKeys = new HashSet<>();
+        final long loadStarted = System.nanoTime();
+        final List<PendingChange> changes = new ArrayList<>();
+        try {
+            for (final PendingChange change : cachedChanges) {
+                if (reportedKeys.add(getKey(change.getLocalItem()))) {
+                    onChange.accept(change);
+                }
+            }
+
+            if (!pathsToLoad.isEmpty()) {
+                logger.info("Loading the pending changes for {} path(s)", pathsToLoad.size());
+                loader.accept(pathsToLoad, change -> {
+                    changes.add(change);
+                    if (change.getLocalItem() != null && reportedKeys.add(getKey(change.getLocalItem()))) {
+                        onChange.accept(change);
+                    }
+                });
+            }
+        } catch (final RuntimeException e) {
+            synchronized (lock) {
+                invalidatedPaths.addAll(claimedInvalidations);
+            }
+            throw e;
+        }
+
+        if (!pathsToLoad.isEmpty()) {
+            synchronized (lock) {
+                update(pathsToLoad, changes, loadGeneration == generation ? roots : Collections.emptyList(), loadStarted);
+            }
+        }
+    }
+
+    private void update(final Collection<FilePath> loadedPaths,
+                        final List<PendingChange> changes,
+                        final Collection<FilePath> requestedRoots,
+                        final long loadStarted) {
+        for (final FilePath path : loadedPaths) {
+            for (final Map<String, PendingChange> subtree : getSubtree(changesByLocalPath, getKey(path.getPath()))) {
+                subtree.clear();
+            }
+        }
+
+        for (final PendingChange change : changes) {
+            if (change.getLocalItem() == null) {
+                continue;
+            }
+
+            changesByLocalPath.put(getKey(change.getLocalItem()), change);
+        }
+
+        // Only the requested roots become loaded: the invalidated paths were only a part of them.
+        for (final FilePath root : requestedRoots) {
+            if (isUnderAny(root, loadedPaths)) {
+                loadedRoots.keySet().removeIf(loaded -> loaded.isUnder(root, false));
+                loadedRoots.put(root, loadStarted);
+            }
+        }
+    }
+
+    private boolean isLoaded(final FilePath path) {
+        return isUnderAny(path, loadedRoots.keySet());
+    }
+
+    private static boolean isUnderAny(final FilePath path, final Collection<FilePath> roots) {
+        for (final FilePath root : roots) {
+            if (path.isUnder(root, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void clear() {
+        changesByLocalPath.clear();
+        loadedRoots.clear();
+        invalidatedPaths.clear();
+        ++generation;
+    }
+
+    private String getKey(final String path) {
+        String key = FileUtil.toSystemIndependentName(path);
+        if (key.length() > 1 && key.endsWith("/")) {
+            key = key.substring(0, key.length() - 1);
+        }
+        return ignoreCase ? key.toLowerCase(Locale.ENGLISH) : key;
+    }
+
+    /**
+     * Returns the views of the entries for the path itself and for all the paths under it.
+     */
+    private static List<Map<String, PendingChange>> getSubtree(final NavigableMap<String, PendingChange> map,
+                                                               final String key) {
+        // ('/' + 1) is the character right after the separator, so it limits the range of keys starting with "key/".
+        final String prefix = key.endsWith("/") ? key : key + "/";
+        final String prefixEnd = prefix.substring(0, prefix.length() - 1) + (char) ('/' + 1);
+        return ImmutableList.of(
+                map.subMap(key, true, key, true),
+                map.subMap(prefix, true, prefixEnd, false));
+    }
+}
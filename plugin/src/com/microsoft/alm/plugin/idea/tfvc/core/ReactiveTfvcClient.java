@@ -58,6 +58,15 @@ public class ReactiveTfvcClient implements TfvcClient {
         });
     }
 
+    /**
+     * Starts the client and initializes the collection for the server context in advance.
+     */
+    @NotNull
+    public CompletionStage<Void> warmUpAsync(@NotNull ServerContext serverContext) {
+        return traceTime("Warm-up", () -> ReactiveTfvcClientHolder.getInstance(myProject)
+                .warmUpAsync(getServerIdentification(serverContext)));
+    }
+
     @Override
     @NotNull
     public CompletionStage<List<PendingChange>> getStatusForFilesAsync(
@@ -72,6 +81,24 @@ public class ReactiveTfvcClient implements TfvcClient {
         });
     }
 
+    @NotNull
+    @Override
+    public CompletionStage<Void> getStatusForFilesAsync(
+            @NotNull ServerContext serverContext,
+            @NotNull List<String> pathsToProcess,
+            @NotNull Consumer<PendingChange> onPendingChangeReceived) {
+        return traceTime("Status", () -> {
+            ServerIdentification serverIdentification = getServerIdentification(serverContext);
+            Stream<Path> paths = pathsToProcess.stream().map(Paths::get);
+
+            return ReactiveTfvcClientHolder.getInstance(myProject).getClient()
+                    .thenCompose(client -> client.getPendingChangesAsync(
+                            serverIdentification,
+                            paths,
+                            onPendingChangeReceived));
+        });
+    }
+
     @NotNull
     @Override
     public CompletionStage<Void> getLocalItemsInfoAsync(
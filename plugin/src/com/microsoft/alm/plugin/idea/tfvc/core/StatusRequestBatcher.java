@@ -0,0 +1,275 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.vcs.FilePath;
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.external.models.PendingChange;
+import com.microsoft.alm.plugin.idea.tfvc.core.tfs.RootsCollection;
+import com.microsoft.alm.plugin.versioncontrol.path.WorkspaceMappingIndex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Coalesces the pending change requests for dirty scopes of a project.
+ * <p/>
+ * A caller that comes while no other request is executing runs its request right away. Otherwise it opens a batch
+ * (or joins the one that is still collecting) and waits for {@link #BATCH_WINDOW_PROPERTY} milliseconds, so the roots
+ * requested by the concurrent callers are merged into a single request (with the children of the already requested
+ * roots dropped, since the requests are recursive).
+ * <p/>
+ * A request that is already executing may have been started before the caller's paths were invalidated, so it is
+ * never joined. A caller whose roots are all covered by an executing request asks for it to be re-run instead: the
+ * callers that came during the execution share a single follow-up request, started as soon as the first one is done.
+ * <p/>
+ * The changes are passed to every caller of a request as soon as they arrive; each caller only gets the changes
+ * under its own roots.
+ */
+public class StatusRequestBatcher {
+    private static final Logger logger = LoggerFactory.getLogger(StatusRequestBatcher.class);
+
+    public static final String BATCH_WINDOW_PROPERTY = "com.microsoft.alm.plugin.idea.tfvc.core.StatusRequestBatcher.batchWindowMs";
+
+    private static final long DEFAULT_BATCH_WINDOW_MS = 50;
+
+    private final Object lock = new Object();
+    private final long batchWindowMs;
+    private final List<Batch> executingBatches = new ArrayList<>();
+    private Batch collectingBatch;
+
+    public StatusRequestBatcher() {
+        this(Long.getLong(BATCH_WINDOW_PROPERTY, DEFAULT_BATCH_WINDOW_MS));
+    }
+
+    @VisibleForTesting
+    protected StatusRequestBatcher(final long batchWindowMs) {
+        this.batchWindowMs = batchWindowMs;
+    }
+
+    /**
+     * Passes the pending changes under the roots to the consumer, as soon as they are loaded. Returns after all of
+     * them were passed.
+     *
+     * @param roots    local paths to get the changes for (recursively).
+     * @param mappings the workspace mappings used to match the renamed items by their source (server) path; if null,
+     *                 the changes are only matched by their local path.
+     * @param loader   loads the pending changes for the list of local paths, passing each of them to the consumer;
+     *                 only called if the current caller has to execute the batched request.
+     * @param onChange receives the pending changes whose local or source item is under any of the roots.
+     */
+    public void getPendingChanges(@NotNull final Collection<FilePath> roots,
+                                  @Nullable final WorkspaceMappingIndex mappings,
+                                  @NotNull final BiConsumer<List<String>, Consumer<PendingChange>> loader,
+                                  @NotNull final Consumer<PendingChange> onChange) {
+        ArgumentHelper.checkNotNull(roots, "roots");
+        ArgumentHelper.checkNotNull(loader, "loader");
+        ArgumentHelper.checkNotNull(onChange, "onChange");
+
+        final Subscriber subscriber = new Subscriber(roots, mappings, onChange);
+        final Batch batch;
+        Batch previous = null;
+        boolean isOwner = false;
+        boolean shouldWait = false;
+        synchronized (lock) {
+            Batch rerun = null;
+            for (final Batch executing : executingBatches) {
+                if (executing.covers(roots)) {
+                    if (executing.rerun == null) {
+                        executing.rerun = new Batch();
+                        previous = executing;
+                        isOwner = true;
+                    }
+                    rerun = executing.rerun;
+                    break;
+                }
+            }
+
+            if (rerun != null) {
+                logger.debug("Requesting a re-run of the executing status request for {}", roots);
+                batch = rerun;
+                batch.roots.addAll(roots);
+            } else {
+                if (collectingBatch == null) {
+                    collectingBatch = new Batch();
+                    isOwner = true;
+                    // Only wait for other callers if there is any concurrency, so a single refresh isn't delayed
+                    shouldWait = !executingBatches.isEmpty();
+                }
+                batch = collectingBatch;
+                batch.roots.addAll(roots);
+            }
+            batch.subscribers.add(subscriber);
+        }
+
+        if (isOwner) {
+            if (previous != null) {
+                awaitQuietly(previous);
+            } else if (shouldWait && batchWindowMs > 0) {
+                try {
+                    Thread.sleep(batchWindowMs);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            execute(batch, loader);
+        }
+
+        await(batch);
+        if (subscriber.error != null) {
+            rethrow(subscriber.error);
+        }
+    }
+
+    private void execute(final Batch batch, final BiConsumer<List<String>, Consumer<PendingChange>> loader) {
+        final List<String> paths;
+        final List<Subscriber> subscribers;
+        synchronized (lock) {
+            if (collectingBatch == batch) {
+                collectingBatch = null;
+            }
+            executingBatches.add(batch);
+            paths = batch.roots.stream().map(FilePath::getPath).collect(Collectors.toList());
+            subscribers = new ArrayList<>(batch.subscribers);
+        }
+
+        Throwable error = null;
+        try {
+            logger.info("Requesting the pending changes for {} root(s)", paths.size());
+            loader.accept(paths, change -> {
+                for (final Subscriber subscriber : subscribers) {
+                    subscriber.accept(change);
+                }
+            });
+        } catch (final Throwable t) {
+            error = t;
+        } finally {
+            // The batch can't be joined after that, so the callers that come later start a new one
+            synchronized (lock) {
+                executingBatches.remove(batch);
+            }
+        }
+
+        if (error == null) {
+            batch.result.complete(null);
+        } else {
+            batch.result.completeExceptionally(error);
+        }
+    }
+
+    private static void await(final Batch batch) {
+        try {
+            batch.result.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (final ExecutionException e) {
+            rethrow(e.getCause());
+        }
+    }
+
+    private static void awaitQuietly(final Batch batch) {
+        try {
+            batch.result.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException e) {
+            // The re-run doesn't depend on the result of the previous request
+        }
+    }
+
+    private static void rethrow(final Throwable t) {
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new RuntimeException(t);
+    }
+
+    /**
+     * A caller waiting for a batch, with its roots prepared for matching the changes.
+     */
+    private static class Subscriber {
+        private final PathPrefixMatcher localRoots;
+        private final PathPrefixMatcher serverRoots;
+        private final Consumer<PendingChange> consumer;
+        private volatile Throwable error;
+
+        Subscriber(final Collection<FilePath> roots,
+                   @Nullable final WorkspaceMappingIndex mappings,
+                   final Consumer<PendingChange> consumer) {
+            final List<String> localPaths = roots.stream().map(FilePath::getPath).collect(Collectors.toList());
+            this.localRoots = new PathPrefixMatcher(localPaths, !SystemInfo.isFileSystemCaseSensitive);
+            // The source item of a rename is a server path, so the roots are translated once instead of every change
+            final List<String> serverPaths = new ArrayList<>();
+            if (mappings != null) {
+                for (final String localPath : localPaths) {
+                    serverPaths.add(mappings.translateLocalItemToServerItem(localPath));
+                }
+            }
+            this.serverRoots = new PathPrefixMatcher(serverPaths, true);
+            this.consumer = consumer;
+        }
+
+        /**
+         * Called for the changes of the batch one by one, never concurrently.
+         */
+        void accept(final PendingChange change) {
+            if (error != null) {
+                return;
+            }
+
+            if (localRoots.isUnderAny(change.getLocalItem()) || serverRoots.isUnderAny(change.getSourceItem())) {
+                try {
+                    consumer.accept(change);
+                } catch (final Throwable t) {
+                    // Only this caller fails, the others still get their changes
+                    error = t;
+                }
+            }
+        }
+    }
+
+    private static class Batch {
+        private final RootsCollection.FilePathRootsCollection roots = new RootsCollection.FilePathRootsCollection();
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        /**
+         * The batch for the callers covered by this one that came while it was executing. Guarded by the batcher lock.
+         */
+        private Batch rerun;
+
+        /**
+         * Checks whether every path passed is under a root of this batch. Should be called under the batcher lock.
+         */
+        private boolean covers(final Collection<FilePath> paths) {
+            for (final FilePath path : paths) {
+                boolean isCovered = false;
+                for (final FilePath root : roots) {
+                    if (path.isUnder(root, false)) {
+                        isCovered = true;
+                        break;
+                    }
+                }
+                if (!isCovered) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
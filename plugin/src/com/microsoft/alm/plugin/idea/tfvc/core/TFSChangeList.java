@@ -26,6 +26,7 @@ import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.changes.Change;
 import com.intellij.openapi.vcs.versionBrowser.CommittedChangeList;
 import com.intellij.vcsUtil.VcsUtil;
+import com.microsoft.alm.plugin.idea.tfvc.core.revision.RevisionContentPrefetcher;
 import com.microsoft.alm.plugin.idea.tfvc.core.revision.TFSContentRevision;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
@@ -42,7 +43,10 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class TFSChangeList implements CommittedChangeList {
     public static final Logger logger = LoggerFactory.getLogger(TFSChangeList.class);
@@ -62,6 +66,8 @@ public class TFSChangeList implements CommittedChangeList {
     private final List<FilePath> deletedFiles = new ArrayList<FilePath>();
     private final List<FilePath> renamedFiles = new ArrayList<FilePath>();
     private final List<FilePath> editedFiles = new ArrayList<FilePath>();
+    // local paths of the changed items to their server paths in the changeset
+    private final Map<String, String> serverItems = new HashMap<String, String>();
 
     public TFSChangeList(final TFSVcs vcs, final DataInput stream) {
         this.myVcs = vcs;
@@ -69,13 +75,14 @@ public class TFSChangeList implements CommittedChangeList {
     }
 
     public TFSChangeList(final List<FilePath> addedFiles, final List<FilePath> deletedFiles, final List<FilePath> renamedFiles,
-                         final List<FilePath> editedFiles, final int changeSetId, final String author, final String comment,
+                         final List<FilePath> editedFiles, final Map<String, String> serverItems, final int changeSetId, final String author, final String comment,
                          final String changeSetDate, final int previousChangeSetId, final String previousChangeSetDate,
                          final TFSVcs vcs, final String workspaceName) {
         this.addedFiles.addAll(addedFiles);
         this.deletedFiles.addAll(deletedFiles);
         this.renamedFiles.addAll(renamedFiles);
         this.editedFiles.addAll(editedFiles);
+        this.serverItems.putAll(serverItems);
 
         this.changeSetId = changeSetId;
         this.author = author;
@@ -127,6 +134,8 @@ public class TFSChangeList implements CommittedChangeList {
      * tell which 'rename' change goes with which 'delete source rename' change if there are multiple renames in a changeset.
      * To deal with this, we will treat the 'delete source rename' changes as deletes and 'rename' changes as adds. This
      * is what JetBrains did as well so it doesn't differ from their experience.
+     * <p>
+     * The contents of the file revisions are prefetched in background once the first of them is loaded for a diff.
      *
      * @return
      */
@@ -134,26 +143,68 @@ public class TFSChangeList implements CommittedChangeList {
         if (changes == null) {
             changes = new ArrayList<Change>();
             logger.debug("Initializing the changes for the changeset: " + changeSetId);
+            final List<TFSContentRevision> contentRevisions = new ArrayList<TFSContentRevision>();
 
             for (final FilePath path : addedFiles) {
-                changes.add(new Change(null, TFSContentRevision.create(myVcs.getProject(), path, changeSetId, changeSetDate)));
+                changes.add(new Change(null, createRevision(path, changeSetId, changeSetDate, contentRevisions)));
             }
             for (final FilePath path : deletedFiles) {
-                changes.add(new Change(TFSContentRevision.create(myVcs.getProject(), path, previousChangeSetId, previousChangeSetDate), null));
+                changes.add(new Change(createRevision(path, previousChangeSetId, previousChangeSetDate, contentRevisions), null));
             }
             for (final FilePath path : renamedFiles) {
                 // treated like an add (more on why above)
-                changes.add(new Change(null, TFSContentRevision.create(myVcs.getProject(), path, changeSetId, changeSetDate)));
+                changes.add(new Change(null, createRevision(path, changeSetId, changeSetDate, contentRevisions)));
             }
             for (final FilePath path : editedFiles) {
-                final TFSContentRevision before = TFSContentRevision.create(myVcs.getProject(), path, previousChangeSetId, previousChangeSetDate);
-                final TFSContentRevision after = TFSContentRevision.create(myVcs.getProject(), path, changeSetId, changeSetDate);
+                final TFSContentRevision before = createRevision(path, previousChangeSetId, previousChangeSetDate, contentRevisions);
+                final TFSContentRevision after = createRevision(path, changeSetId, changeSetDate, contentRevisions);
                 changes.add(new Change(before, after));
             }
+
+            final Runnable prefetch = createPrefetch(contentRevisions);
+            for (final TFSContentRevision revision : contentRevisions) {
+                revision.setPrefetch(prefetch);
+            }
         }
         return changes;
     }
 
+    /**
+     * Creates the revision of a changed item. The items known to the changeset are identified by their server paths,
+     * so their contents are downloaded and cached by the server item of the changeset, not by the one the local path
+     * is mapped to today.
+     */
+    private TFSContentRevision createRevision(final FilePath path, final int changeset, final String date,
+                                              final List<TFSContentRevision> contentRevisions) {
+        final String serverItem = serverItems.get(path.getPath());
+        final TFSContentRevision revision = serverItem == null
+                ? TFSContentRevision.create(myVcs.getProject(), path, changeset, date)
+                : TFSContentRevision.createRenameRevision(myVcs.getProject(), path, changeset, date, serverItem);
+        contentRevisions.add(revision);
+        return revision;
+    }
+
+    /**
+     * Creates the action that prefetches the file contents of the revisions when the first one of them is loaded,
+     * i.e. when the user opens a diff of this change list, and not when the change list is merely listed.
+     */
+    private Runnable createPrefetch(final List<TFSContentRevision> contentRevisions) {
+        final List<RevisionContentPrefetcher.ItemRevision> revisions = new ArrayList<RevisionContentPrefetcher.ItemRevision>();
+        for (final TFSContentRevision revision : contentRevisions) {
+            final String serverItem = serverItems.get(revision.getFile().getPath());
+            if (serverItem != null && !revision.getFile().isDirectory()) {
+                revisions.add(new RevisionContentPrefetcher.ItemRevision(serverItem, revision.getChangeset()));
+            }
+        }
+
+        final AtomicBoolean isStarted = new AtomicBoolean();
+        return () -> {
+            if (!revisions.isEmpty() && isStarted.compareAndSet(false, true)) {
+                RevisionContentPrefetcher.prefetchAsync(myVcs.getProject(), revisions);
+            }
+        };
+    }
+
     public Collection<Change> getChangesWithMovedTrees() {
         return getChanges();
     }
@@ -196,6 +247,11 @@ public class TFSChangeList implements CommittedChangeList {
         stream.writeInt(previousChangeSetId);
         stream.writeUTF(previousChangeSetDate);
         stream.writeUTF(workspaceName);
+        stream.writeInt(serverItems.size());
+        for (final Map.Entry<String, String> entry : serverItems.entrySet()) {
+            stream.writeUTF(entry.getKey());
+            stream.writeUTF(entry.getValue());
+        }
     }
 
     /**
@@ -216,6 +272,10 @@ public class TFSChangeList implements CommittedChangeList {
             previousChangeSetId = stream.readInt();
             previousChangeSetDate = stream.readUTF();
             workspaceName = stream.readUTF();
+            final int serverItemCount = stream.readInt();
+            for (int i = 0; i < serverItemCount; i++) {
+                serverItems.put(stream.readUTF(), stream.readUTF());
+            }
         } catch (final IOException e) {
             logger.warn("Error reading changelist from stream", e);
 
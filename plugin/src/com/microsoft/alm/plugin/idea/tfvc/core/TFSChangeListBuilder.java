@@ -41,13 +41,14 @@ public class TFSChangeListBuilder {
         final List<FilePath> deletedFiles = new ArrayList<FilePath>(changeSet.getChanges().size());
         final List<FilePath> renamedFiles = new ArrayList<FilePath>(changeSet.getChanges().size());
         final List<FilePath> editedFiles = new ArrayList<FilePath>(changeSet.getChanges().size());
+        final Map<String, String> serverItems = new HashMap<String, String>(changeSet.getChanges().size());
 
         for (final CheckedInChange pendingChange : changeSet.getChanges()) {
             final FilePath path;
             if (filePathCache.containsKey(pendingChange.getServerItem())) {
                 path = filePathCache.get(pendingChange.getServerItem());
             } else {
-                final String localPath = TfsFileUtil.translateServerItemToLocalItem(workspace.getMappings(), pendingChange.getServerItem());
+                final String localPath = TfsFileUtil.translateServerItemToLocalItem(workspace, pendingChange.getServerItem());
                 if (StringUtils.isEmpty(localPath)) {
                     logger.warn("Could not find a local path for file: " + pendingChange.getServerItem());
                     continue;
@@ -56,6 +57,7 @@ public class TFSChangeListBuilder {
                 path = VersionControlPath.getFilePath(file.getPath(), file.isDirectory());
                 filePathCache.put(pendingChange.getServerItem(), path);
             }
+            serverItems.put(path.getPath(), pendingChange.getServerItem());
 
             // figuring out what type of change it is
             if (pendingChange.getChangeTypes().contains(ServerStatusType.ADD)
@@ -72,7 +74,7 @@ public class TFSChangeListBuilder {
             }
         }
 
-        return new TFSChangeList(addedFiles, deletedFiles, renamedFiles, editedFiles, changeSet.getIdAsInt(),
+        return new TFSChangeList(addedFiles, deletedFiles, renamedFiles, editedFiles, serverItems, changeSet.getIdAsInt(),
                 changeSet.getCommitter(), changeSet.getComment(), changeSet.getDate(), previousChangeSetId,
                 previousChangeSetDate, vcs, workspace.getName());
     }
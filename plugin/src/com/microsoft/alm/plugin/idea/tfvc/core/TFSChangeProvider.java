@@ -22,24 +22,27 @@ package com.microsoft.alm.plugin.idea.tfvc.core;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.LocalFilePath;
 import com.intellij.openapi.vcs.changes.ChangeListManager;
 import com.intellij.openapi.vcs.changes.ChangeListManagerGate;
 import com.intellij.openapi.vcs.changes.ChangeProvider;
 import com.intellij.openapi.vcs.changes.ChangelistBuilder;
 import com.intellij.openapi.vcs.changes.VcsDirtyScope;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.microsoft.alm.plugin.context.ServerContext;
-import com.microsoft.alm.plugin.external.models.PendingChange;
+import com.microsoft.alm.plugin.external.models.Workspace;
+import com.microsoft.alm.plugin.external.utils.CommandUtils;
 import com.microsoft.alm.plugin.idea.tfvc.core.tfs.RootsCollection;
 import com.microsoft.alm.plugin.idea.tfvc.core.tfs.StatusProvider;
 import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TFVCUtil;
+import com.microsoft.alm.plugin.versioncontrol.path.WorkspaceMappingIndex;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Extends the VCS change provider to execture the correct events to find out the local changes in the workspace
@@ -97,19 +100,46 @@ public class TFSChangeProvider implements ChangeProvider {
             return;
         }
 
-        List<PendingChange> changes;
+        // the snapshot is only invalidated by the VFS events and by the plugin's own operations (see
+        // PendingChangesInvalidationListener and TfsFileUtil), so the unchanged part of the scope is served from it
+        final PendingChangesSnapshot snapshot = myVcs.getPendingChangesSnapshot();
+
+        // for each change, find out the status of the changes and then add to the list as soon as it arrives; the
+        // requests from concurrent dirty scope updates are coalesced by the batcher
+        final ChangelistBuilderStatusVisitor changelistBuilderStatusVisitor = new ChangelistBuilderStatusVisitor(project, builder);
         try {
-            ServerContext serverContext = myVcs.getServerContext(true);
-            changes = TfvcClient.getInstance(project).getStatusForFiles(serverContext, pathsToProcess);
+            final List<FilePath> validRoots = pathsToProcess.stream()
+                    .map(path -> new LocalFilePath(path, false))
+                    .collect(Collectors.toList());
+            final WorkspaceMappingIndex mappings = getMappingIndex(project);
+            snapshot.getPendingChanges(
+                    validRoots,
+                    (paths, onLoaded) -> myVcs.getStatusRequestBatcher().getPendingChanges(
+                            paths,
+                            mappings,
+                            (batch, onBatchChange) -> TfvcClient.getInstance(project).getStatusForFiles(
+                                    myVcs.getServerContext(true),
+                                    batch,
+                                    onBatchChange),
+                            onLoaded),
+                    change -> StatusProvider.visitByStatus(changelistBuilderStatusVisitor, change));
         } catch (final Throwable t) {
             logger.error("Failed to get changes from command line. roots=" + StringUtils.join(pathsToProcess, ", "), t);
-            changes = Collections.emptyList();
         }
+    }
 
-        // for each change, find out the status of the changes and then add to the list
-        final ChangelistBuilderStatusVisitor changelistBuilderStatusVisitor = new ChangelistBuilderStatusVisitor(project, builder);
-        for (final PendingChange change : changes) {
-            StatusProvider.visitByStatus(changelistBuilderStatusVisitor, change);
+    /**
+     * The mappings are only used to match the renamed items by their source path, so the changes are still reported
+     * without them.
+     */
+    @Nullable
+    private static WorkspaceMappingIndex getMappingIndex(@NotNull final Project project) {
+        try {
+            final Workspace workspace = CommandUtils.getPartialWorkspace(project, false);
+            return workspace == null ? null : workspace.getMappingIndex();
+        } catch (final Throwable t) {
+            logger.warn("Unable to get the workspace mappings", t);
+            return null;
         }
     }
 }
\ No newline at end of file
@@ -57,6 +57,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class TFSCommittedChangesProvider implements CachingCommittedChangesProvider<TFSChangeList, ChangeBrowserSettings> {
     public static final Logger logger = LoggerFactory.getLogger(TFSCommittedChangesProvider.class);
@@ -131,6 +132,29 @@ public class TFSCommittedChangesProvider implements CachingCommittedChangesProvi
                                      final RepositoryLocation location,
                                      final int maxCount,
                                      final AsynchConsumer consumer) throws VcsException {
+        final TFSRepositoryLocation tfsRepositoryLocation = (TFSRepositoryLocation) location;
+        final ServerContext context = TFSVcs.getInstance(project).getServerContext(false);
+        final TFSChangeListBuilder tfsChangeListBuilder = new TFSChangeListBuilder(vcs, tfsRepositoryLocation.getWorkspace());
+
+        final String rootPath = tfsRepositoryLocation.getRoot().getPath();
+        final ChangesetIndex index = ChangesetIndex.getInstance(tfsRepositoryLocation.getWorkspace(), rootPath);
+        if (index != null) {
+            try {
+                logger.info("Loading committed changes for file {} from the changeset index", rootPath);
+                index.update(context, rootPath, settings, maxCount);
+                for (final ChangeSet changeSet : index.query(settings, maxCount)) {
+                    final ChangeSet previousChangeSet = index.getPrevious(changeSet.getIdAsInt());
+                    consumer.consume(previousChangeSet == null
+                            ? tfsChangeListBuilder.createChangeList(changeSet, 0, StringUtils.EMPTY)
+                            : tfsChangeListBuilder.createChangeList(changeSet, previousChangeSet.getIdAsInt(), previousChangeSet.getDate()));
+                }
+                consumer.finished();
+                return;
+            } catch (IOException e) {
+                logger.warn("Unable to use the changeset index, loading the history from the server", e);
+            }
+        }
+
         // TODO: (JetBrains) if revision and date filters are both set, which one should have priority?
         VersionSpec versionFrom = VersionSpec.create(1);
         if (settings.getChangeAfterFilter() != null) {
@@ -149,27 +173,30 @@ public class TFSCommittedChangesProvider implements CachingCommittedChangesProvi
         }
         final VersionSpec.Range range = new VersionSpec.Range(versionFrom, versionTo);
 
-        final TFSRepositoryLocation tfsRepositoryLocation = (TFSRepositoryLocation) location;
         logger.info("Loading committed changes for file {}, range {}", tfsRepositoryLocation.getRoot(), range);
-        final ServerContext context = TFSVcs.getInstance(project).getServerContext(false);
-        final List<ChangeSet> changeSets = CommandUtils.getHistoryCommand(context, tfsRepositoryLocation.getRoot().getPath(),
-                range.toString(), maxCount, true, settings.getUserFilter() == null ? StringUtils.EMPTY : settings.getUserFilter());
+        final String user = settings.getUserFilter() == null ? StringUtils.EMPTY : settings.getUserFilter();
+
+        // changesets arrive in order of newest to oldest so we can assume the next checkin received is the actual
+        // previous checkin in time: each change list is reported as soon as the changeset after it arrives
+        final AtomicReference<ChangeSet> lastChangeSet = new AtomicReference<ChangeSet>();
+        CommandUtils.getHistoryCommand(context, tfsRepositoryLocation.getRoot().getPath(), range.toString(), maxCount,
+                true, user, false, changeSet -> {
+                    final ChangeSet newerChangeSet = lastChangeSet.getAndSet(changeSet);
+                    if (newerChangeSet != null) {
+                        consumer.consume(tfsChangeListBuilder.createChangeList(newerChangeSet, changeSet.getIdAsInt(), changeSet.getDate()));
+                    }
+                });
 
         // no changesets were found with the parameters
-        if (changeSets.isEmpty()) {
+        if (lastChangeSet.get() == null) {
             logger.info(String.format("No changesets were found in history for the range %s and user %s"
-                    , range.toString(), settings.getUserFilter() == null ? StringUtils.EMPTY : settings.getUserFilter()));
+                    , range.toString(), user));
             consumer.finished();
             return;
         }
 
-        final TFSChangeListBuilder tfsChangeListBuilder = new TFSChangeListBuilder(vcs, tfsRepositoryLocation.getWorkspace());
-        // list is in order of newest to oldest so we can assume the next checkin in the list is the actual previous checkin in time
-        for (int i = 0; i < changeSets.size() - 1; i++) {
-            consumer.consume(tfsChangeListBuilder.createChangeList(changeSets.get(i), changeSets.get(i + 1).getIdAsInt(), changeSets.get(i + 1).getDate()));
-        }
         // this is the first checkin to the repo so there is no previous checkin to refer to
-        consumer.consume(tfsChangeListBuilder.createChangeList(changeSets.get(changeSets.size() - 1), 0, StringUtils.EMPTY));
+        consumer.consume(tfsChangeListBuilder.createChangeList(lastChangeSet.get(), 0, StringUtils.EMPTY));
         consumer.finished();
     }
 
@@ -196,7 +223,7 @@ public class TFSCommittedChangesProvider implements CachingCommittedChangesProvi
     }
 
     public int getFormatVersion() {
-        return 1;
+        return 2;
     }
 
     public void writeChangeList(final DataOutput stream, final TFSChangeList list) throws IOException {
@@ -50,17 +50,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
 
 public class TFSDiffProvider extends DiffProviderEx {
     private static final Logger logger = LoggerFactory.getLogger(TFSDiffProvider.class);
-    private static final int MINIMAL_WAIT_FOR_RETRY = 60 * 1000;
 
     private final Project project;
-    private List<Workspace.Mapping> mappings;
-    private Calendar lastUpdated;
 
     public TFSDiffProvider(@NotNull final Project project) {
         this.project = project;
@@ -197,29 +193,14 @@ public class TFSDiffProvider extends DiffProviderEx {
     }
 
     /**
-     * Gets the mappings from the current workspaces based on the last minute. We want to cache this information
-     * because sometimes revision numbers are retrieved for all files in a repo at once and if we resolve the workspace
-     * mappings every time the performance is horrible
-     * <p>
-     * The mappings will update if more than a minute is passed to make sure the mapping is up-to-date
+     * Gets the mappings from the current workspace. Sometimes revision numbers are retrieved for all files in a repo at
+     * once, so the mappings are taken from {@link com.microsoft.alm.plugin.external.utils.WorkspaceCache} instead of
+     * being resolved every time.
      *
      * @return
      */
     private List<Workspace.Mapping> getUpdatedMappings() {
-        if (mappings == null || lastUpdated == null || (Calendar.getInstance().getTimeInMillis() - lastUpdated.getTimeInMillis() > MINIMAL_WAIT_FOR_RETRY)) {
-            updateMappings();
-        }
-        return mappings;
-    }
-
-    /**
-     * Updates the cached mappings
-     * <p>
-     * TODO: call this from places where we know a mapping change has occurred
-     */
-    public void updateMappings() {
         final Workspace workspace = CommandUtils.getPartialWorkspace(project);
-        mappings = workspace.getMappings();
-        lastUpdated = Calendar.getInstance();
+        return workspace.getMappings();
     }
-}
\ No newline at end of file
+}
@@ -20,6 +20,9 @@
 package com.microsoft.alm.plugin.idea.tfvc.core;
 
 import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsConfiguration;
@@ -52,6 +55,13 @@ import java.util.List;
 public class TFSHistoryProvider implements VcsHistoryProvider {
     public static final Logger logger = LoggerFactory.getLogger(TFSHistoryProvider.class);
 
+    /**
+     * Number of changesets loaded before the history is shown; the rest are appended as they arrive.
+     */
+    public static final String FIRST_PAGE_SIZE_PROPERTY =
+            "com.microsoft.alm.plugin.idea.tfvc.core.TFSHistoryProvider.firstPageSize";
+    private static final int DEFAULT_FIRST_PAGE_SIZE = 50;
+
     private final Project project;
 
     public TFSHistoryProvider(@NotNull final Project project) {
@@ -92,7 +102,7 @@ public class TFSHistoryProvider implements VcsHistoryProvider {
     }
 
     private static VcsAbstractHistorySession createSession(final VcsRevisionNumber currentRevisionNumber,
-                                                           final List<TfsFileRevision> revisions,
+                                                           final List<? extends VcsFileRevision> revisions,
                                                            final boolean isFile) {
         return new VcsAbstractHistorySession(revisions) {
             public VcsRevisionNumber calcCurrentRevisionNumber() {
@@ -105,7 +115,8 @@ public class TFSHistoryProvider implements VcsHistoryProvider {
 
             @Override
             public VcsHistorySession copy() {
-                return createSession(currentRevisionNumber, revisions, isFile);
+                // The revision list may have been appended to since the session was created.
+                return createSession(currentRevisionNumber, getRevisionList(), isFile);
             }
 
             @Override
@@ -115,28 +126,82 @@ public class TFSHistoryProvider implements VcsHistoryProvider {
         };
     }
 
+    /**
+     * Shows the first page of the history as soon as it is loaded, and then appends the older changesets to the
+     * session one by one as they are parsed from the history command output. Canceling the history loading stops
+     * the command at the next changeset.
+     */
     public void reportAppendableHistory(final FilePath path, final VcsAppendableHistorySessionPartner partner) throws VcsException {
-        final VcsHistorySession session = createSessionFor(path);
-        partner.reportCreatedEmptySession((VcsAbstractHistorySession) session);
+        final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        try {
+            final ServerContext serverContext = TFSVcs.getInstance(project).getServerContext(true);
+            final boolean isDirectory = path.isDirectory();
+            final int maxCount = getMaxCount(project);
+            final int firstPageSize = Math.min(maxCount, Integer.getInteger(FIRST_PAGE_SIZE_PROPERTY, DEFAULT_FIRST_PAGE_SIZE));
+
+            final List<ChangeSet> firstPage = CommandUtils.getHistoryCommand(serverContext, path.getPath(), null, firstPageSize, isDirectory, null, false);
+            if (firstPage.isEmpty()) {
+                partner.reportCreatedEmptySession(null);
+                return;
+            }
+
+            final List<TfsFileRevision> revisions = toRevisions(project, path, firstPage);
+            partner.reportCreatedEmptySession(createSession(revisions.get(0).getRevisionNumber(), revisions, !isDirectory));
+
+            final int lastChangeSetId = firstPage.get(firstPage.size() - 1).getIdAsInt();
+            if (firstPage.size() < firstPageSize || firstPageSize >= maxCount || lastChangeSetId <= 1) {
+                return;
+            }
+
+            TFSProgressUtil.checkCanceled(indicator);
+
+            // The history is ordered from the newest changeset, so the rest of it is everything before the last one.
+            final String olderVersions = "C1~C" + (lastChangeSetId - 1);
+            final int remainingCount = maxCount == Integer.MAX_VALUE ? maxCount : maxCount - firstPage.size();
+            CommandUtils.getHistoryCommand(serverContext, path.getPath(), olderVersions, remainingCount, isDirectory, null, false,
+                    changeSet -> {
+                        // The changesets are passed from the output processing thread, so the indicator of the
+                        // calling thread is checked; the exception stops the output processing.
+                        TFSProgressUtil.checkCanceled(indicator);
+                        partner.acceptRevision(toRevision(project, path, changeSet));
+                    });
+        } catch (ProcessCanceledException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new VcsException(e);
+        }
     }
 
     public static List<TfsFileRevision> getRevisions(final Project project,
                                                      final ServerContext serverContext,
                                                      final FilePath localPath,
                                                      final boolean isDirectory) {
-        final VcsConfiguration vcsConfiguration = VcsConfiguration.getInstance(project);
-        final int maxCount = vcsConfiguration.LIMIT_HISTORY ? vcsConfiguration.MAXIMUM_HISTORY_ROWS : Integer.MAX_VALUE;
+        final int maxCount = getMaxCount(project);
         final List<ChangeSet> changesets = CommandUtils.getHistoryCommand(serverContext, localPath.getPath(), null, maxCount, isDirectory, null, false);
+        return toRevisions(project, localPath, changesets);
+    }
 
+    private static int getMaxCount(final Project project) {
+        final VcsConfiguration vcsConfiguration = VcsConfiguration.getInstance(project);
+        return vcsConfiguration.LIMIT_HISTORY ? vcsConfiguration.MAXIMUM_HISTORY_ROWS : Integer.MAX_VALUE;
+    }
+
+    private static List<TfsFileRevision> toRevisions(final Project project,
+                                                     final FilePath localPath,
+                                                     final List<ChangeSet> changesets) {
         final List<TfsFileRevision> revisions = new ArrayList<TfsFileRevision>(changesets.size());
         for (final ChangeSet changeSet : changesets) {
-            revisions.add(new TfsFileRevision(project, localPath, changeSet.getIdAsInt(),
-                    changeSet.getCommitter(), changeSet.getComment(), changeSet.getDate()));
+            revisions.add(toRevision(project, localPath, changeSet));
         }
 
         return revisions;
     }
 
+    private static TfsFileRevision toRevision(final Project project, final FilePath localPath, final ChangeSet changeSet) {
+        return new TfsFileRevision(project, localPath, changeSet.getIdAsInt(),
+                changeSet.getCommitter(), changeSet.getComment(), changeSet.getDate());
+    }
+
     public boolean supportsHistoryForDirectories() {
         return true;
     }
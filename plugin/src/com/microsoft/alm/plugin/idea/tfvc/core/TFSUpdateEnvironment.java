@@ -85,7 +85,8 @@ public class TFSUpdateEnvironment implements UpdateEnvironment {
             }
 
             List<String> filesUpdatePaths = TFVCUtil.filterValidTFVCPaths(project, Arrays.asList(contentRoots));
-            final SyncResults results = CommandUtils.syncWorkspace(tfsVcs.getServerContext(false), filesUpdatePaths, needRecursion, false);
+            final SyncResults results = CommandUtils.syncWorkspace(tfsVcs.getServerContext(false), filesUpdatePaths,
+                    needRecursion, false, file -> TFSProgressUtil.setProgressText2(progressIndicator, file));
 
             // add the changed files to updatedFiles so user knows what has occurred in the workspace
             // TODO: determine the resolution numbers (probably need to call history on each file to get this)
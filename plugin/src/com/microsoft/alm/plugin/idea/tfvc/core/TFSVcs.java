@@ -54,12 +54,15 @@ import com.intellij.openapi.vcs.rollback.RollbackEnvironment;
 import com.intellij.openapi.vcs.roots.VcsRootDetector;
 import com.intellij.openapi.vcs.update.UpdateEnvironment;
 import com.intellij.openapi.vcs.versionBrowser.ChangeBrowserSettings;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.util.messages.MessageBusConnection;
 import com.intellij.vcsUtil.VcsUtil;
 import com.microsoft.alm.plugin.context.RepositoryContext;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.context.ServerContextManager;
 import com.microsoft.alm.plugin.external.exceptions.SyncException;
 import com.microsoft.alm.plugin.external.exceptions.ToolException;
+import com.microsoft.alm.plugin.external.reactive.ReactiveTfvcClientHolder;
 import com.microsoft.alm.plugin.external.tools.TfTool;
 import com.microsoft.alm.plugin.idea.common.resources.TfPluginBundle;
 import com.microsoft.alm.plugin.idea.common.services.LocalizationServiceImpl;
@@ -101,8 +104,11 @@ public class TFSVcs extends AbstractVcs {
     private UpdateEnvironment myUpdateEnvironment;
     private VcsVFSListener fileListener;
     private TFSFileSystemListener tfsFileSystemListener;
+    private MessageBusConnection vfsConnection;
     private CommittedChangesProvider<TFSChangeList, ChangeBrowserSettings> committedChangesProvider;
     private EditFileProvider myEditFileProvider;
+    private final StatusRequestBatcher myStatusRequestBatcher = new StatusRequestBatcher();
+    private final PendingChangesSnapshot myPendingChangesSnapshot = new PendingChangesSnapshot();
 
     public TFSVcs(@NotNull Project project) {
         super(project, TFVC_NAME);
@@ -131,8 +137,16 @@ public class TFSVcs extends AbstractVcs {
         if (tfsFileSystemListener == null) {
             tfsFileSystemListener = new TFSFileSystemListener(myProject);
         }
+        if (vfsConnection == null) {
+            vfsConnection = myProject.getMessageBus().connect();
+            vfsConnection.subscribe(VirtualFileManager.VFS_CHANGES, new TfvcServiceDirectoryListener());
+            vfsConnection.subscribe(
+                    VirtualFileManager.VFS_CHANGES,
+                    new PendingChangesInvalidationListener(myPendingChangesSnapshot));
+        }
 
         checkCommandLineVersion();
+        warmUpReactiveClient();
     }
 
     @Override
@@ -140,6 +154,11 @@ public class TFSVcs extends AbstractVcs {
         Disposer.dispose(fileListener);
         tfsFileSystemListener.dispose();
         tfsFileSystemListener = null;
+        if (vfsConnection != null) {
+            vfsConnection.disconnect();
+            vfsConnection = null;
+        }
+        myPendingChangesSnapshot.invalidateAll();
     }
 
     @Override
@@ -166,6 +185,16 @@ public class TFSVcs extends AbstractVcs {
         return new TFSChangeProvider(this);
     }
 
+    @NotNull
+    public StatusRequestBatcher getStatusRequestBatcher() {
+        return myStatusRequestBatcher;
+    }
+
+    @NotNull
+    public PendingChangesSnapshot getPendingChangesSnapshot() {
+        return myPendingChangesSnapshot;
+    }
+
     @NotNull
     public TFSCheckinEnvironment createCheckinEnvironment() {
         if (myCheckinEnvironment == null) {
@@ -291,6 +320,42 @@ public class TFSVcs extends AbstractVcs {
         return serverContext;
     }
 
+    /**
+     * Starts the reactive client in the background when the project is opened, so the first status refresh doesn't
+     * wait for it. Only the already known credentials are used; the user won't be prompted for them.
+     */
+    private void warmUpReactiveClient() {
+        if (!ReactiveTfvcClientHolder.isWarmUpEnabled()) {
+            return;
+        }
+
+        TfvcClient client = TfvcClient.getInstance(myProject);
+        if (!(client instanceof ReactiveTfvcClient)) {
+            return;
+        }
+
+        BackgroundTaskUtil.executeOnPooledThread(myProject, () -> {
+            RepositoryContext repositoryContext = VcsHelper.getRepositoryContext(myProject);
+            if (repositoryContext == null
+                    || StringUtils.isEmpty(repositoryContext.getTeamProjectName())
+                    || StringUtils.isEmpty(repositoryContext.getUrl())) {
+                return;
+            }
+
+            ServerContext serverContext = ServerContextManager.getInstance().createContextFromTfvcServerUrl(
+                    URI.create(repositoryContext.getUrl()), repositoryContext.getTeamProjectName(), false);
+            if (serverContext == null) {
+                logger.info("Reactive client warm-up skipped: no credentials for " + repositoryContext.getUrl());
+                return;
+            }
+
+            ((ReactiveTfvcClient) client).warmUpAsync(serverContext).exceptionally(error -> {
+                logger.warn("Reactive client warm-up failed", error);
+                return null;
+            });
+        });
+    }
+
     private void checkCommandLineVersion() {
         if (hasVersionBeenVerified) {
             // No need to check the version again if we have already checked it once this session
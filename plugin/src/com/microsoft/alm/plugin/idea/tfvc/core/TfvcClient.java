@@ -58,6 +58,50 @@ public interface TfvcClient {
         }
     }
 
+    /**
+     * Collects the pending changes for selected items asynchronously and passes each of them into a user-provided
+     * callback as soon as it is available.
+     *
+     * @param serverContext           server context to extract a authorization information from
+     * @param pathsToProcess          list of items to collect the pending changes for
+     * @param onPendingChangeReceived callback that will be called for each pending change received. Should be
+     *                                free-threaded (may be called from any thread, including the one that performed
+     *                                this call), but will be called in a thread-safe way (multiple simultaneous calls
+     *                                are prohibited).
+     * @return a completion stage that will be finished after the call is completely finished and all of the callbacks
+     * are done.
+     */
+    @NotNull
+    default CompletionStage<Void> getStatusForFilesAsync(
+            @NotNull ServerContext serverContext,
+            @NotNull List<String> pathsToProcess,
+            @NotNull Consumer<PendingChange> onPendingChangeReceived) {
+        return getStatusForFilesAsync(serverContext, pathsToProcess)
+                .thenAccept(changes -> changes.forEach(onPendingChangeReceived));
+    }
+
+    /**
+     * Collects the pending changes for selected items and passes each of them into a user-provided callback as soon as
+     * it is available.
+     *
+     * @param serverContext           server context to extract a authorization information from
+     * @param pathsToProcess          list of items to collect the pending changes for
+     * @param onPendingChangeReceived callback that will be called for each pending change received. Should be
+     *                                free-threaded (may be called from any thread, including the one that performed
+     *                                this call), but will be called in a thread-safe way (multiple simultaneous calls
+     *                                are prohibited).
+     */
+    default void getStatusForFiles(
+            @NotNull ServerContext serverContext,
+            @NotNull List<String> pathsToProcess,
+            @NotNull Consumer<PendingChange> onPendingChangeReceived) {
+        try {
+            getStatusForFilesAsync(serverContext, pathsToProcess, onPendingChangeReceived).toCompletableFuture().get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Collects local repository information on selected items asynchronously and passes it into a user-provided
      * callback.
@@ -4,6 +4,7 @@
 package com.microsoft.alm.plugin.idea.tfvc.core;
 
 import com.intellij.openapi.vcs.EditFileProvider;
+import com.intellij.openapi.vcs.LocalFilePath;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.microsoft.alm.plugin.context.ServerContext;
@@ -34,6 +35,11 @@ public class TfvcEditFileProvider implements EditFileProvider {
                 serverContext,
                 paths,
                 false);
+
+        // The files of a local workspace are writable already, so the checkout leaves no trace in the VFS.
+        myVcs.getPendingChangesSnapshot().invalidate(Stream.of(files)
+                .map(file -> new LocalFilePath(file.getPath(), file.isDirectory()))
+                .collect(Collectors.toList()));
         TfvcCheckoutResultUtils.verify(result);
     }
 
@@ -0,0 +1,78 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.microsoft.alm.plugin.external.utils.WorkspaceCache;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Invalidates the cached workspace information when a TFVC service directory ($tf or .tf) is created, deleted, moved
+ * or renamed, since that means that a local workspace has appeared or disappeared. The changes inside of the service
+ * directories are ignored.
+ */
+public class TfvcServiceDirectoryListener implements BulkFileListener {
+
+    @Override
+    public void before(@NotNull List<? extends VFileEvent> events) {
+    }
+
+    @Override
+    public void after(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+            if (event instanceof VFileCreateEvent) {
+                VFileCreateEvent createEvent = (VFileCreateEvent) event;
+                if (isServiceDirectoryName(createEvent.getChildName())) {
+                    invalidate(createEvent.getParent());
+                }
+            } else if (event instanceof VFileDeleteEvent) {
+                VirtualFile file = ((VFileDeleteEvent) event).getFile();
+                if (isServiceDirectoryName(file.getName())) {
+                    invalidate(file.getParent());
+                }
+            } else if (event instanceof VFileMoveEvent) {
+                VFileMoveEvent moveEvent = (VFileMoveEvent) event;
+                if (isServiceDirectoryName(moveEvent.getFile().getName())) {
+                    invalidate(moveEvent.getOldParent());
+                    invalidate(moveEvent.getNewParent());
+                }
+            } else if (event instanceof VFilePropertyChangeEvent) {
+                VFilePropertyChangeEvent propertyEvent = (VFilePropertyChangeEvent) event;
+                if (VirtualFile.PROP_NAME.equals(propertyEvent.getPropertyName())
+                        && (isServiceDirectoryName(String.valueOf(propertyEvent.getOldValue()))
+                        || isServiceDirectoryName(String.valueOf(propertyEvent.getNewValue())))) {
+                    invalidate(propertyEvent.getFile().getParent());
+                }
+            }
+        }
+    }
+
+    private static boolean isServiceDirectoryName(String name) {
+        return StringUtils.equalsIgnoreCase(name, "$tf") || StringUtils.equalsIgnoreCase(name, ".tf");
+    }
+
+    private static void invalidate(VirtualFile workspaceRoot) {
+        if (workspaceRoot == null) {
+            WorkspaceCache.getInstance().invalidateAll();
+            return;
+        }
+
+        try {
+            WorkspaceCache.getInstance().invalidate(Paths.get(workspaceRoot.getPath()));
+        } catch (InvalidPathException e) {
+            WorkspaceCache.getInstance().invalidateAll();
+        }
+    }
+}
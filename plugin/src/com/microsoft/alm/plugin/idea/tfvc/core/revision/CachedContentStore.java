@@ -0,0 +1,47 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core.revision;
+
+import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfsFileUtil;
+import com.microsoft.alm.plugin.idea.tfvc.exceptions.TfsException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A content store backed by {@link RevisionContentCache}. A new store writes to a temporary file, which is moved into
+ * the cache on {@link #commit()}.
+ */
+public class CachedContentStore implements TFSContentStore {
+    private final RevisionContentCache myCache;
+    private final String myEntryName;
+    private final File myFile;
+
+    CachedContentStore(@NotNull RevisionContentCache cache, @NotNull String entryName, @NotNull File file) {
+        myCache = cache;
+        myEntryName = entryName;
+        myFile = file;
+    }
+
+    public void saveContent(TfsFileUtil.ContentWriter contentWriter) throws TfsException, IOException {
+        TfsFileUtil.setFileContent(myFile, contentWriter);
+        commit();
+    }
+
+    /**
+     * Adds the content written to {@link #getTmpFile()} to the cache.
+     */
+    public void commit() throws IOException {
+        myCache.commit(myEntryName, myFile.toPath());
+    }
+
+    public byte[] loadContent() throws IOException {
+        return myCache.load(myEntryName);
+    }
+
+    public File getTmpFile() {
+        return myFile;
+    }
+}
@@ -0,0 +1,307 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core.revision;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.application.PathManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Persistent cache of the file contents downloaded from the server, keyed by the collection, the server item and the
+ * changeset, so the same revision is shared by all the workspaces of the collection and never confused with another
+ * collection's item of the same path. The
+ * files are kept in the IDE system directory, so they survive restarts, and the least recently used ones are removed
+ * once their total size exceeds {@link #MAX_SIZE_PROPERTY}. Recently loaded contents are also kept in memory behind
+ * soft references, so the GC may reclaim them when the memory is low. Every revision is downloaded once at a time:
+ * a download requested while the same revision is being downloaded waits for it.
+ */
+public class RevisionContentCache {
+    private static final Logger logger = LoggerFactory.getLogger(RevisionContentCache.class);
+
+    public static final String MAX_SIZE_PROPERTY =
+            "com.microsoft.alm.plugin.idea.tfvc.core.revision.RevisionContentCache.maxSizeMb";
+
+    private static final long DEFAULT_MAX_SIZE_MB = 512;
+    private static final String CACHE_DIRECTORY_NAME = "tfvc-revisions";
+    private static final String DOWNLOAD_SUFFIX = ".download";
+
+    private static RevisionContentCache ourInstance;
+
+    /**
+     * Writes the content of a revision to the given file.
+     */
+    public interface ContentDownloader {
+        void download(@NotNull File file) throws Exception;
+    }
+
+    public static synchronized RevisionContentCache getInstance() {
+        if (ourInstance == null) {
+            long maxSizeMb = Long.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE_MB);
+            ourInstance = new RevisionContentCache(
+                    Paths.get(PathManager.getSystemPath(), CACHE_DIRECTORY_NAME),
+                    maxSizeMb * 1024 * 1024);
+        }
+        return ourInstance;
+    }
+
+    private final Object myLock = new Object();
+    private final Path myDirectory;
+    private final long myMaxSize;
+
+    // Entry name to the file size, from the least to the most recently used.
+    private final LinkedHashMap<String, Long> myEntrySizes = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, SoftReference<byte[]>> myLoadedContents = new ConcurrentHashMap<>();
+    // Entry name to the download in progress.
+    private final Map<String, CompletableFuture<TFSContentStore>> myDownloads = new ConcurrentHashMap<>();
+    private long myTotalSize;
+    private boolean myIsIndexLoaded;
+
+    @VisibleForTesting
+    protected RevisionContentCache(@NotNull Path directory, long maxSize) {
+        myDirectory = directory;
+        myMaxSize = maxSize;
+    }
+
+    /**
+     * Returns the name of the file storing the content. The name is a hash of the collection URI, the server item and
+     * the changeset, so any item maps to a valid file name of a fixed length.
+     */
+    @VisibleForTesting
+    static String getEntryName(@NotNull URI collectionUri, @NotNull String serverItem, int revision) {
+        return Hashing.sha256()
+                .hashString(collectionUri + "\n" + serverItem + "@" + revision, StandardCharsets.UTF_8)
+                .toString();
+    }
+
+    /**
+     * Returns the store for the cached content, or null if the content isn't in the cache.
+     */
+    @Nullable
+    public TFSContentStore find(@NotNull URI collectionUri, @NotNull String serverItem, int revision)
+            throws IOException {
+        String entryName = getEntryName(collectionUri, serverItem, revision);
+        synchronized (myLock) {
+            ensureIndexLoaded();
+            if (myEntrySizes.get(entryName) == null) {
+                return null;
+            }
+        }
+
+        return new CachedContentStore(this, entryName, myDirectory.resolve(entryName).toFile());
+    }
+
+    /**
+     * Creates a store to put the content into. The content becomes available to {@link #find} after it is written to
+     * the store's file and {@link CachedContentStore#commit()} is called.
+     */
+    @NotNull
+    public CachedContentStore create(@NotNull URI collectionUri, @NotNull String serverItem, int revision)
+            throws IOException {
+        String entryName = getEntryName(collectionUri, serverItem, revision);
+        synchronized (myLock) {
+            ensureIndexLoaded();
+        }
+
+        Path downloadFile = Files.createTempFile(myDirectory, entryName, DOWNLOAD_SUFFIX);
+        return new CachedContentStore(this, entryName, downloadFile.toFile());
+    }
+
+    /**
+     * Downloads the content into the cache unless it is cached already. If the same revision is being downloaded
+     * already, the download in progress is returned and the downloader isn't called.
+     *
+     * @param executor runs the download; a direct executor makes the download complete before this method returns.
+     * @return the future completed with the store of the cached content, or with the download failure.
+     */
+    @NotNull
+    public CompletableFuture<TFSContentStore> download(
+            @NotNull URI collectionUri,
+            @NotNull String serverItem,
+            int revision,
+            @NotNull ContentDownloader downloader,
+            @NotNull Executor executor) {
+        String entryName = getEntryName(collectionUri, serverItem, revision);
+        CompletableFuture<TFSContentStore> newDownload = new CompletableFuture<>();
+        CompletableFuture<TFSContentStore> download = myDownloads.putIfAbsent(entryName, newDownload);
+        if (download != null) {
+            return download;
+        }
+
+        try {
+            executor.execute(() -> {
+                TFSContentStore store = null;
+                Throwable failure = null;
+                try {
+                    store = find(collectionUri, serverItem, revision);
+                    if (store == null) {
+                        CachedContentStore newStore = create(collectionUri, serverItem, revision);
+                        try {
+                            downloader.download(newStore.getTmpFile());
+                            newStore.commit();
+                        } finally {
+                            deleteQuietly(newStore.getTmpFile().toPath());
+                        }
+                        store = newStore;
+                    }
+                } catch (Throwable t) {
+                    failure = t;
+                }
+
+                // Removed before completing, so the callers that see a failure can start another download.
+                myDownloads.remove(entryName, newDownload);
+                if (failure == null) {
+                    newDownload.complete(store);
+                } else {
+                    newDownload.completeExceptionally(failure);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            myDownloads.remove(entryName, newDownload);
+            newDownload.completeExceptionally(e);
+        }
+
+        return newDownload;
+    }
+
+    void commit(@NotNull String entryName, @NotNull Path downloadFile) throws IOException {
+        Path file = myDirectory.resolve(entryName);
+        try {
+            Files.move(downloadFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(downloadFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        long size = Files.size(file);
+        List<String> evictedEntries = new ArrayList<>();
+        synchronized (myLock) {
+            Long oldSize = myEntrySizes.put(entryName, size);
+            myTotalSize += size - (oldSize == null ? 0 : oldSize);
+            myLoadedContents.remove(entryName);
+
+            Iterator<Map.Entry<String, Long>> iterator = myEntrySizes.entrySet().iterator();
+            while (myTotalSize > myMaxSize && iterator.hasNext()) {
+                Map.Entry<String, Long> entry = iterator.next();
+                if (entry.getKey().equals(entryName)) {
+                    break; // the newest entry is always kept
+                }
+
+                myTotalSize -= entry.getValue();
+                evictedEntries.add(entry.getKey());
+                iterator.remove();
+            }
+        }
+
+        for (String evictedEntry : evictedEntries) {
+            myLoadedContents.remove(evictedEntry);
+            deleteQuietly(myDirectory.resolve(evictedEntry));
+        }
+    }
+
+    /**
+     * Loads the content from memory if it is still there, or reads the file otherwise.
+     */
+    @NotNull
+    byte[] load(@NotNull String entryName) throws IOException {
+        synchronized (myLock) {
+            ensureIndexLoaded();
+            if (myEntrySizes.get(entryName) == null) {
+                throw new FileNotFoundException("Revision content isn't cached: " + entryName);
+            }
+        }
+
+        Path file = myDirectory.resolve(entryName);
+        SoftReference<byte[]> reference = myLoadedContents.get(entryName);
+        byte[] content = reference == null ? null : reference.get();
+        if (content == null) {
+            content = Files.readAllBytes(file);
+            myLoadedContents.put(entryName, new SoftReference<>(content));
+        }
+
+        // The modification time keeps the usage order between the IDE sessions.
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            logger.debug("Unable to update the access time of " + file, e);
+        }
+
+        return content;
+    }
+
+    @VisibleForTesting
+    long getTotalSize() {
+        synchronized (myLock) {
+            return myTotalSize;
+        }
+    }
+
+    private void ensureIndexLoaded() throws IOException {
+        if (myIsIndexLoaded) {
+            return;
+        }
+
+        Files.createDirectories(myDirectory);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(myDirectory)) {
+            for (Path file : stream) {
+                if (file.getFileName().toString().endsWith(DOWNLOAD_SUFFIX)) {
+                    // Left from an interrupted download.
+                    deleteQuietly(file);
+                } else if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+
+        Map<Path, Long> modificationTimes = new LinkedHashMap<>();
+        for (Path file : files) {
+            modificationTimes.put(file, Files.getLastModifiedTime(file).toMillis());
+        }
+        files.sort(Comparator.comparing(modificationTimes::get));
+        for (Path file : files) {
+            long size = Files.size(file);
+            myEntrySizes.put(file.getFileName().toString(), size);
+            myTotalSize += size;
+        }
+
+        myIsIndexLoaded = true;
+        logger.info("Revision content cache loaded: " + myEntrySizes.size() + " entries, " + myTotalSize + " bytes");
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // The file may still be open; it will be indexed and evicted again after the next start.
+            logger.warn("Unable to delete " + file, e);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core.revision;
+
+import com.intellij.openapi.project.Project;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.rest.TfvcHttpClientEx;
+import com.microsoft.alm.plugin.idea.tfvc.core.TFSVcs;
+import com.microsoft.alm.sourcecontrol.webapi.model.TfvcVersionDescriptor;
+import com.microsoft.alm.sourcecontrol.webapi.model.TfvcVersionType;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads the contents of several revisions into the {@link RevisionContentCache} ahead of time. The contents are
+ * requested from the REST API with a bounded number of parallel requests, instead of starting a {@code tf print}
+ * process for every revision. The revisions that couldn't be prefetched are downloaded on demand by
+ * {@link TFSContentStoreFactory#findOrCreate}.
+ */
+public class RevisionContentPrefetcher {
+    private static final Logger logger = LoggerFactory.getLogger(RevisionContentPrefetcher.class);
+
+    public static final String PARALLELISM_PROPERTY =
+            "com.microsoft.alm.plugin.idea.tfvc.core.revision.RevisionContentPrefetcher.parallelism";
+
+    /**
+     * Maximum number of revisions prefetched at once; the rest of them are downloaded on demand.
+     */
+    public static final String MAX_REVISIONS_PROPERTY =
+            "com.microsoft.alm.plugin.idea.tfvc.core.revision.RevisionContentPrefetcher.maxRevisions";
+
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final int DEFAULT_MAX_REVISIONS = 100;
+
+    private static ExecutorService ourExecutor;
+
+    /**
+     * A revision of an item, identified by the server item as of the changeset, and the changeset number.
+     */
+    public static class ItemRevision {
+        private final String serverItem;
+        private final int changeset;
+
+        public ItemRevision(@NotNull String serverItem, int changeset) {
+            this.serverItem = serverItem;
+            this.changeset = changeset;
+        }
+
+        public String getServerItem() {
+            return serverItem;
+        }
+
+        public int getChangeset() {
+            return changeset;
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (ourExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            ourExecutor = Executors.newFixedThreadPool(
+                    Integer.getInteger(PARALLELISM_PROPERTY, DEFAULT_PARALLELISM),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "TFVC revision prefetch " + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        return ourExecutor;
+    }
+
+    /**
+     * Starts downloading the revisions that aren't cached yet in background. Only the first
+     * {@link #MAX_REVISIONS_PROPERTY} revisions are taken, so a huge changeset doesn't fill the cache at once. The
+     * downloads are registered in the {@link RevisionContentCache} before this method returns, so
+     * {@link TFSContentStoreFactory#findOrCreate} waits for them instead of downloading the same revisions again.
+     *
+     * @return a completion stage that will be finished after all the downloads are done. Failures to download separate
+     * revisions are only logged.
+     */
+    @NotNull
+    public static CompletionStage<Void> prefetchAsync(
+            @NotNull Project project,
+            @NotNull Collection<ItemRevision> revisions) {
+        try {
+            return prefetch(project, revisions);
+        } catch (Throwable t) {
+            logger.warn("Unable to prefetch the revision contents", t);
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            result.completeExceptionally(t);
+            return result;
+        }
+    }
+
+    private static CompletionStage<Void> prefetch(Project project, Collection<ItemRevision> revisions)
+            throws IOException {
+        ServerContext serverContext = TFSVcs.getInstance(project).getServerContext(false);
+        if (serverContext == null
+                || serverContext.getTeamProjectReference() == null
+                || serverContext.getCollectionURI() == null) {
+            logger.info("Revision prefetch skipped: the server context isn't available");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        RevisionContentCache cache = RevisionContentCache.getInstance();
+        URI collectionUri = serverContext.getCollectionURI();
+        TfvcHttpClientEx client = serverContext.getTfvcHttpClient();
+        UUID projectId = serverContext.getTeamProjectReference().getId();
+        int maxRevisions = Integer.getInteger(MAX_REVISIONS_PROPERTY, DEFAULT_MAX_REVISIONS);
+        List<CompletableFuture<TFSContentStore>> downloads = new ArrayList<>();
+        for (ItemRevision revision : revisions) {
+            if (downloads.size() >= maxRevisions) {
+                logger.info("Revision prefetch is limited to " + maxRevisions + " of " + revisions.size() + " revisions");
+                break;
+            }
+
+            String serverPath = revision.getServerItem();
+            int changeset = revision.getChangeset();
+            if (changeset <= 0 || cache.find(collectionUri, serverPath, changeset) != null) {
+                continue;
+            }
+
+            CompletableFuture<TFSContentStore> download = cache.download(
+                    collectionUri,
+                    serverPath,
+                    changeset,
+                    file -> download(client, projectId, serverPath, changeset, file),
+                    getExecutor());
+            download.whenComplete((store, t) -> {
+                if (t != null) {
+                    logger.warn("Unable to prefetch a revision content", t);
+                }
+            });
+            downloads.add(download);
+        }
+
+        if (downloads.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return CompletableFuture.allOf(downloads.toArray(new CompletableFuture[0])).handle((ignored, t) -> {
+            int failureCount = 0;
+            for (CompletableFuture<TFSContentStore> download : downloads) {
+                if (download.isCompletedExceptionally()) {
+                    ++failureCount;
+                }
+            }
+
+            logger.info("Prefetched " + (downloads.size() - failureCount) + " of " + downloads.size() + " revisions");
+            return null;
+        });
+    }
+
+    private static void download(
+            TfvcHttpClientEx client,
+            UUID projectId,
+            String serverPath,
+            int changeset,
+            File file) throws IOException {
+        TfvcVersionDescriptor versionDescriptor = new TfvcVersionDescriptor();
+        versionDescriptor.setVersionType(TfvcVersionType.CHANGESET);
+        versionDescriptor.setVersion(Integer.toString(changeset));
+
+        try (InputStream content = client.getItemContent(projectId, serverPath, versionDescriptor)) {
+            Files.copy(content, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
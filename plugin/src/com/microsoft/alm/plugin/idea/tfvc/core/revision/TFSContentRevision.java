@@ -47,6 +47,9 @@ public abstract class TFSContentRevision implements ContentRevision {
     @Nullable
     private byte[] myContent;
 
+    @Nullable
+    private volatile Runnable myPrefetch;
+
     protected TFSContentRevision(final Project project) {
         this.project = project;
     }
@@ -87,7 +90,8 @@ public abstract class TFSContentRevision implements ContentRevision {
 
     /**
      * Creates a revision especially for a renamed file since the original path is needed to display where the file
-     * used to reside while the server path is needed to pull down that version of the file from the server for diffs
+     * used to reside while the server path is needed to pull down that version of the file from the server for diffs.
+     * Also used for the revisions of a committed changeset, whose server paths are known from the changeset.
      *
      * @param project
      * @param orignalPath:     path of the file before it was renamed
@@ -132,9 +136,21 @@ public abstract class TFSContentRevision implements ContentRevision {
         return new String(doGetContent(), getFile().getCharset(project));
     }
 
+    /**
+     * Sets the action to run before the content is loaded for the first time, e.g. to start loading the contents of the
+     * other revisions that are about to be shown along with this one.
+     */
+    public void setPrefetch(@Nullable final Runnable prefetch) {
+        myPrefetch = prefetch;
+    }
+
     @Nullable
     public byte[] doGetContent() throws VcsException {
         if (myContent == null) {
+            final Runnable prefetch = myPrefetch;
+            if (prefetch != null) {
+                prefetch.run();
+            }
             try {
                 myContent = loadContent();
             } catch (TfsException e) {
@@ -23,50 +23,102 @@ import com.intellij.openapi.project.Project;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.commands.Command;
 import com.microsoft.alm.plugin.external.commands.DownloadCommand;
+import com.microsoft.alm.plugin.external.models.Workspace;
+import com.microsoft.alm.plugin.external.utils.CommandUtils;
+import com.microsoft.alm.plugin.idea.common.utils.VcsHelper;
 import com.microsoft.alm.plugin.idea.tfvc.core.TFSVcs;
+import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfsFileUtil;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class TFSContentStoreFactory {
     private static final Logger logger = LoggerFactory.getLogger(TFSContentStoreFactory.class);
 
-    public static TFSContentStore create(final String localPath, final int revision) throws IOException {
-        return new TFSTmpFileStore(localPath, revision);
+    public static CachedContentStore create(final URI collectionUri, final String serverItem, final int revision) throws IOException {
+        return RevisionContentCache.getInstance().create(collectionUri, serverItem, revision);
     }
 
     @Nullable
-    public static TFSContentStore find(final String localPath, final int revision) throws IOException {
-        return TFSTmpFileStore.find(localPath, revision);
+    public static TFSContentStore find(final URI collectionUri, final String serverItem, final int revision) throws IOException {
+        return RevisionContentCache.getInstance().find(collectionUri, serverItem, revision);
+    }
+
+    /**
+     * Returns the server item to identify the content in the store: the actual path if it is already a server path, or
+     * the local path translated through the workspace mappings.
+     */
+    @Nullable
+    private static String getServerItem(final String localPath, final String actualPath, final Project project) {
+        if (actualPath != null && actualPath.startsWith(VcsHelper.TFVC_ROOT)) {
+            return actualPath;
+        }
+
+        final Workspace workspace = CommandUtils.getPartialWorkspace(project, false);
+        if (workspace == null) {
+            return null;
+        }
+
+        return TfsFileUtil.translateLocalItemToServerItem(actualPath != null ? actualPath : localPath, workspace);
     }
 
     /**
      * Find the store for the given file path and if it doesn't already exist create it and download the file
      *
-     * @param localPath:  local path of the file which is used as the key in the store along with the revision number
+     * @param localPath:  local path of the file
      * @param revision:   revision number of the file
-     * @param actualPath: file path acknowledged by the server (could differ local path in case of renames)
+     * @param actualPath: file path acknowledged by the server (could differ local path in case of renames); it is
+     *                    translated to the server item, which is used as the key in the store along with the
+     *                    collection and the revision number
      * @return
-     * @throws IOException
+     * @throws IOException if the server item of the file cannot be determined, or the file cannot be downloaded
      */
     public static TFSContentStore findOrCreate(final String localPath, final int revision, final String actualPath, final Project project) throws IOException {
-        TFSContentStore store = TFSContentStoreFactory.find(localPath, revision);
-        if (store == null) {
+        final ServerContext serverContext = TFSVcs.getInstance(project).getServerContext(false);
+        final URI collectionUri = serverContext == null ? null : serverContext.getCollectionURI();
+        final String serverItem = getServerItem(localPath, actualPath, project);
+        if (collectionUri == null || serverItem == null) {
+            throw new IOException("Unable to determine the server item for " + (actualPath != null ? actualPath : localPath));
+        }
+
+        TFSContentStore store = TFSContentStoreFactory.find(collectionUri, serverItem, revision);
+        if (store != null) {
+            return store;
+        }
+
+        // If the revision is being prefetched, the prefetch is waited for; tf is only started when it fails.
+        for (int attempt = 0; ; ++attempt) {
+            final AtomicBoolean isDownloadedByTf = new AtomicBoolean();
+            // By setting the IgnoreFileNotFound flag to true in DownloadCommand, we will get back an empty file if the file was deleted on the server or
+            // for some other reason doesn't exist.
+            final Future<TFSContentStore> download = RevisionContentCache.getInstance().download(
+                    collectionUri,
+                    serverItem,
+                    revision,
+                    file -> {
+                        isDownloadedByTf.set(true);
+                        final Command<String> command = new DownloadCommand(serverContext, serverItem, revision, file.getPath(), true);
+                        command.runSynchronously();
+                    },
+                    Runnable::run);
             try {
-                store = TFSContentStoreFactory.create(localPath, revision);
-                final ServerContext serverContext = TFSVcs.getInstance(project).getServerContext(false);
-                // By setting the IgnoreFileNotFound flag to true in DownloadCommand, we will get back an empty file if the file was deleted on the server or
-                // for some other reason doesn't exist.
-                final Command<String> command = new DownloadCommand(serverContext, actualPath, revision, store.getTmpFile().getPath(), true);
-                command.runSynchronously();
-            } catch (final Throwable t) {
-                // Can't let exceptions bubble out here to the caller. This method is called by the VCS provider code in various places.
-                logger.warn("Unable to download content for a TFVC file.", t);
+                return download.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while downloading " + serverItem + ";" + revision, e);
+            } catch (final ExecutionException e) {
+                if (isDownloadedByTf.get() || attempt > 0) {
+                    logger.warn("Unable to download content for a TFVC file.", e.getCause());
+                    throw new IOException("Unable to download " + serverItem + ";" + revision, e.getCause());
+                }
+                logger.info("Unable to prefetch " + serverItem + ";" + revision + ", downloading it with tf", e.getCause());
             }
         }
-        return store;
     }
 }
-
@@ -4,17 +4,14 @@
 package com.microsoft.alm.plugin.idea.tfvc.core.tfs;
 
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.LocalFilePath;
 import com.intellij.openapi.vcs.ProjectLevelVcsManager;
 import com.microsoft.alm.plugin.external.models.Workspace;
 import com.microsoft.alm.plugin.external.utils.CommandUtils;
 import com.microsoft.alm.plugin.idea.tfvc.core.TFSVcs;
-import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -43,13 +40,7 @@ public class TFVCUtil {
      * contexts.
      */
     public static Stream<FilePath> collectInvalidTFVCPaths(@NotNull TFSVcs vcs, @NotNull Stream<FilePath> paths) {
-        ProjectLevelVcsManager vcsManager = ProjectLevelVcsManager.getInstance(vcs.getProject());
-        List<FilePath> mappings = vcsManager.getDirectoryMappings(vcs).stream()
-                .map(mapping -> new LocalFilePath(mapping.getDirectory(), true))
-                .collect(Collectors.toList());
-        return paths.filter(path -> isInServiceDirectory(path)
-            || mappings.stream().anyMatch(
-                    mapping -> hasIllegalDollarInAnyComponent(mapping, path)));
+        return createVcsMappingFilter(vcs).collectIllegalPaths(paths);
     }
 
     /**
@@ -62,11 +53,7 @@ public class TFVCUtil {
     public static boolean isInvalidTFVCPath(@NotNull TFSVcs vcs, @NotNull FilePath path) {
         if (isInServiceDirectory(path)) return true;
 
-        ProjectLevelVcsManager vcsManager = ProjectLevelVcsManager.getInstance(vcs.getProject());
-
-        return vcsManager.getDirectoryMappings(vcs).stream()
-                .map(mapping -> new LocalFilePath(mapping.getDirectory(), true))
-                .anyMatch(mapping -> hasIllegalDollarInAnyComponent(mapping, path));
+        return createVcsMappingFilter(vcs).getStatus(path) == TfvcPathFilter.PathStatus.ILLEGAL;
     }
 
     /**
@@ -76,35 +63,14 @@ public class TFVCUtil {
     @NotNull
     public static List<String> filterValidTFVCPaths(@NotNull Project project, @NotNull Collection<FilePath> paths) {
         List<FilePath> mappingPaths = getMappingsFromWorkspace(project);
-        List<String> filteredPaths = new ArrayList<>();
-        for (FilePath path : paths) {
-            // if we get a change notification in the $tf folder, we need to just ignore it
-            if (isInServiceDirectory(path)) {
-                continue;
-            }
-
-            // Ignore any files outside of a TFVC mapping:
-            for (FilePath mappingPath : mappingPaths) {
-                if (path.isUnder(mappingPath, false)) {
-                    // Ignore any paths that has '$' in any component under the mapping root.
-                    if (!hasIllegalDollarInAnyComponent(mappingPath, path)) {
-                        filteredPaths.add(path.getPath());
-                        break;
-                    }
-                }
-            }
-        }
-
-        return filteredPaths;
+        return new TfvcPathFilter(mappingPaths).filterValidPaths(paths);
     }
 
     /**
      * Determines whether the file is in the TFVC service directory ($tf or .tf).
      */
     public static boolean isInServiceDirectory(FilePath filePath) {
-        String path = filePath.getPath();
-        return StringUtils.containsIgnoreCase(path, "$tf")
-                || StringUtils.containsIgnoreCase(path, ".tf");
+        return TfvcPathFilter.isInServiceDirectory(filePath.getPath());
     }
 
     private static List<FilePath> getMappingsFromWorkspace(@NotNull Project project) {
@@ -121,24 +87,11 @@ public class TFVCUtil {
         return mappingPaths;
     }
 
-    /**
-     * Determines if the path has an illegal $ character in any component.
-     *
-     * @param mapping   root path mapping for the file.
-     * @param localPath the file under VCS.
-     */
-    private static boolean hasIllegalDollarInAnyComponent(FilePath mapping, FilePath localPath) {
-        String relativePath = FileUtil.getRelativePath(mapping.getIOFile(), localPath.getIOFile());
-        if (relativePath == null) {
-            return localPath.getName().startsWith("$");
-        }
-
-        File file = new File(relativePath);
-        while (file != null) {
-            if (file.getName().startsWith("$")) return true;
-            file = file.getParentFile();
-        }
-
-        return false;
+    private static TfvcPathFilter createVcsMappingFilter(@NotNull TFSVcs vcs) {
+        ProjectLevelVcsManager vcsManager = ProjectLevelVcsManager.getInstance(vcs.getProject());
+        List<FilePath> mappings = vcsManager.getDirectoryMappings(vcs).stream()
+                .map(mapping -> new LocalFilePath(mapping.getDirectory(), true))
+                .collect(Collectors.toList());
+        return new TfvcPathFilter(mappings);
     }
 }
@@ -26,6 +26,7 @@ import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.FileStatus;
 import com.intellij.openapi.vcs.FileStatusManager;
+import com.intellij.openapi.vcs.LocalFilePath;
 import com.intellij.openapi.vcs.actions.VcsContextFactory;
 import com.intellij.openapi.vcs.changes.VcsDirtyScopeManager;
 import com.intellij.openapi.vfs.VfsUtil;
@@ -36,6 +37,7 @@ import com.intellij.ui.GuiUtils;
 import com.intellij.util.io.ReadOnlyAttributeUtil;
 import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.plugin.external.models.Workspace;
+import com.microsoft.alm.plugin.idea.tfvc.core.TFSVcs;
 import com.microsoft.alm.plugin.idea.tfvc.exceptions.TfsException;
 import com.microsoft.alm.plugin.versioncontrol.path.LocalPath;
 import com.microsoft.alm.plugin.versioncontrol.path.ServerPath;
@@ -63,6 +65,8 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 // TODO review usage of getFilePath(), getVirtualFile()
 
@@ -184,6 +188,7 @@ public class TfsFileUtil {
     }
 
     public static void markFileDirty(final Project project, final @NotNull FilePath file) {
+        invalidatePendingChanges(project, Collections.singletonList(file));
         ApplicationManager.getApplication().runReadAction(new Runnable() {
             public void run() {
                 VcsDirtyScopeManager.getInstance(project).fileDirty(file);
@@ -196,6 +201,8 @@ public class TfsFileUtil {
             return;
         }
 
+        invalidatePendingChanges(project, roots);
+
         ApplicationManager.getApplication().runReadAction(new Runnable() {
             public void run() {
                 for (FilePath root : roots) {
@@ -210,6 +217,8 @@ public class TfsFileUtil {
             return;
         }
 
+        invalidatePendingChanges(project, roots);
+
         ApplicationManager.getApplication().runReadAction(new Runnable() {
             public void run() {
                 for (FilePath root : roots) {
@@ -223,6 +232,7 @@ public class TfsFileUtil {
     }
 
     public static void markDirtyRecursively(final Project project, final FilePath rootDir) {
+        invalidatePendingChanges(project, Collections.singletonList(rootDir));
         ApplicationManager.getApplication().runReadAction(new Runnable() {
             public void run() {
                 VcsDirtyScopeManager.getInstance(project).dirDirtyRecursively(rootDir);
@@ -231,6 +241,7 @@ public class TfsFileUtil {
     }
 
     public static void markFileDirty(final Project project, final @NotNull VirtualFile file) {
+        invalidatePendingChanges(project, Collections.singletonList(new LocalFilePath(file.getPath(), file.isDirectory())));
         ApplicationManager.getApplication().runReadAction(new Runnable() {
             public void run() {
                 VcsDirtyScopeManager.getInstance(project).fileDirty(file);
@@ -251,6 +262,10 @@ public class TfsFileUtil {
     }
 
     public static void refreshAndMarkDirty(final Project project, final VirtualFile[] roots, boolean async) {
+        invalidatePendingChanges(project, Arrays.stream(roots)
+                .filter(Objects::nonNull)
+                .map(root -> new LocalFilePath(root.getPath(), root.isDirectory()))
+                .collect(Collectors.toList()));
         RefreshQueue.getInstance().refresh(async, true, new Runnable() {
             public void run() {
                 for (VirtualFile root : roots) {
@@ -269,6 +284,17 @@ public class TfsFileUtil {
         }, roots);
     }
 
+    /**
+     * Drops the pending changes under the roots from the project's snapshot. The dirty scopes don't invalidate the
+     * snapshot, so the paths affected by the plugin's own operations have to be reported here to be loaded again.
+     */
+    private static void invalidatePendingChanges(final Project project, final Collection<FilePath> roots) {
+        final TFSVcs vcs = TFSVcs.getInstance(project);
+        if (vcs != null) {
+            vcs.getPendingChangesSnapshot().invalidate(roots);
+        }
+    }
+
     public static void refreshAndFindFile(final FilePath path) {
         try {
             GuiUtils.runOrInvokeAndWait(new Runnable() {
@@ -383,6 +409,29 @@ public class TfsFileUtil {
         return false;
     }
 
+    /**
+     * Translates a server path to a local path using the working folder mappings of the workspace. Unlike the
+     * overloads accepting the mapping list, uses the workspace's {@link Workspace#getMappingIndex() mapping index}, so
+     * this one should be preferred for translating many paths.
+     *
+     * @return the local path, or <code>null</code> if the item is not mapped or cloaked
+     */
+    public static String translateServerItemToLocalItem(final Workspace workspace, final String serverPath) {
+        ArgumentHelper.checkNotNull(workspace, "workspace");
+        return workspace.getMappingIndex().translateServerItemToLocalItem(serverPath, true);
+    }
+
+    /**
+     * Translates a local path to a server path using the working folder mappings of the workspace and its
+     * {@link Workspace#getMappingIndex() mapping index}.
+     *
+     * @return the server path, or <code>null</code> if the item is not mapped or cloaked
+     */
+    public static String translateLocalItemToServerItem(final String localPath, final Workspace workspace) {
+        ArgumentHelper.checkNotNull(workspace, "workspace");
+        return workspace.getMappingIndex().translateLocalItemToServerItem(localPath);
+    }
+
     /**
      * Translates a server path to a local path using the supplied working folder mappings.
      * <p>
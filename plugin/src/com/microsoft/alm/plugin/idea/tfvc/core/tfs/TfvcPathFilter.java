@@ -0,0 +1,244 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core.tfs;
+
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.vcs.FilePath;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Classifies local paths against a fixed set of mapping roots. The mapping roots are compiled into a trie keyed by
+ * path components, and every path is classified in a single pass over its characters: the service directory check,
+ * the mapping lookup and the check for components starting with '$' are done together, without allocating
+ * intermediate objects.
+ * <p>
+ * Instances are immutable and may be used from several threads at once.
+ */
+public class TfvcPathFilter {
+
+    /**
+     * Path batches of at least this size are filtered by a parallel stream.
+     */
+    public static final String PARALLEL_THRESHOLD_PROPERTY = "com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfvcPathFilter.parallelThreshold";
+
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 20000;
+    private static final int PARALLEL_THRESHOLD = Integer.getInteger(PARALLEL_THRESHOLD_PROPERTY, DEFAULT_PARALLEL_THRESHOLD);
+
+    private static final char SEPARATOR = '/';
+    private static final String SERVICE_DIRECTORY_SUFFIX = "tf";
+
+    public enum PathStatus {
+        /**
+         * The path is under a mapping root, and has no illegal components below it.
+         */
+        VALID,
+        /**
+         * The path is not under any mapping root.
+         */
+        NOT_MAPPED,
+        /**
+         * The path belongs to a TFVC service directory ($tf or .tf), or contains a component starting with '$' (below
+         * the nearest mapping root if there's one, or anywhere otherwise).
+         */
+        ILLEGAL
+    }
+
+    private final TrieNode myRoot = new TrieNode(null);
+    private final boolean myIgnoreCase;
+
+    public TfvcPathFilter(@NotNull Collection<FilePath> mappingRoots) {
+        this(mappingRoots, !SystemInfo.isFileSystemCaseSensitive);
+    }
+
+    public TfvcPathFilter(@NotNull Collection<FilePath> mappingRoots, boolean ignoreCase) {
+        myIgnoreCase = ignoreCase;
+        for (FilePath mappingRoot : mappingRoots) {
+            addMappingRoot(mappingRoot.getPath());
+        }
+    }
+
+    /**
+     * Determines whether the path is in the TFVC service directory ($tf or .tf). Any occurrence of these names in the
+     * path is taken into account, even if it is not a whole path component.
+     */
+    public static boolean isInServiceDirectory(@NotNull String path) {
+        for (int i = 0, length = path.length(); i < length; ++i) {
+            if (isServiceDirectoryAt(path, i)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isServiceDirectoryAt(String path, int index) {
+        char c = path.charAt(index);
+        return (c == '$' || c == '.')
+                && path.regionMatches(true, index + 1, SERVICE_DIRECTORY_SUFFIX, 0, SERVICE_DIRECTORY_SUFFIX.length());
+    }
+
+    @NotNull
+    public PathStatus getStatus(@NotNull FilePath path) {
+        return getStatus(path.getPath());
+    }
+
+    @NotNull
+    public PathStatus getStatus(@NotNull String path) {
+        TrieNode node = myRoot;
+        boolean isMapped = false;
+        boolean hasDollarBelowMapping = false;
+        boolean hasDollar = false;
+
+        int length = path.length();
+        int start = 0;
+        while (start <= length) {
+            int end = start;
+            while (end < length && path.charAt(end) != SEPARATOR) {
+                if (isServiceDirectoryAt(path, end)) {
+                    return PathStatus.ILLEGAL;
+                }
+                ++end;
+            }
+
+            // Empty components are only meaningful at the start of the path (as an absolute path root).
+            if (end > start || start == 0) {
+                boolean isDollarComponent = end > start && path.charAt(start) == '$';
+                hasDollar |= isDollarComponent;
+                hasDollarBelowMapping |= isDollarComponent;
+
+                if (node != null) {
+                    node = node.findChild(path, start, end - start, myIgnoreCase);
+                    if (node != null && node.isMappingRoot) {
+                        // Nearest mapping root found so far; components above it don't matter.
+                        isMapped = true;
+                        hasDollarBelowMapping = false;
+                    }
+                }
+            }
+
+            start = end + 1;
+        }
+
+        if (isMapped) {
+            return hasDollarBelowMapping ? PathStatus.ILLEGAL : PathStatus.VALID;
+        }
+
+        return hasDollar ? PathStatus.ILLEGAL : PathStatus.NOT_MAPPED;
+    }
+
+    /**
+     * Returns the paths of the items that are valid for TFVC, preserving their order. Big batches are filtered in
+     * parallel.
+     */
+    @NotNull
+    public List<String> filterValidPaths(@NotNull Collection<FilePath> paths) {
+        Stream<FilePath> stream = paths.size() >= PARALLEL_THRESHOLD ? paths.parallelStream() : paths.stream();
+        return stream.filter(path -> getStatus(path) == PathStatus.VALID)
+                .map(FilePath::getPath)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns only the paths that are illegal for TFVC.
+     */
+    @NotNull
+    public Stream<FilePath> collectIllegalPaths(@NotNull Stream<FilePath> paths) {
+        return paths.filter(path -> getStatus(path) == PathStatus.ILLEGAL);
+    }
+
+    private void addMappingRoot(String path) {
+        TrieNode node = myRoot;
+        int length = path.length();
+        int start = 0;
+        while (start <= length) {
+            int end = path.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                end = length;
+            }
+
+            if (end > start || start == 0) {
+                node = node.getOrAddChild(path, start, end - start, myIgnoreCase);
+            }
+
+            start = end + 1;
+        }
+
+        node.isMappingRoot = true;
+    }
+
+    /**
+     * Trie node with children sorted by name, so they can be found by a binary search.
+     */
+    private static class TrieNode {
+        private final String name;
+        private final List<TrieNode> children = new ArrayList<>(1);
+        private boolean isMappingRoot;
+
+        TrieNode(String name) {
+            this.name = name;
+        }
+
+        TrieNode findChild(String path, int offset, int length, boolean ignoreCase) {
+            int index = indexOfChild(path, offset, length, ignoreCase);
+            return index >= 0 ? children.get(index) : null;
+        }
+
+        TrieNode getOrAddChild(String path, int offset, int length, boolean ignoreCase) {
+            int index = indexOfChild(path, offset, length, ignoreCase);
+            if (index >= 0) {
+                return children.get(index);
+            }
+
+            TrieNode child = new TrieNode(path.substring(offset, offset + length));
+            children.add(-index - 1, child);
+            return child;
+        }
+
+        /**
+         * Returns the index of the child with the name equal to the path region, or (-(insertion point) - 1) if there's
+         * no such child.
+         */
+        private int indexOfChild(String path, int offset, int length, boolean ignoreCase) {
+            int low = 0;
+            int high = children.size() - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = compare(children.get(middle).name, path, offset, length, ignoreCase);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+
+            return -(low + 1);
+        }
+
+        private static int compare(String name, String path, int offset, int length, boolean ignoreCase) {
+            int commonLength = Math.min(name.length(), length);
+            for (int i = 0; i < commonLength; ++i) {
+                char c1 = name.charAt(i);
+                char c2 = path.charAt(offset + i);
+                if (c1 != c2 && ignoreCase) {
+                    // Same as String.CASE_INSENSITIVE_ORDER
+                    c1 = Character.toLowerCase(Character.toUpperCase(c1));
+                    c2 = Character.toLowerCase(Character.toUpperCase(c2));
+                }
+                if (c1 != c2) {
+                    return c1 - c2;
+                }
+            }
+
+            return name.length() - length;
+        }
+    }
+}
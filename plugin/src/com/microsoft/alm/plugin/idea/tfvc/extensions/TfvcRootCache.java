@@ -3,7 +3,6 @@
 
 package com.microsoft.alm.plugin.idea.tfvc.extensions;
 
-import com.google.common.collect.Maps;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.vcs.LocalFilePath;
 import com.microsoft.alm.plugin.external.models.Workspace;
@@ -14,9 +13,18 @@ import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
 
+/**
+ * Caches the information about TFVC mapping roots on disk.
+ * <p>
+ * The cached paths are stored in a trie keyed by path components, and every trie node knows the number of cached
+ * paths in its subtree, so both the parent and the child lookups take time proportional to the path depth instead of
+ * the number of cached paths. The lookups only take a shared lock.
+ */
 public class TfvcRootCache {
 
     private static final Logger ourLogger = Logger.getInstance(TfvcRootCache.class);
@@ -27,8 +35,23 @@ public class TfvcRootCache {
         }
     }
 
-    private final Object myLock = new Object();
-    private final Map<Path, CachedStatus> myData = Maps.newHashMap();
+    /**
+     * Splits the path into components that are used as trie keys: root (if any) and then every path name.
+     */
+    private static List<Path> getSegments(Path path) {
+        List<Path> segments = new ArrayList<>(path.getNameCount() + 1);
+        Path root = path.getRoot();
+        if (root != null) {
+            segments.add(root);
+        }
+        for (Path name : path) {
+            segments.add(name);
+        }
+        return segments;
+    }
+
+    private final StampedLock myLock = new StampedLock();
+    private final Node myRoot = new Node();
 
     /**
      * Tries to determine an item status from the cache.
@@ -38,41 +61,43 @@ public class TfvcRootCache {
      */
     @NotNull
     public CachedStatus get(@NotNull Path path) {
-        synchronized (myLock) {
-            CachedStatus result = myData.get(path); // direct cache match
-            if (result != null) {
-                ourLogger.trace(String.format("%s: %s (cache hit)", path, result));
-                return result;
-            }
-
-            for (Map.Entry<Path, CachedStatus> entry : myData.entrySet()) {
-                Path key = entry.getKey();
-                CachedStatus value = entry.getValue();
-                boolean isParent = path.startsWith(key);
-                boolean isChild = key.startsWith(path);
-
-                // If any child of an item is known to be NO_ROOT, i.e. not under any mapping, then the result is
-                // NO_ROOT.
-                if (isChild && value == CachedStatus.NO_ROOT) {
-                    ourLogger.trace(String.format("%s: %s (derived from %s being %s)", path, value, key, value));
-                    return value;
+        long stamp = myLock.readLock();
+        try {
+            boolean isUnderMappingRoot = false;
+            Node node = myRoot;
+            for (Path segment : getSegments(path)) {
+                if (node.status == CachedStatus.IS_MAPPING_ROOT) {
+                    isUnderMappingRoot = true;
                 }
 
-                // If any child of an item is known to be IS_MAPPING_ROOT, then the result is NO_ROOT, since mapping
-                // roots cannot be nested.
-                if (isChild && value == CachedStatus.IS_MAPPING_ROOT) {
-                    ourLogger.trace(String.format("%s: %s (derived from %s being %s)", path, CachedStatus.NO_ROOT, key, value));
-                    return CachedStatus.NO_ROOT;
+                node = node.children.get(segment);
+                if (node == null) {
+                    break;
                 }
+            }
 
-                // If any parent of an item is known to be IS_MAPPING_ROOT, then the result is UNDER_MAPPING_ROOT.
-                if (isParent && value == CachedStatus.IS_MAPPING_ROOT) {
-                    ourLogger.trace(String.format("%s: %s (derived from %s being %s)", path, CachedStatus.UNDER_MAPPING_ROOT, key, value));
-                    return CachedStatus.UNDER_MAPPING_ROOT;
-                }
+            if (node != null && node.status != null) { // direct cache match
+                ourLogger.trace(String.format("%s: %s (cache hit)", path, node.status));
+                return node.status;
+            }
+
+            // If any child of an item is known to be NO_ROOT, i.e. not under any mapping, then the result is NO_ROOT.
+            // If any child of an item is known to be IS_MAPPING_ROOT, then the result is NO_ROOT, since mapping roots
+            // cannot be nested.
+            if (node != null && node.entryCount > 0) {
+                ourLogger.trace(String.format("%s: %s (derived from its children)", path, CachedStatus.NO_ROOT));
+                return CachedStatus.NO_ROOT;
+            }
+
+            // If any parent of an item is known to be IS_MAPPING_ROOT, then the result is UNDER_MAPPING_ROOT.
+            if (isUnderMappingRoot) {
+                ourLogger.trace(String.format("%s: %s (derived from its parent)", path, CachedStatus.UNDER_MAPPING_ROOT));
+                return CachedStatus.UNDER_MAPPING_ROOT;
             }
 
             return CachedStatus.UNKNOWN;
+        } finally {
+            myLock.unlockRead(stamp);
         }
     }
 
@@ -82,34 +107,17 @@ public class TfvcRootCache {
     public void putNoMappingsFor(@NotNull Path path) {
         assertNoServiceDirectory(path);
         ourLogger.trace(String.format("New without mapping roots: %s", path));
-        synchronized (myLock) {
+        long stamp = myLock.writeLock();
+        try {
+            NodeChain chain = new NodeChain(path);
+
             // Destroy contradictory information: since we know the path isn't a mapping root and contains no parent
             // mapping roots, and information about the parents being roots is now invalid.
-            ArrayList<Path> keysToRemove = new ArrayList<>();
-            for (Map.Entry<Path, CachedStatus> entry : myData.entrySet()) {
-                Path key = entry.getKey();
-                if (key.equals(path))
-                    continue;
-
-                CachedStatus value = entry.getValue();
-                boolean isParent = path.startsWith(key);
-                if (isParent && value == CachedStatus.IS_MAPPING_ROOT) {
-                    ourLogger.info(
-                            String.format(
-                                    "Evicting information about %s being %s because %s is %s",
-                                    key,
-                                    value,
-                                    path,
-                                    CachedStatus.NO_ROOT));
-                    keysToRemove.add(key);
-                }
-            }
-
-            for (Path key : keysToRemove) {
-                myData.remove(key);
-            }
+            chain.evictParentRoots(CachedStatus.NO_ROOT);
 
-            myData.put(path, CachedStatus.NO_ROOT);
+            chain.setStatus(CachedStatus.NO_ROOT);
+        } finally {
+            myLock.unlockWrite(stamp);
         }
     }
 
@@ -117,53 +125,134 @@ public class TfvcRootCache {
      * Caches the fact that the following mappings are available on disk.
      */
     public void putMappings(@NotNull List<Workspace.Mapping> mappings) {
-        synchronized (myLock) {
+        long stamp = myLock.writeLock();
+        try {
             for (Workspace.Mapping mapping : mappings) {
                 Path path = Paths.get(mapping.getLocalPath());
                 assertNoServiceDirectory(path);
 
                 ourLogger.trace(String.format("New mapping root: %s", path));
+                NodeChain chain = new NodeChain(path);
 
                 // Destroy contradictory information: since we know the path is a mapping root, then any information
                 // that tells us its children are roots themselves or aren't under a root, or its parents are roots is
                 // now invalid (mapping roots cannot be nested).
-                ArrayList<Path> keysToRemove = new ArrayList<>();
-                for (Map.Entry<Path, CachedStatus> entry : myData.entrySet()) {
-                    Path key = entry.getKey();
-                    if (key.equals(path))
-                        continue;
-
-                    CachedStatus value = entry.getValue();
-                    boolean isParent = path.startsWith(key);
-                    boolean isChild = key.startsWith(path);
-                    boolean isEvicted = false;
-                    if (isChild && value == CachedStatus.IS_MAPPING_ROOT || value == CachedStatus.NO_ROOT) {
-                        keysToRemove.add(key);
-                        isEvicted = true;
-                    }
-
-                    if (isParent && value == CachedStatus.IS_MAPPING_ROOT) {
-                        keysToRemove.add(key);
-                        isEvicted = true;
-                    }
-
-                    if (isEvicted) {
-                        ourLogger.info(
-                                String.format(
-                                        "Evicting information about %s being %s because %s is %s",
-                                        key,
-                                        value,
-                                        path,
-                                        CachedStatus.IS_MAPPING_ROOT));
-                    }
-                }
+                chain.evictChildren();
+                chain.evictParentRoots(CachedStatus.IS_MAPPING_ROOT);
+
+                chain.setStatus(CachedStatus.IS_MAPPING_ROOT);
+            }
+        } finally {
+            myLock.unlockWrite(stamp);
+        }
+    }
+
+    private static class Node {
+        private final Map<Path, Node> children = new HashMap<>();
+        /**
+         * Status cached for this exact path, or null if there's none.
+         */
+        private CachedStatus status;
+        /**
+         * Number of the cached statuses in the subtree, including the node itself.
+         */
+        private int entryCount;
+    }
 
-                for (Path key : keysToRemove) {
-                    myData.remove(key);
+    /**
+     * The trie nodes from the root to the path, created if necessary. Should only be used under the write lock, and a
+     * status should always be set for the path afterwards, so no nodes without information are left in the trie.
+     */
+    private class NodeChain {
+        private final Path myPath;
+        private final List<Path> mySegments;
+        private final List<Node> myNodes;
+
+        NodeChain(Path path) {
+            myPath = path;
+            mySegments = getSegments(path);
+            myNodes = new ArrayList<>(mySegments.size() + 1);
+
+            Node node = myRoot;
+            myNodes.add(node);
+            for (Path segment : mySegments) {
+                node = node.children.computeIfAbsent(segment, key -> new Node());
+                myNodes.add(node);
+            }
+        }
+
+        private Node getLeaf() {
+            return myNodes.get(myNodes.size() - 1);
+        }
+
+        /**
+         * Returns the path corresponding to the node with the index passed.
+         */
+        private Path getPath(int nodeIndex) {
+            Path result = mySegments.get(0);
+            for (int i = 1; i < nodeIndex; ++i) {
+                result = result.resolve(mySegments.get(i));
+            }
+            return result;
+        }
+
+        private void updateEntryCount(int nodeIndex, int delta) {
+            for (int i = 0; i <= nodeIndex; ++i) {
+                myNodes.get(i).entryCount += delta;
+            }
+        }
+
+        void evictParentRoots(CachedStatus newStatus) {
+            // Skip the trie root (no status is ever stored there) and the leaf (the path itself).
+            for (int i = 1; i < myNodes.size() - 1; ++i) {
+                Node node = myNodes.get(i);
+                if (node.status == CachedStatus.IS_MAPPING_ROOT) {
+                    logEviction(getPath(i), node.status, newStatus);
+                    node.status = null;
+                    updateEntryCount(i, -1);
                 }
+            }
+        }
+
+        void evictChildren() {
+            Node leaf = getLeaf();
+            int childEntries = leaf.entryCount - (leaf.status == null ? 0 : 1);
+            if (childEntries == 0) {
+                return;
+            }
+
+            logSubtreeEviction(myPath, leaf);
+            leaf.children.clear();
+            updateEntryCount(myNodes.size() - 1, -childEntries);
+        }
 
-                myData.put(path, CachedStatus.IS_MAPPING_ROOT);
+        void setStatus(@NotNull CachedStatus status) {
+            Node leaf = getLeaf();
+            if (leaf.status == null) {
+                updateEntryCount(myNodes.size() - 1, 1);
             }
+            leaf.status = status;
+        }
+
+        private void logSubtreeEviction(Path parentPath, Node parent) {
+            for (Map.Entry<Path, Node> entry : parent.children.entrySet()) {
+                Path childPath = parentPath.resolve(entry.getKey());
+                Node child = entry.getValue();
+                if (child.status != null) {
+                    logEviction(childPath, child.status, CachedStatus.IS_MAPPING_ROOT);
+                }
+                logSubtreeEviction(childPath, child);
+            }
+        }
+
+        private void logEviction(Path key, CachedStatus value, CachedStatus newStatus) {
+            ourLogger.info(
+                    String.format(
+                            "Evicting information about %s being %s because %s is %s",
+                            key,
+                            value,
+                            myPath,
+                            newStatus));
         }
     }
 
@@ -27,6 +27,7 @@ import com.microsoft.alm.plugin.external.models.Workspace;
 import com.microsoft.alm.plugin.idea.common.resources.TfPluginBundle;
 import com.microsoft.alm.plugin.idea.common.ui.common.BaseDialogImpl;
 import com.microsoft.alm.plugin.idea.common.ui.common.treetable.ContentProvider;
+import com.microsoft.alm.plugin.idea.tfvc.core.TFSVcs;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -76,6 +77,10 @@ public class ManageWorkspacesDialog extends BaseDialogImpl {
     @Override
     protected void doOKAction() {
         super.doOKAction();
+        final TFSVcs vcs = TFSVcs.getInstance(getProject());
+        if (vcs != null) {
+            vcs.getPendingChangesSnapshot().invalidateAll();
+        }
         VcsDirtyScopeManager.getInstance(getProject()).markEverythingDirty();
     }
 
@@ -0,0 +1,129 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.operations;
+
+import com.microsoft.alm.build.webapi.model.Build;
+import com.microsoft.alm.build.webapi.model.BuildQueryOrder;
+import com.microsoft.alm.build.webapi.model.BuildResult;
+import com.microsoft.alm.build.webapi.model.BuildStatus;
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.context.ServerContext;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the latest completed build of each repository branch. All the open projects that show the status of the same
+ * branch share one entry, so a polling cycle queries the server once per branch instead of once per project. When an
+ * entry gets old, only the builds that finished since the cached one are requested (the finish time is the watermark).
+ */
+public class BuildStatusCache {
+    private static final Logger logger = LoggerFactory.getLogger(BuildStatusCache.class);
+
+    public static final String FRESHNESS_SECONDS_PROPERTY = "com.microsoft.alm.plugin.operations.BuildStatusCache.freshnessSeconds";
+    private static final int DEFAULT_FRESHNESS_SECONDS = 15;
+
+    // Canceled builds can't be filtered out by the server, so a few builds are requested instead of one
+    private static final int MAX_BUILDS = 5;
+    // Without a repository id the server doesn't filter the builds by the repository type, so the builds of the other
+    // repositories of the team project (e.g. the Git ones next to TFVC) come first and have to be skipped here
+    private static final int MAX_BUILDS_OF_ANY_REPOSITORY = 50;
+
+    private static class Holder {
+        private static final BuildStatusCache INSTANCE = new BuildStatusCache();
+    }
+
+    public static BuildStatusCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private static class Entry {
+        private boolean loaded;
+        private long loadedAt;
+        private BuildStatusLookupOperation.BuildStatusRecord record;
+        private Date finishTime;
+    }
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final long freshnessNanos;
+
+    protected BuildStatusCache() {
+        freshnessNanos = TimeUnit.SECONDS.toNanos(Integer.getInteger(FRESHNESS_SECONDS_PROPERTY, DEFAULT_FRESHNESS_SECONDS));
+    }
+
+    /**
+     * Gets the latest completed (and not canceled) build. Called on a background thread; the callers asking for the
+     * same branch at the same time wait for a single server query.
+     *
+     * @param context        the server context of the team project
+     * @param repositoryId   the repository id; null to match any repository of the given type
+     * @param repositoryType the repository type, e.g. TfsGit or TfsVersionControl
+     * @param branchName     the full branch name; null to match any branch
+     * @return the build record, or null if there is no such build
+     */
+    public BuildStatusLookupOperation.BuildStatusRecord getLatestBuild(final ServerContext context,
+                                                                       final String repositoryId,
+                                                                       final String repositoryType,
+                                                                       final String branchName) {
+        ArgumentHelper.checkNotNull(context, "context");
+        ArgumentHelper.checkNotEmptyString(repositoryType, "repositoryType");
+
+        final String key = StringUtils.join(new Object[]{context.getCollectionURI(),
+                context.getTeamProjectReference().getId(), repositoryType, repositoryId, branchName}, "|");
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            final Entry newEntry = new Entry();
+            entry = entries.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+
+        synchronized (entry) {
+            if (entry.loaded && System.nanoTime() - entry.loadedAt < freshnessNanos) {
+                logger.info("Using the cached build status for {}", key);
+                return entry.record;
+            }
+
+            final List<Build> builds = context.getBuildHttpClient().getBuilds(context.getTeamProjectReference().getId(),
+                    repositoryId, repositoryType, branchName, BuildStatus.COMPLETED, entry.finishTime,
+                    repositoryId == null ? MAX_BUILDS_OF_ANY_REPOSITORY : MAX_BUILDS,
+                    BuildQueryOrder.FINISH_TIME_DESCENDING);
+            for (final Build build : builds) {
+                // Ignore canceled builds and the builds of other repositories (in case the server didn't filter them)
+                if (build.getResult() == BuildResult.CANCELED || !isMatchingRepository(build, repositoryId, repositoryType)) {
+                    continue;
+                }
+
+                // Only the builds finished since the cached one are returned, so the first one is the latest
+                if (entry.record == null || entry.record.getBuildId() != build.getId()) {
+                    logger.info("Build status changed for {}", key);
+                    entry.record = new BuildStatusLookupOperation.BuildStatusRecord(build);
+                    entry.finishTime = build.getFinishTime();
+                }
+                break;
+            }
+
+            entry.loaded = true;
+            entry.loadedAt = System.nanoTime();
+            return entry.record;
+        }
+    }
+
+    private static boolean isMatchingRepository(final Build build, final String repositoryId, final String repositoryType) {
+        if (build.getRepository() == null) {
+            return false;
+        }
+
+        return repositoryId != null
+                ? StringUtils.equalsIgnoreCase(repositoryId, build.getRepository().getId())
+                : StringUtils.equalsIgnoreCase(repositoryType, build.getRepository().getType());
+    }
+}
@@ -3,12 +3,8 @@
 
 package com.microsoft.alm.plugin.operations;
 
-import com.microsoft.alm.build.webapi.BuildHttpClient;
 import com.microsoft.alm.build.webapi.model.Build;
-import com.microsoft.alm.build.webapi.model.BuildQueryOrder;
-import com.microsoft.alm.build.webapi.model.BuildRepository;
 import com.microsoft.alm.build.webapi.model.BuildResult;
-import com.microsoft.alm.build.webapi.model.BuildStatus;
 import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.plugin.context.RepositoryContext;
 import com.microsoft.alm.plugin.context.ServerContext;
@@ -25,6 +21,9 @@ public class BuildStatusLookupOperation extends Operation {
     private static final Logger logger = LoggerFactory.getLogger(BuildStatusLookupOperation.class);
 
     public static final String TFVC_REPO_TYPE = "TfsVersionControl";
+    public static final String GIT_REPO_TYPE = "TfsGit";
+    // TODO: Query for the default branch from the server
+    public static final String MASTER_BRANCH = "refs/heads/master";
 
     private final RepositoryContext repositoryContext;
     private final boolean forcePrompt;
@@ -169,69 +168,34 @@ public class BuildStatusLookupOperation extends Operation {
 
     private BuildStatusResults getGitResults(final ServerContext context) {
         final List<BuildStatusRecord> buildStatusRecords = new ArrayList<BuildStatusRecord>(2);
-        Build latestBuildForRepository = null;
-        Build matchingBuild = null;
         BuildStatusResults results;
 
         if (context.getGitRepository() != null) {
-            // Using the build REST client we will get the last 100 builds for this team project.
-            // We will go through those builds and try to find one that matches our repo and branch.
-            // If we can't find a perfect match, we will keep the first one that matches our repo.
-            // TODO: The latest REST API allows you to filter the builds based on repo and branch, but the Java SDK
-            // TODO: is not up to date with that version yet. We should change this code to use that method as soon
-            // TODO: as we can.
-            final BuildHttpClient buildClient = context.getBuildHttpClient();
-            final List<Build> builds = buildClient.getBuilds(context.getTeamProjectReference().getId(), null,
-                    null, null, null, null, null, null, BuildStatus.COMPLETED,
-                    null, //TODO: EnumSet.of(BuildResult.FAILED, BuildResult.PARTIALLY_SUCCEEDED, BuildResult.SUCCEEDED),
-                    null, null, null, 100, null, null, null, BuildQueryOrder.FINISH_TIME_DESCENDING);
-            if (builds.size() > 0) {
-                for (final Build b : builds) {
-                    if (b.getResult() == BuildResult.CANCELED) {
-                        // Ignore canceled builds (it would be better to not query for them above, but that isn't working in the SDK)
-                        continue;
-                    }
-
-                    // Get the repo and branch for the build and compare them to ours
-                    final BuildRepository repo = b.getRepository();
-                    if (repo != null && StringUtils.equalsIgnoreCase(context.getGitRepository().getId().toString(), repo.getId())) {
-                        // TODO: Get the constant refs/heads/master from someplace common or query for the default branch from the server
-                        // Branch names are case sensitive
-                        if (StringUtils.equals(b.getSourceBranch(), "refs/heads/master")) {
-                            if (latestBuildForRepository == null) {
-                                // Found the master branch for the repo, so save that off
-                                logger.info("Latest build found for repo for the master branch.");
-                                latestBuildForRepository = b;
-                            }
-                        } else if (StringUtils.equals(b.getSourceBranch(), repositoryContext.getBranch())) {
-                            if (matchingBuild == null) {
-                                // The repo and branch match the build exactly, so save that off
-                                logger.info("Matching build found for repo and branch.");
-                                matchingBuild = b;
-                            }
-                        }
-
-                        if (latestBuildForRepository != null && matchingBuild != null) {
-                            // We found both builds
-                            break;
-                        }
-                    }
-                }
-
-                // Create the results
-                if (latestBuildForRepository != null) {
-                    // Add the repository build to the status records list first
-                    buildStatusRecords.add(new BuildStatusRecord(latestBuildForRepository));
-                }
-                if (matchingBuild != null) {
-                    // Add the matching build to the status records list last
-                    buildStatusRecords.add(new BuildStatusRecord(matchingBuild));
-                }
-                results = new BuildStatusResults(context, buildStatusRecords);
-            } else {
-                // No builds were found for this project
-                results = new BuildStatusResults(context, null);
+            // The server filters the builds by our repo and branch, and the cache shares the results between the
+            // projects that show the same branch. We look for the latest build of master (the repository status) and
+            // the latest build of our branch.
+            final String repositoryId = context.getGitRepository().getId().toString();
+            final BuildStatusCache cache = BuildStatusCache.getInstance();
+            final BuildStatusRecord latestBuildForRepository = cache.getLatestBuild(context, repositoryId, GIT_REPO_TYPE, MASTER_BRANCH);
+            BuildStatusRecord matchingBuild = null;
+            // Branch names are case sensitive
+            if (StringUtils.isNotEmpty(repositoryContext.getBranch())
+                    && !StringUtils.equals(repositoryContext.getBranch(), MASTER_BRANCH)) {
+                matchingBuild = cache.getLatestBuild(context, repositoryId, GIT_REPO_TYPE, repositoryContext.getBranch());
+            }
+
+            // Create the results
+            if (latestBuildForRepository != null) {
+                // Add the repository build to the status records list first
+                logger.info("Latest build found for repo for the master branch.");
+                buildStatusRecords.add(latestBuildForRepository);
             }
+            if (matchingBuild != null) {
+                // Add the matching build to the status records list last
+                logger.info("Matching build found for repo and branch.");
+                buildStatusRecords.add(matchingBuild);
+            }
+            results = new BuildStatusResults(context, buildStatusRecords);
         } else {
             results = new BuildStatusResults(null, null);
         }
@@ -240,8 +204,6 @@ public class BuildStatusLookupOperation extends Operation {
 
     private BuildStatusResults getTfvcResults(final ServerContext context) {
         final List<BuildStatusRecord> buildStatusRecords = new ArrayList<BuildStatusRecord>(2);
-        Build matchingBuild = null;
-        BuildStatusResults results;
 
         // Check the context object to make sure it is valid
         if (context.getTeamProjectReference() == null || context.getTeamProjectReference().getId() == null) {
@@ -249,37 +211,15 @@ public class BuildStatusLookupOperation extends Operation {
             return new BuildStatusResults(context, null);
         }
 
-        // Using the build REST client we will get the last 100 builds for this team project.
-        // TODO: We will go through those builds and try to find one that matches our repo and common root.
-        // If we can't find a perfect match, we will keep the first one that matches our repo type.
-        final BuildHttpClient buildClient = context.getBuildHttpClient();
-        final List<Build> builds = buildClient.getBuilds(context.getTeamProjectReference().getId(), null, null, null, null, null, null, null, BuildStatus.COMPLETED, null, null, null, null, 100, null, null, null, BuildQueryOrder.FINISH_TIME_DESCENDING);
-        if (builds.size() > 0) {
-            for (final Build b : builds) {
-                if (b.getResult() == BuildResult.CANCELED) {
-                    // Ignore canceled builds (it would be better to not query for them above, but that isn't working in the SDK)
-                    continue;
-                }
-
-                // Get the repo and branch for the build and compare them to ours
-                final BuildRepository repo = b.getRepository();
-                if (repo != null && StringUtils.equalsIgnoreCase(repo.getType(), TFVC_REPO_TYPE)) {
-                    matchingBuild = b;
-                    break;
-                }
-            }
+        // TODO: We should try to find a build that matches our repo and common root.
+        // For now we keep the latest build of the team project that matches our repo type.
+        final BuildStatusRecord matchingBuild = BuildStatusCache.getInstance().getLatestBuild(context, null, TFVC_REPO_TYPE, null);
 
-            // Create the results
-            if (matchingBuild != null) {
-                // Add the matching build to the status records list last
-                buildStatusRecords.add(new BuildStatusRecord(matchingBuild));
-            }
-            results = new BuildStatusResults(context, buildStatusRecords);
-        } else {
-            // No builds were found for this project
-            results = new BuildStatusResults(context, null);
+        // Create the results
+        if (matchingBuild != null) {
+            buildStatusRecords.add(matchingBuild);
         }
-        return results;
+        return new BuildStatusResults(context, buildStatusRecords);
     }
 
     @Override
@@ -113,10 +113,16 @@ public abstract class Operation {
         OperationExecutor.getInstance().executeAsync(this, inputs);
     }
 
+    public void doWorkAsync(final Inputs inputs, final OperationExecutor.Priority priority) {
+        OperationExecutor.getInstance().executeAsync(this, inputs, priority);
+    }
+
     public abstract void doWork(final Inputs inputs);
 
     public void cancel() {
         state = State.CANCELLED;
+        // Stop the background work (if any) that was started with doWorkAsync
+        OperationExecutor.getInstance().cancel(id);
     }
 
     protected void terminate(final Throwable throwable) {
@@ -7,15 +7,22 @@ import com.microsoft.alm.plugin.exceptions.TeamServicesException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class OperationExecutor {
     private static final Logger logger = LoggerFactory.getLogger(OperationExecutor.class);
@@ -24,13 +31,136 @@ public class OperationExecutor {
     final int MAX_THREADS = 5;
     // No need for Core threads and Max threads to be different
     final int CORE_THREADS = MAX_THREADS;
-    //timeout for each task
+    //timeout for each group of tasks
     final long TASK_TIMEOUT_SECONDS = 120L;
+    // Tasks that wait in the queue longer than this are logged
+    final long SLOW_QUEUE_MILLISECONDS = 1000L;
 
-    // The number of items that can be in the Queue needs to be bigger than the number of threads (10x is somewhat arbitrary)
-    final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<Runnable>(MAX_THREADS * 10);
+    /**
+     * The tasks started by the user run before the background (e.g. polling) tasks. The tasks submitted from a running
+     * task get its priority.
+     */
+    public enum Priority {
+        UI,
+        BACKGROUND
+    }
+
+    /**
+     * A snapshot of the queue and latency numbers of one priority
+     */
+    public static class Metrics {
+        private final long submittedCount;
+        private final long completedCount;
+        private final long averageQueueMilliseconds;
+        private final long maxQueueMilliseconds;
+        private final long averageRunMilliseconds;
+
+        private Metrics(final long submittedCount, final long completedCount, final long averageQueueMilliseconds,
+                        final long maxQueueMilliseconds, final long averageRunMilliseconds) {
+            this.submittedCount = submittedCount;
+            this.completedCount = completedCount;
+            this.averageQueueMilliseconds = averageQueueMilliseconds;
+            this.maxQueueMilliseconds = maxQueueMilliseconds;
+            this.averageRunMilliseconds = averageRunMilliseconds;
+        }
+
+        public long getSubmittedCount() {
+            return submittedCount;
+        }
+
+        public long getCompletedCount() {
+            return completedCount;
+        }
+
+        public long getAverageQueueMilliseconds() {
+            return averageQueueMilliseconds;
+        }
+
+        public long getMaxQueueMilliseconds() {
+            return maxQueueMilliseconds;
+        }
+
+        public long getAverageRunMilliseconds() {
+            return averageRunMilliseconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("submitted=%d, completed=%d, averageQueueMs=%d, maxQueueMs=%d, averageRunMs=%d",
+                    submittedCount, completedCount, averageQueueMilliseconds, maxQueueMilliseconds, averageRunMilliseconds);
+        }
+    }
+
+    private static class LaneMetrics {
+        private final AtomicLong submittedCount = new AtomicLong();
+        private final AtomicLong startedCount = new AtomicLong();
+        private final AtomicLong completedCount = new AtomicLong();
+        private final AtomicLong totalQueueNanos = new AtomicLong();
+        private final AtomicLong maxQueueNanos = new AtomicLong();
+        private final AtomicLong totalRunNanos = new AtomicLong();
+    }
+
+    /**
+     * A task that is ordered in the queue by its priority, and then by the submission order
+     */
+    private class PrioritizedTask extends FutureTask<Void> implements Comparable<PrioritizedTask> {
+        private final Priority priority;
+        private final long sequenceNumber;
+        private final long queuedAt;
+
+        public PrioritizedTask(final Runnable runnable, final Priority priority) {
+            super(runnable, null);
+            this.priority = priority;
+            this.sequenceNumber = sequence.incrementAndGet();
+            this.queuedAt = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            final LaneMetrics laneMetrics = metrics.get(priority);
+            final long startedAt = System.nanoTime();
+            final long queueNanos = startedAt - queuedAt;
+            laneMetrics.startedCount.incrementAndGet();
+            laneMetrics.totalQueueNanos.addAndGet(queueNanos);
+            updateMax(laneMetrics.maxQueueNanos, queueNanos);
+            if (TimeUnit.NANOSECONDS.toMillis(queueNanos) > SLOW_QUEUE_MILLISECONDS) {
+                logger.info("A {} task waited {} ms in the queue", priority, TimeUnit.NANOSECONDS.toMillis(queueNanos));
+            }
+
+            final Priority previousPriority = currentPriority.get();
+            currentPriority.set(priority);
+            try {
+                super.run();
+            } finally {
+                currentPriority.set(previousPriority);
+                laneMetrics.completedCount.incrementAndGet();
+                laneMetrics.totalRunNanos.addAndGet(System.nanoTime() - startedAt);
+            }
+        }
+
+        @Override
+        public int compareTo(final PrioritizedTask other) {
+            final int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(sequenceNumber, other.sequenceNumber);
+        }
+    }
+
+    // The queue isn't bounded, so the tasks are never rejected; the number of threads is
+    final BlockingQueue<Runnable> queue = new PriorityBlockingQueue<Runnable>();
     final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(CORE_THREADS, MAX_THREADS, THREAD_RECOVERY_TIMEOUT_SECONDS, TimeUnit.SECONDS, queue);
 
+    private final AtomicLong sequence = new AtomicLong();
+    // The priority of the task running on the current thread; null if the thread isn't running one of our tasks
+    private final ThreadLocal<Priority> currentPriority = new ThreadLocal<Priority>();
+    private final ConcurrentMap<UUID, Future> operationFutures = new ConcurrentHashMap<UUID, Future>();
+    private final Map<Priority, LaneMetrics> metrics = new EnumMap<Priority, LaneMetrics>(Priority.class);
+
+    {
+        for (final Priority priority : Priority.values()) {
+            metrics.put(priority, new LaneMetrics());
+        }
+    }
+
     private static class Holder {
         public final static OperationExecutor INSTANCE = new OperationExecutor();
     }
@@ -40,7 +170,11 @@ public class OperationExecutor {
     }
 
     public UUID executeAsync(final Operation operation, final Operation.Inputs inputs) {
-        execute(operation, inputs);
+        return executeAsync(operation, inputs, Priority.UI);
+    }
+
+    public UUID executeAsync(final Operation operation, final Operation.Inputs inputs, final Priority priority) {
+        execute(operation, inputs, priority);
         return operation.getId();
     }
 
@@ -48,8 +182,19 @@ public class OperationExecutor {
         return queue.size();
     }
 
-    private synchronized void execute(final Operation operation, final Operation.Inputs inputs) {
-        threadPoolExecutor.execute(new Runnable() {
+    public Metrics getMetrics(final Priority priority) {
+        final LaneMetrics laneMetrics = metrics.get(priority);
+        final long startedCount = laneMetrics.startedCount.get();
+        final long completedCount = laneMetrics.completedCount.get();
+        return new Metrics(laneMetrics.submittedCount.get(), completedCount,
+                startedCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(laneMetrics.totalQueueNanos.get() / startedCount),
+                TimeUnit.NANOSECONDS.toMillis(laneMetrics.maxQueueNanos.get()),
+                completedCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(laneMetrics.totalRunNanos.get() / completedCount));
+    }
+
+    private void execute(final Operation operation, final Operation.Inputs inputs, final Priority priority) {
+        final UUID id = operation.getId();
+        final PrioritizedTask task = new PrioritizedTask(new Runnable() {
             @Override
             public void run() {
                 try {
@@ -59,27 +204,75 @@ public class OperationExecutor {
                     if (!operation.isFinished()) {
                         operation.terminate(t);
                     }
+                } finally {
+                    operationFutures.remove(id);
                 }
             }
-        });
+        }, priority);
+        operationFutures.put(id, task);
+        submit(task);
+    }
+
+    /**
+     * Cancels the running or queued operation. A running operation is interrupted, which also cancels the tasks it
+     * waits for.
+     */
+    public void cancel(final UUID operationId) {
+        final Future future = operationFutures.remove(operationId);
+        if (future != null) {
+            logger.info("Cancelling operation {}", operationId);
+            future.cancel(true);
+        }
+    }
+
+    public Future submitOperationTask(final Runnable task) {
+        final Priority priority = currentPriority.get();
+        return submitOperationTask(task, priority != null ? priority : Priority.UI);
     }
 
-    public Future submitOperationTask(Runnable task) {
-        return threadPoolExecutor.submit(task);
+    public Future submitOperationTask(final Runnable task, final Priority priority) {
+        final PrioritizedTask prioritizedTask = new PrioritizedTask(task, priority);
+        submit(prioritizedTask);
+        return prioritizedTask;
     }
 
+    private void submit(final PrioritizedTask task) {
+        metrics.get(task.priority).submittedCount.incrementAndGet();
+        threadPoolExecutor.execute(task);
+    }
+
+    /**
+     * Waits for all the tasks to finish within one overall timeout. If the waiting thread is one of the pool threads,
+     * it runs the tasks that are still queued itself, so tasks waiting for their subtasks can't use up the pool.
+     * If the wait is interrupted or times out, the tasks that haven't finished are cancelled.
+     */
     public void wait(List<Future> futures) {
-        //TODO: can we call get on the futures in parallel. If there are multiple ones that timeout, overall timeout might be long
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TASK_TIMEOUT_SECONDS);
+        if (currentPriority.get() != null) {
+            for (final Future f : futures) {
+                if (f instanceof PrioritizedTask && queue.remove(f)) {
+                    ((PrioritizedTask) f).run();
+                }
+            }
+        }
+
         Throwable t = null;
         for (Future f : futures) {
             try {
-                f.get(TASK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                f.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
             } catch (InterruptedException e) {
                 t = e;
                 logger.warn("wait: InterruptedException", e);
+                // Keep the interrupted status for the rest of the cancelled operation
+                Thread.currentThread().interrupt();
+                break;
             } catch (TimeoutException te) {
                 t = te;
                 logger.warn("wait: TimeoutException", te);
+                break;
+            } catch (CancellationException ce) {
+                logger.warn("wait: CancellationException", ce);
+                t = ce;
             } catch (ExecutionException ee) {
                 logger.warn("wait: ExecutionException", ee);
                 t = ee;
@@ -87,11 +280,24 @@ public class OperationExecutor {
         }
 
         if (t != null) {
+            for (final Future f : futures) {
+                f.cancel(true);
+            }
             throw new TeamServicesException(TeamServicesException.KEY_OPERATION_ERRORS, t);
         }
     }
 
     public void shutdown() {
+        for (final Priority priority : Priority.values()) {
+            logger.info("{} tasks: {}", priority, getMetrics(priority));
+        }
         threadPoolExecutor.shutdown();
     }
+
+    private static void updateMax(final AtomicLong max, final long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
 }
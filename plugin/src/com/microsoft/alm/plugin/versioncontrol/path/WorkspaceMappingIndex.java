@@ -0,0 +1,216 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.versioncontrol.path;
+
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.common.utils.FileHelper;
+import com.microsoft.alm.plugin.exceptions.ServerPathFormatException;
+import com.microsoft.alm.plugin.external.models.Workspace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Index of the workspace mappings for the path translation. The server and local paths of the mappings are kept in
+ * two tries of path components, so a path is translated by walking its components once, instead of comparing it with
+ * every mapping.
+ * <p>
+ * The results are the same as the ones of the linear scans in
+ * {@link com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfsFileUtil}: the most precise mapping wins, and the items under
+ * a cloaked server path are not translated.
+ */
+public class WorkspaceMappingIndex {
+    private static final Logger logger = LoggerFactory.getLogger(WorkspaceMappingIndex.class);
+
+    private static class Node {
+        private final int depth;
+        private final Map<String, Node> children = new HashMap<String, Node>();
+        private Workspace.Mapping mapping;
+        private boolean isCloaked;
+        // For the local nodes: the depth of the mapping's server path in the server trie
+        private int serverDepth;
+
+        private Node(final int depth) {
+            this.depth = depth;
+        }
+
+        private Node getOrCreateChild(final String component) {
+            Node child = children.get(component);
+            if (child == null) {
+                child = new Node(depth + 1);
+                children.put(component, child);
+            }
+            return child;
+        }
+    }
+
+    // LocalPath.isChild compares the parent directories with File.equals, which only ignores case on Windows, but
+    // compares the whole paths ignoring case on all the case-insensitive file systems (e.g. on macOS)
+    private static final boolean FILE_EQUALS_IGNORES_CASE = new File("A").equals(new File("a"));
+
+    private final Node serverRoot = new Node(0);
+    private final Node localRoot = new Node(0);
+    private final boolean ignoreLocalCase = FileHelper.doesFileSystemIgnoreCase();
+    // The mappings by their exact local paths, for the paths that are equal to a mapping and not just its children
+    private final Map<String, Node> localPathMappings = new HashMap<String, Node>();
+
+    public WorkspaceMappingIndex(final List<Workspace.Mapping> mappings) {
+        ArgumentHelper.checkNotNull(mappings, "mappings");
+
+        for (final Workspace.Mapping mapping : mappings) {
+            if (mapping == null) {
+                continue;
+            }
+
+            Node serverNode = serverRoot;
+            try {
+                for (final String component : getServerComponents(ServerPath.canonicalize(mapping.getServerPath(), false))) {
+                    serverNode = serverNode.getOrCreateChild(component);
+                }
+                // The first mapping wins when several ones have the same path, as in the linear scan
+                if (serverNode.mapping == null) {
+                    serverNode.mapping = mapping;
+                }
+                serverNode.isCloaked |= mapping.isCloaked();
+            } catch (ServerPathFormatException e) {
+                logger.warn("Skipping the mapping with an invalid server path: " + mapping.getServerPath());
+                continue;
+            }
+
+            if (!mapping.isCloaked()) {
+                Node localNode = localRoot;
+                for (final String component : getLocalComponents(mapping.getLocalPath())) {
+                    localNode = localNode.getOrCreateChild(component);
+                }
+                if (localNode.mapping == null) {
+                    localNode.mapping = mapping;
+                    localNode.serverDepth = serverNode.depth;
+                }
+
+                final String localPathKey = getLocalPathKey(mapping.getLocalPath());
+                if (!localPathMappings.containsKey(localPathKey)) {
+                    final Node exactNode = new Node(localNode.depth);
+                    exactNode.mapping = mapping;
+                    exactNode.serverDepth = serverNode.depth;
+                    localPathMappings.put(localPathKey, exactNode);
+                }
+            }
+        }
+    }
+
+    /**
+     * Translates a server path to a local path.
+     *
+     * @return the local path, or <code>null</code> if the item isn't mapped or is cloaked
+     */
+    public String translateServerItemToLocalItem(final String serverPath, final boolean checkForIllegalDollar) {
+        ArgumentHelper.checkNotEmptyString(serverPath, "serverPath");
+
+        final Node node = findDeepestMapping(serverRoot, getServerComponents(ServerPath.canonicalize(serverPath, checkForIllegalDollar)));
+        if (node == null || node.mapping.isCloaked()) {
+            return null;
+        }
+
+        return ServerPath.makeLocal(serverPath, node.mapping.getServerPath(), node.mapping.getLocalPath(), checkForIllegalDollar);
+    }
+
+    /**
+     * Translates a local path to a server path.
+     *
+     * @return the server path, or <code>null</code> if the item isn't mapped or is cloaked
+     */
+    public String translateLocalItemToServerItem(final String localPath) {
+        ArgumentHelper.checkNotEmptyString(localPath, "localPath");
+
+        Node localNode = localPathMappings.get(getLocalPathKey(localPath));
+        if (localNode == null) {
+            // Only the parent directories of the path are compared with the mappings, as in LocalPath.isChild
+            final List<String> components = getLocalComponents(localPath);
+            localNode = findDeepestMapping(localRoot, components.subList(0, components.size() - 1));
+        }
+        if (localNode == null) {
+            return null;
+        }
+
+        final Workspace.Mapping mapping = localNode.mapping;
+        final String serverPath = LocalPath.makeServer(localPath, mapping.getLocalPath(), mapping.getServerPath());
+
+        // The server path could be cloaked by a mapping more precise than the one it was translated with
+        Node serverNode = serverRoot;
+        for (final String component : getServerComponents(serverPath)) {
+            serverNode = serverNode.children.get(component);
+            if (serverNode == null) {
+                break;
+            }
+            if (serverNode.isCloaked && serverNode.depth > localNode.serverDepth) {
+                return null;
+            }
+        }
+
+        return serverPath;
+    }
+
+    private static Node findDeepestMapping(final Node root, final List<String> components) {
+        Node found = root.mapping == null ? null : root;
+        Node node = root;
+        for (final String component : components) {
+            node = node.children.get(component);
+            if (node == null) {
+                break;
+            }
+            if (node.mapping != null) {
+                found = node;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Splits a canonical server path into the components compared ignoring case, starting with "$".
+     */
+    private static List<String> getServerComponents(final String canonicalServerPath) {
+        return split(canonicalServerPath.toLowerCase(Locale.ROOT), ServerPath.PREFERRED_SEPARATOR_CHARACTER);
+    }
+
+    /**
+     * Returns the key of a local path compared as a whole, the same way {@link LocalPath#isChild} compares it with the
+     * parent path: as is, ignoring case on the case-insensitive file systems.
+     */
+    private String getLocalPathKey(final String localPath) {
+        return ignoreLocalCase ? localPath.toLowerCase(Locale.ROOT) : localPath;
+    }
+
+    /**
+     * Splits a local path into components the same way {@link LocalPath#isChild} compares its parent directories:
+     * {@link File} normalizes the separators, and compares the names the way {@link File#equals} does.
+     */
+    private static List<String> getLocalComponents(final String localPath) {
+        final String normalized = new File(localPath).getPath();
+        return split(FILE_EQUALS_IGNORES_CASE ? normalized.toLowerCase(Locale.ROOT) : normalized, File.separatorChar);
+    }
+
+    private static List<String> split(final String path, final char separator) {
+        final List<String> components = new ArrayList<String>();
+        int start = 0;
+        while (start <= path.length()) {
+            int end = path.indexOf(separator, start);
+            if (end < 0) {
+                end = path.length();
+            }
+
+            // The leading empty component stands for the root of an absolute path
+            if (end > start || components.isEmpty()) {
+                components.add(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return components;
+    }
+}
@@ -18,6 +18,8 @@ import com.microsoft.alm.plugin.context.rest.VstsHttpClient;
 import com.microsoft.alm.plugin.context.rest.VstsInfo;
 import com.microsoft.alm.plugin.context.rest.VstsUserInfo;
 import com.microsoft.alm.plugin.exceptions.TeamServicesException;
+import com.microsoft.alm.plugin.services.PluginServiceProvider;
+import com.microsoft.alm.plugin.services.ServerContextStore;
 import com.microsoft.alm.sourcecontrol.webapi.GitHttpClient;
 import com.microsoft.alm.sourcecontrol.webapi.model.GitRepository;
 import org.junit.Assert;
@@ -27,6 +29,8 @@ import org.junit.runner.RunWith;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -35,6 +39,9 @@ import javax.ws.rs.client.Client;
 import java.net.URI;
 import java.util.Collection;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
@@ -266,6 +273,105 @@ public class ServerContextManagerTest extends AbstractTest {
         }
     }
 
+    @Test(timeout = 10000)
+    public void testValidateServerConnection_concurrentCallsShareValidation() throws Exception {
+        final ServerContextManager manager = new ServerContextManager();
+
+        final ConnectionData connectionData = new ConnectionData();
+        connectionData.setAuthenticatedUser(new VstsUserInfo());
+        connectionData.getAuthenticatedUser().setId(UUID.randomUUID());
+        final CountDownLatch requestStarted = new CountDownLatch(1);
+        final CountDownLatch releaseRequest = new CountDownLatch(1);
+        final AtomicInteger requestCount = new AtomicInteger();
+        PowerMockito.mockStatic(VstsHttpClient.class);
+        when(VstsHttpClient.sendRequest(any(Client.class), anyString(), Matchers.eq(ConnectionData.class)))
+                .thenAnswer(new Answer<ConnectionData>() {
+                    @Override
+                    public ConnectionData answer(final InvocationOnMock invocation) throws Throwable {
+                        requestCount.incrementAndGet();
+                        requestStarted.countDown();
+                        releaseRequest.await();
+                        return connectionData;
+                    }
+                });
+
+        final Client client = Mockito.mock(Client.class);
+        final ServerContext context = new ServerContextBuilder().type(ServerContext.Type.VSO).uri("https://server.visualstudio.com").buildWithClient(client);
+        final ServerContext[] results = new ServerContext[2];
+        final Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                results[0] = manager.validateServerConnection(context);
+            }
+        });
+        final Thread second = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                results[1] = manager.validateServerConnection(context);
+            }
+        });
+
+        first.start();
+        Assert.assertTrue(requestStarted.await(5, TimeUnit.SECONDS));
+        second.start();
+        // The second thread waits either for the first validation or, if it wasn't shared, for its own request
+        while (second.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+        releaseRequest.countDown();
+        first.join();
+        second.join();
+
+        Assert.assertEquals(1, requestCount.get());
+        Assert.assertNotNull(results[0]);
+        Assert.assertSame(results[0], results[1]);
+        Assert.assertSame(results[0], manager.get(context.getUri().toString()));
+    }
+
+    @Test(timeout = 30000)
+    public void testAddRemove_concurrentChangesKeepStoreInSyncWithMap() throws Exception {
+        final ServerContextManager manager = new ServerContextManager();
+        final String uri = "http://server:8080/tfs/concurrent";
+        final ServerContext context = new ServerContextBuilder().type(ServerContext.Type.TFS).uri(uri).build();
+        final ServerContextStore store = PluginServiceProvider.getInstance().getServerContextStore();
+
+        for (int i = 0; i < 200; i++) {
+            final CountDownLatch start = new CountDownLatch(1);
+            final Thread adder = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    awaitQuietly(start);
+                    manager.add(context, false);
+                }
+            });
+            final Thread remover = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    awaitQuietly(start);
+                    manager.remove(uri);
+                }
+            });
+            adder.start();
+            remover.start();
+            start.countDown();
+            adder.join();
+            remover.join();
+
+            // Whichever change came last, the saved contexts match the map
+            final ServerContext saved = store.restoreServerContexts().get(0);
+            Assert.assertSame(manager.get(uri), saved);
+            manager.remove(uri);
+        }
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Test
     public void testValidateServerConnection_justVSTSRemoteURL() {
         ServerContextManager manager = new ServerContextManager();
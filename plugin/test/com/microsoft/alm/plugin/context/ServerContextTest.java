@@ -120,6 +120,39 @@ public class ServerContextTest extends AbstractTest {
         Assert.assertNull(properties3.get(ClientProperties.PROXY_URI));
     }
 
+    @Test
+    public void pooledClients() {
+        final URI serverUri = URI.create("https://pooled.test");
+        final AuthenticationInfo info = new AuthenticationInfo("user1", "pass", serverUri.toString(), "4display");
+        final ServerContext context1 = new ServerContext(ServerContext.Type.TFS, info, null, serverUri, serverUri, null, null, null, null);
+        final ServerContext context2 = new ServerContext(ServerContext.Type.TFS, info, null, serverUri, serverUri, null, null, null, null);
+
+        // The contexts with the same server and credentials share the clients and their connections
+        final Client client = context1.getClient();
+        Assert.assertSame(client, context2.getClient());
+        Assert.assertSame(context1.getHttpClient(), context2.getHttpClient());
+        Assert.assertTrue(HttpClientPool.getInstance().getStatistics().containsKey("TFS https://pooled.test user1"));
+
+        // Disposing a context doesn't close the clients of the other contexts
+        context1.dispose();
+        Assert.assertTrue(HttpClientPool.getInstance().isPooled(client));
+        Assert.assertSame(client, context2.getClient());
+
+        final AuthenticationInfo info2 = new AuthenticationInfo("user2", "pass", serverUri.toString(), "4display");
+        final ServerContext context3 = new ServerContext(ServerContext.Type.TFS, info2, null, serverUri, serverUri, null, null, null, null);
+        Assert.assertNotSame(client, context3.getClient());
+
+        // The pools of the other credentials stay open next to each other, until their credentials are removed
+        Assert.assertTrue(HttpClientPool.getInstance().getStatistics().containsKey("TFS https://pooled.test user1"));
+        Assert.assertTrue(HttpClientPool.getInstance().getStatistics().containsKey("TFS https://pooled.test user2"));
+        HttpClientPool.getInstance().clear(ServerContext.Type.TFS, info2);
+        Assert.assertTrue(HttpClientPool.getInstance().getStatistics().containsKey("TFS https://pooled.test user1"));
+        Assert.assertFalse(HttpClientPool.getInstance().getStatistics().containsKey("TFS https://pooled.test user2"));
+
+        context2.dispose();
+        context3.dispose();
+    }
+
     @Test
     public void getClientSslContext() {
         Client client = RestClientHelper.getClient("https://tfsonprem.test", "testToken");
@@ -7,6 +7,7 @@ import com.google.common.util.concurrent.SettableFuture;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.EnumSet;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -64,4 +65,23 @@ public class ServerPollingManagerTest {
         Assert.assertEquals(true, witChangedCalled.get(1, TimeUnit.SECONDS));
         manager.stopPolling();
     }
+
+    @Test
+    public void testPolling_triggersDetectedChangesOnly() throws InterruptedException, ExecutionException, TimeoutException {
+        final ServerEventManager eventManager = new ServerEventManager();
+        final ServerPollingManager manager = new ServerPollingManager(eventManager);
+        manager.setChangeDetector(() -> EnumSet.of(ServerEvent.PULL_REQUESTS_CHANGED));
+
+        final SettableFuture<ServerEvent> firstEvent = SettableFuture.create();
+        eventManager.addListener(new ServerEventListener() {
+            @Override
+            public void serverChanged(final ServerEvent event, final Map<String,Object> contextMap) {
+                firstEvent.set(event);
+            }
+        });
+
+        manager.startPolling(10);
+        Assert.assertEquals(ServerEvent.PULL_REQUESTS_CHANGED, firstEvent.get(1, TimeUnit.SECONDS));
+        manager.stopPolling();
+    }
 }
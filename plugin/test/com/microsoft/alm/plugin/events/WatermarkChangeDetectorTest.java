@@ -0,0 +1,127 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.events;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.microsoft.alm.core.webapi.model.TeamProjectReference;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.ServerContextManager;
+import com.microsoft.alm.workitemtracking.webapi.WorkItemTrackingHttpClient;
+import com.microsoft.alm.workitemtracking.webapi.models.Wiql;
+import com.microsoft.alm.workitemtracking.webapi.models.WorkItem;
+import com.microsoft.alm.workitemtracking.webapi.models.WorkItemExpand;
+import com.microsoft.alm.workitemtracking.webapi.models.WorkItemQueryResult;
+import com.microsoft.alm.workitemtracking.webapi.models.WorkItemReference;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WatermarkChangeDetectorTest {
+    private final Map<ServerEvent, String> watermarks = new HashMap<ServerEvent, String>();
+    private ServerContextManager contextManager;
+    private WatermarkChangeDetector detector;
+
+    @Before
+    public void setUp() {
+        final ServerContext context = mock(ServerContext.class);
+        when(context.getKey()).thenReturn("https://organization.visualstudio.com");
+        contextManager = mock(ServerContextManager.class);
+        when(contextManager.getAllServerContexts()).thenReturn(ImmutableList.of(context));
+
+        detector = new WatermarkChangeDetector(contextManager) {
+            @Override
+            protected String getWatermark(final ServerEvent event, final ServerContext context) {
+                final String watermark = watermarks.get(event);
+                if ("error".equals(watermark)) {
+                    throw new IllegalStateException("server error");
+                }
+                return watermark;
+            }
+        };
+
+        watermarks.put(ServerEvent.BUILDS_CHANGED, "10:1000");
+        watermarks.put(ServerEvent.PULL_REQUESTS_CHANGED, "1:abc:succeeded");
+        watermarks.put(ServerEvent.WORK_ITEMS_CHANGED, "5:3");
+    }
+
+    @Test
+    public void testDetectChanges_firstCheckOnlyStoresWatermarks() {
+        Assert.assertEquals(Collections.emptySet(), detector.detectChanges());
+        Assert.assertEquals(Collections.emptySet(), detector.detectChanges());
+    }
+
+    @Test
+    public void testDetectChanges_reportsChangedEvents() {
+        detector.detectChanges();
+
+        watermarks.put(ServerEvent.BUILDS_CHANGED, "11:2000");
+        Assert.assertEquals(EnumSet.of(ServerEvent.BUILDS_CHANGED), detector.detectChanges());
+
+        watermarks.put(ServerEvent.PULL_REQUESTS_CHANGED, "1:def:succeeded");
+        watermarks.put(ServerEvent.WORK_ITEMS_CHANGED, "5:4");
+        Assert.assertEquals(EnumSet.of(ServerEvent.PULL_REQUESTS_CHANGED, ServerEvent.WORK_ITEMS_CHANGED),
+                detector.detectChanges());
+        Assert.assertEquals(Collections.emptySet(), detector.detectChanges());
+    }
+
+    @Test
+    public void testDetectChanges_reportsUnwatchedAndFailedEvents() {
+        watermarks.remove(ServerEvent.PULL_REQUESTS_CHANGED);
+        watermarks.put(ServerEvent.WORK_ITEMS_CHANGED, "error");
+
+        Assert.assertEquals(EnumSet.of(ServerEvent.PULL_REQUESTS_CHANGED, ServerEvent.WORK_ITEMS_CHANGED),
+                detector.detectChanges());
+    }
+
+    @Test
+    public void testDetectChanges_noContexts() {
+        when(contextManager.getAllServerContexts()).thenReturn(Collections.<ServerContext>emptyList());
+
+        Assert.assertEquals(EnumSet.of(ServerEvent.BUILDS_CHANGED, ServerEvent.PULL_REQUESTS_CHANGED, ServerEvent.WORK_ITEMS_CHANGED),
+                detector.detectChanges());
+    }
+
+    @Test
+    public void testGetWatermark_workItemsQueryTakesLatestItemOnly() {
+        final UUID projectId = UUID.randomUUID();
+        final TeamProjectReference project = new TeamProjectReference();
+        project.setId(projectId);
+
+        final WorkItemReference reference = new WorkItemReference();
+        reference.setId(42);
+        final WorkItemQueryResult result = new WorkItemQueryResult();
+        result.setWorkItems(ImmutableList.of(reference));
+
+        final WorkItem workItem = new WorkItem();
+        workItem.setFields(ImmutableMap.<String, Object>of("System.Rev", 7));
+
+        final WorkItemTrackingHttpClient witClient = mock(WorkItemTrackingHttpClient.class);
+        when(witClient.queryByWiql(any(Wiql.class), eq(projectId), any(Boolean.class), eq(1))).thenReturn(result);
+        when(witClient.getWorkItems(anyListOf(Integer.class), anyListOf(String.class), any(Date.class),
+                any(WorkItemExpand.class))).thenReturn(ImmutableList.of(workItem));
+
+        final ServerContext context = mock(ServerContext.class);
+        when(context.getTeamProjectReference()).thenReturn(project);
+        when(context.getWitHttpClient()).thenReturn(witClient);
+
+        Assert.assertEquals("42:7",
+                new WatermarkChangeDetector(contextManager).getWatermark(ServerEvent.WORK_ITEMS_CHANGED, context));
+        verify(witClient).queryByWiql(any(Wiql.class), eq(projectId), any(Boolean.class), eq(1));
+    }
+}
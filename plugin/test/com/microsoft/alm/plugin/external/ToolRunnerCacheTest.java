@@ -0,0 +1,144 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external;
+
+import com.microsoft.alm.plugin.AbstractTest;
+import com.microsoft.alm.plugin.external.tools.TfTool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ToolRunnerCache.class, TfTool.class})
+public class ToolRunnerCacheTest extends AbstractTest {
+    private static final String TOOL_LOCATION = "/tools/tf";
+
+    private final List<ToolRunner> createdRunners = new CopyOnWriteArrayList<ToolRunner>();
+
+    @Before
+    public void setUp() throws Exception {
+        PowerMockito.mockStatic(TfTool.class);
+        when(TfTool.getToolVersion()).thenReturn(TfTool.TF_MIN_VERSION);
+        PowerMockito.whenNew(ToolRunner.class).withAnyArguments().thenAnswer(invocation -> {
+            final ToolRunner runner = Mockito.mock(ToolRunner.class);
+            when(runner.isRunning()).thenReturn(true);
+            createdRunners.add(runner);
+            return runner;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        ToolRunnerCache.tearDown();
+        System.clearProperty(ToolRunnerCache.IDLE_TIMEOUT_PROPERTY);
+        System.clearProperty(ToolRunnerCache.MAX_AGE_PROPERTY);
+    }
+
+    @Test
+    public void testGetRunningToolRunner_poolIsFilledInBackground() throws Exception {
+        final ToolRunnerCache.Statistics statistics = ToolRunnerCache.getStatistics();
+        final long hits = statistics.getHits();
+        final long misses = statistics.getMisses();
+
+        final ToolRunner first = getRunner("/work");
+        ToolRunnerCache.waitForBackgroundTasks();
+        // One runner for the call and the default pool size of two waiting runners
+        Assert.assertEquals(3, createdRunners.size());
+        Assert.assertSame(createdRunners.get(0), first);
+
+        final ToolRunner second = getRunner("/work");
+        Assert.assertSame(createdRunners.get(1), second);
+        verify(second).sendArgsViaStandardInput(any(ToolRunner.ArgumentBuilder.class));
+        Assert.assertEquals(hits + 1, statistics.getHits());
+        Assert.assertEquals(misses + 1, statistics.getMisses());
+
+        // The pool is topped up again after the checkout
+        ToolRunnerCache.waitForBackgroundTasks();
+        Assert.assertEquals(4, createdRunners.size());
+    }
+
+    @Test
+    public void testGetRunningToolRunner_poolsAreKeyedByWorkingDirectory() throws Exception {
+        getRunner("/work1");
+        ToolRunnerCache.waitForBackgroundTasks();
+        final int created = createdRunners.size();
+
+        final ToolRunner other = getRunner("/work2");
+        Assert.assertSame(createdRunners.get(created), other);
+    }
+
+    @Test
+    public void testSweep_evictsDeadRunners() throws Exception {
+        getRunner("/work");
+        ToolRunnerCache.waitForBackgroundTasks();
+        final ToolRunner pooled = createdRunners.get(1);
+        when(pooled.isRunning()).thenReturn(false);
+        final long evictions = ToolRunnerCache.getStatistics().getEvictions();
+
+        ToolRunnerCache.sweep();
+
+        verify(pooled).dispose();
+        verify(createdRunners.get(2), never()).dispose();
+        Assert.assertEquals(evictions + 1, ToolRunnerCache.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void testSweep_evictsOldRunners() throws Exception {
+        getRunner("/work");
+        ToolRunnerCache.waitForBackgroundTasks();
+        System.setProperty(ToolRunnerCache.MAX_AGE_PROPERTY, "0");
+
+        ToolRunnerCache.sweep();
+
+        verify(createdRunners.get(1)).dispose();
+        verify(createdRunners.get(2)).dispose();
+        // The runner given to the caller is not the cache's to dispose
+        verify(createdRunners.get(0), never()).dispose();
+    }
+
+    @Test
+    public void testSweep_disposesIdlePools() throws Exception {
+        getRunner("/work");
+        ToolRunnerCache.waitForBackgroundTasks();
+        System.setProperty(ToolRunnerCache.IDLE_TIMEOUT_PROPERTY, "0");
+        Thread.sleep(1);
+
+        ToolRunnerCache.sweep();
+
+        verify(createdRunners.get(1)).dispose();
+        verify(createdRunners.get(2)).dispose();
+        // The pool is gone, so the next call is a miss
+        final long misses = ToolRunnerCache.getStatistics().getMisses();
+        getRunner("/work");
+        Assert.assertEquals(misses + 1, ToolRunnerCache.getStatistics().getMisses());
+    }
+
+    @Test
+    public void testGetRunningToolRunner_noPoolWithoutPreparing() throws Exception {
+        ToolRunnerCache.getRunningToolRunner(TOOL_LOCATION,
+                new ToolRunner.ArgumentBuilder().setWorkingDirectory("/work").add("status"), null, false, false);
+        ToolRunnerCache.waitForBackgroundTasks();
+
+        Assert.assertEquals(1, createdRunners.size());
+    }
+
+    private ToolRunner getRunner(final String workingDirectory) {
+        return ToolRunnerCache.getRunningToolRunner(TOOL_LOCATION,
+                new ToolRunner.ArgumentBuilder().setWorkingDirectory(workingDirectory).add("status"), null, true, false);
+    }
+}
@@ -40,6 +40,48 @@ public class HistoryCommandTest extends AbstractCommandTest {
         Assert.assertEquals("history -noprompt -format:xml -recursive -stopafter:1 /localpath", builder.toString());
     }
 
+    @Test
+    public void testIncrementalParser_noErrors() {
+        final HistoryCommand cmd = new HistoryCommand(null, "/localpath", null, 1, true, null);
+        final Command.IncrementalParser<List<ChangeSet>> parser = cmd.createIncrementalParser();
+        final String[] lines = {
+                "WARN -- Unable to construct Telemetry Client",
+                "<?xml version=\"1.0\" encoding=\"utf-8\"?>",
+                "<history>",
+                "<changeset id=\"4\" owner=\"john\" committer=\"john\" date=\"2016-06-07T11:18:18.790-0400\">",
+                "<comment>add readme",
+                "and license</comment>",
+                "<item change-type=\"add\" server-item=\"$/tfs01/readme.txt\"/>",
+                "<item change-type=\"add\" server-item=\"$/tfs01/license.txt\"/>",
+                "</changeset>",
+                "<changeset id=\"3\" owner=\"jeff\" committer=\"jeff\" date=\"2016-06-07T11:13:51.747-0400\">",
+                "<item change-type=\"add\" server-item=\"$/tfs01/com.microsoft.core\"/>",
+                "</changeset>",
+                "</history>"
+        };
+        for (final String line : lines) {
+            parser.processLine(line);
+        }
+
+        final List<ChangeSet> changesets = parser.complete("");
+        Assert.assertEquals(2, changesets.size());
+        Assert.assertEquals("4", changesets.get(0).getId());
+        Assert.assertEquals("add readme\nand license", changesets.get(0).getComment());
+        Assert.assertEquals(2, changesets.get(0).getChanges().size());
+        Assert.assertEquals("$/tfs01/license.txt", changesets.get(0).getChanges().get(1).getServerItem());
+        Assert.assertEquals("3", changesets.get(1).getId());
+        Assert.assertEquals("", changesets.get(1).getComment());
+        Assert.assertEquals(1, changesets.get(1).getChanges().size());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testIncrementalParser_errors() {
+        final HistoryCommand cmd = new HistoryCommand(null, "/localpath", null, 1, true, null);
+        final Command.IncrementalParser<List<ChangeSet>> parser = cmd.createIncrementalParser();
+        parser.processLine("/path/path");
+        parser.complete("error");
+    }
+
     @Test
     public void testParseOutput_noOutput() {
         final HistoryCommand cmd = new HistoryCommand(null, "/localpath", null, 1, true, null);
@@ -93,6 +93,39 @@ public class StatusCommandTest extends AbstractCommandTest {
         Assert.assertEquals("MyNewWorkspace2", pendingChanges.get(0).getWorkspace());
     }
 
+    @Test
+    public void testIncrementalParser_noErrors() {
+        final StatusCommand cmd = new StatusCommand(null, "/localpath");
+        final Command.IncrementalParser<List<PendingChange>> parser = cmd.createIncrementalParser();
+        parser.processLine("WARN -- Unable to construct Telemetry Client");
+        parser.processLine("<?xml version=\"1.0\" encoding=\"utf-8\"?>");
+        parser.processLine("<status>");
+        parser.processLine("<pending-changes>");
+        parser.processLine("<pending-change server-item=\"$/tfsTest_01/file.txt\" version=\"8\" owner=\"jason\" date=\"2016-07-13T12:36:51.060-0400\" lock=\"none\" change-type=\"rename\" workspace=\"MyNewWorkspace2\" computer=\"machine\" local-item=\"/path/path/file.txt\" source-item=\"$/tfsTest_01/old.txt\"/>");
+        parser.processLine("</pending-changes>");
+        parser.processLine("<candidate-pending-changes>");
+        parser.processLine("<pending-change server-item=\"$/tfsTest_01/test.txt\" version=\"0\" owner=\"jason\" date=\"2016-07-13T12:36:51.060-0400\" lock=\"none\" change-type=\"add\" workspace=\"MyNewWorkspace2\" computer=\"machine\" local-item=\"/path/path/text.txt\"/>");
+        parser.processLine("</candidate-pending-changes>");
+        parser.processLine("</status>");
+
+        final List<PendingChange> pendingChanges = parser.complete("");
+        Assert.assertEquals(2, pendingChanges.size());
+        Assert.assertFalse(pendingChanges.get(0).isCandidate());
+        Assert.assertEquals(ServerStatusType.RENAME, pendingChanges.get(0).getChangeTypes().get(0));
+        Assert.assertEquals("$/tfsTest_01/old.txt", pendingChanges.get(0).getSourceItem());
+        Assert.assertTrue(pendingChanges.get(1).isCandidate());
+        Assert.assertEquals(ServerStatusType.ADD, pendingChanges.get(1).getChangeTypes().get(0));
+        Assert.assertEquals("/path/path/text.txt", pendingChanges.get(1).getLocalItem());
+    }
+
+    @Test(expected = DollarInPathException.class)
+    public void testIncrementalParser_dollar() {
+        final StatusCommand cmd = new StatusCommand(null, "/localpath");
+        final Command.IncrementalParser<List<PendingChange>> parser = cmd.createIncrementalParser();
+        parser.processLine("/path/path");
+        parser.complete("An input validation error occurred: TF10122: The path '$/serverpath' contains a '$' at the beginning of a path component. Remove the '$' and try again.");
+    }
+
     @Test(expected = RuntimeException.class)
     public void testParseOutput_errors() {
         final StatusCommand cmd = new StatusCommand(null, "/localpath");
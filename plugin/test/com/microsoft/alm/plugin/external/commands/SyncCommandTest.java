@@ -92,6 +92,28 @@ public class SyncCommandTest extends AbstractCommandTest {
         Assert.assertEquals(0, results.getUpdatedFiles().size());
     }
 
+    @Test
+    public void testIncrementalParser_streamsFiles() {
+        final SyncCommand cmd = new SyncCommand(null, files, true);
+        final List<String> streamed = new ArrayList<String>();
+        final Command.IncrementalParser<SyncResults> parser = cmd.createIncrementalParser(streamed::add);
+        parser.processLine("WARN -- Unable to construct Telemetry Client");
+        parser.processLine("/path/path:");
+        parser.processLine("Getting addFold");
+        parser.processLine("Replacing test3.txt");
+        parser.processLine("");
+        parser.processLine("/path/path/addFold:");
+        parser.processLine("Deleting testHere3");
+        Assert.assertEquals(3, streamed.size());
+
+        final SyncResults results = parser.complete("");
+        Assert.assertEquals(false, results.doConflictsExists());
+        Assert.assertEquals(results.getNewFiles(), streamed.subList(0, 1));
+        Assert.assertEquals(results.getUpdatedFiles(), streamed.subList(1, 2));
+        Assert.assertEquals(results.getDeletedFiles(), streamed.subList(2, 3));
+        Assert.assertEquals(0, results.getExceptions().size());
+    }
+
     @Test
     public void testParseOutput_updateToDate() {
         final SyncCommand cmd = new SyncCommand(null, files, true);
@@ -5,9 +5,16 @@ package com.microsoft.alm.plugin.external.commands;
 
 import com.microsoft.alm.plugin.external.ToolRunner;
 import com.microsoft.alm.plugin.external.models.Workspace;
+import com.microsoft.alm.plugin.external.utils.WorkspaceCache;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
 public class UpdateWorkspaceMappingCommandTest extends AbstractCommandTest {
     private Workspace.Mapping mapping;
 
@@ -88,4 +95,26 @@ public class UpdateWorkspaceMappingCommandTest extends AbstractCommandTest {
         final UpdateWorkspaceMappingCommand cmd = new UpdateWorkspaceMappingCommand(null, "ws1", mapping, false);
         final String message = cmd.parseOutput(null, "error");
     }
+
+    @Test
+    public void testOnCommandFinished_invalidatesWorkspaceCache() {
+        final UpdateWorkspaceMappingCommand cmd = new UpdateWorkspaceMappingCommand(null, "ws1", mapping, false);
+        final Path path = Paths.get("/path");
+        final AtomicInteger loadCount = new AtomicInteger();
+        final Supplier<Workspace> loader = () -> {
+            loadCount.incrementAndGet();
+            return new Workspace("server", "ws1", "computer", "owner", "comment", Collections.singletonList(mapping));
+        };
+        WorkspaceCache.getInstance().invalidateAll();
+        WorkspaceCache.getInstance().get(path, loader);
+
+        // Parsing the output alone has no side effects
+        cmd.parseOutput("", "");
+        WorkspaceCache.getInstance().get(path, loader);
+        Assert.assertEquals(1, loadCount.get());
+
+        cmd.onCommandFinished();
+        WorkspaceCache.getInstance().get(path, loader);
+        Assert.assertEquals(2, loadCount.get());
+    }
 }
@@ -0,0 +1,149 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.reactive;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class PipelinedChunkDispatcherTest {
+    private final List<List<Integer>> sentChunks = new ArrayList<>();
+    private final List<CompletableFuture<List<String>>> requests = new ArrayList<>();
+    private final List<String> received = new ArrayList<>();
+    private boolean reportSentImmediately = true;
+    private final List<Runnable> sentCallbacks = new ArrayList<>();
+
+    private CompletionStage<List<String>> send(List<Integer> chunk, Runnable onSent) {
+        sentChunks.add(chunk);
+        sentCallbacks.add(onSent);
+        if (reportSentImmediately) {
+            onSent.run();
+        }
+        CompletableFuture<List<String>> request = new CompletableFuture<>();
+        requests.add(request);
+        return request;
+    }
+
+    private void respond(int index) {
+        requests.get(index).complete(sentChunks.get(index).stream().map(String::valueOf).collect(Collectors.toList()));
+    }
+
+    private static List<Integer> items(int count) {
+        return IntStream.range(0, count).boxed().collect(Collectors.toList());
+    }
+
+    private static List<String> itemStrings(int count) {
+        return IntStream.range(0, count).mapToObj(String::valueOf).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testStart_keepsWindowOfChunksInFlight() {
+        PipelinedChunkDispatcher<Integer, String> dispatcher = new PipelinedChunkDispatcher<>(
+                items(10).iterator(), 2, 3, TimeUnit.DAYS.toNanos(1), this::send, received::add);
+        CompletionStage<Void> result = dispatcher.start();
+
+        Assert.assertEquals(3, sentChunks.size());
+        respond(0);
+        Assert.assertEquals(4, sentChunks.size());
+        Assert.assertFalse(result.toCompletableFuture().isDone());
+    }
+
+    @Test
+    public void testStart_deliversResultsInOrder() {
+        PipelinedChunkDispatcher<Integer, String> dispatcher = new PipelinedChunkDispatcher<>(
+                items(6).iterator(), 2, 3, 1, this::send, received::add);
+        CompletionStage<Void> result = dispatcher.start();
+
+        respond(2);
+        respond(1);
+        Assert.assertEquals(new ArrayList<String>(), received);
+
+        respond(0);
+        Assert.assertEquals(itemStrings(6), received);
+        Assert.assertTrue(result.toCompletableFuture().isDone());
+    }
+
+    @Test
+    public void testStart_adaptsChunkSize() {
+        PipelinedChunkDispatcher<Integer, String> dispatcher = new PipelinedChunkDispatcher<>(
+                items(20000).iterator(), 100, 1, TimeUnit.DAYS.toNanos(1), this::send, received::add);
+        CompletionStage<Void> result = dispatcher.start();
+        for (int i = 0; i < requests.size(); ++i) {
+            respond(i);
+        }
+
+        Assert.assertTrue(result.toCompletableFuture().isDone());
+        Assert.assertEquals(itemStrings(20000), received);
+        Assert.assertTrue(sentChunks.get(1).size() > sentChunks.get(0).size());
+    }
+
+    @Test
+    public void testStart_measuresLatencyFromSend() throws InterruptedException {
+        reportSentImmediately = false;
+        PipelinedChunkDispatcher<Integer, String> dispatcher = new PipelinedChunkDispatcher<>(
+                items(20000).iterator(), 100, 1, TimeUnit.MILLISECONDS.toNanos(20), this::send, received::add);
+        dispatcher.start();
+
+        // The request waits in the local queue for longer than the target latency, but the round trip is fast
+        Thread.sleep(50);
+        sentCallbacks.get(0).run();
+        respond(0);
+
+        Assert.assertTrue(sentChunks.get(1).size() > sentChunks.get(0).size());
+    }
+
+    @Test
+    public void testStart_consumerIsCalledOutsideOfLock() throws Exception {
+        PipelinedChunkDispatcher<Integer, String> dispatcher = new PipelinedChunkDispatcher<>(
+                items(4).iterator(), 2, 2, 1, this::send, item -> {
+                    received.add(item);
+                    if (item.equals("0")) {
+                        // Completing the other chunk from another thread must not wait for the consumer
+                        Thread thread = new Thread(() -> respond(1));
+                        thread.start();
+                        try {
+                            thread.join(10000);
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        Assert.assertFalse(thread.isAlive());
+                    }
+                });
+        CompletionStage<Void> result = dispatcher.start();
+
+        respond(0);
+
+        Assert.assertEquals(itemStrings(4), received);
+        Assert.assertTrue(result.toCompletableFuture().isDone());
+    }
+
+    @Test
+    public void testStart_emptyInput() {
+        PipelinedChunkDispatcher<Integer, String> dispatcher = new PipelinedChunkDispatcher<>(
+                items(0).iterator(), 2, 3, 1, this::send, received::add);
+
+        Assert.assertTrue(dispatcher.start().toCompletableFuture().isDone());
+        Assert.assertEquals(0, sentChunks.size());
+    }
+
+    @Test
+    public void testStart_failure() {
+        PipelinedChunkDispatcher<Integer, String> dispatcher = new PipelinedChunkDispatcher<>(
+                items(10).iterator(), 2, 3, 1, this::send, received::add);
+        CompletionStage<Void> result = dispatcher.start();
+
+        requests.get(1).completeExceptionally(new IllegalStateException("client failed"));
+        respond(0);
+
+        Assert.assertTrue(result.toCompletableFuture().isCompletedExceptionally());
+        Assert.assertEquals(3, sentChunks.size());
+    }
+}
@@ -0,0 +1,56 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.reactive;
+
+import com.microsoft.alm.plugin.AbstractTest;
+import com.microsoft.alm.plugin.services.PropertyService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.CompletionStage;
+
+import static org.mockito.Mockito.mock;
+
+public class ReactiveTfvcClientHolderTest extends AbstractTest {
+    @After
+    public void tearDown() {
+        System.clearProperty(ReactiveTfvcClientHolder.WARM_UP_PROPERTY);
+        PropertyService.getInstance().removeProperty(PropertyService.PROP_TF_SDK_EULA_ACCEPTED);
+    }
+
+    @Test
+    public void testIsWarmUpEnabled_byDefault() {
+        Assert.assertTrue(ReactiveTfvcClientHolder.isWarmUpEnabled());
+    }
+
+    @Test
+    public void testIsWarmUpEnabled_disabledByProperty() {
+        System.setProperty(ReactiveTfvcClientHolder.WARM_UP_PROPERTY, "FALSE");
+        Assert.assertFalse(ReactiveTfvcClientHolder.isWarmUpEnabled());
+
+        System.setProperty(ReactiveTfvcClientHolder.WARM_UP_PROPERTY, "true");
+        Assert.assertTrue(ReactiveTfvcClientHolder.isWarmUpEnabled());
+    }
+
+    @Test
+    public void testIsEulaAccepted() {
+        Assert.assertFalse(ReactiveTfvcClientHolder.isEulaAccepted());
+
+        PropertyService.getInstance().setProperty(PropertyService.PROP_TF_SDK_EULA_ACCEPTED, "true");
+        Assert.assertTrue(ReactiveTfvcClientHolder.isEulaAccepted());
+    }
+
+    @Test
+    public void testWarmUpAsync_skippedWithoutEula() {
+        // No client may be started: the holder isn't initialized, so an attempt to create one would fail
+        ReactiveTfvcClientHolder holder = mock(ReactiveTfvcClientHolder.class, Mockito.CALLS_REAL_METHODS);
+
+        CompletionStage<Void> result = holder.warmUpAsync(mock(ServerIdentification.class));
+
+        Assert.assertTrue(result.toCompletableFuture().isDone());
+        Assert.assertFalse(result.toCompletableFuture().isCompletedExceptionally());
+    }
+}
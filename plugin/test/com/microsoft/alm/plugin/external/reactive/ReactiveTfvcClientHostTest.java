@@ -0,0 +1,121 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.reactive;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+public class ReactiveTfvcClientHostTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path clientHome;
+    private Path archiveDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        clientHome = temporaryFolder.newFolder("client").toPath();
+        Files.createDirectory(clientHome.resolve("lib"));
+        archiveDirectory = temporaryFolder.getRoot().toPath().resolve("system").resolve("ReactiveTfsClient");
+    }
+
+    @Test
+    public void testGetClassDataSharingArchive_dependsOnInstallation() throws IOException {
+        Path archive = ReactiveTfvcClientHost.getClassDataSharingArchive(clientHome, archiveDirectory);
+        Assert.assertEquals(archive, ReactiveTfvcClientHost.getClassDataSharingArchive(clientHome, archiveDirectory));
+        Assert.assertEquals(archiveDirectory, archive.getParent());
+
+        // An updated client gets a new archive
+        Path libDirectory = clientHome.resolve("lib");
+        Files.setLastModifiedTime(libDirectory, FileTime.fromMillis(Files.getLastModifiedTime(libDirectory).toMillis() + 60000L));
+        Assert.assertNotEquals(archive, ReactiveTfvcClientHost.getClassDataSharingArchive(clientHome, archiveDirectory));
+    }
+
+    @Test
+    public void testGetClassDataSharingOptions_createsArchiveAtTemporaryPath() {
+        Path archive = ReactiveTfvcClientHost.getClassDataSharingArchive(clientHome, archiveDirectory);
+        Path temporaryArchive = ReactiveTfvcClientHost.getTemporaryArchive(archive, 1234);
+
+        String options = ReactiveTfvcClientHost.getClassDataSharingOptions(archive, temporaryArchive);
+
+        Assert.assertEquals("-XX:+IgnoreUnrecognizedVMOptions -XX:ArchiveClassesAtExit=" + temporaryArchive, options);
+        Assert.assertTrue(Files.isDirectory(archiveDirectory));
+        Assert.assertNotEquals(temporaryArchive, ReactiveTfvcClientHost.getTemporaryArchive(archive, 1235));
+    }
+
+    @Test
+    public void testGetClassDataSharingOptions_usesExistingArchive() throws IOException {
+        Path archive = ReactiveTfvcClientHost.getClassDataSharingArchive(clientHome, archiveDirectory);
+        Files.createDirectories(archiveDirectory);
+        Files.write(archive, new byte[] { 1 });
+
+        String options = ReactiveTfvcClientHost.getClassDataSharingOptions(
+                archive,
+                ReactiveTfvcClientHost.getTemporaryArchive(archive, 1234));
+
+        Assert.assertEquals("-Xshare:auto -XX:SharedArchiveFile=" + archive, options);
+    }
+
+    @Test
+    public void testGetClassDataSharingOptions_ignoresLeftoverTemporaryArchive() throws IOException {
+        Path archive = ReactiveTfvcClientHost.getClassDataSharingArchive(clientHome, archiveDirectory);
+        Path temporaryArchive = ReactiveTfvcClientHost.getTemporaryArchive(archive, 1234);
+        Files.createDirectories(archiveDirectory);
+        Files.write(temporaryArchive, new byte[] { 1 });
+
+        String options = ReactiveTfvcClientHost.getClassDataSharingOptions(archive, temporaryArchive);
+
+        Assert.assertTrue(options.contains("-XX:ArchiveClassesAtExit="));
+        Assert.assertFalse(Files.exists(temporaryArchive));
+        Assert.assertFalse(Files.exists(archive));
+    }
+
+    @Test
+    public void testCompleteClassDataSharingArchive_movesArchiveAfterSuccessfulExit() throws IOException {
+        Path archive = ReactiveTfvcClientHost.getClassDataSharingArchive(clientHome, archiveDirectory);
+        Path temporaryArchive = ReactiveTfvcClientHost.getTemporaryArchive(archive, 1234);
+        ReactiveTfvcClientHost.getClassDataSharingOptions(archive, temporaryArchive);
+        Files.write(temporaryArchive, new byte[] { 1, 2, 3 });
+
+        ReactiveTfvcClientHost.completeClassDataSharingArchive(archive, temporaryArchive, 0);
+
+        Assert.assertFalse(Files.exists(temporaryArchive));
+        Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(archive));
+    }
+
+    @Test
+    public void testCompleteClassDataSharingArchive_dropsArchiveOfKilledClient() throws IOException {
+        Path archive = ReactiveTfvcClientHost.getClassDataSharingArchive(clientHome, archiveDirectory);
+        Path temporaryArchive = ReactiveTfvcClientHost.getTemporaryArchive(archive, 1234);
+        ReactiveTfvcClientHost.getClassDataSharingOptions(archive, temporaryArchive);
+        Files.write(temporaryArchive, new byte[] { 1 });
+
+        ReactiveTfvcClientHost.completeClassDataSharingArchive(archive, temporaryArchive, 137);
+
+        Assert.assertFalse(Files.exists(temporaryArchive));
+        Assert.assertFalse(Files.exists(archive));
+    }
+
+    @Test
+    public void testCompleteClassDataSharingArchive_keepsArchiveOfAnotherClient() throws IOException {
+        Path archive = ReactiveTfvcClientHost.getClassDataSharingArchive(clientHome, archiveDirectory);
+        Path temporaryArchive = ReactiveTfvcClientHost.getTemporaryArchive(archive, 1234);
+        ReactiveTfvcClientHost.getClassDataSharingOptions(archive, temporaryArchive);
+        Files.write(archive, new byte[] { 1 });
+        Files.write(temporaryArchive, new byte[] { 2 });
+
+        ReactiveTfvcClientHost.completeClassDataSharingArchive(archive, temporaryArchive, 0);
+
+        Assert.assertFalse(Files.exists(temporaryArchive));
+        Assert.assertArrayEquals(new byte[] { 1 }, Files.readAllBytes(archive));
+    }
+}
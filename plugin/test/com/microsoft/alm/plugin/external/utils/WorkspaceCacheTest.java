@@ -0,0 +1,113 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.microsoft.alm.plugin.AbstractTest;
+import com.microsoft.alm.plugin.external.models.Workspace;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class WorkspaceCacheTest extends AbstractTest {
+    private static final Path BASE_PATH = Paths.get("/tmp/project");
+
+    private final AtomicInteger loadCount = new AtomicInteger();
+    private final Supplier<Workspace> loader = () -> {
+        loadCount.incrementAndGet();
+        return createWorkspace("workspace" + loadCount.get());
+    };
+
+    private static Workspace createWorkspace(final String name) {
+        return new Workspace("server", name, "computer", "owner", "comment",
+                Collections.singletonList(new Workspace.Mapping("$/project", "/tmp/project", false)));
+    }
+
+    @Test
+    public void testGet_loadsOnce() {
+        final WorkspaceCache cache = new WorkspaceCache(TimeUnit.MINUTES.toNanos(5));
+        final Workspace first = cache.get(BASE_PATH, loader);
+        final Workspace second = cache.get(BASE_PATH, loader);
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    public void testGet_expired() {
+        final WorkspaceCache cache = new WorkspaceCache(-1);
+        cache.get(BASE_PATH, loader);
+        final Workspace second = cache.get(BASE_PATH, loader);
+
+        Assert.assertEquals("workspace2", second.getName());
+        Assert.assertEquals(2, loadCount.get());
+    }
+
+    @Test
+    public void testGet_failuresAreNotCached() {
+        final WorkspaceCache cache = new WorkspaceCache(TimeUnit.MINUTES.toNanos(5));
+        try {
+            cache.get(BASE_PATH, () -> {
+                throw new IllegalStateException("not a workspace");
+            });
+            Assert.fail("Exception expected");
+        } catch (final IllegalStateException e) {
+            Assert.assertEquals("not a workspace", e.getMessage());
+        }
+
+        Assert.assertEquals("workspace1", cache.get(BASE_PATH, loader).getName());
+    }
+
+    @Test
+    public void testInvalidate_relatedPaths() {
+        final WorkspaceCache cache = new WorkspaceCache(TimeUnit.MINUTES.toNanos(5));
+        final Path otherPath = Paths.get("/tmp/other");
+        cache.get(BASE_PATH, loader);
+        cache.get(otherPath, loader);
+
+        cache.invalidate(Paths.get("/tmp/project/sub"));
+        cache.get(BASE_PATH, loader);
+        cache.get(otherPath, loader);
+        Assert.assertEquals(3, loadCount.get());
+
+        cache.invalidateAll();
+        cache.get(BASE_PATH, loader);
+        cache.get(otherPath, loader);
+        Assert.assertEquals(5, loadCount.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testGet_concurrentCallersShareLoad() throws Exception {
+        final WorkspaceCache cache = new WorkspaceCache(TimeUnit.MINUTES.toNanos(5));
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch releaseLoad = new CountDownLatch(1);
+        final Thread owner = new Thread(() -> cache.get(BASE_PATH, () -> {
+            loadStarted.countDown();
+            try {
+                releaseLoad.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return loader.get();
+        }));
+        owner.start();
+        loadStarted.await();
+
+        final Workspace[] joined = new Workspace[1];
+        final Thread waiter = new Thread(() -> joined[0] = cache.get(BASE_PATH, loader));
+        waiter.start();
+        releaseLoad.countDown();
+        owner.join();
+        waiter.join();
+
+        Assert.assertEquals(1, loadCount.get());
+        Assert.assertEquals("workspace1", joined[0].getName());
+    }
+}
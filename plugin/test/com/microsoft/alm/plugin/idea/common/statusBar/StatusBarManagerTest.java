@@ -27,6 +27,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Matchers;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.internal.verification.VerificationModeFactory;
 import org.powermock.api.mockito.PowerMockito;
@@ -220,6 +221,34 @@ public class StatusBarManagerTest extends IdeaAbstractTest {
         verify(statusBar, VerificationModeFactory.times(1)).addWidget(any(BuildWidget.class), Matchers.eq(project));
     }
 
+    @Test
+    public void testUpdateStatusBar_projectsShareLookup() {
+        Project project2 = Mockito.mock(Project.class);
+        when(projectManager.getOpenProjects()).thenReturn(new Project[]{project, project2});
+        // A server that no other test refreshes, so the polling refresh isn't deferred
+        when(VcsHelper.getRepositoryContext(any(Project.class)))
+                .thenReturn(
+                        RepositoryContext.createGitContext(
+                                "/root/one",
+                                "repo1",
+                                "branch1",
+                                URI.create("http://sharedRepoUrl/repo1")));
+
+        StatusBarManager.setupStatusBar();
+        Map<String, Object> map = EventContextHelper.createContext("TestSender");
+        ServerEventManager.getInstance().triggerAllEvents(map);
+
+        // Both projects show the same repository and branch, so only one lookup is made
+        PowerMockito.verifyStatic(VerificationModeFactory.times(1));
+        OperationFactory.createBuildStatusLookupOperation(any(RepositoryContext.class), anyBoolean());
+
+        buildStatusLookupOperation.onLookupStarted();
+        buildStatusLookupOperation.onLookupResults(new BuildStatusLookupOperation.BuildStatusResults(
+                new ServerContextBuilder().uri("https://test.visualstudio.com/").type(ServerContext.Type.VSO).build(),
+                new ArrayList<BuildStatusLookupOperation.BuildStatusRecord>()));
+        verify(statusBar, VerificationModeFactory.times(2)).updateWidget(anyString());
+    }
+
     private class MyBuildStatusLookupOperation extends BuildStatusLookupOperation {
 
         protected MyBuildStatusLookupOperation() {
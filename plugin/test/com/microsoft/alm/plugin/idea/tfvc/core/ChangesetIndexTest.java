@@ -0,0 +1,326 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core;
+
+import com.google.common.collect.ImmutableList;
+import com.intellij.openapi.vcs.versionBrowser.ChangeBrowserSettings;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.models.ChangeSet;
+import com.microsoft.alm.plugin.external.models.CheckedInChange;
+import com.microsoft.alm.plugin.external.models.ServerStatusType;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class ChangesetIndexTest {
+    private final List<Integer> serverHistory = new ArrayList<Integer>();
+    private final List<String> requestedVersions = new ArrayList<String>();
+    private Path directory;
+    private Path file;
+
+    /**
+     * Answers the history requests from {@link #serverHistory} like the server does: the changesets of the range from
+     * the newest to the oldest, at most maxCount of them.
+     */
+    private class ServerIndex extends ChangesetIndex {
+        private ServerIndex() {
+            super(file);
+        }
+
+        @Override
+        protected List<ChangeSet> fetchHistory(final ServerContext context, final String rootLocalPath,
+                                               final String version, final int maxCount) {
+            Assert.assertFalse("The server must not be called under the index lock", Thread.holdsLock(this));
+            requestedVersions.add(version);
+
+            int from = 1;
+            int to = Integer.MAX_VALUE;
+            if (version != null) {
+                final Matcher matcher = Pattern.compile("C(\\d+)~(T|C(\\d+))").matcher(version);
+                Assert.assertTrue(version, matcher.matches());
+                from = Integer.parseInt(matcher.group(1));
+                if (matcher.group(3) != null) {
+                    to = Integer.parseInt(matcher.group(3));
+                }
+            }
+
+            final List<ChangeSet> result = new ArrayList<ChangeSet>();
+            for (int i = serverHistory.size() - 1; i >= 0 && result.size() < maxCount; i--) {
+                final int id = serverHistory.get(i);
+                if (id >= from && id <= to) {
+                    result.add(changeSet(id, "john", "changeset " + id));
+                }
+            }
+            return result;
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("changeset-index");
+        file = directory.resolve("index");
+        System.setProperty(ChangesetIndex.PAGE_SIZE_PROPERTY, "10");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        System.clearProperty(ChangesetIndex.PAGE_SIZE_PROPERTY);
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    private static ChangeSet changeSet(final int id, final String owner, final String comment) {
+        final String date = String.format("2016-06-%02dT11:18:18.790-0400", id);
+        final CheckedInChange change = new CheckedInChange("$/project/file" + id + ".txt", "edit, rename", Integer.toString(id), date);
+        return new ChangeSet(Integer.toString(id), owner, owner, date, comment, ImmutableList.of(change));
+    }
+
+    private void addServerChangeSets(final int fromId, final int toId) {
+        for (int id = fromId; id <= toId; id++) {
+            serverHistory.add(id);
+        }
+    }
+
+    private static List<Integer> ids(final List<ChangeSet> changeSets) {
+        final List<Integer> ids = new ArrayList<Integer>();
+        for (final ChangeSet changeSet : changeSets) {
+            ids.add(changeSet.getIdAsInt());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testAppend_persistsChangeSets() throws IOException {
+        final ChangesetIndex index = new ChangesetIndex(file);
+        index.append(ImmutableList.of(changeSet(2, "john", "second"), changeSet(1, "jeff", null)));
+        index.append(ImmutableList.of(changeSet(5, "john", "fifth")));
+
+        final ChangesetIndex reloaded = new ChangesetIndex(file);
+        Assert.assertEquals(5, reloaded.getHighestId());
+
+        final List<ChangeSet> changeSets = reloaded.query(new ChangeBrowserSettings(), 0);
+        Assert.assertEquals(ImmutableList.of(5, 2, 1), ids(changeSets));
+
+        final ChangeSet changeSet = changeSets.get(1);
+        Assert.assertEquals("john", changeSet.getOwner());
+        Assert.assertEquals("second", changeSet.getComment());
+        Assert.assertEquals("2016-06-02T11:18:18.790-0400", changeSet.getDate());
+        Assert.assertEquals(1, changeSet.getChanges().size());
+        Assert.assertEquals("$/project/file2.txt", changeSet.getChanges().get(0).getServerItem());
+        Assert.assertEquals(ImmutableList.of(ServerStatusType.EDIT, ServerStatusType.RENAME),
+                changeSet.getChanges().get(0).getChangeTypes());
+        Assert.assertNull(changeSets.get(2).getComment());
+    }
+
+    @Test
+    public void testQuery_filters() throws IOException {
+        final ChangesetIndex index = new ChangesetIndex(file);
+        index.append(ImmutableList.of(changeSet(1, "jeff", "a"), changeSet(2, "john", "b"), changeSet(3, "jeff", "c"),
+                changeSet(4, "john", "d"), changeSet(5, "jeff", "e")));
+
+        final ChangeBrowserSettings settings = new ChangeBrowserSettings();
+        settings.USE_CHANGE_AFTER_FILTER = true;
+        settings.CHANGE_AFTER = "2";
+        settings.USE_CHANGE_BEFORE_FILTER = true;
+        settings.CHANGE_BEFORE = "4";
+        Assert.assertEquals(ImmutableList.of(4, 3, 2), ids(index.query(settings, 0)));
+        Assert.assertEquals(ImmutableList.of(4, 3), ids(index.query(settings, 2)));
+
+        settings.USE_USER_FILTER = true;
+        settings.USER = "JOHN";
+        Assert.assertEquals(ImmutableList.of(4, 2), ids(index.query(settings, 0)));
+    }
+
+    @Test
+    public void testGetPrevious() throws IOException {
+        final ChangesetIndex index = new ChangesetIndex(file);
+        index.append(ImmutableList.of(changeSet(3, "jeff", "a"), changeSet(7, "john", "b")));
+
+        Assert.assertEquals(3, index.getPrevious(7).getIdAsInt());
+        Assert.assertNull(index.getPrevious(3));
+    }
+
+    @Test
+    public void testLoad_truncatesIncompleteRecord() throws IOException {
+        final ChangesetIndex index = new ChangesetIndex(file);
+        index.append(ImmutableList.of(changeSet(1, "jeff", "a")));
+        final long validSize = Files.size(file);
+        index.append(ImmutableList.of(changeSet(2, "john", "b")));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 3);
+        }
+
+        final ChangesetIndex reloaded = new ChangesetIndex(file);
+        Assert.assertEquals(1, reloaded.getHighestId());
+        Assert.assertEquals(validSize, Files.size(file));
+
+        reloaded.append(ImmutableList.of(changeSet(2, "john", "b")));
+        Assert.assertEquals(ImmutableList.of(2, 1), ids(new ChangesetIndex(file).query(new ChangeBrowserSettings(), 0)));
+    }
+
+    @Test
+    public void testLoad_rebuildsUnsupportedFile() throws IOException {
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        final ChangesetIndex index = new ChangesetIndex(file);
+        Assert.assertEquals(0, index.getHighestId());
+        Assert.assertFalse(Files.exists(file));
+        Assert.assertEquals(Collections.emptyList(), index.query(new ChangeBrowserSettings(), 0));
+    }
+
+    @Test
+    public void testUpdate_fetchesOnlyFirstPage() throws IOException {
+        addServerChangeSets(1, 25);
+        final ChangesetIndex index = new ServerIndex();
+        index.update(null, "/root", new ChangeBrowserSettings(), 5);
+
+        Assert.assertEquals(Collections.singletonList((String) null), requestedVersions);
+        Assert.assertEquals(ImmutableList.of(25, 24, 23, 22, 21), ids(index.query(new ChangeBrowserSettings(), 5)));
+        Assert.assertEquals(16, index.getLowestId());
+        Assert.assertFalse(index.isComplete());
+
+        // The older pages are only fetched when a query reaches them
+        index.update(null, "/root", new ChangeBrowserSettings(), 9);
+        Assert.assertEquals(Arrays.asList(null, "C25~T"), requestedVersions);
+
+        index.update(null, "/root", new ChangeBrowserSettings(), 0);
+        Assert.assertEquals(Arrays.asList(null, "C25~T", "C25~T", "C1~C15", "C1~C5"), requestedVersions);
+        Assert.assertEquals(1, index.getLowestId());
+        Assert.assertTrue(index.isComplete());
+        Assert.assertEquals(25, index.query(new ChangeBrowserSettings(), 0).size());
+    }
+
+    @Test
+    public void testUpdate_fetchesPagesNeededByQuery() throws IOException {
+        addServerChangeSets(1, 25);
+        final ChangeBrowserSettings settings = new ChangeBrowserSettings();
+        settings.USE_CHANGE_AFTER_FILTER = true;
+        settings.CHANGE_AFTER = "8";
+
+        final ChangesetIndex index = new ServerIndex();
+        index.update(null, "/root", settings, 0);
+
+        Assert.assertEquals(Arrays.asList(null, "C1~C15"), requestedVersions);
+        Assert.assertEquals(18, index.query(settings, 0).size());
+        Assert.assertEquals(7, index.getPrevious(8).getIdAsInt());
+        Assert.assertFalse(index.isComplete());
+    }
+
+    @Test
+    public void testUpdate_fetchesPrecedingChangeSetOfLastResult() throws IOException {
+        addServerChangeSets(1, 25);
+        final ChangesetIndex index = new ServerIndex();
+        index.update(null, "/root", new ChangeBrowserSettings(), 10);
+
+        // The previous changeset of the 16th one is needed to build its change list
+        Assert.assertEquals(Arrays.asList(null, "C1~C15"), requestedVersions);
+        Assert.assertEquals(15, index.getPrevious(16).getIdAsInt());
+    }
+
+    @Test
+    public void testUpdate_fetchesNewChangeSets() throws IOException {
+        addServerChangeSets(1, 5);
+        final ChangesetIndex index = new ServerIndex();
+        index.update(null, "/root", new ChangeBrowserSettings(), 0);
+        Assert.assertTrue(index.isComplete());
+
+        addServerChangeSets(6, 7);
+        requestedVersions.clear();
+        final ChangesetIndex reloaded = new ServerIndex();
+        reloaded.update(null, "/root", new ChangeBrowserSettings(), 0);
+
+        Assert.assertEquals(Collections.singletonList("C5~T"), requestedVersions);
+        Assert.assertEquals(ImmutableList.of(7, 6, 5, 4, 3, 2, 1), ids(reloaded.query(new ChangeBrowserSettings(), 0)));
+        Assert.assertTrue(reloaded.isComplete());
+    }
+
+    @Test
+    public void testUpdate_emptyHistory() throws IOException {
+        final ChangesetIndex index = new ServerIndex();
+        index.update(null, "/root", new ChangeBrowserSettings(), 0);
+
+        Assert.assertTrue(index.isComplete());
+        Assert.assertEquals(Collections.emptyList(), index.query(new ChangeBrowserSettings(), 0));
+
+        addServerChangeSets(1, 2);
+        index.update(null, "/root", new ChangeBrowserSettings(), 0);
+        Assert.assertEquals(ImmutableList.of(2, 1), ids(index.query(new ChangeBrowserSettings(), 0)));
+    }
+
+    @Test
+    public void testLoad_keepsPartialHistory() throws IOException {
+        addServerChangeSets(1, 25);
+        final ChangesetIndex index = new ServerIndex();
+        index.update(null, "/root", new ChangeBrowserSettings(), 5);
+
+        final ChangesetIndex reloaded = new ServerIndex();
+        Assert.assertEquals(16, reloaded.getLowestId());
+        Assert.assertFalse(reloaded.isComplete());
+    }
+
+    @Test
+    public void testUnload_readsChangeSetsFromFileAgain() throws IOException {
+        final ChangesetIndex index = new ChangesetIndex(file);
+        index.append(ImmutableList.of(changeSet(1, "jeff", "a"), changeSet(2, "john", "b")));
+
+        index.unload();
+        Assert.assertFalse(index.isLoaded());
+
+        final ChangeBrowserSettings settings = new ChangeBrowserSettings();
+        settings.USE_USER_FILTER = true;
+        settings.USER = "jeff";
+        final List<ChangeSet> changeSets = index.query(settings, 0);
+        Assert.assertTrue(index.isLoaded());
+        Assert.assertEquals(ImmutableList.of(1), ids(changeSets));
+        Assert.assertEquals("a", changeSets.get(0).getComment());
+        Assert.assertEquals("$/project/file1.txt", changeSets.get(0).getChanges().get(0).getServerItem());
+        Assert.assertEquals("b", index.getPrevious(3).getComment());
+    }
+
+    @Test
+    public void testUnloadLeastRecentlyUsed() throws IOException {
+        final List<ChangesetIndex> indexes = new ArrayList<ChangesetIndex>();
+        for (int i = 0; i < 3; i++) {
+            final ChangesetIndex index = new ChangesetIndex(directory.resolve("index" + i));
+            index.append(ImmutableList.of(changeSet(i + 1, "john", "changeset")));
+            indexes.add(index);
+        }
+
+        ChangesetIndex.unloadLeastRecentlyUsed(indexes, 2);
+
+        Assert.assertFalse(indexes.get(0).isLoaded());
+        Assert.assertTrue(indexes.get(1).isLoaded());
+        Assert.assertTrue(indexes.get(2).isLoaded());
+        Assert.assertEquals(1, indexes.get(0).getHighestId());
+    }
+
+    @Test
+    public void testQuery_dateFilters() throws Exception {
+        final ChangesetIndex index = new ChangesetIndex(file);
+        index.append(ImmutableList.of(changeSet(1, "jeff", "a"), changeSet(2, "john", "b"), changeSet(3, "jeff", "c"),
+                changeSet(4, "john", "d")));
+
+        final ChangeBrowserSettings settings = new ChangeBrowserSettings();
+        settings.USE_DATE_AFTER_FILTER = true;
+        settings.setDateAfter(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").parse("2016-06-02T00:00:00.000-0400"));
+        settings.USE_DATE_BEFORE_FILTER = true;
+        settings.setDateBefore(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").parse("2016-06-03T23:00:00.000-0400"));
+        Assert.assertEquals(ImmutableList.of(3, 2), ids(index.query(settings, 0)));
+    }
+}
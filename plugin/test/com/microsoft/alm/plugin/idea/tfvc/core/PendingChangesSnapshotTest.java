@@ -0,0 +1,152 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core;
+
+import com.google.common.collect.ImmutableList;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.LocalFilePath;
+import com.microsoft.alm.plugin.external.models.PendingChange;
+import com.microsoft.alm.plugin.external.models.ServerStatusType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class PendingChangesSnapshotTest {
+    private final PendingChangesSnapshot snapshot = new PendingChangesSnapshot(TimeUnit.MINUTES.toNanos(5), false);
+
+    /**
+     * Current state of the workspace, by local path.
+     */
+    private final Map<String, PendingChange> workspace = new TreeMap<>();
+    private final List<List<String>> requests = new ArrayList<>();
+    private final Function<Collection<FilePath>, List<PendingChange>> loader = paths -> {
+        List<String> pathStrings = paths.stream().map(FilePath::getPath).collect(Collectors.toList());
+        requests.add(pathStrings);
+        return workspace.values().stream()
+                .filter(change -> pathStrings.stream().anyMatch(path -> change.getLocalItem().equals(path)
+                        || change.getLocalItem().startsWith(path + "/")))
+                .collect(Collectors.toList());
+    };
+
+    private void addChange(String localItem) {
+        String serverItem = "$/project" + localItem.substring("/tmp/root".length());
+        workspace.put(localItem, new PendingChange(serverItem, localItem, "1", "owner", "date", "",
+                Collections.singletonList(ServerStatusType.EDIT), "workspace", "computer", false, ""));
+    }
+
+    private static List<FilePath> paths(String... paths) {
+        return ImmutableList.copyOf(paths).stream().map(path -> new LocalFilePath(path, true)).collect(Collectors.toList());
+    }
+
+    private static List<String> localItems(List<PendingChange> changes) {
+        return changes.stream().map(PendingChange::getLocalItem).collect(Collectors.toList());
+    }
+
+    /**
+     * Collects the changes passed by the snapshot, ordered by their local path.
+     */
+    private static List<PendingChange> getChanges(PendingChangesSnapshot snapshot, List<FilePath> roots,
+                                                  Function<Collection<FilePath>, List<PendingChange>> loader) {
+        List<PendingChange> changes = new ArrayList<>();
+        snapshot.getPendingChanges(roots, (paths, onChange) -> loader.apply(paths).forEach(onChange), changes::add);
+        changes.sort(Comparator.comparing(PendingChange::getLocalItem));
+        return changes;
+    }
+
+    @Test
+    public void loadedRootIsServedFromSnapshot() {
+        addChange("/tmp/root/file1.txt");
+        addChange("/tmp/root/dir/file2.txt");
+        addChange("/tmp/root-other/file3.txt");
+
+        assertEquals(
+                ImmutableList.of("/tmp/root/dir/file2.txt", "/tmp/root/file1.txt"),
+                localItems(getChanges(snapshot, paths("/tmp/root"), loader)));
+        assertEquals(
+                ImmutableList.of("/tmp/root/dir/file2.txt"),
+                localItems(getChanges(snapshot, paths("/tmp/root/dir"), loader)));
+        assertEquals(ImmutableList.of(ImmutableList.of("/tmp/root")), requests);
+    }
+
+    @Test
+    public void onlyInvalidatedPathsAreReloaded() {
+        addChange("/tmp/root/file1.txt");
+        addChange("/tmp/root/dir/file2.txt");
+        getChanges(snapshot, paths("/tmp/root"), loader);
+
+        workspace.remove("/tmp/root/file1.txt");
+        addChange("/tmp/root/dir/file3.txt");
+        snapshot.invalidate(paths("/tmp/root/file1.txt", "/tmp/root/dir/file3.txt"));
+
+        assertEquals(
+                ImmutableList.of("/tmp/root/dir/file2.txt", "/tmp/root/dir/file3.txt"),
+                localItems(getChanges(snapshot, paths("/tmp/root"), loader)));
+        assertEquals(2, requests.size());
+        assertEquals(ImmutableList.of("/tmp/root/file1.txt", "/tmp/root/dir/file3.txt"), requests.get(1));
+    }
+
+    @Test
+    public void invalidatedParentIsReloaded() {
+        addChange("/tmp/root/dir/file1.txt");
+        getChanges(snapshot, paths("/tmp/root/dir"), loader);
+
+        snapshot.invalidate(paths("/tmp/root"));
+        getChanges(snapshot, paths("/tmp/root/dir"), loader);
+
+        assertEquals(ImmutableList.of("/tmp/root/dir"), requests.get(1));
+    }
+
+    @Test
+    public void expiredRootIsReloaded() {
+        PendingChangesSnapshot expiringSnapshot = new PendingChangesSnapshot(-1, false);
+        addChange("/tmp/root/file1.txt");
+        getChanges(expiringSnapshot, paths("/tmp/root"), loader);
+        getChanges(expiringSnapshot, paths("/tmp/root"), loader);
+
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void invalidationsAreKeptOnFailure() {
+        addChange("/tmp/root/file1.txt");
+        getChanges(snapshot, paths("/tmp/root"), loader);
+        snapshot.invalidate(paths("/tmp/root/file1.txt"));
+
+        IllegalStateException exception = new IllegalStateException("tf failed");
+        try {
+            getChanges(snapshot, paths("/tmp/root"), paths -> {
+                throw exception;
+            });
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            assertSame(exception, e);
+        }
+
+        getChanges(snapshot, paths("/tmp/root"), loader);
+        assertEquals(ImmutableList.of("/tmp/root/file1.txt"), requests.get(1));
+    }
+
+    @Test
+    public void invalidateAllDropsSnapshot() {
+        addChange("/tmp/root/file1.txt");
+        getChanges(snapshot, paths("/tmp/root"), loader);
+        snapshot.invalidateAll();
+        getChanges(snapshot, paths("/tmp/root"), loader);
+
+        assertEquals(ImmutableList.of(ImmutableList.of("/tmp/root"), ImmutableList.of("/tmp/root")), requests);
+    }
+}
@@ -0,0 +1,211 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core;
+
+import com.google.common.collect.ImmutableList;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.LocalFilePath;
+import com.microsoft.alm.plugin.external.models.PendingChange;
+import com.microsoft.alm.plugin.external.models.ServerStatusType;
+import com.microsoft.alm.plugin.external.models.Workspace;
+import com.microsoft.alm.plugin.versioncontrol.path.WorkspaceMappingIndex;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StatusRequestBatcherTest {
+    private static final WorkspaceMappingIndex MAPPINGS = new WorkspaceMappingIndex(
+            Collections.singletonList(new Workspace.Mapping("$/project", "/tmp", false)));
+
+    private final List<List<String>> requests = new CopyOnWriteArrayList<>();
+    private final BiConsumer<List<String>, Consumer<PendingChange>> loader = (paths, onChange) -> {
+        requests.add(paths);
+        onChange.accept(createChange("/tmp/root1/file1.txt", null));
+        // Renamed from root1 to root2; the source item is a server path
+        onChange.accept(createChange("/tmp/root2/file2.txt", "$/project/root1/old.txt"));
+        onChange.accept(createChange("/tmp/root3/file3.txt", null));
+    };
+
+    private static PendingChange createChange(String localItem, String sourceItem) {
+        return new PendingChange("$/server/item", localItem, "1", "owner", "date", "",
+                Collections.singletonList(ServerStatusType.EDIT), "workspace", "computer", false, sourceItem);
+    }
+
+    private static List<FilePath> paths(String... paths) {
+        return ImmutableList.copyOf(paths).stream().map(path -> new LocalFilePath(path, true)).collect(Collectors.toList());
+    }
+
+    private static List<String> localItems(List<PendingChange> changes) {
+        return changes.stream().map(PendingChange::getLocalItem).collect(Collectors.toList());
+    }
+
+    private static List<String> sorted(List<String> paths) {
+        return paths.stream().sorted().collect(Collectors.toList());
+    }
+
+    private static List<PendingChange> getChanges(StatusRequestBatcher batcher, List<FilePath> roots,
+                                                  BiConsumer<List<String>, Consumer<PendingChange>> loader) {
+        List<PendingChange> changes = new ArrayList<>();
+        batcher.getPendingChanges(roots, MAPPINGS, loader, changes::add);
+        return changes;
+    }
+
+    private static BiConsumer<List<String>, Consumer<PendingChange>> blockingLoader(
+            BiConsumer<List<String>, Consumer<PendingChange>> loader,
+            CountDownLatch loadStarted,
+            CountDownLatch releaseLoad) {
+        return (paths, onChange) -> {
+            loadStarted.countDown();
+            try {
+                releaseLoad.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            loader.accept(paths, onChange);
+        };
+    }
+
+    private static void waitUntilBlocked(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void singleRequestReturnsChangesUnderRoots() {
+        StatusRequestBatcher batcher = new StatusRequestBatcher(0);
+        List<PendingChange> changes = getChanges(batcher, paths("/tmp/root1", "/tmp/root1/child"), loader);
+
+        assertEquals(ImmutableList.of("/tmp/root1/file1.txt", "/tmp/root2/file2.txt"), localItems(changes));
+        assertEquals(ImmutableList.of(ImmutableList.of("/tmp/root1")), requests);
+    }
+
+    @Test
+    public void renamesAreOnlyMatchedByLocalPathWithoutMappings() {
+        StatusRequestBatcher batcher = new StatusRequestBatcher(0);
+        List<PendingChange> changes = new ArrayList<>();
+        batcher.getPendingChanges(paths("/tmp/root1"), null, loader, changes::add);
+
+        assertEquals(ImmutableList.of("/tmp/root1/file1.txt"), localItems(changes));
+    }
+
+    @Test(timeout = 5000)
+    public void singleRequestIsNotDelayed() {
+        StatusRequestBatcher batcher = new StatusRequestBatcher(60000);
+        getChanges(batcher, paths("/tmp/root1"), loader);
+
+        assertEquals(1, requests.size());
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentRequestsAreCoalesced() throws Exception {
+        StatusRequestBatcher batcher = new StatusRequestBatcher(1000);
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        Thread first = new Thread(() -> getChanges(batcher, paths("/tmp/root1"), blockingLoader(loader, loadStarted, releaseLoad)));
+        first.start();
+        loadStarted.await();
+
+        // Another request is executing, so the second caller waits for others to join its batch
+        AtomicReference<List<PendingChange>> thirdResult = new AtomicReference<>();
+        Thread second = new Thread(() -> getChanges(batcher, paths("/tmp/root2"), loader));
+        second.start();
+        Thread.sleep(100);
+        Thread third = new Thread(() -> thirdResult.set(getChanges(batcher, paths("/tmp/root3"), loader)));
+        third.start();
+        releaseLoad.countDown();
+        first.join();
+        second.join();
+        third.join();
+
+        assertEquals(2, requests.size());
+        assertEquals(ImmutableList.of("/tmp/root2", "/tmp/root3"), sorted(requests.get(1)));
+        assertEquals(ImmutableList.of("/tmp/root3/file3.txt"), localItems(thirdResult.get()));
+    }
+
+    @Test(timeout = 10000)
+    public void requestCoveredByExecutingRequestIsRerun() throws Exception {
+        StatusRequestBatcher batcher = new StatusRequestBatcher(0);
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        AtomicReference<List<PendingChange>> firstResult = new AtomicReference<>();
+        Thread first = new Thread(() -> firstResult.set(
+                getChanges(batcher, paths("/tmp"), blockingLoader(loader, loadStarted, releaseLoad))));
+        first.start();
+        loadStarted.await();
+
+        // The executing request may have started before these callers' paths were invalidated
+        AtomicReference<List<PendingChange>> secondResult = new AtomicReference<>();
+        AtomicReference<List<PendingChange>> thirdResult = new AtomicReference<>();
+        Thread second = new Thread(() -> secondResult.set(getChanges(batcher, paths("/tmp/root3"), loader)));
+        second.start();
+        waitUntilBlocked(second);
+        Thread third = new Thread(() -> thirdResult.set(getChanges(batcher, paths("/tmp/root1"), loader)));
+        third.start();
+        waitUntilBlocked(third);
+        // The re-run doesn't start before the executing request is done
+        assertTrue(requests.isEmpty());
+
+        releaseLoad.countDown();
+        first.join();
+        second.join();
+        third.join();
+
+        assertEquals(2, requests.size());
+        assertEquals(ImmutableList.of("/tmp/root1", "/tmp/root3"), sorted(requests.get(1)));
+        assertEquals(3, firstResult.get().size());
+        assertEquals(ImmutableList.of("/tmp/root3/file3.txt"), localItems(secondResult.get()));
+        assertEquals(ImmutableList.of("/tmp/root1/file1.txt", "/tmp/root2/file2.txt"), localItems(thirdResult.get()));
+    }
+
+    @Test
+    public void failureIsPropagated() {
+        StatusRequestBatcher batcher = new StatusRequestBatcher(0);
+        IllegalStateException exception = new IllegalStateException("tf failed");
+        try {
+            getChanges(batcher, paths("/tmp/root1"), (paths, onChange) -> {
+                throw exception;
+            });
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            assertSame(exception, e);
+        }
+
+        // The failed request isn't reused:
+        assertEquals(2, getChanges(batcher, paths("/tmp/root1"), loader).size());
+    }
+
+    @Test
+    public void consumerFailureIsPropagatedToItsCaller() {
+        StatusRequestBatcher batcher = new StatusRequestBatcher(0);
+        IllegalStateException exception = new IllegalStateException("consumer failed");
+        List<PendingChange> changes = new ArrayList<>();
+        try {
+            batcher.getPendingChanges(paths("/tmp"), MAPPINGS, loader, change -> {
+                changes.add(change);
+                throw exception;
+            });
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            assertSame(exception, e);
+        }
+
+        // No more changes are passed to the failed consumer
+        assertEquals(1, changes.size());
+        assertEquals(1, requests.size());
+    }
+}
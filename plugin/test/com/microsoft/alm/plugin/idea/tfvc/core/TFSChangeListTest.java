@@ -4,15 +4,21 @@
 package com.microsoft.alm.plugin.idea.tfvc.core;
 
 import com.google.common.collect.ImmutableList;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.LocalFilePath;
 import com.intellij.openapi.vcs.changes.Change;
 import com.intellij.vcsUtil.VcsUtil;
 import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
+import com.microsoft.alm.plugin.idea.tfvc.core.revision.RevisionContentPrefetcher;
+import com.microsoft.alm.plugin.idea.tfvc.core.revision.TFSContentRevision;
+import com.microsoft.alm.plugin.idea.tfvc.core.revision.TFSContentStore;
+import com.microsoft.alm.plugin.idea.tfvc.core.revision.TFSContentStoreFactory;
 import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.powermock.api.mockito.PowerMockito;
@@ -29,15 +35,23 @@ import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.when;
 
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({VcsUtil.class})
+@PrepareForTest({VcsUtil.class, RevisionContentPrefetcher.class, TFSContentStoreFactory.class})
 public class TFSChangeListTest extends IdeaAbstractTest {
     private static final int CHANGESET_ID = 123;
     private static final String AUTHOR = "John Smith";
@@ -63,6 +77,7 @@ public class TFSChangeListTest extends IdeaAbstractTest {
     private final List<FilePath> deletedFiles = ImmutableList.of(deletedFilePath1, deletedFilePath2);
     private final List<FilePath> renamedFiles = ImmutableList.of(renamedFilePath1);
     private final List<FilePath> editedFiles = ImmutableList.of(editedFilePath1, editedFilePath2, editedFilePath3);
+    private final Map<String, String> serverItems = new HashMap<String, String>();
 
     @Mock
     private TFSVcs mockVcs;
@@ -72,7 +87,7 @@ public class TFSChangeListTest extends IdeaAbstractTest {
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
-        PowerMockito.mockStatic(VcsUtil.class);
+        PowerMockito.mockStatic(VcsUtil.class, RevisionContentPrefetcher.class, TFSContentStoreFactory.class);
 
         when(VcsUtil.getFilePath(addedFilePath1.getPath(), addedFilePath1.isDirectory())).thenReturn(addedFilePath1);
         when(VcsUtil.getFilePath(addedFilePath2.getPath(), addedFilePath2.isDirectory())).thenReturn(addedFilePath2);
@@ -84,8 +99,14 @@ public class TFSChangeListTest extends IdeaAbstractTest {
         when(VcsUtil.getFilePath(editedFilePath2.getPath(), editedFilePath2.isDirectory())).thenReturn(editedFilePath2);
         when(VcsUtil.getFilePath(editedFilePath3.getPath(), editedFilePath3.isDirectory())).thenReturn(editedFilePath3);
 
+        for (final List<FilePath> paths : ImmutableList.of(addedFiles, deletedFiles, renamedFiles, editedFiles)) {
+            for (final FilePath path : paths) {
+                serverItems.put(path.getPath(), "$/project/" + path.getName());
+            }
+        }
+
         changeList = new TFSChangeList(addedFiles, deletedFiles, renamedFiles,
-                editedFiles, CHANGESET_ID, AUTHOR, COMMENT,
+                editedFiles, serverItems, CHANGESET_ID, AUTHOR, COMMENT,
                 CHANGESET_DATE, PREVIOUS_CHANGESET_ID, PREVIOUS_CHANGESET_DATE,
                 mockVcs, WORKSPACE_NAME);
     }
@@ -159,6 +180,41 @@ public class TFSChangeListTest extends IdeaAbstractTest {
         assertEquals(editedFilePath3, changesList.get(8).getAfterRevision().getFile());
     }
 
+    @Test
+    public void testGetChanges_DoesNotPrefetchRevisions() {
+        changeList.getChanges();
+
+        PowerMockito.verifyStatic(never());
+        RevisionContentPrefetcher.prefetchAsync(any(Project.class), any(Collection.class));
+    }
+
+    @Test
+    public void testGetContent_PrefetchesFileRevisionsOnce() throws Exception {
+        final TFSContentStore store = mock(TFSContentStore.class);
+        when(store.loadContent()).thenReturn(new byte[0]);
+        when(TFSContentStoreFactory.findOrCreate(anyString(), anyInt(), anyString(), any(Project.class))).thenReturn(store);
+
+        final List<Change> changes = new ArrayList<Change>(changeList.getChanges());
+        ((TFSContentRevision) changes.get(8).getBeforeRevision()).doGetContent();
+        ((TFSContentRevision) changes.get(8).getAfterRevision()).doGetContent();
+
+        final ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        PowerMockito.verifyStatic(times(1));
+        RevisionContentPrefetcher.prefetchAsync(any(Project.class), captor.capture());
+        final List<RevisionContentPrefetcher.ItemRevision> revisions =
+                new ArrayList<RevisionContentPrefetcher.ItemRevision>(captor.getValue());
+        // directories are skipped: 2 added, 1 deleted, and both revisions of 2 edited files
+        assertEquals(7, revisions.size());
+        assertEquals("$/project/addedFile2", revisions.get(0).getServerItem());
+        assertEquals(CHANGESET_ID, revisions.get(0).getChangeset());
+        assertEquals("$/project/deletedFile2", revisions.get(2).getServerItem());
+        assertEquals(PREVIOUS_CHANGESET_ID, revisions.get(2).getChangeset());
+
+        // the content is loaded by the server item of the changeset
+        PowerMockito.verifyStatic();
+        TFSContentStoreFactory.findOrCreate(editedFilePath3.getPath(), CHANGESET_ID, "$/project/editedFile3", null);
+    }
+
     @Test
     public void testIsModifiable() {
         assertTrue(changeList.isModifiable());
@@ -17,6 +17,7 @@ import com.microsoft.alm.plugin.external.models.Workspace;
 import com.microsoft.alm.plugin.external.utils.CommandUtils;
 import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
 import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TFVCUtil;
+import com.microsoft.alm.plugin.versioncontrol.path.WorkspaceMappingIndex;
 import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
@@ -29,6 +30,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
@@ -81,6 +83,7 @@ public class TFSCommittedChangesProviderTest extends IdeaAbstractTest {
         when(mockVirtualFile.getPath()).thenReturn(LOCAL_ROOT_PATH);
         when(mockRoot.getVirtualFile()).thenReturn(mockVirtualFile);
         when(mockWorkspace.getServerDisplayName()).thenReturn(SERVER_URL);
+        when(mockWorkspace.getMappingIndex()).thenReturn(new WorkspaceMappingIndex(Collections.emptyList()));
         when(mockChangeBrowserSettings.getUserFilter()).thenReturn(USER_ME);
         when(CommandUtils.getPartialWorkspace(mockProject)).thenReturn(mockWorkspace);
         whenNew(TFSChangeListBuilder.class).withAnyArguments().thenReturn(mockTFSChangeListBuilder);
@@ -111,8 +114,7 @@ public class TFSCommittedChangesProviderTest extends IdeaAbstractTest {
     @Test
     public void testLoadCommittedChanges_FoundChanges() throws Exception {
         final List<ChangeSet> changeSetList = ImmutableList.of(mockChangeSet1, mockChangeSet2, mockChangeSet3);
-        when(CommandUtils.getHistoryCommand(any(ServerContext.class), eq(LOCAL_ROOT_PATH), eq("C30~C50"),
-                eq(20), eq(true), eq(USER_ME))).thenReturn(changeSetList);
+        mockHistory(changeSetList);
         final RepositoryLocation repositoryLocation = new TFSRepositoryLocation(mockWorkspace, mockVirtualFile);
         committedChangesProvider.loadCommittedChanges(mockChangeBrowserSettings, repositoryLocation, 20, mockAsynchConsumer);
         verify(mockAsynchConsumer, times(3)).consume(any(TFSChangeList.class));
@@ -126,11 +128,20 @@ public class TFSCommittedChangesProviderTest extends IdeaAbstractTest {
     @Test
     public void testLoadCommittedChanges_NoChanges() throws Exception {
         final List<ChangeSet> changeSetList = Collections.EMPTY_LIST;
-        when(CommandUtils.getHistoryCommand(any(ServerContext.class), eq(LOCAL_ROOT_PATH), eq("C30~C50"),
-                eq(20), eq(true), eq(USER_ME))).thenReturn(changeSetList);
+        mockHistory(changeSetList);
         final RepositoryLocation repositoryLocation = new TFSRepositoryLocation(mockWorkspace, mockVirtualFile);
         committedChangesProvider.loadCommittedChanges(mockChangeBrowserSettings, repositoryLocation, 20, mockAsynchConsumer);
         verify(mockAsynchConsumer).finished();
         verifyNoMoreInteractions(mockAsynchConsumer);
     }
+
+    private void mockHistory(final List<ChangeSet> changeSetList) {
+        PowerMockito.doAnswer(invocation -> {
+            final Consumer<ChangeSet> onChangeSet = (Consumer<ChangeSet>) invocation.getArguments()[7];
+            changeSetList.forEach(onChangeSet);
+            return null;
+        }).when(CommandUtils.class);
+        CommandUtils.getHistoryCommand(any(ServerContext.class), eq(LOCAL_ROOT_PATH), eq("C30~C50"),
+                eq(20), eq(true), eq(USER_ME), eq(false), any(Consumer.class));
+    }
 }
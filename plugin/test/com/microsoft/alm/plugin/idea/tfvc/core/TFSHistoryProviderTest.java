@@ -0,0 +1,231 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.VcsConfiguration;
+import com.intellij.openapi.vcs.history.VcsAbstractHistorySession;
+import com.intellij.openapi.vcs.history.VcsAppendableHistorySessionPartner;
+import com.intellij.openapi.vcs.history.VcsFileRevision;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.models.ChangeSet;
+import com.microsoft.alm.plugin.external.models.CheckedInChange;
+import com.microsoft.alm.plugin.external.utils.CommandUtils;
+import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({TFSVcs.class, CommandUtils.class, VcsConfiguration.class, ProgressManager.class})
+public class TFSHistoryProviderTest extends IdeaAbstractTest {
+    private static final String PATH = "/Users/user/workspace/file.txt";
+
+    @Mock
+    private Project mockProject;
+    @Mock
+    private TFSVcs mockVcs;
+    @Mock
+    private ServerContext mockServerContext;
+    @Mock
+    private VcsConfiguration mockVcsConfiguration;
+    @Mock
+    private ProgressManager mockProgressManager;
+    @Mock
+    private ProgressIndicator mockProgressIndicator;
+    @Mock
+    private FilePath mockFilePath;
+    @Mock
+    private VcsAppendableHistorySessionPartner mockPartner;
+
+    private TFSHistoryProvider historyProvider;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        PowerMockito.mockStatic(TFSVcs.class, CommandUtils.class, VcsConfiguration.class, ProgressManager.class);
+
+        when(TFSVcs.getInstance(mockProject)).thenReturn(mockVcs);
+        when(mockVcs.getServerContext(true)).thenReturn(mockServerContext);
+        when(VcsConfiguration.getInstance(mockProject)).thenReturn(mockVcsConfiguration);
+        when(ProgressManager.getInstance()).thenReturn(mockProgressManager);
+        when(mockProgressManager.getProgressIndicator()).thenReturn(mockProgressIndicator);
+        when(mockFilePath.getPath()).thenReturn(PATH);
+        when(mockFilePath.isDirectory()).thenReturn(false);
+
+        mockVcsConfiguration.LIMIT_HISTORY = false;
+        System.setProperty(TFSHistoryProvider.FIRST_PAGE_SIZE_PROPERTY, "3");
+
+        historyProvider = new TFSHistoryProvider(mockProject);
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(TFSHistoryProvider.FIRST_PAGE_SIZE_PROPERTY);
+    }
+
+    private static List<ChangeSet> changeSets(final int newestId, final int count) {
+        final List<ChangeSet> changeSets = new ArrayList<ChangeSet>(count);
+        for (int id = newestId; id > newestId - count; id--) {
+            changeSets.add(new ChangeSet(String.valueOf(id), "owner", "committer", "2016-08-15T11:50:09.427-0400",
+                    "comment " + id, Collections.<CheckedInChange>emptyList()));
+        }
+        return changeSets;
+    }
+
+    private void mockFirstPage(final int pageSize, final List<ChangeSet> changeSets) {
+        when(CommandUtils.getHistoryCommand(mockServerContext, PATH, null, pageSize, false, null, false))
+                .thenReturn(changeSets);
+    }
+
+    private void mockOlderHistory(final String version, final int count, final List<ChangeSet> changeSets) {
+        PowerMockito.doAnswer(invocation -> {
+            final Consumer<ChangeSet> onChangeSet = (Consumer<ChangeSet>) invocation.getArguments()[7];
+            changeSets.forEach(onChangeSet);
+            return null;
+        }).when(CommandUtils.class);
+        CommandUtils.getHistoryCommand(eq(mockServerContext), eq(PATH), eq(version), eq(count), eq(false),
+                isNull(String.class), eq(false), any(Consumer.class));
+    }
+
+    private void verifyOlderHistoryNotLoaded() {
+        PowerMockito.verifyStatic(never());
+        CommandUtils.getHistoryCommand(any(ServerContext.class), anyString(), anyString(), anyInt(), anyBoolean(),
+                anyString(), anyBoolean(), any(Consumer.class));
+    }
+
+    private List<Integer> getReportedChangeSets() {
+        final ArgumentCaptor<VcsAbstractHistorySession> session = ArgumentCaptor.forClass(VcsAbstractHistorySession.class);
+        verify(mockPartner).reportCreatedEmptySession(session.capture());
+        return getNumbers(session.getValue().getRevisionList());
+    }
+
+    private List<Integer> getAcceptedChangeSets(final int count) {
+        final ArgumentCaptor<VcsFileRevision> revisions = ArgumentCaptor.forClass(VcsFileRevision.class);
+        verify(mockPartner, times(count)).acceptRevision(revisions.capture());
+        return getNumbers(revisions.getAllValues());
+    }
+
+    private static List<Integer> getNumbers(final List<? extends VcsFileRevision> revisions) {
+        final List<Integer> numbers = new ArrayList<Integer>(revisions.size());
+        for (final VcsFileRevision revision : revisions) {
+            numbers.add(Integer.valueOf(revision.getRevisionNumber().asString()));
+        }
+        return numbers;
+    }
+
+    @Test
+    public void testReportAppendableHistory_FirstPageOnly() throws Exception {
+        mockFirstPage(3, changeSets(10, 2));
+
+        historyProvider.reportAppendableHistory(mockFilePath, mockPartner);
+
+        assertEquals(Arrays.asList(10, 9), getReportedChangeSets());
+        verifyOlderHistoryNotLoaded();
+    }
+
+    @Test
+    public void testReportAppendableHistory_Empty() throws Exception {
+        mockFirstPage(3, Collections.<ChangeSet>emptyList());
+
+        historyProvider.reportAppendableHistory(mockFilePath, mockPartner);
+
+        verify(mockPartner).reportCreatedEmptySession(null);
+        verifyOlderHistoryNotLoaded();
+    }
+
+    @Test
+    public void testReportAppendableHistory_AppendsOlderChangeSets() throws Exception {
+        mockFirstPage(3, changeSets(10, 3));
+        mockOlderHistory("C1~C7", Integer.MAX_VALUE, changeSets(6, 2));
+
+        historyProvider.reportAppendableHistory(mockFilePath, mockPartner);
+
+        assertEquals(Arrays.asList(10, 9, 8), getReportedChangeSets());
+        assertEquals(Arrays.asList(6, 5), getAcceptedChangeSets(2));
+    }
+
+    @Test
+    public void testReportAppendableHistory_HistoryLimit() throws Exception {
+        mockVcsConfiguration.LIMIT_HISTORY = true;
+        mockVcsConfiguration.MAXIMUM_HISTORY_ROWS = 5;
+        mockFirstPage(3, changeSets(10, 3));
+        mockOlderHistory("C1~C7", 2, changeSets(7, 2));
+
+        historyProvider.reportAppendableHistory(mockFilePath, mockPartner);
+
+        assertEquals(Arrays.asList(7, 6), getAcceptedChangeSets(2));
+    }
+
+    @Test
+    public void testReportAppendableHistory_HistoryLimitWithinFirstPage() throws Exception {
+        mockVcsConfiguration.LIMIT_HISTORY = true;
+        mockVcsConfiguration.MAXIMUM_HISTORY_ROWS = 2;
+        mockFirstPage(2, changeSets(10, 2));
+
+        historyProvider.reportAppendableHistory(mockFilePath, mockPartner);
+
+        assertEquals(Arrays.asList(10, 9), getReportedChangeSets());
+        verifyOlderHistoryNotLoaded();
+    }
+
+    @Test
+    public void testReportAppendableHistory_FirstChangeSetReached() throws Exception {
+        mockFirstPage(3, changeSets(3, 3));
+
+        historyProvider.reportAppendableHistory(mockFilePath, mockPartner);
+
+        verifyOlderHistoryNotLoaded();
+    }
+
+    @Test
+    public void testReportAppendableHistory_Canceled() throws Exception {
+        mockFirstPage(3, changeSets(10, 3));
+        mockOlderHistory("C1~C7", Integer.MAX_VALUE, changeSets(7, 3));
+        doAnswer(invocation -> {
+            when(mockProgressIndicator.isCanceled()).thenReturn(true);
+            return null;
+        }).when(mockPartner).acceptRevision(any(VcsFileRevision.class));
+
+        try {
+            historyProvider.reportAppendableHistory(mockFilePath, mockPartner);
+            fail("ProcessCanceledException expected");
+        } catch (ProcessCanceledException e) {
+            // expected
+        }
+
+        assertEquals(Arrays.asList(7), getAcceptedChangeSets(1));
+    }
+}
@@ -38,6 +38,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.function.Consumer;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -170,8 +171,8 @@ public class TFSUpdateEnvironmentTest extends IdeaAbstractTest {
         when(filePath3.getPath()).thenReturn("/path/to/file2");
         FilePath[] filePaths = {filePath1, filePath2, filePath3};
 
-        when(CommandUtils.syncWorkspace(mockServerContext, ImmutableList.of("/path/to/file1", "/path/to/directory",
-                "/path/to/file2"), true, false)).thenReturn(syncResults);
+        when(CommandUtils.syncWorkspace(eq(mockServerContext), eq(ImmutableList.of("/path/to/file1", "/path/to/directory",
+                "/path/to/file2")), eq(true), eq(false), any(Consumer.class))).thenReturn(syncResults);
 
         return filePaths;
     }
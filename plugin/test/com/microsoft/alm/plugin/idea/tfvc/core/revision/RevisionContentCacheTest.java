@@ -0,0 +1,181 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core.revision;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+public class RevisionContentCacheTest {
+    private static final URI COLLECTION = URI.create("https://dev.azure.com/org1");
+    private static final URI OTHER_COLLECTION = URI.create("https://dev.azure.com/org2");
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("RevisionContentCacheTest");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    private static void put(RevisionContentCache cache, String itemPath, int revision, String content)
+            throws IOException {
+        CachedContentStore store = cache.create(COLLECTION, itemPath, revision);
+        Files.write(store.getTmpFile().toPath(), content.getBytes(StandardCharsets.UTF_8));
+        store.commit();
+    }
+
+    private static String get(RevisionContentCache cache, String itemPath, int revision) throws Exception {
+        TFSContentStore store = cache.find(COLLECTION, itemPath, revision);
+        return store == null ? null : new String(store.loadContent(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testFind_returnsCommittedContent() throws Exception {
+        RevisionContentCache cache = new RevisionContentCache(directory, 1000);
+        Assert.assertNull(cache.find(COLLECTION, "$/project/file.txt", 1));
+
+        put(cache, "$/project/file.txt", 1, "first");
+        put(cache, "$/project/file.txt", 2, "second");
+
+        Assert.assertEquals("first", get(cache, "$/project/file.txt", 1));
+        Assert.assertEquals("second", get(cache, "$/project/file.txt", 2));
+        Assert.assertNull(cache.find(COLLECTION, "$/project/other.txt", 1));
+    }
+
+    @Test
+    public void testFind_uncommittedContentIsNotFound() throws Exception {
+        RevisionContentCache cache = new RevisionContentCache(directory, 1000);
+        CachedContentStore store = cache.create(COLLECTION, "$/project/file.txt", 1);
+        Files.write(store.getTmpFile().toPath(), new byte[]{1, 2, 3});
+
+        Assert.assertNull(cache.find(COLLECTION, "$/project/file.txt", 1));
+    }
+
+    @Test
+    public void testCommit_evictsLeastRecentlyUsed() throws Exception {
+        RevisionContentCache cache = new RevisionContentCache(directory, 10);
+        put(cache, "a", 1, "aaaa");
+        put(cache, "b", 1, "bbbb");
+        Assert.assertEquals("aaaa", get(cache, "a", 1));
+
+        put(cache, "c", 1, "cccc");
+
+        Assert.assertEquals("aaaa", get(cache, "a", 1));
+        Assert.assertNull(cache.find(COLLECTION, "b", 1));
+        Assert.assertEquals("cccc", get(cache, "c", 1));
+        Assert.assertEquals(8, cache.getTotalSize());
+    }
+
+    @Test
+    public void testCommit_keepsNewestEntryOverLimit() throws Exception {
+        RevisionContentCache cache = new RevisionContentCache(directory, 2);
+        put(cache, "a", 1, "aaaa");
+
+        Assert.assertEquals("aaaa", get(cache, "a", 1));
+    }
+
+    @Test
+    public void testIndex_survivesRestart() throws Exception {
+        put(new RevisionContentCache(directory, 1000), "a", 1, "content");
+        Files.write(directory.resolve("leftover.download"), new byte[]{1});
+
+        RevisionContentCache cache = new RevisionContentCache(directory, 1000);
+
+        Assert.assertEquals("content", get(cache, "a", 1));
+        Assert.assertEquals(7, cache.getTotalSize());
+        Assert.assertFalse(Files.exists(directory.resolve("leftover.download")));
+    }
+
+    @Test
+    public void testFind_distinguishesCollections() throws Exception {
+        RevisionContentCache cache = new RevisionContentCache(directory, 1000);
+        put(cache, "$/project/file.txt", 1, "first");
+
+        Assert.assertNull(cache.find(OTHER_COLLECTION, "$/project/file.txt", 1));
+    }
+
+    @Test
+    public void testGetEntryName_distinguishesRevisions() {
+        Assert.assertNotEquals(
+                RevisionContentCache.getEntryName(COLLECTION, "$/a", 12),
+                RevisionContentCache.getEntryName(COLLECTION, "$/a1", 2));
+        Assert.assertNotEquals(
+                RevisionContentCache.getEntryName(COLLECTION, "$/a", 12),
+                RevisionContentCache.getEntryName(OTHER_COLLECTION, "$/a", 12));
+        Assert.assertEquals(
+                RevisionContentCache.getEntryName(COLLECTION, "$/a", 12),
+                RevisionContentCache.getEntryName(COLLECTION, "$/a", 12));
+    }
+
+    @Test
+    public void testDownload_waitsForDownloadInProgress() throws Exception {
+        RevisionContentCache cache = new RevisionContentCache(directory, 1000);
+        List<Runnable> queuedDownloads = new ArrayList<>();
+        AtomicInteger downloadCount = new AtomicInteger();
+
+        CompletableFuture<TFSContentStore> prefetch = cache.download(COLLECTION, "$/project/file.txt", 1, file -> {
+            downloadCount.incrementAndGet();
+            Files.write(file.toPath(), "content".getBytes(StandardCharsets.UTF_8));
+        }, queuedDownloads::add);
+        CompletableFuture<TFSContentStore> download = cache.download(COLLECTION, "$/project/file.txt", 1, file -> {
+            downloadCount.incrementAndGet();
+            Assert.fail("The revision is downloaded twice");
+        }, Runnable::run);
+
+        Assert.assertSame(prefetch, download);
+        Assert.assertFalse(download.isDone());
+
+        queuedDownloads.forEach(Runnable::run);
+
+        Assert.assertEquals("content", new String(download.get().loadContent(), StandardCharsets.UTF_8));
+        Assert.assertEquals(1, downloadCount.get());
+    }
+
+    @Test
+    public void testDownload_startsAnotherDownloadAfterFailure() throws Exception {
+        RevisionContentCache cache = new RevisionContentCache(directory, 1000);
+        CompletableFuture<TFSContentStore> failed = cache.download(COLLECTION, "$/project/file.txt", 1, file -> {
+            throw new IOException("Server error");
+        }, Runnable::run);
+        Assert.assertTrue(failed.isCompletedExceptionally());
+        Assert.assertNull(cache.find(COLLECTION, "$/project/file.txt", 1));
+
+        CompletableFuture<TFSContentStore> download = cache.download(COLLECTION, "$/project/file.txt", 1, file ->
+                Files.write(file.toPath(), "content".getBytes(StandardCharsets.UTF_8)), Runnable::run);
+
+        Assert.assertEquals("content", new String(download.get().loadContent(), StandardCharsets.UTF_8));
+        try (Stream<Path> files = Files.list(directory)) {
+            Assert.assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void testDownload_skipsCachedContent() throws Exception {
+        RevisionContentCache cache = new RevisionContentCache(directory, 1000);
+        put(cache, "$/project/file.txt", 1, "cached");
+
+        CompletableFuture<TFSContentStore> download = cache.download(COLLECTION, "$/project/file.txt", 1, file ->
+                Assert.fail("Cached content is downloaded again"), Runnable::run);
+
+        Assert.assertEquals("cached", new String(download.get().loadContent(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,90 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core.tfs;
+
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.LocalFilePath;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class TfvcPathFilterTest {
+
+    private static TfvcPathFilter createFilter(boolean ignoreCase, String... mappings) {
+        List<FilePath> mappingPaths = new ArrayList<>();
+        for (String mapping : mappings) {
+            mappingPaths.add(new LocalFilePath(mapping, true));
+        }
+        return new TfvcPathFilter(mappingPaths, ignoreCase);
+    }
+
+    @Test
+    public void pathsUnderMappingsAreValid() {
+        TfvcPathFilter filter = createFilter(false, "/tmp/localPath", "/tmp/other/mapping");
+        assertEquals(TfvcPathFilter.PathStatus.VALID, filter.getStatus("/tmp/localPath"));
+        assertEquals(TfvcPathFilter.PathStatus.VALID, filter.getStatus("/tmp/localPath/1.txt"));
+        assertEquals(TfvcPathFilter.PathStatus.VALID, filter.getStatus("/tmp/other/mapping/a/b/c.txt"));
+        assertEquals(TfvcPathFilter.PathStatus.NOT_MAPPED, filter.getStatus("/tmp/localPath1/1.txt"));
+        assertEquals(TfvcPathFilter.PathStatus.NOT_MAPPED, filter.getStatus("/tmp/other"));
+        assertEquals(TfvcPathFilter.PathStatus.NOT_MAPPED, filter.getStatus("/"));
+    }
+
+    @Test
+    public void caseSensitivity() {
+        assertEquals(
+                TfvcPathFilter.PathStatus.NOT_MAPPED,
+                createFilter(false, "/tmp/localPath").getStatus("/tmp/LOCALPATH/1.txt"));
+        assertEquals(
+                TfvcPathFilter.PathStatus.VALID,
+                createFilter(true, "C:/Work/localPath").getStatus("c:/work/LOCALPATH/1.txt"));
+    }
+
+    @Test
+    public void dollarComponentsBelowMappingAreIllegal() {
+        TfvcPathFilter filter = createFilter(false, "/tmp/$mapping", "/tmp/$mapping/nested");
+        assertEquals(TfvcPathFilter.PathStatus.VALID, filter.getStatus("/tmp/$mapping/1.txt"));
+        assertEquals(TfvcPathFilter.PathStatus.ILLEGAL, filter.getStatus("/tmp/$mapping/$1.txt"));
+        assertEquals(TfvcPathFilter.PathStatus.ILLEGAL, filter.getStatus("/tmp/$mapping/$1/1.txt"));
+        assertEquals(TfvcPathFilter.PathStatus.VALID, filter.getStatus("/tmp/$mapping/nested/1$.txt"));
+        assertEquals(TfvcPathFilter.PathStatus.ILLEGAL, filter.getStatus("/tmp/$unmapped/1.txt"));
+    }
+
+    @Test
+    public void serviceDirectoriesAreIllegal() {
+        TfvcPathFilter filter = createFilter(false, "/tmp/localPath");
+        assertEquals(TfvcPathFilter.PathStatus.ILLEGAL, filter.getStatus("/tmp/localPath/$tf/1.gz"));
+        assertEquals(TfvcPathFilter.PathStatus.ILLEGAL, filter.getStatus("/tmp/localPath/.TF"));
+        assertEquals(TfvcPathFilter.PathStatus.ILLEGAL, filter.getStatus("/tmp/.tf/xxx"));
+        assertTrue(TfvcPathFilter.isInServiceDirectory("/tmp/$TF/xxx"));
+        assertFalse(TfvcPathFilter.isInServiceDirectory("/tmp/_tf/xxx"));
+        assertFalse(TfvcPathFilter.isInServiceDirectory("/tmp/$t"));
+    }
+
+    @Test
+    public void filterValidPathsPreservesOrder() {
+        TfvcPathFilter filter = createFilter(false, "/tmp/localPath");
+        List<FilePath> paths = Arrays.asList(
+                new LocalFilePath("/tmp/localPath/b.txt", false),
+                new LocalFilePath("/tmp/localPath1/1.txt", false),
+                new LocalFilePath("/tmp/localPath/a.txt", false),
+                new LocalFilePath("/tmp/localPath/$a.txt", false));
+        assertThat(filter.filterValidPaths(paths), is(Arrays.asList("/tmp/localPath/b.txt", "/tmp/localPath/a.txt")));
+    }
+
+    @Test
+    public void emptyMappings() {
+        TfvcPathFilter filter = new TfvcPathFilter(Collections.emptyList(), false);
+        assertEquals(TfvcPathFilter.PathStatus.NOT_MAPPED, filter.getStatus("/tmp/localPath/1.txt"));
+        assertEquals(TfvcPathFilter.PathStatus.ILLEGAL, filter.getStatus("/tmp/$localPath/1.txt"));
+    }
+}
@@ -9,7 +9,9 @@ import org.junit.Test;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 
@@ -96,6 +98,56 @@ public class TfvcRootCacheTests {
         assertEquals(TfvcRootCache.CachedStatus.UNDER_MAPPING_ROOT, myCache.get(sibling));
     }
 
+    @Test
+    public void cacheKnowsDeepChildOfAMappedRootIsUnderIt() {
+        Path path = Paths.get("/tmp/mapping");
+        myCache.putMappings(Collections.singletonList(createMapping(path)));
+        assertEquals(TfvcRootCache.CachedStatus.UNDER_MAPPING_ROOT, myCache.get(path.resolve("a/b/c/d")));
+        assertEquals(TfvcRootCache.CachedStatus.NO_ROOT, myCache.get(Paths.get("/")));
+        assertEquals(TfvcRootCache.CachedStatus.UNKNOWN, myCache.get(Paths.get("/tmp/mapping2")));
+    }
+
+    @Test
+    public void cacheDestroysAllChildrenOfANewMappingRoot() {
+        Path path = Paths.get("/tmp");
+        Path child = path.resolve("child");
+        Path grandChild = child.resolve("grandChild");
+        myCache.putNoMappingsFor(grandChild);
+        myCache.putMappings(Collections.singletonList(createMapping(child.resolve("other"))));
+
+        myCache.putMappings(Collections.singletonList(createMapping(path)));
+        assertEquals(TfvcRootCache.CachedStatus.UNDER_MAPPING_ROOT, myCache.get(child));
+        assertEquals(TfvcRootCache.CachedStatus.UNDER_MAPPING_ROOT, myCache.get(grandChild));
+    }
+
+    @Test
+    public void cacheKeepsUnrelatedItemsOnUpdate() {
+        Path unmapped = Paths.get("/unmapped/path");
+        myCache.putNoMappingsFor(unmapped);
+        myCache.putMappings(Collections.singletonList(createMapping(Paths.get("/tmp"))));
+        assertEquals(TfvcRootCache.CachedStatus.NO_ROOT, myCache.get(unmapped));
+    }
+
+    @Test
+    public void cacheHandlesManyItems() {
+        List<Workspace.Mapping> mappings = new ArrayList<>();
+        for (int i = 0; i < 10000; ++i) {
+            mappings.add(createMapping(Paths.get("/mappings/" + (i % 100) + "/root" + i)));
+            myCache.putNoMappingsFor(Paths.get("/unmapped/" + (i % 100) + "/path" + i));
+        }
+        myCache.putMappings(mappings);
+
+        assertEquals(TfvcRootCache.CachedStatus.IS_MAPPING_ROOT, myCache.get(Paths.get("/mappings/42/root9942")));
+        assertEquals(
+                TfvcRootCache.CachedStatus.UNDER_MAPPING_ROOT,
+                myCache.get(Paths.get("/mappings/42/root9942/child")));
+        assertEquals(TfvcRootCache.CachedStatus.NO_ROOT, myCache.get(Paths.get("/mappings/42")));
+        assertEquals(TfvcRootCache.CachedStatus.UNKNOWN, myCache.get(Paths.get("/mappings/42/root43")));
+        assertEquals(TfvcRootCache.CachedStatus.NO_ROOT, myCache.get(Paths.get("/unmapped/7/path107")));
+        assertEquals(TfvcRootCache.CachedStatus.NO_ROOT, myCache.get(Paths.get("/unmapped")));
+        assertEquals(TfvcRootCache.CachedStatus.UNKNOWN, myCache.get(Paths.get("/unmapped/7/path107/child")));
+    }
+
     @Test(expected = InvalidPathException.class)
     public void cacheThrowsAnExceptionIfServiceDirectoryIsCached_1() {
         Path path = Paths.get("/$tf/smth");
@@ -0,0 +1,123 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.operations;
+
+import com.microsoft.alm.build.webapi.model.Build;
+import com.microsoft.alm.build.webapi.model.BuildQueryOrder;
+import com.microsoft.alm.build.webapi.model.BuildRepository;
+import com.microsoft.alm.build.webapi.model.BuildResult;
+import com.microsoft.alm.build.webapi.model.BuildStatus;
+import com.microsoft.alm.build.webapi.model.DefinitionReference;
+import com.microsoft.alm.core.webapi.model.TeamProjectReference;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.rest.BuildHttpClientEx;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BuildStatusCacheTest {
+    private static final String GIT_REPOSITORY_ID = UUID.randomUUID().toString();
+    private static final String TFVC_REPOSITORY_ID = "$/project";
+
+    private final List<Build> builds = new ArrayList<Build>();
+    private final BuildStatusCache cache = new BuildStatusCache();
+    private BuildHttpClientEx buildHttpClient;
+    private ServerContext context;
+
+    @Before
+    public void setUp() {
+        // Like the server, only filters the builds by the repository id when it's passed
+        buildHttpClient = mock(BuildHttpClientEx.class);
+        when(buildHttpClient.getBuilds(any(UUID.class), anyString(), anyString(), anyString(), eq(BuildStatus.COMPLETED),
+                any(Date.class), anyInt(), eq(BuildQueryOrder.FINISH_TIME_DESCENDING))).thenAnswer(new Answer<List<Build>>() {
+            @Override
+            public List<Build> answer(final InvocationOnMock invocation) {
+                final String repositoryId = (String) invocation.getArguments()[1];
+                final int top = (Integer) invocation.getArguments()[6];
+                final List<Build> result = new ArrayList<Build>();
+                for (final Build build : builds) {
+                    if (result.size() < top && (repositoryId == null || repositoryId.equals(build.getRepository().getId()))) {
+                        result.add(build);
+                    }
+                }
+                return result;
+            }
+        });
+
+        final TeamProjectReference project = new TeamProjectReference();
+        project.setId(UUID.randomUUID());
+        context = mock(ServerContext.class);
+        when(context.getCollectionURI()).thenReturn(URI.create("https://organization.visualstudio.com"));
+        when(context.getTeamProjectReference()).thenReturn(project);
+        when(context.getBuildHttpClient()).thenReturn(buildHttpClient);
+    }
+
+    private void addBuild(final int id, final String repositoryId, final String repositoryType) {
+        final BuildRepository repository = new BuildRepository();
+        repository.setId(repositoryId);
+        repository.setType(repositoryType);
+
+        final Build build = new Build();
+        build.setId(id);
+        build.setBuildNumber("number" + id);
+        build.setDefinition(new DefinitionReference());
+        build.getDefinition().setId(1);
+        build.setResult(BuildResult.SUCCEEDED);
+        build.setRepository(repository);
+        build.setSourceBranch(BuildStatusLookupOperation.MASTER_BRANCH);
+        builds.add(build);
+    }
+
+    @Test
+    public void testGetLatestBuild_mixedRepositoryTypes() {
+        // The Git builds of the team project are newer than the TFVC one
+        for (int id = 20; id > 10; id--) {
+            addBuild(id, GIT_REPOSITORY_ID, BuildStatusLookupOperation.GIT_REPO_TYPE);
+        }
+        addBuild(10, TFVC_REPOSITORY_ID, BuildStatusLookupOperation.TFVC_REPO_TYPE);
+        addBuild(9, GIT_REPOSITORY_ID, BuildStatusLookupOperation.GIT_REPO_TYPE);
+
+        final BuildStatusLookupOperation.BuildStatusRecord tfvcBuild = cache.getLatestBuild(context, null,
+                BuildStatusLookupOperation.TFVC_REPO_TYPE, null);
+        Assert.assertEquals(10, tfvcBuild.getBuildId());
+        Assert.assertEquals(TFVC_REPOSITORY_ID, tfvcBuild.getRepositoryId());
+
+        final BuildStatusLookupOperation.BuildStatusRecord gitBuild = cache.getLatestBuild(context, GIT_REPOSITORY_ID,
+                BuildStatusLookupOperation.GIT_REPO_TYPE, BuildStatusLookupOperation.MASTER_BRANCH);
+        Assert.assertEquals(20, gitBuild.getBuildId());
+
+        // Only the repository filtered query is limited to a few builds
+        verify(buildHttpClient).getBuilds(any(UUID.class), (String) isNull(), eq(BuildStatusLookupOperation.TFVC_REPO_TYPE),
+                (String) isNull(), eq(BuildStatus.COMPLETED), (Date) isNull(), eq(50),
+                eq(BuildQueryOrder.FINISH_TIME_DESCENDING));
+        verify(buildHttpClient).getBuilds(any(UUID.class), eq(GIT_REPOSITORY_ID), eq(BuildStatusLookupOperation.GIT_REPO_TYPE),
+                eq(BuildStatusLookupOperation.MASTER_BRANCH), eq(BuildStatus.COMPLETED), (Date) isNull(), eq(5),
+                eq(BuildQueryOrder.FINISH_TIME_DESCENDING));
+    }
+
+    @Test
+    public void testGetLatestBuild_noBuildOfRepositoryType() {
+        addBuild(2, GIT_REPOSITORY_ID, BuildStatusLookupOperation.GIT_REPO_TYPE);
+        addBuild(1, GIT_REPOSITORY_ID, BuildStatusLookupOperation.GIT_REPO_TYPE);
+
+        Assert.assertNull(cache.getLatestBuild(context, null, BuildStatusLookupOperation.TFVC_REPO_TYPE, null));
+    }
+}
@@ -4,28 +4,27 @@
 package com.microsoft.alm.plugin.operations;
 
 import com.google.common.util.concurrent.SettableFuture;
-import com.microsoft.alm.build.webapi.BuildHttpClient;
 import com.microsoft.alm.build.webapi.model.Build;
 import com.microsoft.alm.build.webapi.model.BuildQueryOrder;
-import com.microsoft.alm.build.webapi.model.BuildReason;
 import com.microsoft.alm.build.webapi.model.BuildRepository;
 import com.microsoft.alm.build.webapi.model.BuildResult;
 import com.microsoft.alm.build.webapi.model.BuildStatus;
 import com.microsoft.alm.build.webapi.model.DefinitionReference;
-import com.microsoft.alm.build.webapi.model.DefinitionType;
-import com.microsoft.alm.build.webapi.model.QueryDeletedOption;
 import com.microsoft.alm.core.webapi.model.TeamProjectReference;
 import com.microsoft.alm.plugin.AbstractTest;
 import com.microsoft.alm.plugin.authentication.AuthenticationInfo;
 import com.microsoft.alm.plugin.context.RepositoryContext;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.context.ServerContextManager;
+import com.microsoft.alm.plugin.context.rest.BuildHttpClientEx;
 import com.microsoft.alm.sourcecontrol.webapi.model.GitRepository;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -44,6 +43,8 @@ import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(PowerMockRunner.class)
@@ -51,15 +52,29 @@ import static org.mockito.Mockito.when;
 public class BuildStatusLookupOperationTest extends AbstractTest {
     private ServerContextManager serverContextManager;
 
-    private void setupLocalTests(GitRepository gitRepository, List<Build> builds) {
+    private BuildHttpClientEx setupLocalTests(GitRepository gitRepository, final List<Build> builds) {
         MockitoAnnotations.initMocks(this);
 
-        BuildHttpClient buildHttpClient = Mockito.mock(BuildHttpClient.class);
-        when(buildHttpClient.getBuilds(any(UUID.class), any(List.class), any(List.class),
-                anyString(), any(Date.class), any(Date.class), anyString(), any(BuildReason.class),
-                eq(BuildStatus.COMPLETED), any(BuildResult.class), any(List.class), any(List.class),
-                any(DefinitionType.class), eq(100), anyString(), anyInt(), any(QueryDeletedOption.class),
-                eq(BuildQueryOrder.FINISH_TIME_DESCENDING))).thenReturn(builds);
+        // The server filters the builds by the repository and branch
+        BuildHttpClientEx buildHttpClient = Mockito.mock(BuildHttpClientEx.class);
+        when(buildHttpClient.getBuilds(any(UUID.class), anyString(), eq(BuildStatusLookupOperation.GIT_REPO_TYPE),
+                anyString(), eq(BuildStatus.COMPLETED), any(Date.class), anyInt(),
+                eq(BuildQueryOrder.FINISH_TIME_DESCENDING))).thenAnswer(new Answer<List<Build>>() {
+            @Override
+            public List<Build> answer(InvocationOnMock invocation) {
+                final String repositoryId = (String) invocation.getArguments()[1];
+                final String branchName = (String) invocation.getArguments()[3];
+                final int top = (Integer) invocation.getArguments()[6];
+                final List<Build> filteredBuilds = new ArrayList<Build>();
+                for (final Build build : builds) {
+                    if (filteredBuilds.size() < top && build.getRepository().getId().equals(repositoryId)
+                            && build.getSourceBranch().equals(branchName)) {
+                        filteredBuilds.add(build);
+                    }
+                }
+                return filteredBuilds;
+            }
+        });
 
         AuthenticationInfo authInfo = new AuthenticationInfo("user", "pass", "serverURI", "user");
         ServerContext authenticatedContext = Mockito.mock(ServerContext.class);
@@ -73,6 +88,8 @@ public class BuildStatusLookupOperationTest extends AbstractTest {
 
         PowerMockito.mockStatic(ServerContextManager.class);
         when(ServerContextManager.getInstance()).thenReturn(serverContextManager);
+
+        return buildHttpClient;
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -228,6 +245,34 @@ public class BuildStatusLookupOperationTest extends AbstractTest {
         Assert.assertEquals(data.currentBranch, results.getBuilds().get(1).getBranch());
     }
 
+    @Test
+    public void testDoWork_sharedResults() throws InterruptedException, ExecutionException, TimeoutException {
+        TestData data = new TestData();
+        data.addBuild(6, data.currentRepo, data.currentBranch); // MATCH on exact branch
+        data.addBuild(5, data.currentRepo, TestData.MASTER);    // MATCH on Repo and master
+
+        BuildHttpClientEx buildHttpClient = setupLocalTests(data.currentRepo, data.builds);
+
+        // Both lookups (e.g. two projects of the same repo) are answered by the same server queries
+        new BuildStatusLookupOperation(data.getRepositoryContext(), false).doWork(null);
+        BuildStatusLookupOperation operation = new BuildStatusLookupOperation(
+                data.getRepositoryContext(), false);
+        data.setupListener(operation);
+        operation.doWork(null);
+
+        BuildStatusLookupOperation.BuildStatusResults results = data.buildResults.get(1, TimeUnit.SECONDS);
+        Assert.assertNull(results.getError());
+        Assert.assertEquals(2, results.getBuilds().size());
+        Assert.assertEquals(5, results.getBuilds().get(0).getBuildId());
+        Assert.assertEquals(6, results.getBuilds().get(1).getBuildId());
+        verify(buildHttpClient, times(1)).getBuilds(any(UUID.class), eq(data.currentRepo.getId().toString()),
+                eq(BuildStatusLookupOperation.GIT_REPO_TYPE), eq(TestData.MASTER), eq(BuildStatus.COMPLETED),
+                any(Date.class), anyInt(), eq(BuildQueryOrder.FINISH_TIME_DESCENDING));
+        verify(buildHttpClient, times(1)).getBuilds(any(UUID.class), eq(data.currentRepo.getId().toString()),
+                eq(BuildStatusLookupOperation.GIT_REPO_TYPE), eq(data.currentBranch), eq(BuildStatus.COMPLETED),
+                any(Date.class), anyInt(), eq(BuildQueryOrder.FINISH_TIME_DESCENDING));
+    }
+
     @Test
     public void testDoWork_failure() throws InterruptedException, ExecutionException, TimeoutException {
         TestData data = new TestData();
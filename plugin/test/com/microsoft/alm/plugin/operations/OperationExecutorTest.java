@@ -0,0 +1,139 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.operations;
+
+import com.microsoft.alm.plugin.exceptions.TeamServicesException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class OperationExecutorTest {
+    private final OperationExecutor executor = new OperationExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void testSubmitOperationTask_uiTasksRunFirst() throws Exception {
+        // Keep all the threads busy, so the next tasks are queued
+        final CountDownLatch releaseFirst = new CountDownLatch(1);
+        final CountDownLatch releaseOthers = new CountDownLatch(1);
+        final List<Future> blockers = new ArrayList<Future>();
+        blockers.add(executor.submitOperationTask(new AwaitRunnable(releaseFirst)));
+        for (int i = 1; i < executor.MAX_THREADS; i++) {
+            blockers.add(executor.submitOperationTask(new AwaitRunnable(releaseOthers)));
+        }
+
+        final List<String> order = new CopyOnWriteArrayList<String>();
+        final Future background = executor.submitOperationTask(new AddRunnable(order, "background"), OperationExecutor.Priority.BACKGROUND);
+        final Future ui = executor.submitOperationTask(new AddRunnable(order, "ui"), OperationExecutor.Priority.UI);
+        // The single free thread takes the queued tasks one by one
+        releaseFirst.countDown();
+        background.get(5, TimeUnit.SECONDS);
+        ui.get(5, TimeUnit.SECONDS);
+        releaseOthers.countDown();
+        executor.wait(blockers);
+
+        Assert.assertEquals("ui", order.get(0));
+        Assert.assertEquals(2, order.size());
+        Assert.assertEquals(1, executor.getMetrics(OperationExecutor.Priority.BACKGROUND).getCompletedCount());
+        Assert.assertEquals(executor.MAX_THREADS + 1, executor.getMetrics(OperationExecutor.Priority.UI).getCompletedCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testWait_nestedTasksDoNotBlockThePool() throws Exception {
+        // Each task waits for a subtask; with all the threads waiting, the subtasks only finish if they are run inline
+        final List<Future> tasks = new ArrayList<Future>();
+        final List<String> results = new CopyOnWriteArrayList<String>();
+        for (int i = 0; i < executor.MAX_THREADS * 2; i++) {
+            tasks.add(executor.submitOperationTask(new Runnable() {
+                @Override
+                public void run() {
+                    executor.wait(Collections.singletonList(executor.submitOperationTask(new AddRunnable(results, "subtask"))));
+                }
+            }));
+        }
+
+        executor.wait(tasks);
+        Assert.assertEquals(executor.MAX_THREADS * 2, results.size());
+    }
+
+    @Test(timeout = 10000)
+    public void testCancel_interruptsOperationAndItsTasks() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        final List<Future> subtasks = new CopyOnWriteArrayList<Future>();
+        final List<Throwable> errors = new CopyOnWriteArrayList<Throwable>();
+        final Operation operation = new Operation() {
+            @Override
+            public void doWork(final Inputs inputs) {
+                try {
+                    subtasks.add(executor.submitOperationTask(new AwaitRunnable(new CountDownLatch(1), started)));
+                    executor.wait(subtasks);
+                } catch (TeamServicesException e) {
+                    errors.add(e);
+                } finally {
+                    finished.countDown();
+                }
+            }
+        };
+
+        executor.executeAsync(operation, null);
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.cancel(operation.getId());
+
+        Assert.assertTrue(finished.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, errors.size());
+        Assert.assertTrue(subtasks.get(0).isCancelled());
+    }
+
+    private static class AddRunnable implements Runnable {
+        private final List<String> list;
+        private final String value;
+
+        public AddRunnable(final List<String> list, final String value) {
+            this.list = list;
+            this.value = value;
+        }
+
+        @Override
+        public void run() {
+            list.add(value);
+        }
+    }
+
+    private static class AwaitRunnable implements Runnable {
+        private final CountDownLatch latch;
+        private final CountDownLatch started;
+
+        public AwaitRunnable(final CountDownLatch latch) {
+            this(latch, new CountDownLatch(1));
+        }
+
+        public AwaitRunnable(final CountDownLatch latch, final CountDownLatch started) {
+            this.latch = latch;
+            this.started = started;
+        }
+
+        @Override
+        public void run() {
+            started.countDown();
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.versioncontrol.path;
+
+import com.google.common.collect.ImmutableList;
+import com.microsoft.alm.plugin.external.models.Workspace;
+import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfsFileUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+public class WorkspaceMappingIndexTest {
+    private static final String ROOT = new File(File.separator, "workspace").getPath();
+    // Few short components, so the random mappings often nest into each other and share prefixes
+    private static final String[] SERVER_COMPONENTS = {"a", "A", "b", "ab"};
+    private static final String[] LOCAL_COMPONENTS = {"x", "X", "y", "xy"};
+
+    private static String local(final String... components) {
+        File file = new File(ROOT);
+        for (final String component : components) {
+            file = new File(file, component);
+        }
+        return file.getPath();
+    }
+
+    private final WorkspaceMappingIndex index = new WorkspaceMappingIndex(ImmutableList.of(
+            new Workspace.Mapping("$/project", local("project"), false),
+            new Workspace.Mapping("$/project/lib", local("libraries"), false),
+            new Workspace.Mapping("$/project/lib/private", local("libraries", "private"), true),
+            new Workspace.Mapping("$/project/libraries", local("project", "other"), false),
+            new Workspace.Mapping("$/other/", local("other"), false)));
+
+    @Test
+    public void testTranslateServerItemToLocalItem() {
+        Assert.assertEquals(local("project"), index.translateServerItemToLocalItem("$/project", true));
+        Assert.assertEquals(local("project", "src", "a.txt"), index.translateServerItemToLocalItem("$/project/src/a.txt", true));
+        Assert.assertEquals(local("libraries", "a.jar"), index.translateServerItemToLocalItem("$/Project/LIB/a.jar", true));
+        Assert.assertEquals(local("project", "other", "b.jar"), index.translateServerItemToLocalItem("$/project/libraries/b.jar", true));
+        Assert.assertEquals(local("other", "c.txt"), index.translateServerItemToLocalItem("$/other/c.txt", true));
+    }
+
+    @Test
+    public void testTranslateServerItemToLocalItem_notMapped() {
+        Assert.assertNull(index.translateServerItemToLocalItem("$/", true));
+        Assert.assertNull(index.translateServerItemToLocalItem("$/projects/a.txt", true));
+    }
+
+    @Test
+    public void testTranslateServerItemToLocalItem_cloaked() {
+        Assert.assertNull(index.translateServerItemToLocalItem("$/project/lib/private", true));
+        Assert.assertNull(index.translateServerItemToLocalItem("$/project/lib/private/a.jar", true));
+    }
+
+    @Test
+    public void testTranslateLocalItemToServerItem() {
+        Assert.assertEquals("$/project", index.translateLocalItemToServerItem(local("project")));
+        Assert.assertEquals("$/project/src/a.txt", index.translateLocalItemToServerItem(local("project", "src", "a.txt")));
+        Assert.assertEquals("$/project/lib/a.jar", index.translateLocalItemToServerItem(local("libraries", "a.jar")));
+        Assert.assertEquals("$/project/libraries/b.jar", index.translateLocalItemToServerItem(local("project", "other", "b.jar")));
+        Assert.assertEquals("$/other/c.txt", index.translateLocalItemToServerItem(local("other", "c.txt") + File.separator));
+    }
+
+    @Test
+    public void testTranslateLocalItemToServerItem_notMapped() {
+        Assert.assertNull(index.translateLocalItemToServerItem(ROOT));
+        Assert.assertNull(index.translateLocalItemToServerItem(local("projects", "a.txt")));
+    }
+
+    @Test
+    public void testTranslateLocalItemToServerItem_cloaked() {
+        Assert.assertNull(index.translateLocalItemToServerItem(local("libraries", "private")));
+        Assert.assertNull(index.translateLocalItemToServerItem(local("libraries", "private", "a.jar")));
+        Assert.assertEquals("$/project/lib/privateer", index.translateLocalItemToServerItem(local("libraries", "privateer")));
+    }
+
+    @Test
+    public void testTranslate_matchesLinearScans() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            final List<Workspace.Mapping> mappings = randomMappings(random);
+            final WorkspaceMappingIndex randomIndex = new WorkspaceMappingIndex(mappings);
+
+            for (int j = 0; j < 50; j++) {
+                final String serverPath = randomServerPath(random, 0);
+                Assert.assertEquals(mappings + ": " + serverPath,
+                        TfsFileUtil.translateServerItemToLocalItem(mappings, serverPath, true),
+                        randomIndex.translateServerItemToLocalItem(serverPath, true));
+
+                String localPath = randomLocalPath(random, 0);
+                if (random.nextInt(4) == 0) {
+                    localPath += File.separator;
+                }
+                Assert.assertEquals(mappings + ": " + localPath,
+                        TfsFileUtil.translateLocalItemToServerItem(localPath, mappings),
+                        randomIndex.translateLocalItemToServerItem(localPath));
+            }
+        }
+    }
+
+    /**
+     * Returns up to 8 mappings, a quarter of them cloaked. A workspace can't map the same server path twice, so the
+     * server paths are unique.
+     */
+    private static List<Workspace.Mapping> randomMappings(final Random random) {
+        final List<Workspace.Mapping> mappings = new ArrayList<Workspace.Mapping>();
+        final Set<String> serverPaths = new HashSet<String>();
+        final int count = random.nextInt(9);
+        for (int i = 0; i < count; i++) {
+            String serverPath = randomServerPath(random, 1);
+            if (!serverPaths.add(serverPath.toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            if (random.nextInt(4) == 0) {
+                serverPath += "/";
+            }
+            mappings.add(new Workspace.Mapping(serverPath, randomLocalPath(random, 1), random.nextInt(4) == 0));
+        }
+        return mappings;
+    }
+
+    private static String randomServerPath(final Random random, final int minDepth) {
+        final StringBuilder path = new StringBuilder("$");
+        final int depth = minDepth + random.nextInt(5 - minDepth);
+        for (int i = 0; i < depth; i++) {
+            path.append('/').append(SERVER_COMPONENTS[random.nextInt(SERVER_COMPONENTS.length)]);
+        }
+        return depth == 0 ? "$/" : path.toString();
+    }
+
+    private static String randomLocalPath(final Random random, final int minDepth) {
+        final int depth = minDepth + random.nextInt(5 - minDepth);
+        final String[] components = new String[depth];
+        for (int i = 0; i < depth; i++) {
+            components[i] = LOCAL_COMPONENTS[random.nextInt(LOCAL_COMPONENTS.length)];
+        }
+        return local(components);
+    }
+}